@@ -15,6 +15,11 @@ public final class ConfigUtil {
 	 */
 	public static final String PARAM_WORKING_DIRECTORY_KEY = "bordertech.lde.working.dir";
 
+	/**
+	 * Jar index file parameter key.
+	 */
+	public static final String PARAM_JAR_INDEX_FILE_KEY = "bordertech.lde.jar.index.file";
+
 	/**
 	 * LDE server default port parameter key.
 	 */
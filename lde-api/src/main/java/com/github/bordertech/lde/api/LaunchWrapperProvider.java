@@ -1,5 +1,8 @@
 package com.github.bordertech.lde.api;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Provider that wraps the default launcher.
  * <p>
@@ -25,6 +28,21 @@ public class LaunchWrapperProvider implements LdeProvider {
 		backing.stopServer();
 	}
 
+	@Override
+	public CompletableFuture<Void> launchServerAsync() {
+		return backing.launchServerAsync();
+	}
+
+	@Override
+	public CompletableFuture<Void> stopServerAsync() {
+		return backing.stopServerAsync();
+	}
+
+	@Override
+	public long reloadServer() {
+		return backing.reloadServer();
+	}
+
 	@Override
 	public int getPort() {
 		return backing.getPort();
@@ -40,4 +58,24 @@ public class LaunchWrapperProvider implements LdeProvider {
 		return backing.isRunning();
 	}
 
+	@Override
+	public Map<String, Number> getMetrics() {
+		return backing.getMetrics();
+	}
+
+	@Override
+	public Map<String, Long> getStartupTimings() {
+		return backing.getStartupTimings();
+	}
+
+	@Override
+	public void setInstanceName(final String name) {
+		backing.setInstanceName(name);
+	}
+
+	@Override
+	public String getInstanceName() {
+		return backing.getInstanceName();
+	}
+
 }
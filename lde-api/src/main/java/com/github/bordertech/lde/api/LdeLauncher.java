@@ -1,6 +1,15 @@
 package com.github.bordertech.lde.api;
 
 import com.github.bordertech.didums.Didums;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Launcher Helper Class.
@@ -9,6 +18,8 @@ public final class LdeLauncher {
 
 	private static final LdeProvider PROVIDER = Didums.getService(LdeProvider.class);
 
+	private static final Map<String, LdeProvider> INSTANCES = new ConcurrentHashMap<>();
+
 	/**
 	 * Private constructor.
 	 */
@@ -38,6 +49,47 @@ public final class LdeLauncher {
 		PROVIDER.stopServer();
 	}
 
+	/**
+	 * Launch Server without blocking.
+	 *
+	 * @return the future completed when the server is running
+	 */
+	public static CompletableFuture<Void> launchServerAsync() {
+		return PROVIDER.launchServerAsync();
+	}
+
+	/**
+	 * Stop Server without blocking.
+	 *
+	 * @return the future completed when the server has stopped
+	 */
+	public static CompletableFuture<Void> stopServerAsync() {
+		return PROVIDER.stopServerAsync();
+	}
+
+	/**
+	 * Reload the web app without restarting the server.
+	 *
+	 * @return the time taken to reload in milliseconds
+	 */
+	public static long reloadServer() {
+		return PROVIDER.reloadServer();
+	}
+
+	/**
+	 * @return a snapshot of the server metrics
+	 */
+	public static Map<String, Number> getMetrics() {
+		return PROVIDER.getMetrics();
+	}
+
+	/**
+	 * @return the time taken by each phase of launching the server in milliseconds
+	 */
+	public static Map<String, Long> getStartupTimings() {
+		return PROVIDER.getStartupTimings();
+	}
+
 	/**
 	 * @return true if server is running
 	 */
@@ -52,4 +104,102 @@ public final class LdeLauncher {
 		return PROVIDER;
 	}
 
+	/**
+	 * Create a named server instance.
+	 * <p>
+	 * Each named instance is a new provider with its own port, working directories and lifecycle.
+	 * </p>
+	 *
+	 * @param name the instance name
+	 * @return the new provider instance
+	 */
+	public static LdeProvider createInstance(final String name) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("An instance name must be provided.");
+		}
+		LdeProvider provider = Didums.getService(LdeProvider.class);
+		if (provider == PROVIDER || INSTANCES.containsValue(provider)) {
+			throw new IllegalStateException("LDE provider is a singleton so cannot create named instance [" + name + "].");
+		}
+		provider.setInstanceName(name);
+		if (INSTANCES.putIfAbsent(name, provider) != null) {
+			throw new IllegalStateException("LDE instance [" + name + "] already exists.");
+		}
+		return provider;
+	}
+
+	/**
+	 * @param name the instance name
+	 * @return the named provider instance or null if does not exist
+	 */
+	public static LdeProvider getInstance(final String name) {
+		return INSTANCES.get(name);
+	}
+
+	/**
+	 * @return the names of the instances created
+	 */
+	public static Set<String> getInstanceNames() {
+		return Collections.unmodifiableSet(new TreeSet<>(INSTANCES.keySet()));
+	}
+
+	/**
+	 * Create the named instances that do not exist and launch them in parallel.
+	 * <p>
+	 * Returns once all the instances have started.
+	 * </p>
+	 *
+	 * @param names the instance names
+	 * @return the provider instances in the same order as the names
+	 */
+	public static List<LdeProvider> launchInstances(final String... names) {
+		List<LdeProvider> providers = new ArrayList<>();
+		for (String name : names) {
+			LdeProvider provider = getInstance(name);
+			providers.add(provider == null ? createInstance(name) : provider);
+		}
+		List<CompletableFuture<Void>> launches = new ArrayList<>();
+		for (LdeProvider provider : providers) {
+			if (!provider.isRunning()) {
+				launches.add(provider.launchServerAsync());
+			}
+		}
+		try {
+			CompletableFuture.allOf(launches.toArray(new CompletableFuture<?>[]{})).join();
+		} catch (CompletionException e) {
+			throw new IllegalStateException("Could not launch LDE instances. " + e.getCause().getMessage(), e.getCause());
+		}
+		List<String> failed = new ArrayList<>();
+		for (LdeProvider provider : providers) {
+			if (!provider.isRunning()) {
+				failed.add(provider.getInstanceName());
+			}
+		}
+		if (!failed.isEmpty()) {
+			throw new IllegalStateException("LDE instances " + failed + " did not start.");
+		}
+		return providers;
+	}
+
+	/**
+	 * Stop and remove a named instance.
+	 *
+	 * @param name the instance name
+	 */
+	public static void stopInstance(final String name) {
+		LdeProvider provider = INSTANCES.remove(name);
+		if (provider != null) {
+			provider.stopServer();
+		}
+	}
+
+	/**
+	 * Stop and remove all the named instances.
+	 */
+	public static void stopAllInstances() {
+		for (String name : getInstanceNames()) {
+			stopInstance(name);
+		}
+	}
+
 }
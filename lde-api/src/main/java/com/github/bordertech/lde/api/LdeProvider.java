@@ -1,5 +1,9 @@
 package com.github.bordertech.lde.api;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * LDE server provider (eg embedded tomcat).
  */
@@ -20,6 +24,52 @@ public interface LdeProvider {
 	 */
 	void stopServer();
 
+	/**
+	 * Launch the server without blocking the calling thread.
+	 * <p>
+	 * Lets the caller do other work (eg seed a database or warm up a client) while the server starts, or start several servers together with
+	 * {@link CompletableFuture#allOf(CompletableFuture[])}.
+	 * </p>
+	 * <p>
+	 * By default the server is launched without blocking on another thread.
+	 * </p>
+	 *
+	 * @return the future completed when the server is running, or completed exceptionally if it failed to start
+	 */
+	default CompletableFuture<Void> launchServerAsync() {
+		return CompletableFuture.runAsync(() -> launchServer(false));
+	}
+
+	/**
+	 * Stop the server without blocking the calling thread.
+	 * <p>
+	 * A launch still in progress is finished before the server is stopped.
+	 * </p>
+	 * <p>
+	 * By default the server is stopped on another thread.
+	 * </p>
+	 *
+	 * @return the future completed when the server has stopped
+	 */
+	default CompletableFuture<Void> stopServerAsync() {
+		return CompletableFuture.runAsync(this::stopServer);
+	}
+
+	/**
+	 * Reload the web app without restarting the server.
+	 * <p>
+	 * Providers that cannot reload the web app in place are restarted, which is the default.
+	 * </p>
+	 *
+	 * @return the time taken to reload in milliseconds
+	 */
+	default long reloadServer() {
+		long start = System.currentTimeMillis();
+		stopServer();
+		launchServer(false);
+		return System.currentTimeMillis() - start;
+	}
+
 	/**
 	 * @return the port being used by web server
 	 */
@@ -35,4 +85,53 @@ public interface LdeProvider {
 	 */
 	boolean isRunning();
 
+	/**
+	 * A snapshot of the server metrics since it was launched (eg request counts, latency percentiles and thread pool usage).
+	 * <p>
+	 * Metric names are dot separated. A name with a label in square brackets, such as "route[/api/*].requests", is one metric of a labelled set.
+	 * Latencies are in milliseconds. Only JDK types are returned so the snapshot can be read across class loaders.
+	 * </p>
+	 *
+	 * @return the metric names and values, or an empty map if not running or not supported
+	 */
+	default Map<String, Number> getMetrics() {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * The time taken by each phase of the last launch of the server (eg creating, configuring, scanning and starting the web app).
+	 * <p>
+	 * Phases are reported in the order they finished and the "total" phase is the whole launch. Only JDK types are returned so the timings can be
+	 * read across class loaders.
+	 * </p>
+	 *
+	 * @return the phase names and times in milliseconds, or an empty map if not launched or not supported
+	 */
+	default Map<String, Long> getStartupTimings() {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * Set the name of the server instance before it is launched.
+	 * <p>
+	 * A named instance is isolated from the other instances in the same JVM with its own port and working directories.
+	 * </p>
+	 *
+	 * <p>
+	 * Providers that do not support named instances ignore the name, which is the default.
+	 * </p>
+	 *
+	 * @param name the instance name or null for the default instance
+	 */
+	default void setInstanceName(final String name) {
+		// Named instances not supported
+	}
+
+	/**
+	 * @return the instance name or null for the default instance
+	 */
+	default String getInstanceName() {
+		return null;
+	}
+
 }
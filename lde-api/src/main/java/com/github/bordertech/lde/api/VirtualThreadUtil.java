@@ -0,0 +1,95 @@
+package com.github.bordertech.lde.api;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual thread helper.
+ * <p>
+ * Virtual threads are only available from JDK 21, so they are created by reflection to allow LDE to still be built and run on older JDKs.
+ * </p>
+ */
+public final class VirtualThreadUtil {
+
+	private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+	private static final Class<?> BUILDER_CLASS = findClass("java.lang.Thread$Builder");
+	private static final Method BUILDER_NAME = BUILDER_CLASS == null ? null : findMethod(BUILDER_CLASS, "name", String.class, long.class);
+	private static final Method BUILDER_FACTORY = BUILDER_CLASS == null ? null : findMethod(BUILDER_CLASS, "factory");
+	private static final Method NEW_THREAD_PER_TASK = findMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+	/**
+	 * Private constructor.
+	 */
+	private VirtualThreadUtil() {
+	}
+
+	/**
+	 * @return true if the runtime supports virtual threads
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null && BUILDER_NAME != null && BUILDER_FACTORY != null && NEW_THREAD_PER_TASK != null;
+	}
+
+	/**
+	 * @param namePrefix the prefix of the thread names, which are suffixed with a counter
+	 * @return a factory of virtual threads or null if virtual threads are not available
+	 */
+	public static ThreadFactory newThreadFactory(final String namePrefix) {
+		if (!isAvailable()) {
+			return null;
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = BUILDER_NAME.invoke(builder, namePrefix, 0L);
+			return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Could not create virtual thread factory. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param namePrefix the prefix of the thread names, which are suffixed with a counter
+	 * @return an executor that starts a virtual thread per task or null if virtual threads are not available
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(final String namePrefix) {
+		ThreadFactory factory = newThreadFactory(namePrefix);
+		if (factory == null) {
+			return null;
+		}
+		try {
+			return (ExecutorService) NEW_THREAD_PER_TASK.invoke(null, factory);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Could not create virtual thread executor. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param name the class name
+	 * @return the class or null if not available in this runtime
+	 */
+	private static Class<?> findClass(final String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param clazz the class with the method
+	 * @param name the method name
+	 * @param params the method parameter types
+	 * @return the method or null if not available in this runtime
+	 */
+	private static Method findMethod(final Class<?> clazz, final String name, final Class<?>... params) {
+		try {
+			return clazz.getMethod(name, params);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
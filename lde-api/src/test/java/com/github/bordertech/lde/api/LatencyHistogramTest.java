@@ -0,0 +1,56 @@
+package com.github.bordertech.lde.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals("Count should be zero", 0, histogram.getCount());
+		Assert.assertEquals("Percentile should be zero", 0, histogram.getPercentileMicros(99));
+		Assert.assertEquals("Mean should be zero", 0, histogram.getMeanMicros(), 0);
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.recordMicros(i);
+		}
+		Assert.assertEquals("Incorrect count", 1000, histogram.getCount());
+		Assert.assertEquals("Incorrect max", 1000, histogram.getMaxMicros());
+		Assert.assertEquals("Incorrect mean", 500.5, histogram.getMeanMicros(), 0.001);
+		assertWithin("Incorrect p50", 500, histogram.getPercentileMicros(50));
+		assertWithin("Incorrect p99", 990, histogram.getPercentileMicros(99));
+		Assert.assertEquals("p100 should be the max", 1000, histogram.getPercentileMicros(100));
+	}
+
+	@Test
+	public void testLargeValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.recordMicros(Long.MAX_VALUE);
+		histogram.recordNanos(-1);
+		Assert.assertEquals("Incorrect count", 2, histogram.getCount());
+		Assert.assertEquals("Incorrect max", Long.MAX_VALUE, histogram.getPercentileMicros(100));
+		Assert.assertEquals("Negative latency should be recorded as zero", 0, histogram.getPercentileMicros(50));
+	}
+
+	@Test
+	public void testReset() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.recordMicros(10);
+		histogram.reset();
+		Assert.assertEquals("Count should be reset", 0, histogram.getCount());
+		Assert.assertEquals("Max should be reset", 0, histogram.getMaxMicros());
+	}
+
+	private void assertWithin(final String message, final long expected, final long actual) {
+		Assert.assertTrue(message + " expected about " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.25);
+	}
+
+}
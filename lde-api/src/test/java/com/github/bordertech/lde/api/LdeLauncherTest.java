@@ -1,5 +1,8 @@
 package com.github.bordertech.lde.api;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -18,6 +21,7 @@ public class LdeLauncherTest {
 	@After
 	public void resetMockAfter() {
 		getMockProvider().resetMock();
+		LdeLauncher.stopAllInstances();
 	}
 
 	@Test
@@ -50,6 +54,82 @@ public class LdeLauncherTest {
 		Assert.assertFalse("Server status should not be blocked", mock.isBlocked());
 	}
 
+	@Test
+	public void testLaunchServerAsync() {
+		MockProvider mock = (MockProvider) LdeLauncher.getProvider();
+		LdeLauncher.launchServerAsync().join();
+		Assert.assertTrue("Server should be started", mock.isStarted());
+		Assert.assertFalse("Server status should not be blocked", mock.isBlocked());
+	}
+
+	@Test
+	public void testStopServerAsync() {
+		MockProvider mock = (MockProvider) LdeLauncher.getProvider();
+		LdeLauncher.launchServerAsync().join();
+		LdeLauncher.stopServerAsync().join();
+		Assert.assertFalse("Server should be stopped", mock.isStarted());
+	}
+
+	@Test
+	public void testReload() {
+		MockProvider mock = (MockProvider) LdeLauncher.getProvider();
+		Assert.assertEquals("Server should not have been reloaded", 0, mock.getReloads());
+		LdeLauncher.launchServer(false);
+		Assert.assertEquals("Reload time should be returned", 0, LdeLauncher.reloadServer());
+		Assert.assertEquals("Server should have been reloaded", 1, mock.getReloads());
+		Assert.assertTrue("Server should still be started", mock.isStarted());
+	}
+
+	@Test
+	public void testMetrics() {
+		Assert.assertTrue("Metrics should be empty when not started", LdeLauncher.getMetrics().isEmpty());
+		LdeLauncher.launchServer(false);
+		Assert.assertEquals("Metrics should be returned from the provider", 0L, LdeLauncher.getMetrics().get("http.requests"));
+	}
+
+	@Test
+	public void testStartupTimings() {
+		Assert.assertTrue("Timings should be empty when not launched", LdeLauncher.getStartupTimings().isEmpty());
+		LdeLauncher.launchServer(false);
+		Assert.assertEquals("Timings should be returned from the provider", Long.valueOf(0), LdeLauncher.getStartupTimings().get("total"));
+	}
+
+	@Test
+	public void testCreateInstance() {
+		LdeProvider instance = LdeLauncher.createInstance("one");
+		Assert.assertNotSame("Named instance should not be the default provider", LdeLauncher.getProvider(), instance);
+		Assert.assertEquals("Named instance has incorrect name", "one", instance.getInstanceName());
+		Assert.assertSame("Named instance should be found by name", instance, LdeLauncher.getInstance("one"));
+		Assert.assertNull("Default provider should not have a name", LdeLauncher.getProvider().getInstanceName());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCreateInstanceDuplicate() {
+		LdeLauncher.createInstance("one");
+		LdeLauncher.createInstance("one");
+	}
+
+	@Test
+	public void testLaunchInstances() {
+		LdeProvider existing = LdeLauncher.createInstance("one");
+		List<LdeProvider> instances = LdeLauncher.launchInstances("one", "two", "three");
+		Assert.assertEquals("Incorrect number of instances launched", 3, instances.size());
+		Assert.assertSame("Existing instance should be reused", existing, instances.get(0));
+		for (LdeProvider instance : instances) {
+			Assert.assertTrue("Instance should be running", instance.isRunning());
+		}
+		Assert.assertFalse("Default provider should not be started", getMockProvider().isStarted());
+		Assert.assertEquals("Incorrect instance names", new TreeSet<>(Arrays.asList("one", "two", "three")), LdeLauncher.getInstanceNames());
+	}
+
+	@Test
+	public void testStopInstance() {
+		LdeProvider instance = LdeLauncher.launchInstances("one").get(0);
+		LdeLauncher.stopInstance("one");
+		Assert.assertFalse("Instance should be stopped", instance.isRunning());
+		Assert.assertNull("Instance should be removed", LdeLauncher.getInstance("one"));
+	}
+
 	protected MockProvider getMockProvider() {
 		return (MockProvider) LdeLauncher.getProvider();
 	}
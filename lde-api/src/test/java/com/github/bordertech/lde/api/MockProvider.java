@@ -1,5 +1,9 @@
 package com.github.bordertech.lde.api;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Mock provider for testing.
  */
@@ -7,6 +11,8 @@ public class MockProvider implements LdeProvider {
 
 	private boolean started;
 	private boolean blocked;
+	private int reloads;
+	private String instanceName;
 
 	public boolean isStarted() {
 		return started;
@@ -16,9 +22,14 @@ public class MockProvider implements LdeProvider {
 		return blocked;
 	}
 
+	public int getReloads() {
+		return reloads;
+	}
+
 	public void resetMock() {
 		started = false;
 		blocked = false;
+		reloads = 0;
 	}
 
 	@Override
@@ -37,6 +48,24 @@ public class MockProvider implements LdeProvider {
 		started = false;
 	}
 
+	@Override
+	public CompletableFuture<Void> launchServerAsync() {
+		launchServer(false);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> stopServerAsync() {
+		stopServer();
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public long reloadServer() {
+		reloads++;
+		return 0;
+	}
+
 	@Override
 	public int getPort() {
 		throw new UnsupportedOperationException("Not supported yet.");
@@ -52,4 +81,24 @@ public class MockProvider implements LdeProvider {
 		return isStarted();
 	}
 
+	@Override
+	public Map<String, Number> getMetrics() {
+		return started ? Collections.singletonMap("http.requests", 0L) : Collections.emptyMap();
+	}
+
+	@Override
+	public Map<String, Long> getStartupTimings() {
+		return started ? Collections.singletonMap("total", 0L) : Collections.emptyMap();
+	}
+
+	@Override
+	public void setInstanceName(final String name) {
+		instanceName = name;
+	}
+
+	@Override
+	public String getInstanceName() {
+		return instanceName;
+	}
+
 }
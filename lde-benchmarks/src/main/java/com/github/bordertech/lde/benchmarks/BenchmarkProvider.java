@@ -0,0 +1,54 @@
+package com.github.bordertech.lde.benchmarks;
+
+import com.github.bordertech.lde.tomcat.TomcatLauncherProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+
+/**
+ * TOMCAT provider with a trivial servlet mapped to {@link #SERVLET_PATH}.
+ */
+public class BenchmarkProvider extends TomcatLauncherProvider {
+
+	/**
+	 * The path of the trivial servlet.
+	 */
+	public static final String SERVLET_PATH = "/bench";
+
+	@Override
+	protected void configWebApp(final Context context) throws IOException, ServletException {
+		super.configWebApp(context);
+		Tomcat.addServlet(context, "bench", new TrivialServlet());
+		context.addServletMappingDecoded(SERVLET_PATH, "bench");
+	}
+
+	/**
+	 * @param current the current class loader
+	 * @return the URLS of the class loader tree
+	 */
+	public URL[] getClassLoaderUrls(final ClassLoader current) {
+		return retrieveClassLoaderUrls(current);
+	}
+
+	/**
+	 * Servlet that responds with a short text body.
+	 */
+	private static final class TrivialServlet extends HttpServlet {
+
+		private static final byte[] BODY = "OK".getBytes(StandardCharsets.UTF_8);
+
+		@Override
+		protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+			resp.setContentType("text/plain");
+			resp.setContentLength(BODY.length);
+			resp.getOutputStream().write(BODY);
+		}
+	}
+
+}
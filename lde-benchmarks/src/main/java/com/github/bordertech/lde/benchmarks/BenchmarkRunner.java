@@ -0,0 +1,49 @@
+package com.github.bordertech.lde.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the LDE benchmarks and write the results as JSON.
+ * <p>
+ * Accepts the standard JMH command line options (eg <code>java -jar target/benchmarks.jar Proxy -f 1</code>). The results are written to
+ * "jmh-result.json" unless a result format or file is given on the command line.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+	/**
+	 * Private constructor.
+	 */
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * @param args the JMH command line options
+	 * @throws CommandLineOptionException invalid command line options
+	 * @throws RunnerException the benchmarks failed to run
+	 */
+	public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if (cmd.shouldHelp()) {
+			cmd.showHelp();
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+		if (!cmd.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		Runner runner = new Runner(builder.build());
+		if (cmd.shouldList()) {
+			runner.list();
+			return;
+		}
+		runner.run();
+	}
+
+}
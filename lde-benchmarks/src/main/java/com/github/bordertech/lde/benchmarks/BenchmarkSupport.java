@@ -0,0 +1,78 @@
+package com.github.bordertech.lde.benchmarks;
+
+import com.github.bordertech.lde.api.ConfigUtil;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Set up the working directories and jars used by the benchmarks.
+ */
+public final class BenchmarkSupport {
+
+	/**
+	 * Private constructor.
+	 */
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * Create a temporary LDE working directory with an empty web app and use it for the providers launched by this JVM.
+	 * <p>
+	 * The server logging is reduced to warnings so it does not flood the benchmark output.
+	 * </p>
+	 *
+	 * @return the working directory
+	 * @throws IOException an IO Exception
+	 */
+	public static Path createWorkingDir() throws IOException {
+		Path dir = Files.createTempDirectory("lde-bench");
+		Files.createDirectories(dir.resolve("target/webapp"));
+		Files.createDirectories(dir.resolve("target/dependency"));
+		System.setProperty(ConfigUtil.PARAM_WORKING_DIRECTORY_KEY, dir.toString());
+		Logger.getLogger("").setLevel(Level.WARNING);
+		return dir;
+	}
+
+	/**
+	 * Create a jar holding a single resource.
+	 *
+	 * @param dir the directory to create the jar in
+	 * @param name the jar name
+	 * @return the jar
+	 * @throws IOException an IO Exception
+	 */
+	public static Path createJar(final Path dir, final String name) throws IOException {
+		Path jar = dir.resolve(name + ".jar");
+		try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+			jarOut.putNextEntry(new JarEntry(name + "/resource.txt"));
+			jarOut.write(name.getBytes(StandardCharsets.UTF_8));
+			jarOut.closeEntry();
+		}
+		return jar;
+	}
+
+	/**
+	 * Delete a directory and its contents.
+	 *
+	 * @param dir the directory to delete
+	 * @throws IOException an IO Exception
+	 */
+	public static void deleteDir(final Path dir) throws IOException {
+		if (dir == null || !Files.exists(dir)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.github.bordertech.lde.benchmarks;
+
+import com.github.bordertech.lde.mojo.DependencyLayerCache;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time creating the provider class loader the way the MOJO does, flat or on a cached dependency layer, and collecting the class loader URLs the way
+ * the TOMCAT provider does for its custom class loader.
+ * <p>
+ * Creating a class loader does not open its jars, so each new class loader looks up a missing resource to open every jar as the first class lookup
+ * would.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoaderBenchmark {
+
+	private static final String MISSING = "lde/bench/missing.txt";
+
+	@Param({"10", "100", "500"})
+	private int jarCount;
+
+	private Path jarDir;
+	private List<URL> jars;
+	private URL[] dirs;
+	private URLClassLoader nested;
+	private DependencyLayerCache layers;
+	private BenchmarkProvider provider;
+
+	/**
+	 * Create the jars and class loaders.
+	 *
+	 * @throws IOException an IO Exception
+	 */
+	@Setup
+	public void setup() throws IOException {
+		jarDir = Files.createTempDirectory("lde-bench-jars");
+		jars = new ArrayList<>();
+		for (int i = 0; i < jarCount; i++) {
+			jars.add(BenchmarkSupport.createJar(jarDir, "dep" + i).toUri().toURL());
+		}
+		dirs = new URL[]{Files.createDirectories(jarDir.resolve("classes")).toUri().toURL()};
+		// Dependencies layer with the project classes on top
+		nested = new URLClassLoader(dirs, new URLClassLoader(jars.toArray(new URL[]{}), null));
+		layers = new DependencyLayerCache();
+		provider = new BenchmarkProvider();
+	}
+
+	/**
+	 * Close the class loaders and delete the jars.
+	 *
+	 * @throws IOException an IO Exception
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		((URLClassLoader) nested.getParent()).close();
+		nested.close();
+		layers.closeIdleLayers();
+		BenchmarkSupport.deleteDir(jarDir);
+	}
+
+	/**
+	 * A new class loader of all the jars, as the MOJO creates on every start when layered class loaders are disabled.
+	 *
+	 * @return the looked up resource
+	 * @throws IOException an IO Exception
+	 */
+	@Benchmark
+	public URL createClassLoader() throws IOException {
+		List<URL> urls = new ArrayList<>(jars);
+		urls.add(dirs[0]);
+		try (URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[]{}), null)) {
+			return loader.getResource(MISSING);
+		}
+	}
+
+	/**
+	 * A new project class loader on the cached dependency layer, as the MOJO creates by default.
+	 *
+	 * @return the looked up resource
+	 * @throws IOException an IO Exception
+	 */
+	@Benchmark
+	public URL createLayeredClassLoader() throws IOException {
+		String key = DependencyLayerCache.fingerprint(jars);
+		ClassLoader layer = layers.getLayer(key, jars);
+		try (URLClassLoader loader = new URLClassLoader(dirs, layer)) {
+			return loader.getResource(MISSING);
+		} finally {
+			layers.release(key);
+		}
+	}
+
+	/**
+	 * @return the dependency layer checksum
+	 */
+	@Benchmark
+	public String fingerprint() {
+		return DependencyLayerCache.fingerprint(jars);
+	}
+
+	/**
+	 * @return the URLs of the class loader tree
+	 */
+	@Benchmark
+	public URL[] retrieveClassLoaderUrls() {
+		return provider.getClassLoaderUrls(nested);
+	}
+
+}
@@ -0,0 +1,237 @@
+package com.github.bordertech.lde.benchmarks;
+
+import com.github.bordertech.lde.api.ConfigUtil;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure how the TOMCAT provider startup time and memory scale with the number of dependency jars.
+ * <p>
+ * Synthetic jar sets are generated with and without annotations and web fragments (see {@link SyntheticJars}). The provider is launched in a new JVM
+ * (see {@link ScalingProbe}) against the first N jars of each set, with a new working directory for each run so the scan cache is always cold. The
+ * runs are written to "scaling.csv", and the median startup time, scan time and heap of each jar count are plotted in "startup.svg", "scan.svg" and
+ * "heap.svg".
+ * </p>
+ * <p>
+ * Settings are system properties:
+ * </p>
+ * <ul>
+ * <li>lde.bench.scaling.counts - the jar counts (default 10,50,100,250,500,1000,2000)</li>
+ * <li>lde.bench.scaling.runs - the runs of each jar count (default 3)</li>
+ * <li>lde.bench.scaling.classes - the plain classes in each jar (default 5)</li>
+ * <li>lde.bench.scaling.out - the output directory (default target/classpath-scaling)</li>
+ * <li>lde.bench.scaling.jvm.args - the JVM arguments of the launched JVMs (default -Xmx1g)</li>
+ * </ul>
+ */
+public final class ClasspathScaling {
+
+	private static final String[] VARIANTS = {"plain", "annotated"};
+	private static final long PROBE_TIMEOUT_MINUTES = 5;
+	private static final double BYTES_PER_MB = 1024 * 1024;
+
+	private final List<Integer> counts;
+	private final int runs;
+	private final int classesPerJar;
+	private final Path outDir;
+	private final List<String> jvmArgs;
+
+	/**
+	 * @param counts the jar counts
+	 * @param runs the runs of each jar count
+	 * @param classesPerJar the plain classes in each jar
+	 * @param outDir the output directory
+	 * @param jvmArgs the JVM arguments of the launched JVMs
+	 */
+	public ClasspathScaling(final List<Integer> counts, final int runs, final int classesPerJar, final Path outDir, final List<String> jvmArgs) {
+		this.counts = counts;
+		this.runs = runs;
+		this.classesPerJar = classesPerJar;
+		this.outDir = outDir;
+		this.jvmArgs = jvmArgs;
+	}
+
+	/**
+	 * @param args not used
+	 * @throws IOException an IO Exception
+	 * @throws InterruptedException interrupted waiting for a launched JVM
+	 */
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		List<Integer> counts = new ArrayList<>();
+		for (String count : System.getProperty("lde.bench.scaling.counts", "10,50,100,250,500,1000,2000").split(",")) {
+			counts.add(Integer.valueOf(count.trim()));
+		}
+		Collections.sort(counts);
+		int runs = Integer.getInteger("lde.bench.scaling.runs", 3);
+		int classes = Integer.getInteger("lde.bench.scaling.classes", 5);
+		Path out = Paths.get(System.getProperty("lde.bench.scaling.out", "target/classpath-scaling"));
+		List<String> jvmArgs = Arrays.asList(System.getProperty("lde.bench.scaling.jvm.args", "-Xmx1g").trim().split("\\s+"));
+		new ClasspathScaling(counts, runs, classes, out, jvmArgs).run();
+	}
+
+	/**
+	 * Generate the jars, launch the provider against each jar count and write the results.
+	 *
+	 * @throws IOException an IO Exception
+	 * @throws InterruptedException interrupted waiting for a launched JVM
+	 */
+	public void run() throws IOException, InterruptedException {
+		Files.createDirectories(outDir);
+		int max = counts.get(counts.size() - 1);
+		Map<String, Map<Integer, List<long[]>>> results = new LinkedHashMap<>();
+		List<String> csv = new ArrayList<>();
+		csv.add("variant,jars,run,startupMillis,heapBytes,nonHeapBytes,resourcesMillis,scanMillis");
+		for (String variant : VARIANTS) {
+			Path jarDir = outDir.resolve("jars").resolve(variant);
+			BenchmarkSupport.deleteDir(jarDir);
+			Files.createDirectories(jarDir);
+			System.out.println("Generating " + max + " " + variant + " jars.");
+			List<Path> jars = new SyntheticJars(classesPerJar, "annotated".equals(variant)).generate(jarDir, max);
+			Map<Integer, List<long[]>> variantResults = new TreeMap<>();
+			results.put(variant, variantResults);
+			for (int count : counts) {
+				List<long[]> countResults = new ArrayList<>();
+				variantResults.put(count, countResults);
+				for (int run = 1; run <= runs; run++) {
+					long[] result = probe(jars.subList(0, count));
+					countResults.add(result);
+					csv.add(variant + "," + count + "," + run + "," + result[0] + "," + result[1] + "," + result[2] + "," + result[3] + "," + result[4]);
+					System.out.println(String.format(Locale.ROOT, "%-9s %5d jars run %d: startup %d ms, scan %d ms, heap %.1f MB", variant, count, run,
+							result[0], result[4], result[1] / BYTES_PER_MB));
+				}
+			}
+			BenchmarkSupport.deleteDir(jarDir);
+		}
+		Files.write(outDir.resolve("scaling.csv"), csv, StandardCharsets.UTF_8);
+		ScalingChart.write(outDir.resolve("startup.svg"), "Startup time", "ms", medians(results, 0, 1));
+		ScalingChart.write(outDir.resolve("scan.svg"), "Jar and annotation scan time", "ms", medians(results, 4, 1));
+		ScalingChart.write(outDir.resolve("heap.svg"), "Heap used after startup", "MB", medians(results, 1, BYTES_PER_MB));
+		printSlopes(medians(results, 0, 1));
+		System.out.println("Results written to " + outDir.toAbsolutePath() + ".");
+	}
+
+	/**
+	 * Launch the provider in a new JVM against the jars.
+	 *
+	 * @param jars the dependency jars
+	 * @return the startup millis, heap bytes, non-heap bytes, resources millis and scan millis
+	 * @throws IOException an IO Exception
+	 * @throws InterruptedException interrupted waiting for the JVM
+	 */
+	private long[] probe(final List<Path> jars) throws IOException, InterruptedException {
+		Path workingDir = outDir.resolve("run");
+		BenchmarkSupport.deleteDir(workingDir);
+		Files.createDirectories(workingDir.resolve("target/webapp"));
+		Path libDir = Files.createDirectories(workingDir.resolve("target/dependency"));
+		for (Path jar : jars) {
+			Path link = libDir.resolve(jar.getFileName());
+			try {
+				Files.createLink(link, jar);
+			} catch (IOException | UnsupportedOperationException e) {
+				Files.copy(jar, link);
+			}
+		}
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmArgs);
+		command.add("-D" + ConfigUtil.PARAM_WORKING_DIRECTORY_KEY + "=" + workingDir.toAbsolutePath());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ScalingProbe.class.getName());
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		String result = null;
+		List<String> output = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(ScalingProbe.RESULT_PREFIX)) {
+					result = line;
+				} else {
+					output.add(line);
+				}
+			}
+		}
+		if (!process.waitFor(PROBE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+			process.destroyForcibly();
+			throw new IllegalStateException("Timeout waiting for the provider to launch.");
+		}
+		BenchmarkSupport.deleteDir(workingDir);
+		if (result == null) {
+			List<String> tail = output.subList(Math.max(0, output.size() - 20), output.size());
+			throw new IllegalStateException("Provider did not report a result. " + String.join("\n", tail));
+		}
+		return parse(result);
+	}
+
+	/**
+	 * @param line the probe result line
+	 * @return the startup millis, heap bytes, non-heap bytes, resources millis and scan millis
+	 */
+	private static long[] parse(final String line) {
+		String[] parts = line.split(" ");
+		long[] result = new long[]{Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]), 0, 0};
+		for (int i = 4; i < parts.length; i++) {
+			String[] timing = parts[i].split("=");
+			if ("resources".equals(timing[0])) {
+				result[3] = Long.parseLong(timing[1]);
+			} else if ("scan".equals(timing[0])) {
+				result[4] = Long.parseLong(timing[1]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param results the results of each variant and jar count
+	 * @param index the result value to take the median of
+	 * @param divisor the divisor to convert the value to the plotted unit
+	 * @return the median of each variant and jar count
+	 */
+	private static Map<String, Map<Integer, Double>> medians(final Map<String, Map<Integer, List<long[]>>> results, final int index,
+			final double divisor) {
+		Map<String, Map<Integer, Double>> medians = new LinkedHashMap<>();
+		for (Map.Entry<String, Map<Integer, List<long[]>>> variant : results.entrySet()) {
+			Map<Integer, Double> series = new TreeMap<>();
+			for (Map.Entry<Integer, List<long[]>> count : variant.getValue().entrySet()) {
+				long[] values = count.getValue().stream().mapToLong(result -> result[index]).sorted().toArray();
+				series.put(count.getKey(), values[values.length / 2] / divisor);
+			}
+			medians.put(variant.getKey(), series);
+		}
+		return medians;
+	}
+
+	/**
+	 * Print the startup time added by each extra jar between consecutive jar counts. A roughly constant cost per jar means startup is linear.
+	 *
+	 * @param startup the median startup time of each variant and jar count
+	 */
+	private static void printSlopes(final Map<String, Map<Integer, Double>> startup) {
+		for (Map.Entry<String, Map<Integer, Double>> variant : startup.entrySet()) {
+			StringBuilder line = new StringBuilder(variant.getKey()).append(" ms per jar:");
+			Map.Entry<Integer, Double> previous = null;
+			for (Map.Entry<Integer, Double> point : variant.getValue().entrySet()) {
+				if (previous != null) {
+					double slope = (point.getValue() - previous.getValue()) / (point.getKey() - previous.getKey());
+					line.append(String.format(Locale.ROOT, " %d-%d=%.2f", previous.getKey(), point.getKey(), slope));
+				}
+				previous = point;
+			}
+			System.out.println(line);
+		}
+	}
+
+}
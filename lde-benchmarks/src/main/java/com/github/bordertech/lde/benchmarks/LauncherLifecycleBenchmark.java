@@ -0,0 +1,93 @@
+package com.github.bordertech.lde.benchmarks;
+
+import com.github.bordertech.lde.tomcat.TomcatConfigUtil;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time a full launch and stop of the TOMCAT provider, and finding a free port.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class LauncherLifecycleBenchmark {
+
+	private Path workingDir;
+
+	/**
+	 * Create the working directory.
+	 *
+	 * @throws IOException an IO Exception
+	 */
+	@Setup
+	public void setup() throws IOException {
+		workingDir = BenchmarkSupport.createWorkingDir();
+	}
+
+	/**
+	 * Delete the working directory.
+	 *
+	 * @throws IOException an IO Exception
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkSupport.deleteDir(workingDir);
+	}
+
+	/**
+	 * @return the port the provider was launched on
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3, time = 5)
+	@Measurement(iterations = 5, time = 5)
+	public int launchAndStop() {
+		BenchmarkProvider provider = new BenchmarkProvider();
+		provider.launchServer(false);
+		if (!provider.isRunning()) {
+			throw new IllegalStateException("Provider did not start.");
+		}
+		int port = provider.getPort();
+		provider.stopServer();
+		return port;
+	}
+
+	/**
+	 * @return the free port
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public int findFreePort() {
+		return TomcatConfigUtil.findFreePort();
+	}
+
+	/**
+	 * @return the leased port
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public int claimAndReleasePort() {
+		int port = TomcatConfigUtil.claimFreePort();
+		TomcatConfigUtil.releasePort(port);
+		return port;
+	}
+
+}
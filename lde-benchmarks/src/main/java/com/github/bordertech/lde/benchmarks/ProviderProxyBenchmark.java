@@ -0,0 +1,84 @@
+package com.github.bordertech.lde.benchmarks;
+
+import com.github.bordertech.lde.api.LdeProvider;
+import com.github.bordertech.lde.mojo.MojoProviderProxy;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare calling a provider directly with calling it through the {@link MojoProviderProxy} used by the MOJOs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProviderProxyBenchmark {
+
+	private LdeProvider direct;
+	private LdeProvider proxied;
+
+	/**
+	 * Create the provider and its proxy.
+	 */
+	@Setup
+	public void setup() {
+		direct = new StubProvider();
+		direct.launchServer(false);
+		proxied = (LdeProvider) Proxy.newProxyInstance(LdeProvider.class.getClassLoader(), new Class<?>[]{LdeProvider.class},
+				new MojoProviderProxy(direct));
+	}
+
+	/**
+	 * @return true if running
+	 */
+	@Benchmark
+	public boolean directIsRunning() {
+		return direct.isRunning();
+	}
+
+	/**
+	 * @return true if running
+	 */
+	@Benchmark
+	public boolean proxyIsRunning() {
+		return proxied.isRunning();
+	}
+
+	/**
+	 * @return the metrics
+	 */
+	@Benchmark
+	public Map<String, Number> directGetMetrics() {
+		return direct.getMetrics();
+	}
+
+	/**
+	 * @return the metrics
+	 */
+	@Benchmark
+	public Map<String, Number> proxyGetMetrics() {
+		return proxied.getMetrics();
+	}
+
+	/**
+	 * Call a method with an argument through the proxy.
+	 */
+	@Benchmark
+	public void proxySetInstanceName() {
+		proxied.setInstanceName("bench");
+	}
+
+}
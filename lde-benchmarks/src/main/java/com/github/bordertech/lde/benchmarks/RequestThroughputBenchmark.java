@@ -0,0 +1,87 @@
+package com.github.bordertech.lde.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Request throughput of a trivial servlet through a running TOMCAT provider.
+ * <p>
+ * The requests use the JDK HTTP client, which keeps the connection alive between requests from the same thread.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class RequestThroughputBenchmark {
+
+	private static final int BUFFER_SIZE = 512;
+
+	private Path workingDir;
+	private BenchmarkProvider provider;
+	private URL url;
+
+	/**
+	 * Launch the provider.
+	 *
+	 * @throws IOException an IO Exception
+	 */
+	@Setup
+	public void setup() throws IOException {
+		workingDir = BenchmarkSupport.createWorkingDir();
+		provider = new BenchmarkProvider();
+		provider.launchServer(false);
+		if (!provider.isRunning()) {
+			throw new IllegalStateException("Provider did not start.");
+		}
+		url = new URL(provider.getBaseUrl() + BenchmarkProvider.SERVLET_PATH);
+	}
+
+	/**
+	 * Stop the provider.
+	 *
+	 * @throws IOException an IO Exception
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		provider.stopServer();
+		BenchmarkSupport.deleteDir(workingDir);
+	}
+
+	/**
+	 * @return the response status
+	 * @throws IOException an IO Exception
+	 */
+	@Benchmark
+	public int request() throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		// Read the whole body so the connection is returned to the keep-alive cache
+		try (InputStream in = conn.getInputStream()) {
+			while (in.read(buffer) >= 0) {
+				// Drain
+			}
+		}
+		return conn.getResponseCode();
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.github.bordertech.lde.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Write a line chart of values against jar count as a standalone SVG file.
+ */
+public final class ScalingChart {
+
+	private static final int WIDTH = 640;
+	private static final int HEIGHT = 400;
+	private static final int MARGIN = 60;
+	private static final int TICKS = 5;
+	private static final String[] COLOURS = {"#1f77b4", "#d62728", "#2ca02c", "#ff7f0e"};
+
+	/**
+	 * Private constructor.
+	 */
+	private ScalingChart() {
+	}
+
+	/**
+	 * @param file the SVG file to write
+	 * @param title the chart title
+	 * @param unit the unit of the values
+	 * @param series the value of each jar count, for each named series
+	 * @throws IOException an IO Exception
+	 */
+	public static void write(final Path file, final String title, final String unit, final Map<String, Map<Integer, Double>> series)
+			throws IOException {
+		double maxX = 1;
+		double maxY = 1;
+		for (Map<Integer, Double> points : series.values()) {
+			for (Map.Entry<Integer, Double> point : points.entrySet()) {
+				maxX = Math.max(maxX, point.getKey());
+				maxY = Math.max(maxY, point.getValue());
+			}
+		}
+		int plotWidth = WIDTH - 2 * MARGIN;
+		int plotHeight = HEIGHT - 2 * MARGIN;
+		StringBuilder svg = new StringBuilder();
+		svg.append(String.format(Locale.ROOT, "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" font-family=\"sans-serif\" "
+				+ "font-size=\"11\">\n", WIDTH, HEIGHT));
+		svg.append("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+		svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" font-size=\"14\" text-anchor=\"middle\">%s</text>\n", WIDTH / 2, MARGIN / 2,
+				title));
+		// Axes and grid
+		svg.append(String.format(Locale.ROOT, "<path d=\"M%d %d V%d H%d\" stroke=\"black\" fill=\"none\"/>\n", MARGIN, MARGIN, HEIGHT - MARGIN,
+				WIDTH - MARGIN));
+		for (int i = 0; i <= TICKS; i++) {
+			double x = MARGIN + (double) plotWidth * i / TICKS;
+			double y = HEIGHT - MARGIN - (double) plotHeight * i / TICKS;
+			svg.append(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%.0f</text>\n", x, HEIGHT - MARGIN + 16,
+					maxX * i / TICKS));
+			svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%.1f\" text-anchor=\"end\">%.0f</text>\n", MARGIN - 6, y + 4, maxY * i / TICKS));
+			svg.append(String.format(Locale.ROOT, "<line x1=\"%d\" y1=\"%.1f\" x2=\"%d\" y2=\"%.1f\" stroke=\"#ddd\"/>\n", MARGIN, y, WIDTH - MARGIN, y));
+		}
+		svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" text-anchor=\"middle\">jars</text>\n", WIDTH / 2, HEIGHT - MARGIN / 3));
+		svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" text-anchor=\"middle\" transform=\"rotate(-90 %d %d)\">%s</text>\n", MARGIN / 3,
+				HEIGHT / 2, MARGIN / 3, HEIGHT / 2, unit));
+		// Series and legend
+		int index = 0;
+		for (Map.Entry<String, Map<Integer, Double>> entry : series.entrySet()) {
+			String colour = COLOURS[index % COLOURS.length];
+			StringBuilder path = new StringBuilder();
+			for (Map.Entry<Integer, Double> point : entry.getValue().entrySet()) {
+				double x = MARGIN + plotWidth * point.getKey() / maxX;
+				double y = HEIGHT - MARGIN - plotHeight * point.getValue() / maxY;
+				path.append(path.length() == 0 ? "M" : " L").append(String.format(Locale.ROOT, "%.1f %.1f", x, y));
+				svg.append(String.format(Locale.ROOT, "<circle cx=\"%.1f\" cy=\"%.1f\" r=\"3\" fill=\"%s\"/>\n", x, y, colour));
+			}
+			svg.append(String.format(Locale.ROOT, "<path d=\"%s\" stroke=\"%s\" stroke-width=\"2\" fill=\"none\"/>\n", path, colour));
+			int legendY = MARGIN + 14 * index;
+			svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" fill=\"%s\">%s</text>\n", MARGIN + 10, legendY + 10, colour, entry.getKey()));
+			index++;
+		}
+		svg.append("</svg>\n");
+		Files.write(file, svg.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.github.bordertech.lde.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launch the TOMCAT provider once in this JVM and report the startup time and memory used.
+ * <p>
+ * Run in a new JVM for each measurement by {@link ClasspathScaling}, with the LDE working directory system property pointing at the directory
+ * holding the jars. The result is printed as a single line starting with {@link #RESULT_PREFIX}, followed by the startup time in milliseconds, the
+ * heap and non-heap bytes used after a full GC, and the provider startup timings.
+ * </p>
+ */
+public final class ScalingProbe {
+
+	/**
+	 * The prefix of the result line.
+	 */
+	public static final String RESULT_PREFIX = "LDE-SCALING-RESULT";
+
+	/**
+	 * Private constructor.
+	 */
+	private ScalingProbe() {
+	}
+
+	/**
+	 * @param args not used
+	 */
+	public static void main(final String[] args) {
+		BenchmarkProvider provider = new BenchmarkProvider();
+		long start = System.nanoTime();
+		provider.launchServer(false);
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		if (!provider.isRunning()) {
+			throw new IllegalStateException("Provider did not start.");
+		}
+		Map<String, Long> timings = provider.getStartupTimings();
+		// Settle the heap so only the live objects are measured
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		System.gc();
+		System.gc();
+		long heap = memory.getHeapMemoryUsage().getUsed();
+		long nonHeap = memory.getNonHeapMemoryUsage().getUsed();
+		provider.stopServer();
+		StringBuilder line = new StringBuilder(RESULT_PREFIX);
+		line.append(' ').append(millis).append(' ').append(heap).append(' ').append(nonHeap);
+		for (Map.Entry<String, Long> entry : timings.entrySet()) {
+			line.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+		}
+		System.out.println(line);
+	}
+
+}
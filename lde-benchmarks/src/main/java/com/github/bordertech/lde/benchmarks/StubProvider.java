@@ -0,0 +1,85 @@
+package com.github.bordertech.lde.benchmarks;
+
+import com.github.bordertech.lde.api.LdeProvider;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provider that does no work, so calling it measures only the call overhead.
+ */
+public class StubProvider implements LdeProvider {
+
+	private static final Map<String, Number> METRICS = Collections.singletonMap("http.requests", 0L);
+
+	private boolean running;
+	private String instanceName;
+
+	@Override
+	public void launchServer() {
+		launchServer(true);
+	}
+
+	@Override
+	public void launchServer(final boolean block) {
+		running = true;
+	}
+
+	@Override
+	public void stopServer() {
+		running = false;
+	}
+
+	@Override
+	public CompletableFuture<Void> launchServerAsync() {
+		running = true;
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> stopServerAsync() {
+		running = false;
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public long reloadServer() {
+		return 0;
+	}
+
+	@Override
+	public int getPort() {
+		return 8080;
+	}
+
+	@Override
+	public String getBaseUrl() {
+		return "http://localhost:8080/lde";
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public Map<String, Number> getMetrics() {
+		return METRICS;
+	}
+
+	@Override
+	public Map<String, Long> getStartupTimings() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public void setInstanceName(final String name) {
+		this.instanceName = name;
+	}
+
+	@Override
+	public String getInstanceName() {
+		return instanceName;
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.github.bordertech.lde.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Generate a set of synthetic dependency jars.
+ * <p>
+ * Each jar has its own package of compiled classes. Plain jars only hold plain classes. Annotated jars also have a web fragment and a servlet
+ * annotated with a unique <code>@WebServlet</code> mapping, so TOMCAT has to process the fragment and register the servlet. The classes are compiled
+ * with the JDK compiler, so the harness must run on a JDK.
+ * </p>
+ */
+public class SyntheticJars {
+
+	private static final String FRAGMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<web-fragment xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"3.1\" metadata-complete=\"false\">\n"
+			+ "\t<name>%s</name>\n"
+			+ "</web-fragment>\n";
+
+	private final int classesPerJar;
+	private final boolean annotated;
+
+	/**
+	 * @param classesPerJar the number of plain classes in each jar
+	 * @param annotated true if each jar has a web fragment and an annotated servlet
+	 */
+	public SyntheticJars(final int classesPerJar, final boolean annotated) {
+		this.classesPerJar = classesPerJar;
+		this.annotated = annotated;
+	}
+
+	/**
+	 * Generate the jars.
+	 *
+	 * @param dir the directory to generate the jars in
+	 * @param count the number of jars
+	 * @return the jars, in the order generated
+	 * @throws IOException an IO Exception
+	 */
+	public List<Path> generate(final Path dir, final int count) throws IOException {
+		Path src = Files.createDirectories(dir.resolve("src"));
+		Path classes = Files.createDirectories(dir.resolve("classes"));
+		List<Path> sources = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			String pkg = packageName(i);
+			Path pkgDir = Files.createDirectories(src.resolve(pkg.replace('.', '/')));
+			for (int c = 0; c < classesPerJar; c++) {
+				sources.add(write(pkgDir.resolve("Plain" + c + ".java"), "package " + pkg + ";\n"
+						+ "public class Plain" + c + " {\n"
+						+ "\tpublic int value() {\n\t\treturn " + c + ";\n\t}\n"
+						+ "}\n"));
+			}
+			if (annotated) {
+				sources.add(write(pkgDir.resolve("SyntheticServlet.java"), "package " + pkg + ";\n"
+						+ "@javax.servlet.annotation.WebServlet(\"/synthetic/" + i + "\")\n"
+						+ "public class SyntheticServlet extends javax.servlet.http.HttpServlet {\n"
+						+ "}\n"));
+			}
+		}
+		compile(sources, classes);
+		List<Path> jars = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			jars.add(createJar(dir, classes, i));
+		}
+		BenchmarkSupport.deleteDir(src);
+		BenchmarkSupport.deleteDir(classes);
+		return jars;
+	}
+
+	/**
+	 * @param index the jar index
+	 * @return the package of the classes in the jar
+	 */
+	protected String packageName(final int index) {
+		return "synthetic.jar" + index;
+	}
+
+	/**
+	 * @param sources the source files
+	 * @param classes the output directory
+	 */
+	private void compile(final List<Path> sources, final Path classes) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("Generating the synthetic jars needs a JDK compiler.");
+		}
+		List<String> args = new ArrayList<>();
+		args.add("-nowarn");
+		args.add("-classpath");
+		args.add(System.getProperty("java.class.path"));
+		args.add("-d");
+		args.add(classes.toString());
+		for (Path source : sources) {
+			args.add(source.toString());
+		}
+		if (compiler.run(null, null, null, args.toArray(new String[]{})) != 0) {
+			throw new IllegalStateException("Could not compile the synthetic classes.");
+		}
+	}
+
+	/**
+	 * @param dir the directory to create the jar in
+	 * @param classes the compiled classes
+	 * @param index the jar index
+	 * @return the jar
+	 * @throws IOException an IO Exception
+	 */
+	private Path createJar(final Path dir, final Path classes, final int index) throws IOException {
+		String pkgPath = packageName(index).replace('.', '/');
+		Path jar = dir.resolve(String.format("synthetic-%04d.jar", index));
+		try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+			if (annotated) {
+				jarOut.putNextEntry(new JarEntry("META-INF/web-fragment.xml"));
+				jarOut.write(String.format(FRAGMENT, "synthetic" + index).getBytes(StandardCharsets.UTF_8));
+				jarOut.closeEntry();
+			}
+			List<Path> files;
+			try (Stream<Path> paths = Files.list(classes.resolve(pkgPath))) {
+				files = new ArrayList<>();
+				paths.sorted().forEach(files::add);
+			}
+			for (Path file : files) {
+				jarOut.putNextEntry(new JarEntry(pkgPath + "/" + file.getFileName()));
+				jarOut.write(Files.readAllBytes(file));
+				jarOut.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+	/**
+	 * @param file the file to write
+	 * @param content the file content
+	 * @return the file
+	 * @throws IOException an IO Exception
+	 */
+	private static Path write(final Path file, final String content) throws IOException {
+		return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * JMH benchmarks for the LDE launcher lifecycle, provider proxy, class loader creation and request path.
+ */
+package com.github.bordertech.lde.benchmarks;
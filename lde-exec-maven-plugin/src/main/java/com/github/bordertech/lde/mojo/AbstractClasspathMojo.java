@@ -0,0 +1,111 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Abstract MOJO that has the project class path.
+ */
+public abstract class AbstractClasspathMojo extends AbstractIdMojo {
+
+	@Parameter(defaultValue = "test")
+	private String scope;
+
+	@Parameter(defaultValue = "${project.build.directory}/lde-jar-index.properties")
+	private File jarIndexFile;
+
+	@Parameter(defaultValue = "${project.build.directory}/dependency")
+	private File jarIndexLibDirectory;
+
+	@Component
+	private MavenProject project;
+
+	/**
+	 * @return the class path scope.
+	 */
+	protected String getScope() {
+		return scope;
+	}
+
+	/**
+	 * @return the maven project
+	 */
+	protected MavenProject getProject() {
+		return project;
+	}
+
+	/**
+	 * @return the jar index file
+	 */
+	protected File getJarIndexFile() {
+		return jarIndexFile;
+	}
+
+	/**
+	 * @return the directory of extra web app library jars to include in the jar index
+	 */
+	protected File getJarIndexLibDirectory() {
+		return jarIndexLibDirectory;
+	}
+
+	/**
+	 * @return the class path elements for the configured scope
+	 * @throws DependencyResolutionRequiredException the dependencies have not been resolved
+	 */
+	protected List<String> getClasspathElements() throws DependencyResolutionRequiredException {
+		String scp = scope.toLowerCase();
+		switch (scp) {
+			case "compile":
+				return project.getCompileClasspathElements();
+			case "test":
+				return project.getTestClasspathElements();
+			case "runtime":
+				return project.getRuntimeClasspathElements();
+			default:
+				// Default to TEST
+				return project.getTestClasspathElements();
+		}
+	}
+
+	/**
+	 * Build the jar index of the project class path and library directory.
+	 *
+	 * @throws MojoExecutionException MOJO exception
+	 */
+	protected void buildJarIndex() throws MojoExecutionException {
+		List<File> files = new ArrayList<>();
+		try {
+			for (String element : getClasspathElements()) {
+				files.add(new File(element));
+			}
+		} catch (DependencyResolutionRequiredException e) {
+			throw new MojoExecutionException("Could not resolve project classpath. " + e.getMessage(), e);
+		}
+		File[] libs = jarIndexLibDirectory == null ? null : jarIndexLibDirectory.listFiles();
+		if (libs != null) {
+			for (File lib : libs) {
+				if (lib.getName().endsWith(".jar")) {
+					files.add(lib);
+				}
+			}
+		}
+		long start = System.currentTimeMillis();
+		JarIndexBuilder builder = new JarIndexBuilder();
+		try {
+			builder.build(files);
+			builder.write(jarIndexFile.toPath());
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not build jar index [" + jarIndexFile + "]. " + e.getMessage(), e);
+		}
+		getLog().info("Jar index of " + builder.getIndex().size() + " jars (" + builder.getRelevantCount() + " relevant) written to ["
+				+ jarIndexFile + "] in " + (System.currentTimeMillis() - start) + "ms.");
+	}
+
+}
@@ -1,5 +1,9 @@
 package com.github.bordertech.lde.mojo;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
@@ -18,4 +22,68 @@ public abstract class AbstractIdMojo extends AbstractMojo {
 		return providerId;
 	}
 
+	/**
+	 * Write a report file, creating its directory if needed.
+	 * <p>
+	 * A failure to write the report is logged and does not fail the build.
+	 * </p>
+	 *
+	 * @param file the report file
+	 * @param content the report content
+	 */
+	protected void writeReport(final File file, final String content) {
+		try {
+			File dir = file.getParentFile();
+			if (dir != null) {
+				Files.createDirectories(dir.toPath());
+			}
+			Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			getLog().warn("Could not write report [" + file + "]. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param value the value to escape
+	 * @return the value escaped for a JSON string
+	 */
+	protected static String escapeJson(final String value) {
+		if (value == null) {
+			return "";
+		}
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (char c : value.toCharArray()) {
+			switch (c) {
+				case '"':
+					escaped.append("\\\"");
+					break;
+				case '\\':
+					escaped.append("\\\\");
+					break;
+				case '\b':
+					escaped.append("\\b");
+					break;
+				case '\f':
+					escaped.append("\\f");
+					break;
+				case '\n':
+					escaped.append("\\n");
+					break;
+				case '\r':
+					escaped.append("\\r");
+					break;
+				case '\t':
+					escaped.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						escaped.append(String.format("\\u%04x", (int) c));
+					} else {
+						escaped.append(c);
+					}
+			}
+		}
+		return escaped.toString();
+	}
+
 }
@@ -3,24 +3,43 @@ package com.github.bordertech.lde.mojo;
 import com.github.bordertech.lde.api.ConfigUtil;
 import com.github.bordertech.lde.api.LdeProvider;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
+import java.net.Socket;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
 
 /**
  * Abstract LDE Provider instance creator.
  */
-public abstract class AbstractStartMojo extends AbstractIdMojo {
+public abstract class AbstractStartMojo extends AbstractClasspathMojo {
+
+	/**
+	 * The group of the LDE provider and its configuration jars, which are kept in the project layer as they hold static configuration.
+	 */
+	protected static final String PROJECT_LAYER_GROUP = "com.github.bordertech";
+
+	/**
+	 * The service file of a TOMCAT logging bridge.
+	 */
+	private static final String LOG_BRIDGE_SERVICE = "META-INF/services/org.apache.juli.logging.Log";
 
 	@Parameter(defaultValue = "com.github.bordertech.lde.api.LaunchWrapperProvider")
 	private String providerClassName;
@@ -28,14 +47,23 @@ public abstract class AbstractStartMojo extends AbstractIdMojo {
 	@Parameter(defaultValue = "30")
 	private int waitReadySeconds;
 
+	@Parameter(defaultValue = "50")
+	private int waitIntervalMillis;
+
 	@Parameter(defaultValue = "false")
 	private boolean block;
 
-	@Parameter(defaultValue = "test")
-	private String scope;
+	@Parameter(defaultValue = "false")
+	private boolean jarIndex;
+
+	@Parameter(defaultValue = "true")
+	private boolean layeredClassLoader;
 
-	@Component
-	private MavenProject project;
+	@Parameter(defaultValue = "${session}", readonly = true, required = true)
+	private MavenSession session;
+
+	@Parameter(defaultValue = "${project.build.directory}/lde-startup-timings.json")
+	private File startupTimingsFile;
 
 	/**
 	 * Create and start the LDE provider instance.
@@ -46,14 +74,56 @@ public abstract class AbstractStartMojo extends AbstractIdMojo {
 	protected void createAndStartProvider() throws MojoExecutionException, MojoFailureException {
 		// Check for config overrides
 		setupProviderConfig();
+		// Index the jars so the provider can skip irrelevant jars when scanning
+		if (isJarIndex()) {
+			buildJarIndex();
+		}
 		// Get provider
 		LdeProvider provider = createProvider();
-		// Start
-		provider.launchServer(isBlock());
-		// Wait till ready
-		waitTillProviderReady(provider);
+		try {
+			// Start without blocking so the startup can be reported
+			provider.launchServer(false);
+			// Wait till ready
+			waitTillProviderReady(provider);
+		} catch (MojoExecutionException | RuntimeException e) {
+			provider.stopServer();
+			CrossStateUtil.releaseProviderClassLoader(getProviderId());
+			throw e;
+		}
+		reportStartupTimings(provider);
 		// Save provider
 		CrossStateUtil.addProvider(getProviderId(), provider);
+		if (isBlock()) {
+			waitWhileProviderRunning(provider);
+		}
+	}
+
+	/**
+	 * Log the time taken by each startup phase and write them as JSON to the startup timings file.
+	 *
+	 * @param provider the started provider
+	 */
+	protected void reportStartupTimings(final LdeProvider provider) {
+		Map<String, Long> timings = provider.getStartupTimings();
+		if (timings.isEmpty()) {
+			return;
+		}
+		StringBuilder summary = new StringBuilder();
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"providerId\": \"").append(escapeJson(getProviderId())).append("\",\n");
+		json.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+		json.append("  \"timings\": {");
+		String separator = "";
+		for (Map.Entry<String, Long> entry : timings.entrySet()) {
+			summary.append(separator.isEmpty() ? "" : ", ").append(entry.getKey()).append('=').append(entry.getValue());
+			json.append(separator).append("\n    \"").append(escapeJson(entry.getKey())).append("\": ").append(entry.getValue());
+			separator = ",";
+		}
+		json.append("\n  }\n}\n");
+		getLog().info("Startup timings (ms): " + summary + ".");
+		if (startupTimingsFile != null) {
+			writeReport(startupTimingsFile, json.toString());
+		}
 	}
 
 	/**
@@ -70,6 +140,13 @@ public abstract class AbstractStartMojo extends AbstractIdMojo {
 		return waitReadySeconds;
 	}
 
+	/**
+	 * @return the interval in milliseconds between checks for the server to be ready
+	 */
+	protected int getWaitIntervalMillis() {
+		return waitIntervalMillis;
+	}
+
 	/**
 	 * @return true if block on start server
 	 */
@@ -78,34 +155,83 @@ public abstract class AbstractStartMojo extends AbstractIdMojo {
 	}
 
 	/**
-	 * @return the class path scope.
+	 * Layer the provider class loader so the third party and TOMCAT jars are loaded once per Maven session.
+	 * <p>
+	 * The dependency layer is shared by every restart and every module with the same scope and third party jars. The LDE provider and configuration
+	 * jars, and the project output directories, are in a project layer created for each start, so their static state is not shared.
+	 * </p>
+	 *
+	 * @return true if use a layered class loader
+	 */
+	protected boolean isLayeredClassLoader() {
+		return layeredClassLoader;
+	}
+
+	/**
+	 * @return the current Maven session
 	 */
-	protected String getScope() {
-		return scope;
+	protected MavenSession getSession() {
+		return session;
 	}
 
 	/**
-	 * @return the maven project
+	 * @return true if build the jar index before starting the provider
 	 */
-	protected MavenProject getProject() {
-		return project;
+	protected boolean isJarIndex() {
+		return jarIndex;
 	}
 
 	/**
 	 * Wait till provider is ready.
+	 * <p>
+	 * The provider is ready once it reports as running and its port is accepting connections. The provider is checked straight away and then at the
+	 * configured interval, so a provider that has already started does not incur any wait.
+	 * </p>
 	 *
 	 * @param provider the provider to check
 	 * @throws MojoExecutionException MOJO exception
 	 */
 	protected void waitTillProviderReady(final LdeProvider provider) throws MojoExecutionException {
-		long startTime = new Date().getTime();
-		long wait = waitReadySeconds * 1000;
-		while (!provider.isRunning()) {
-			waitInterval();
-			long diff = new Date().getTime() - startTime;
-			if (diff > wait) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitReadySeconds);
+		while (!isProviderReady(provider)) {
+			if (System.nanoTime() - deadline > 0) {
 				throw new MojoExecutionException("Timeout waiting for provider to be ready.");
 			}
+			waitInterval();
+		}
+	}
+
+	/**
+	 * Block while the provider is running.
+	 *
+	 * @param provider the provider to wait on
+	 */
+	protected void waitWhileProviderRunning(final LdeProvider provider) {
+		while (provider.isRunning()) {
+			waitInterval();
+		}
+	}
+
+	/**
+	 * Check if the provider is running and accepting connections.
+	 *
+	 * @param provider the provider to check
+	 * @return true if the provider is ready
+	 */
+	protected boolean isProviderReady(final LdeProvider provider) {
+		if (!provider.isRunning()) {
+			return false;
+		}
+		int port = provider.getPort();
+		// Provider does not expose a port
+		if (port <= 0) {
+			return true;
+		}
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), waitIntervalMillis);
+			return true;
+		} catch (IOException e) {
+			return false;
 		}
 	}
 
@@ -114,7 +240,7 @@ public abstract class AbstractStartMojo extends AbstractIdMojo {
 	 */
 	protected void waitInterval() {
 		try {
-			Thread.sleep(1000);
+			Thread.sleep(waitIntervalMillis);
 		} catch (InterruptedException ex) {
 			Thread.currentThread().interrupt();
 			throw new IllegalStateException("Waiting for provider was interrupted. " + ex.getMessage(), ex);
@@ -140,12 +266,16 @@ public abstract class AbstractStartMojo extends AbstractIdMojo {
 			// Create a proxy to cross the Class Loader
 			return (LdeProvider) Proxy.newProxyInstance(LdeProvider.class.getClassLoader(), new Class<?>[]{LdeProvider.class}, new MojoProviderProxy(providerImpl));
 		} catch (ClassNotFoundException | IllegalAccessException | InstantiationException e) {
+			CrossStateUtil.releaseProviderClassLoader(getProviderId());
 			throw new MojoExecutionException("Could not create provider impl [" + providerClassName + "]. " + e.getMessage(), e);
 		}
 	}
 
 	/**
 	 * Create a class loader with the project dependencies.
+	 * <p>
+	 * The class loader is closed when the provider is stopped.
+	 * </p>
 	 *
 	 * @return the provider class loader with all the project dependencies
 	 * @throws MojoExecutionException MOJO exception
@@ -155,29 +285,118 @@ public abstract class AbstractStartMojo extends AbstractIdMojo {
 			// Project Classpath
 			List<URL> urls = new ArrayList<>();
 			// Add project scope
-			String scp = scope.toLowerCase();
-			switch (scp) {
-				case "compile":
-					addElementsToUrls(urls, project.getCompileClasspathElements());
-					break;
-				case "test":
-					addElementsToUrls(urls, project.getTestClasspathElements());
-					break;
-				case "runtime":
-					addElementsToUrls(urls, project.getRuntimeClasspathElements());
-					break;
-				default:
-					// Default to TEST
-					addElementsToUrls(urls, project.getTestClasspathElements());
-					break;
-			}
+			addElementsToUrls(urls, getClasspathElements());
 			// TODO Maybe add plugin dependencies?
-			return new URLClassLoader(urls.toArray(new URL[]{}), null);
+			if (isLayeredClassLoader()) {
+				return createLayeredClassLoader(urls);
+			}
+			URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[]{}), null);
+			CrossStateUtil.addProviderClassLoader(getProviderId(), loader, null);
+			return loader;
 		} catch (MalformedURLException | DependencyResolutionRequiredException e) {
 			throw new MojoExecutionException("Could not create plugin classpath. " + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Create a disposable project class loader on top of a shared layer for the dependency jars.
+	 * <p>
+	 * The project layer has the output directories, as they differ between modules and are recompiled between goals, and the LDE provider and
+	 * configuration jars, as they hold static configuration. A project whose LDE jars include a TOMCAT logging bridge keeps them in a dependency layer
+	 * of its own, as the TOMCAT log factory holds the bridge statically.
+	 * </p>
+	 *
+	 * @param urls the project class path
+	 * @return the project class loader layer
+	 * @throws MalformedURLException a URL was malformed
+	 */
+	protected ClassLoader createLayeredClassLoader(final List<URL> urls) throws MalformedURLException {
+		Set<URL> projectJars = getProjectLayerJars();
+		List<URL> jars = new ArrayList<>();
+		List<URL> project = new ArrayList<>();
+		for (URL url : urls) {
+			// Directory URLs end with a slash
+			if (url.getPath().endsWith("/") || projectJars.contains(url)) {
+				project.add(url);
+			} else {
+				jars.add(url);
+			}
+		}
+		boolean projectOnly = hasLogBridge(project);
+		if (projectOnly) {
+			project.removeIf(url -> !url.getPath().endsWith("/"));
+			jars = new ArrayList<>(urls);
+			jars.removeAll(project);
+		}
+		String key = getLayerKey(jars, projectOnly);
+		if (CrossStateUtil.containsLayer(key)) {
+			getLog().info("Reusing dependency class loader layer [" + key + "].");
+		} else {
+			getLog().info("Creating dependency class loader layer [" + key + "] of " + jars.size() + " jars.");
+		}
+		ClassLoader parent = CrossStateUtil.acquireLayer(getSession(), key, jars);
+		URLClassLoader loader = new URLClassLoader(project.toArray(new URL[]{}), parent);
+		CrossStateUtil.addProviderClassLoader(getProviderId(), loader, key);
+		return loader;
+	}
+
+	/**
+	 * @param jars the dependency jars
+	 * @param projectOnly true if the layer is only used by this project
+	 * @return the key of the dependency layer
+	 */
+	protected String getLayerKey(final List<URL> jars, final boolean projectOnly) {
+		String key = getScope() + "-" + DependencyLayerCache.fingerprint(jars);
+		if (projectOnly) {
+			String basedir = getProject().getBasedir().getAbsolutePath();
+			return key + "-" + Integer.toHexString(basedir.hashCode());
+		}
+		return key;
+	}
+
+	/**
+	 * @return the jars to load in the project layer
+	 * @throws MalformedURLException a URL was malformed
+	 */
+	protected Set<URL> getProjectLayerJars() throws MalformedURLException {
+		Set<URL> jars = new HashSet<>();
+		for (Artifact artifact : getProject().getArtifacts()) {
+			if (artifact.getFile() != null && isProjectLayerArtifact(artifact)) {
+				jars.add(artifact.getFile().toURI().toURL());
+			}
+		}
+		return jars;
+	}
+
+	/**
+	 * @param artifact the dependency artifact
+	 * @return true if the artifact is loaded in the project layer
+	 */
+	protected boolean isProjectLayerArtifact(final Artifact artifact) {
+		return artifact.getGroupId().startsWith(PROJECT_LAYER_GROUP);
+	}
+
+	/**
+	 * @param urls the project layer
+	 * @return true if a jar in the project layer is a TOMCAT logging bridge
+	 */
+	protected boolean hasLogBridge(final List<URL> urls) {
+		for (URL url : urls) {
+			File file = DependencyLayerCache.toFile(url);
+			if (!file.isFile()) {
+				continue;
+			}
+			try (JarFile jar = new JarFile(file)) {
+				if (jar.getEntry(LOG_BRIDGE_SERVICE) != null) {
+					return true;
+				}
+			} catch (IOException e) {
+				getLog().warn("Could not read jar [" + file + "]. " + e.getMessage());
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Convert class path elements to URLs.
 	 *
@@ -204,8 +423,10 @@ public abstract class AbstractStartMojo extends AbstractIdMojo {
 	 */
 	protected void setupProviderConfig() throws MojoFailureException {
 		// Working Directory
-		String basedir = project.getBasedir().getAbsolutePath();
+		String basedir = getProject().getBasedir().getAbsolutePath();
 		System.setProperty(ConfigUtil.PARAM_WORKING_DIRECTORY_KEY, basedir);
+		// Jar index the provider reads
+		System.setProperty(ConfigUtil.PARAM_JAR_INDEX_FILE_KEY, getJarIndexFile().getAbsolutePath());
 	}
 
 }
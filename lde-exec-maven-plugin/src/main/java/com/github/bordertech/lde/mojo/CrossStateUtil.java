@@ -1,15 +1,33 @@
 package com.github.bordertech.lde.mojo;
 
 import com.github.bordertech.lde.api.LdeProvider;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import org.apache.maven.execution.MavenSession;
 
 /**
  * Save LDE Provider across Maven Lifecycle States.
+ * <p>
+ * Also caches the shared dependency class loader layers across the goals and modules of the Maven session, so modules with the same dependency jars
+ * share one warm layer. The class loader created for each provider is closed when the provider is stopped, releasing the layer it uses.
+ * </p>
+ * <p>
+ * The idle layers are closed when the Maven session ends. The plugin declared with {@code <extensions>true</extensions>} closes them as soon as the
+ * session ends. Otherwise they are closed by the first provider started in a later session in the same JVM (eg a Maven daemon), or when the JVM
+ * exits.
+ * </p>
  */
 public final class CrossStateUtil {
 
 	private static final Map<String, LdeProvider> PROVIDERS = new HashMap<>();
+	private static final Map<String, ProviderClassLoader> PROVIDER_CLASS_LOADERS = new HashMap<>();
+	private static final DependencyLayerCache LAYERS = new DependencyLayerCache();
+	private static WeakReference<MavenSession> layerSession = new WeakReference<>(null);
+	private static boolean shutdownHookAdded;
 
 	/**
 	 * Private constructor.
@@ -23,7 +41,7 @@ public final class CrossStateUtil {
 	 * @param id the provider id
 	 * @return the provider for this id or null if does not exist
 	 */
-	public static LdeProvider getProvider(final String id) {
+	public static synchronized LdeProvider getProvider(final String id) {
 		return PROVIDERS.get(id);
 	}
 
@@ -33,7 +51,7 @@ public final class CrossStateUtil {
 	 * @param id the provider id
 	 * @param provider the provider to save
 	 */
-	public static void addProvider(final String id, final LdeProvider provider) {
+	public static synchronized void addProvider(final String id, final LdeProvider provider) {
 		PROVIDERS.put(id, provider);
 	}
 
@@ -43,8 +61,96 @@ public final class CrossStateUtil {
 	 * @param id the provider id to remove
 	 * @return the provider for this id or null if does not exist
 	 */
-	public static LdeProvider removeProvider(final String id) {
+	public static synchronized LdeProvider removeProvider(final String id) {
 		return PROVIDERS.remove(id);
 	}
 
+	/**
+	 * @param key the dependency layer key
+	 * @return true if a layer with this key has been cached
+	 */
+	public static boolean containsLayer(final String key) {
+		return LAYERS.contains(key);
+	}
+
+	/**
+	 * Retrieve the cached dependency layer or create a new layer for the jars, and count it as used until the provider class loader using it is
+	 * released.
+	 * <p>
+	 * Idle layers cached by an earlier Maven session are closed first, as the session that created them has ended.
+	 * </p>
+	 *
+	 * @param session the current Maven session
+	 * @param key the dependency layer key
+	 * @param jars the dependency jars
+	 * @return the dependency class loader layer
+	 */
+	public static synchronized URLClassLoader acquireLayer(final MavenSession session, final String key, final List<URL> jars) {
+		if (layerSession.get() != session) {
+			LAYERS.closeIdleLayers();
+			layerSession = new WeakReference<>(session);
+		}
+		if (!shutdownHookAdded) {
+			Runtime.getRuntime().addShutdownHook(new Thread(LAYERS::closeIdleLayers, "lde-layer-cleanup"));
+			shutdownHookAdded = true;
+		}
+		return LAYERS.getLayer(key, jars);
+	}
+
+	/**
+	 * Close the dependency layers not used by any provider.
+	 */
+	public static void closeIdleLayers() {
+		LAYERS.closeIdleLayers();
+	}
+
+	/**
+	 * Save the class loader created for this provider id, to be released when the provider is stopped.
+	 * <p>
+	 * A class loader already saved for the id is released, as the provider it was created for has been replaced.
+	 * </p>
+	 *
+	 * @param id the provider id
+	 * @param loader the class loader created for the provider
+	 * @param layerKey the key of the dependency layer it uses or null if none
+	 */
+	public static synchronized void addProviderClassLoader(final String id, final URLClassLoader loader, final String layerKey) {
+		releaseProviderClassLoader(id);
+		PROVIDER_CLASS_LOADERS.put(id, new ProviderClassLoader(loader, layerKey));
+	}
+
+	/**
+	 * Close the class loader created for this provider id and release the dependency layer it uses.
+	 *
+	 * @param id the provider id
+	 */
+	public static synchronized void releaseProviderClassLoader(final String id) {
+		ProviderClassLoader provider = PROVIDER_CLASS_LOADERS.remove(id);
+		if (provider == null) {
+			return;
+		}
+		DependencyLayerCache.close(provider.loader);
+		if (provider.layerKey != null) {
+			LAYERS.release(provider.layerKey);
+		}
+	}
+
+	/**
+	 * The class loader created for a provider.
+	 */
+	private static final class ProviderClassLoader {
+
+		private final URLClassLoader loader;
+		private final String layerKey;
+
+		/**
+		 * @param loader the class loader created for the provider
+		 * @param layerKey the key of the dependency layer it uses or null if none
+		 */
+		private ProviderClassLoader(final URLClassLoader loader, final String layerKey) {
+			this.loader = loader;
+			this.layerKey = layerKey;
+		}
+	}
+
 }
@@ -0,0 +1,153 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Cache the class loader layers of the stable dependency jars.
+ * <p>
+ * A layer is identified by a checksum of the jar paths, sizes and last modified times, so a layer is only reused while none of its jars have
+ * changed. Reusing the layer means the classes it has loaded, and the JIT compiled code, survive a restart of the provider.
+ * </p>
+ * <p>
+ * Layers are reference counted by the providers using them. A layer no longer used by any provider is kept for the next provider, up to
+ * {@link #MAX_IDLE_LAYERS}, after which the least recently used is closed. The cache shared across the Maven session is held by
+ * {@link CrossStateUtil}.
+ * </p>
+ */
+public final class DependencyLayerCache {
+
+	/**
+	 * The most layers kept when no provider is using them.
+	 */
+	public static final int MAX_IDLE_LAYERS = 4;
+
+	private final Map<String, Layer> layers = new LinkedHashMap<>();
+
+	/**
+	 * @param jars the dependency jars
+	 * @return the checksum identifying the dependency jars
+	 */
+	public static String fingerprint(final List<URL> jars) {
+		CRC32 crc = new CRC32();
+		for (URL url : jars) {
+			File file = toFile(url);
+			String entry = url + ":" + file.length() + ":" + file.lastModified() + ";";
+			crc.update(entry.getBytes(StandardCharsets.UTF_8));
+		}
+		return jars.size() + "-" + Long.toHexString(crc.getValue());
+	}
+
+	/**
+	 * @param key the layer key
+	 * @return true if a layer with this key has been cached
+	 */
+	public synchronized boolean contains(final String key) {
+		return layers.containsKey(key);
+	}
+
+	/**
+	 * Retrieve the cached layer or create a new layer for the dependency jars, and count it as used until it is released.
+	 *
+	 * @param key the layer key
+	 * @param jars the dependency jars
+	 * @return the dependency class loader layer
+	 */
+	public synchronized URLClassLoader getLayer(final String key, final List<URL> jars) {
+		Layer layer = layers.computeIfAbsent(key, k -> new Layer(new URLClassLoader(jars.toArray(new URL[]{}), null)));
+		layer.references++;
+		return layer.loader;
+	}
+
+	/**
+	 * Release a use of the layer, closing the least recently used idle layers over the limit.
+	 *
+	 * @param key the layer key
+	 */
+	public synchronized void release(final String key) {
+		Layer layer = layers.get(key);
+		if (layer == null || layer.references == 0) {
+			return;
+		}
+		layer.references--;
+		if (layer.references == 0) {
+			// Move to the end as the most recently used
+			layers.remove(key);
+			layers.put(key, layer);
+			closeIdleLayers(MAX_IDLE_LAYERS);
+		}
+	}
+
+	/**
+	 * Close the layers not used by any provider. Layers still in use are left open as their providers may still be running.
+	 */
+	public synchronized void closeIdleLayers() {
+		closeIdleLayers(0);
+	}
+
+	/**
+	 * @param max the most idle layers to keep
+	 */
+	private void closeIdleLayers(final int max) {
+		List<String> idle = new ArrayList<>();
+		for (Map.Entry<String, Layer> entry : layers.entrySet()) {
+			if (entry.getValue().references == 0) {
+				idle.add(entry.getKey());
+			}
+		}
+		Iterator<String> oldest = idle.iterator();
+		for (int excess = idle.size() - max; excess > 0; excess--) {
+			close(layers.remove(oldest.next()).loader);
+		}
+	}
+
+	/**
+	 * @param loader the class loader to close
+	 */
+	static void close(final URLClassLoader loader) {
+		try {
+			loader.close();
+		} catch (IOException e) {
+			// Ignore, the class loader is no longer used
+		}
+	}
+
+	/**
+	 * @param url the jar URL
+	 * @return the jar file
+	 */
+	static File toFile(final URL url) {
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return new File(url.getPath());
+		}
+	}
+
+	/**
+	 * A dependency layer and the number of providers using it.
+	 */
+	private static final class Layer {
+
+		private final URLClassLoader loader;
+		private int references;
+
+		/**
+		 * @param loader the dependency class loader layer
+		 */
+		private Layer(final URLClassLoader loader) {
+			this.loader = loader;
+		}
+	}
+
+}
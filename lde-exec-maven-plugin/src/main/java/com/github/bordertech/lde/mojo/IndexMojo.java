@@ -0,0 +1,20 @@
+package com.github.bordertech.lde.mojo;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Build the jar index used by the LDE provider to skip jars that are irrelevant to the web app scans.
+ */
+@Mojo(name = "index", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES, requiresDependencyResolution = ResolutionScope.TEST)
+public class IndexMojo extends AbstractClasspathMojo {
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		buildJarIndex();
+	}
+
+}
@@ -0,0 +1,610 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Build a compact index of what each jar on the class path contributes to a web app.
+ * <p>
+ * Each jar is recorded by file name with a set of flags. A jar with no flags can be skipped by the provider when scanning for TLDs, web fragments,
+ * annotations and {@code @HandlesTypes}. The size, last modified time and path of each jar with the name are recorded with the flags, so the
+ * provider can tell when a jar has been rebuilt since the index was built and scan it rather than trust its flags. The flags are:
+ * </p>
+ * <ul>
+ * <li>{@code F} - has a {@code META-INF/web-fragment.xml}</li>
+ * <li>{@code T} - has TLDs in {@code META-INF}</li>
+ * <li>{@code S} - declares a {@code ServletContainerInitializer}</li>
+ * <li>{@code R} - has static resources in {@code META-INF/resources}</li>
+ * <li>{@code A} - has classes that use the servlet annotations or match the {@code @HandlesTypes} of an initializer</li>
+ * </ul>
+ * <p>
+ * Classes are not loaded. The constant pool and header of each class file is read to find the annotations it references and its super types. The
+ * {@code @HandlesTypes} matching follows the super types found on the class path, so a type only reachable via a JDK super type is not matched. If an
+ * initializer class cannot be read, every jar is flagged with {@code A}.
+ * </p>
+ */
+public class JarIndexBuilder {
+
+	/**
+	 * The index version key.
+	 */
+	public static final String VERSION_KEY = "lde.index.version";
+
+	/**
+	 * The index version.
+	 */
+	public static final String VERSION = "2";
+
+	private static final char FLAG_FRAGMENT = 'F';
+	private static final char FLAG_TLD = 'T';
+	private static final char FLAG_SCI = 'S';
+	private static final char FLAG_RESOURCES = 'R';
+	private static final char FLAG_ANNOTATIONS = 'A';
+
+	private static final String SCI_SERVICE = "META-INF/services/javax.servlet.ServletContainerInitializer";
+	private static final String WEB_ANNOTATION_PREFIX = "Ljavax/servlet/annotation/Web";
+	private static final String HANDLES_TYPES = "Ljavax/servlet/annotation/HandlesTypes;";
+	private static final String CLASS_EXT = ".class";
+
+	private static final int MAGIC = 0xCAFEBABE;
+
+	private final Map<String, Set<Character>> index = new TreeMap<>();
+	private final Map<String, List<String>> stamps = new HashMap<>();
+
+	/**
+	 * Build the index.
+	 *
+	 * @param files the class path jars and directories
+	 * @throws IOException an IO exception reading the jars
+	 */
+	public void build(final List<File> files) throws IOException {
+		index.clear();
+		stamps.clear();
+		List<File> jars = new ArrayList<>();
+		List<File> dirs = new ArrayList<>();
+		for (File file : files) {
+			if (file.isDirectory()) {
+				dirs.add(file);
+			} else if (file.isFile() && file.getName().endsWith(".jar")) {
+				jars.add(file);
+			}
+		}
+
+		// Resources and the initializers declared
+		Set<String> initializers = new TreeSet<>();
+		for (File jar : jars) {
+			indexResources(jar, initializers);
+		}
+		for (File dir : dirs) {
+			File service = new File(dir, SCI_SERVICE);
+			if (service.isFile()) {
+				try (InputStream in = Files.newInputStream(service.toPath())) {
+					initializers.addAll(readServiceNames(in));
+				}
+			}
+		}
+
+		// The types the initializers are interested in
+		Map<String, Set<String>> initializerTypes = readHandlesTypes(initializers, jars, dirs);
+		Set<String> handledTypes = new HashSet<>();
+		for (String initializer : initializers) {
+			Set<String> types = initializerTypes.get(initializer);
+			if (types == null) {
+				// Cannot tell which classes are relevant
+				for (Set<Character> flags : index.values()) {
+					flags.add(FLAG_ANNOTATIONS);
+				}
+				return;
+			}
+			handledTypes.addAll(types);
+		}
+
+		// The classes
+		Set<String> descriptors = new HashSet<>();
+		for (String type : handledTypes) {
+			descriptors.add("L" + type + ";");
+		}
+		Map<String, List<String>> subTypes = new HashMap<>();
+		Map<String, String> classJars = new HashMap<>();
+		for (File jar : jars) {
+			indexClasses(jar, descriptors, subTypes, classJars);
+		}
+		for (File dir : dirs) {
+			indexClasses(dir.toPath(), descriptors, subTypes);
+		}
+
+		// Follow the super types down from the handled types
+		Deque<String> pending = new ArrayDeque<>(handledTypes);
+		Set<String> matched = new HashSet<>(handledTypes);
+		while (!pending.isEmpty()) {
+			for (String sub : subTypes.getOrDefault(pending.pop(), Collections.emptyList())) {
+				if (matched.add(sub)) {
+					pending.push(sub);
+					String jarName = classJars.get(sub);
+					if (jarName != null) {
+						index.get(jarName).add(FLAG_ANNOTATIONS);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the index to a file.
+	 *
+	 * @param file the index file
+	 * @throws IOException an IO exception writing the file
+	 */
+	public void write(final Path file) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.ISO_8859_1)) {
+			out.write("# LDE jar index. F=fragment T=tld S=initializer R=resources A=annotations, then |size|last modified|path of each jar\n");
+			out.write(VERSION_KEY + "=" + VERSION + "\n");
+			for (Map.Entry<String, Set<Character>> entry : index.entrySet()) {
+				StringBuilder value = new StringBuilder();
+				for (Character flag : entry.getValue()) {
+					value.append(flag);
+				}
+				for (String stamp : stamps.get(entry.getKey())) {
+					value.append('|').append(stamp);
+				}
+				out.write(escape(entry.getKey(), true) + "=" + escape(value.toString(), false) + "\n");
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * @return the jar names and their flags
+	 */
+	public Map<String, Set<Character>> getIndex() {
+		return Collections.unmodifiableMap(index);
+	}
+
+	/**
+	 * @return the number of jars that have at least one flag
+	 */
+	public int getRelevantCount() {
+		int count = 0;
+		for (Set<Character> flags : index.values()) {
+			if (!flags.isEmpty()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Flag the resources in a jar and collect the initializers it declares.
+	 *
+	 * @param jar the jar file
+	 * @param initializers the initializer class names found so far
+	 * @throws IOException an IO exception reading the jar
+	 */
+	private void indexResources(final File jar, final Set<String> initializers) throws IOException {
+		// Jars with the same name in different locations share an entry, as the scan filter only sees the name
+		Set<Character> flags = index.computeIfAbsent(jar.getName(), k -> new TreeSet<>());
+		stamps.computeIfAbsent(jar.getName(), k -> new ArrayList<>()).add(jar.length() + "|" + jar.lastModified() + "|" + jar.getAbsolutePath());
+		try (ZipFile zip = new ZipFile(jar)) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if (!name.startsWith("META-INF/")) {
+					continue;
+				}
+				if ("META-INF/web-fragment.xml".equals(name)) {
+					flags.add(FLAG_FRAGMENT);
+				} else if (name.endsWith(".tld")) {
+					flags.add(FLAG_TLD);
+				} else if (name.startsWith("META-INF/resources/") && !entry.isDirectory()) {
+					flags.add(FLAG_RESOURCES);
+				} else if (SCI_SERVICE.equals(name)) {
+					flags.add(FLAG_SCI);
+					try (InputStream in = zip.getInputStream(entry)) {
+						initializers.addAll(readServiceNames(in));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flag the jar if any of its classes reference the servlet annotations or the handled types, and record the class hierarchy.
+	 *
+	 * @param jar the jar file
+	 * @param descriptors the descriptors of the handled types
+	 * @param subTypes the sub types of each type found so far
+	 * @param classJars the jar each class was found in so far
+	 * @throws IOException an IO exception reading the jar
+	 */
+	private void indexClasses(final File jar, final Set<String> descriptors, final Map<String, List<String>> subTypes,
+			final Map<String, String> classJars) throws IOException {
+		String jarName = jar.getName();
+		Set<Character> flags = index.get(jarName);
+		try (ZipFile zip = new ZipFile(jar)) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				// Multi-release and module classes are not scanned by TOMCAT 8.5
+				if (!name.endsWith(CLASS_EXT) || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+					continue;
+				}
+				ClassInfo info;
+				try (InputStream in = zip.getInputStream(entry)) {
+					info = readClass(in, false);
+				}
+				if (info == null) {
+					continue;
+				}
+				if (info.references(descriptors)) {
+					flags.add(FLAG_ANNOTATIONS);
+				}
+				info.addTo(subTypes);
+				classJars.putIfAbsent(info.name, jarName);
+			}
+		}
+	}
+
+	/**
+	 * Record the class hierarchy of a class path directory. Directories are always scanned so are not indexed.
+	 *
+	 * @param dir the class path directory
+	 * @param descriptors the descriptors of the handled types
+	 * @param subTypes the sub types of each type found so far
+	 * @throws IOException an IO exception reading the directory
+	 */
+	private void indexClasses(final Path dir, final Set<String> descriptors, final Map<String, List<String>> subTypes) throws IOException {
+		List<Path> classes = new ArrayList<>();
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.filter(p -> p.toString().endsWith(CLASS_EXT)).forEach(classes::add);
+		}
+		for (Path path : classes) {
+			try (InputStream in = Files.newInputStream(path)) {
+				ClassInfo info = readClass(in, false);
+				if (info != null) {
+					info.addTo(subTypes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the handled types of all the initializers, opening each jar at most once. The first class on the class path with the initializer name is
+	 * read.
+	 *
+	 * @param initializers the initializer class names
+	 * @param jars the class path jars
+	 * @param dirs the class path directories
+	 * @return the internal names of the handled types of each initializer, or null for an initializer whose class could not be read
+	 * @throws IOException an IO exception reading the classes
+	 */
+	private Map<String, Set<String>> readHandlesTypes(final Set<String> initializers, final List<File> jars, final List<File> dirs)
+			throws IOException {
+		Map<String, Set<String>> found = new HashMap<>();
+		for (File dir : dirs) {
+			for (String initializer : initializers) {
+				File file = new File(dir, initializer.replace('.', '/') + CLASS_EXT);
+				if (!found.containsKey(initializer) && file.isFile()) {
+					try (InputStream in = Files.newInputStream(file.toPath())) {
+						ClassInfo info = readClass(in, true);
+						found.put(initializer, info == null ? null : info.handledTypes);
+					}
+				}
+			}
+		}
+		for (File jar : jars) {
+			if (found.size() == initializers.size()) {
+				break;
+			}
+			try (ZipFile zip = new ZipFile(jar)) {
+				for (String initializer : initializers) {
+					ZipEntry entry = found.containsKey(initializer) ? null : zip.getEntry(initializer.replace('.', '/') + CLASS_EXT);
+					if (entry != null) {
+						try (InputStream in = zip.getInputStream(entry)) {
+							ClassInfo info = readClass(in, true);
+							found.put(initializer, info == null ? null : info.handledTypes);
+						}
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @param in the service file
+	 * @return the class names in the service file
+	 * @throws IOException an IO exception reading the file
+	 */
+	private static List<String> readServiceNames(final InputStream in) throws IOException {
+		List<String> names = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			int idx = line.indexOf('#');
+			String name = (idx < 0 ? line : line.substring(0, idx)).trim();
+			if (!name.isEmpty()) {
+				names.add(name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Read the parts of a class file needed for the index.
+	 *
+	 * @param stream the class file
+	 * @param handlesTypes true if read the {@code @HandlesTypes} annotation
+	 * @return the class details or null if not a valid class file
+	 * @throws IOException an IO exception reading the class
+	 */
+	private static ClassInfo readClass(final InputStream stream, final boolean handlesTypes) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		try {
+			if (in.readInt() != MAGIC) {
+				return null;
+			}
+			// Minor and major version
+			skipFully(in, 4);
+			int count = in.readUnsignedShort();
+			String[] utf8 = new String[count];
+			int[] classNames = new int[count];
+			for (int i = 1; i < count; i++) {
+				int tag = in.readUnsignedByte();
+				switch (tag) {
+					case 1:
+						utf8[i] = in.readUTF();
+						break;
+					case 7:
+						classNames[i] = in.readUnsignedShort();
+						break;
+					case 8:
+					case 16:
+					case 19:
+					case 20:
+						skipFully(in, 2);
+						break;
+					case 15:
+						skipFully(in, 3);
+						break;
+					case 3:
+					case 4:
+					case 9:
+					case 10:
+					case 11:
+					case 12:
+					case 17:
+					case 18:
+						skipFully(in, 4);
+						break;
+					case 5:
+					case 6:
+						skipFully(in, 8);
+						// Long and double take two slots
+						i++;
+						break;
+					default:
+						return null;
+				}
+			}
+			// Access flags
+			skipFully(in, 2);
+			ClassInfo info = new ClassInfo();
+			info.utf8 = utf8;
+			info.name = utf8[classNames[in.readUnsignedShort()]];
+			int superIdx = in.readUnsignedShort();
+			info.superName = superIdx == 0 ? null : utf8[classNames[superIdx]];
+			int interfaces = in.readUnsignedShort();
+			info.interfaces = new String[interfaces];
+			for (int i = 0; i < interfaces; i++) {
+				info.interfaces[i] = utf8[classNames[in.readUnsignedShort()]];
+			}
+			if (handlesTypes) {
+				info.handledTypes = readHandlesTypes(in, utf8);
+			}
+			return info;
+		} catch (EOFException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Read the {@code @HandlesTypes} values from the class attributes.
+	 *
+	 * @param in the class file positioned after the interfaces
+	 * @param utf8 the constant pool strings
+	 * @return the internal names of the handled types
+	 * @throws IOException an IO exception reading the class
+	 */
+	private static Set<String> readHandlesTypes(final DataInputStream in, final String[] utf8) throws IOException {
+		// Fields and methods
+		for (int m = 0; m < 2; m++) {
+			int members = in.readUnsignedShort();
+			for (int i = 0; i < members; i++) {
+				skipFully(in, 6);
+				skipAttributes(in);
+			}
+		}
+		Set<String> types = new HashSet<>();
+		int attributes = in.readUnsignedShort();
+		for (int i = 0; i < attributes; i++) {
+			String name = utf8[in.readUnsignedShort()];
+			int length = in.readInt();
+			if (!"RuntimeVisibleAnnotations".equals(name)) {
+				skipFully(in, length);
+				continue;
+			}
+			int annotations = in.readUnsignedShort();
+			for (int a = 0; a < annotations; a++) {
+				boolean handles = HANDLES_TYPES.equals(utf8[in.readUnsignedShort()]);
+				int pairs = in.readUnsignedShort();
+				for (int p = 0; p < pairs; p++) {
+					// Element name
+					skipFully(in, 2);
+					readElementValue(in, utf8, handles ? types : null);
+				}
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * Read an annotation element value and collect any class values.
+	 *
+	 * @param in the class file positioned at the element value
+	 * @param utf8 the constant pool strings
+	 * @param types the class values found so far or null if not collecting
+	 * @throws IOException an IO exception reading the class
+	 */
+	private static void readElementValue(final DataInputStream in, final String[] utf8, final Set<String> types) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+			case 'e':
+				skipFully(in, 4);
+				break;
+			case 'c':
+				String desc = utf8[in.readUnsignedShort()];
+				if (types != null && desc.startsWith("L") && desc.endsWith(";")) {
+					types.add(desc.substring(1, desc.length() - 1));
+				}
+				break;
+			case '@':
+				skipFully(in, 2);
+				int pairs = in.readUnsignedShort();
+				for (int p = 0; p < pairs; p++) {
+					skipFully(in, 2);
+					readElementValue(in, utf8, null);
+				}
+				break;
+			case '[':
+				int values = in.readUnsignedShort();
+				for (int v = 0; v < values; v++) {
+					readElementValue(in, utf8, types);
+				}
+				break;
+			default:
+				// Constant value
+				skipFully(in, 2);
+				break;
+		}
+	}
+
+	/**
+	 * @param in the class file positioned at the attributes count
+	 * @throws IOException an IO exception reading the class
+	 */
+	private static void skipAttributes(final DataInputStream in) throws IOException {
+		int attributes = in.readUnsignedShort();
+		for (int i = 0; i < attributes; i++) {
+			skipFully(in, 2);
+			skipFully(in, in.readInt());
+		}
+	}
+
+	/**
+	 * @param in the input stream
+	 * @param bytes the number of bytes to skip
+	 * @throws IOException an IO exception or the end of the stream was reached
+	 */
+	private static void skipFully(final DataInputStream in, final int bytes) throws IOException {
+		int remaining = bytes;
+		while (remaining > 0) {
+			int skipped = in.skipBytes(remaining);
+			if (skipped <= 0) {
+				in.readByte();
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 * @param text the property key or value
+	 * @param key true if a key
+	 * @return the text escaped for a properties file
+	 */
+	private static String escape(final String text, final boolean key) {
+		StringBuilder buf = new StringBuilder(text.length());
+		for (char c : text.toCharArray()) {
+			if (c > 0xff) {
+				buf.append(String.format("\\u%04x", (int) c));
+				continue;
+			}
+			if (c == '\\' || (key && (c == ' ' || c == ':' || c == '=' || c == '#' || c == '!'))) {
+				buf.append('\\');
+			}
+			buf.append(c);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * The parts of a class file used by the index.
+	 */
+	private static final class ClassInfo {
+
+		private String name;
+		private String superName;
+		private String[] interfaces;
+		private String[] utf8;
+		private Set<String> handledTypes;
+
+		/**
+		 * @param descriptors the descriptors of the handled types
+		 * @return true if the class references a servlet annotation or a handled type descriptor
+		 */
+		private boolean references(final Set<String> descriptors) {
+			for (String value : utf8) {
+				if (value != null && (value.startsWith(WEB_ANNOTATION_PREFIX) || descriptors.contains(value))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @param subTypes the sub types of each type to add this class to
+		 */
+		private void addTo(final Map<String, List<String>> subTypes) {
+			if (superName != null && !"java/lang/Object".equals(superName)) {
+				subTypes.computeIfAbsent(superName, k -> new ArrayList<>()).add(name);
+			}
+			for (String iface : interfaces) {
+				subTypes.computeIfAbsent(iface, k -> new ArrayList<>()).add(name);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.github.bordertech.lde.mojo;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Close the idle dependency class loader layers as soon as the Maven session ends.
+ * <p>
+ * Maven only calls the participant when the plugin is declared with {@code <extensions>true</extensions>}. Without it the layers are closed by the
+ * next session or when the JVM exits (see {@link CrossStateUtil}).
+ * </p>
+ */
+@Named("lde")
+@Singleton
+public class LdeLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+
+	@Override
+	public void afterSessionEnd(final MavenSession session) {
+		CrossStateUtil.closeIdleLayers();
+	}
+
+}
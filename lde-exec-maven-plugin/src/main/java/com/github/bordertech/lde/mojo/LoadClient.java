@@ -0,0 +1,317 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Minimal HTTP/1.1 client that keeps its connection alive between GET requests.
+ * <p>
+ * Each load worker has its own client, so the clients form a pool of one connection per worker. The connection is reopened when the server closes
+ * it (eg after its maximum keep-alive requests) or the server changes. A request that fails on a reused connection because it was closed or reset
+ * is retried once on a new connection, as the server may have closed the idle connection.
+ * </p>
+ */
+public class LoadClient implements Closeable {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int DEFAULT_HTTP_PORT = 80;
+	private static final int DEFAULT_HTTPS_PORT = 443;
+
+	private final int timeoutMillis;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private Socket socket;
+	private InputStream in;
+	private OutputStream out;
+	private String connectedTo;
+	private int connections;
+
+	/**
+	 * @param timeoutMillis the connect and read timeout in milliseconds
+	 */
+	public LoadClient(final int timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Send a GET request and read the whole response.
+	 *
+	 * @param uri the absolute HTTP or HTTPS URI
+	 * @return the response status
+	 * @throws IOException the request failed
+	 */
+	public int get(final URI uri) throws IOException {
+		String host = uri.getHost();
+		int port = getPort(uri);
+		String target = host + ":" + port;
+		boolean reused = socket != null && target.equals(connectedTo);
+		if (!reused) {
+			connect(uri, host, port);
+		}
+		byte[] request = createRequest(uri, host, port);
+		try {
+			return send(request, reused);
+		} catch (StaleConnectionException | SocketException e) {
+			if (!reused) {
+				throw e;
+			}
+			// The server closed the idle connection so try once more on a new connection
+			connect(uri, host, port);
+		}
+		return send(request, false);
+	}
+
+	/**
+	 * @return the number of connections opened by this client
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	@Override
+	public void close() {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Ignore, the connection is no longer used
+			}
+		}
+		socket = null;
+		in = null;
+		out = null;
+		connectedTo = null;
+	}
+
+	/**
+	 * @param uri the URI
+	 * @param host the host
+	 * @param port the port
+	 * @throws IOException could not connect
+	 */
+	private void connect(final URI uri, final String host, final int port) throws IOException {
+		close();
+		Socket newSocket = "https".equalsIgnoreCase(uri.getScheme()) ? SSLSocketFactory.getDefault().createSocket() : new Socket();
+		try {
+			newSocket.setTcpNoDelay(true);
+			newSocket.setSoTimeout(timeoutMillis);
+			newSocket.connect(new InetSocketAddress(host, port), timeoutMillis);
+		} catch (IOException e) {
+			newSocket.close();
+			throw e;
+		}
+		socket = newSocket;
+		in = new BufferedInputStream(newSocket.getInputStream(), BUFFER_SIZE);
+		out = newSocket.getOutputStream();
+		connectedTo = host + ":" + port;
+		connections++;
+	}
+
+	/**
+	 * Send the request and read the response, closing the connection if either fails.
+	 *
+	 * @param request the request bytes
+	 * @param reused true if the request is sent on a reused connection
+	 * @return the response status
+	 * @throws IOException the request failed
+	 */
+	private int send(final byte[] request, final boolean reused) throws IOException {
+		try {
+			out.write(request);
+			out.flush();
+			return readResponse(reused);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param reused true if the request was sent on a reused connection
+	 * @return the response status
+	 * @throws IOException could not read the response
+	 */
+	private int readResponse(final boolean reused) throws IOException {
+		String statusLine = readLine();
+		if (statusLine == null) {
+			if (reused) {
+				throw new StaleConnectionException();
+			}
+			throw new EOFException("Connection closed before the response.");
+		}
+		String[] parts = statusLine.split(" ", 3);
+		if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+			throw new IOException("Invalid HTTP status line [" + statusLine + "].");
+		}
+		int status;
+		try {
+			status = Integer.parseInt(parts[1]);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid HTTP status line [" + statusLine + "].", e);
+		}
+		long contentLength = -1;
+		boolean chunked = false;
+		boolean close = "HTTP/1.0".equals(parts[0]);
+		String line;
+		while ((line = readLine()) != null && !line.isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon <= 0) {
+				continue;
+			}
+			String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+			String value = line.substring(colon + 1).trim().toLowerCase(Locale.ROOT);
+			if ("content-length".equals(name)) {
+				try {
+					contentLength = Long.parseLong(value);
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid content length [" + value + "].", e);
+				}
+			} else if ("transfer-encoding".equals(name)) {
+				chunked = value.contains("chunked");
+			} else if ("connection".equals(name)) {
+				close = value.contains("close") || close && !value.contains("keep-alive");
+			}
+		}
+		if (line == null) {
+			throw new EOFException("Connection closed in the response headers.");
+		}
+		if (status == 204 || status == 304 || status / 100 == 1) {
+			contentLength = 0;
+		}
+		if (chunked) {
+			readChunked();
+		} else if (contentLength >= 0) {
+			skip(contentLength);
+		} else {
+			// Body ends when the connection closes
+			while (in.read(buffer) >= 0) {
+				// Discard
+			}
+			close = true;
+		}
+		if (close) {
+			close();
+		}
+		return status;
+	}
+
+	/**
+	 * @throws IOException could not read the chunked body
+	 */
+	private void readChunked() throws IOException {
+		while (true) {
+			String sizeLine = readLine();
+			if (sizeLine == null) {
+				throw new EOFException("Connection closed in the chunked response body.");
+			}
+			int extension = sizeLine.indexOf(';');
+			long size;
+			try {
+				size = Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid chunk size [" + sizeLine + "].", e);
+			}
+			if (size == 0) {
+				// Trailers
+				String line;
+				while ((line = readLine()) != null && !line.isEmpty()) {
+					// Discard
+				}
+				return;
+			}
+			skip(size);
+			readLine();
+		}
+	}
+
+	/**
+	 * @param length the number of bytes to discard
+	 * @throws IOException could not read the bytes
+	 */
+	private void skip(final long length) throws IOException {
+		long remaining = length;
+		while (remaining > 0) {
+			int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (read < 0) {
+				throw new EOFException("Connection closed in the response body.");
+			}
+			remaining -= read;
+		}
+	}
+
+	/**
+	 * @return the line without the line terminator or null at the end of the stream
+	 * @throws IOException could not read the line
+	 */
+	private String readLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		int read;
+		while ((read = in.read()) >= 0) {
+			if (read == '\n') {
+				int length = line.length();
+				if (length > 0 && line.charAt(length - 1) == '\r') {
+					line.setLength(length - 1);
+				}
+				return line.toString();
+			}
+			line.append((char) read);
+		}
+		return line.length() == 0 ? null : line.toString();
+	}
+
+	/**
+	 * @param uri the URI
+	 * @param host the host
+	 * @param port the port
+	 * @return the request bytes
+	 */
+	private static byte[] createRequest(final URI uri, final String host, final int port) {
+		String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+		if (uri.getRawQuery() != null) {
+			path = path + "?" + uri.getRawQuery();
+		}
+		String request = "GET " + path + " HTTP/1.1\r\n"
+				+ "Host: " + host + ":" + port + "\r\n"
+				+ "User-Agent: lde-load\r\n"
+				+ "Accept: */*\r\n"
+				+ "\r\n";
+		return request.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * @param uri the URI
+	 * @return the port of the URI or the default port of its scheme
+	 */
+	private static int getPort(final URI uri) {
+		if (uri.getPort() > 0) {
+			return uri.getPort();
+		}
+		return "https".equalsIgnoreCase(uri.getScheme()) ? DEFAULT_HTTPS_PORT : DEFAULT_HTTP_PORT;
+	}
+
+	/**
+	 * A reused connection was closed by the server before the response.
+	 */
+	private static final class StaleConnectionException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Default constructor.
+		 */
+		private StaleConnectionException() {
+			super("Connection closed by the server.");
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+package com.github.bordertech.lde.mojo;
+
+import com.github.bordertech.lde.api.LatencyHistogram;
+import com.github.bordertech.lde.api.VirtualThreadUtil;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drive a closed HTTP GET workload at a list of URLs and record the latency of each response.
+ * <p>
+ * Each worker sends its next request as soon as the last response is read, on its own keep-alive connection, cycling through the URLs. The workers
+ * are started evenly over the ramp-up period and stop when the duration has passed or the request limit is reached. Workers run on virtual threads
+ * when they are available and requested, otherwise on a fixed pool of platform threads.
+ * </p>
+ * <p>
+ * A worker whose requests keep failing (eg the server is down) backs off, doubling its wait after each failure, and stops once it has failed
+ * {@link #MAX_CONSECUTIVE_ERRORS} times in a row, so it does not spin on the failures.
+ * </p>
+ */
+public class LoadGenerator {
+
+	/**
+	 * The number of requests in a row that can fail before a worker stops.
+	 */
+	public static final int MAX_CONSECUTIVE_ERRORS = 10;
+	private static final long BACKOFF_MIN_MILLIS = 10;
+	private static final long BACKOFF_MAX_MILLIS = 1000;
+
+	private final List<URI> uris;
+	private final int concurrency;
+	private final long durationMillis;
+	private final long maxRequests;
+	private final long rampUpMillis;
+	private final boolean useVirtualThreads;
+	private final int timeoutMillis;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder errors = new LongAdder();
+	private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+	private final AtomicInteger connections = new AtomicInteger();
+	private final AtomicInteger stoppedWorkers = new AtomicInteger();
+	private volatile String lastError;
+	private long elapsedNanos;
+	private boolean virtualThreads;
+
+	/**
+	 * @param uris the URLs to request
+	 * @param concurrency the number of concurrent workers
+	 * @param durationMillis the duration of the load in milliseconds or 0 for no limit
+	 * @param maxRequests the maximum number of requests or 0 for no limit
+	 * @param rampUpMillis the period to start the workers over in milliseconds
+	 * @param useVirtualThreads true if run the workers on virtual threads when available
+	 * @param timeoutMillis the connect and read timeout in milliseconds
+	 */
+	public LoadGenerator(final List<URI> uris, final int concurrency, final long durationMillis, final long maxRequests, final long rampUpMillis,
+			final boolean useVirtualThreads, final int timeoutMillis) {
+		if (uris.isEmpty()) {
+			throw new IllegalArgumentException("No URLs to load.");
+		}
+		if (durationMillis <= 0 && maxRequests <= 0) {
+			throw new IllegalArgumentException("The load needs a duration or request limit.");
+		}
+		this.uris = new ArrayList<>(uris);
+		this.concurrency = Math.max(1, concurrency);
+		this.durationMillis = durationMillis;
+		this.maxRequests = maxRequests;
+		this.rampUpMillis = Math.max(0, rampUpMillis);
+		this.useVirtualThreads = useVirtualThreads;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Run the workload and wait for it to finish.
+	 *
+	 * @throws InterruptedException interrupted waiting for the workers
+	 */
+	public void run() throws InterruptedException {
+		ExecutorService executor = createExecutor();
+		long start = System.nanoTime();
+		long deadline = durationMillis > 0 ? start + TimeUnit.MILLISECONDS.toNanos(durationMillis) : Long.MAX_VALUE;
+		AtomicLong remaining = new AtomicLong(maxRequests > 0 ? maxRequests : Long.MAX_VALUE);
+		long rampUpNanos = TimeUnit.MILLISECONDS.toNanos(rampUpMillis);
+		List<Future<?>> workers = new ArrayList<>();
+		try {
+			for (int i = 0; i < concurrency; i++) {
+				final int worker = i;
+				final long startAt = start + rampUpNanos * i / concurrency;
+				workers.add(executor.submit(() -> work(worker, startAt, deadline, remaining)));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Load worker failed. " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+			elapsedNanos = System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * @return the response latencies
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return the number of responses received
+	 */
+	public long getRequests() {
+		return latency.getCount();
+	}
+
+	/**
+	 * @return the number of requests that failed without a response
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * @return the message of the last request that failed or null if none failed
+	 */
+	public String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @return the number of workers stopped because their requests kept failing
+	 */
+	public int getStoppedWorkers() {
+		return stoppedWorkers.get();
+	}
+
+	/**
+	 * @return the number of responses with each status
+	 */
+	public Map<Integer, Long> getStatusCounts() {
+		Map<Integer, Long> counts = new TreeMap<>();
+		for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().sum());
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the number of connections opened
+	 */
+	public int getConnections() {
+		return connections.get();
+	}
+
+	/**
+	 * @return the time the workload ran for in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the responses per second
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : getRequests() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	/**
+	 * @return true if the workers ran on virtual threads
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @return the executor to run the workers on
+	 */
+	protected ExecutorService createExecutor() {
+		if (useVirtualThreads) {
+			ExecutorService executor = VirtualThreadUtil.newThreadPerTaskExecutor("lde-load-");
+			if (executor != null) {
+				virtualThreads = true;
+				return executor;
+			}
+		}
+		virtualThreads = false;
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(concurrency, runnable -> {
+			Thread thread = new Thread(runnable, "lde-load-" + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Send requests until the deadline or request limit is reached.
+	 *
+	 * @param worker the worker index
+	 * @param startAt the time to start in nanoseconds
+	 * @param deadline the time to stop in nanoseconds
+	 * @param remaining the requests remaining
+	 */
+	private void work(final int worker, final long startAt, final long deadline, final AtomicLong remaining) {
+		if (!sleepUntil(startAt)) {
+			return;
+		}
+		int next = worker % uris.size();
+		int failures = 0;
+		try (LoadClient client = new LoadClient(timeoutMillis)) {
+			while (System.nanoTime() - deadline < 0 && remaining.getAndDecrement() > 0 && !Thread.currentThread().isInterrupted()) {
+				URI uri = uris.get(next);
+				next = (next + 1) % uris.size();
+				long begin = System.nanoTime();
+				try {
+					int status = client.get(uri);
+					latency.recordNanos(System.nanoTime() - begin);
+					statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+					failures = 0;
+				} catch (IOException e) {
+					errors.increment();
+					lastError = uri + " " + e.getMessage();
+					if (++failures >= MAX_CONSECUTIVE_ERRORS) {
+						stoppedWorkers.incrementAndGet();
+						break;
+					}
+					if (!sleepUntil(Math.min(deadline, System.nanoTime() + getBackoffNanos(failures)))) {
+						break;
+					}
+				}
+			}
+			connections.addAndGet(client.getConnections());
+		}
+	}
+
+	/**
+	 * @param failures the number of requests in a row that have failed
+	 * @return the time to wait before the next request in nanoseconds
+	 */
+	private static long getBackoffNanos(final int failures) {
+		long millis = BACKOFF_MIN_MILLIS << Math.min(failures - 1, 16);
+		return TimeUnit.MILLISECONDS.toNanos(Math.min(millis, BACKOFF_MAX_MILLIS));
+	}
+
+	/**
+	 * @param time the time to sleep until in nanoseconds
+	 * @return false if interrupted
+	 */
+	private static boolean sleepUntil(final long time) {
+		long wait = time - System.nanoTime();
+		if (wait <= 0) {
+			return true;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(wait);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+package com.github.bordertech.lde.mojo;
+
+import com.github.bordertech.lde.api.LatencyHistogram;
+import com.github.bordertech.lde.api.LdeProvider;
+import java.io.File;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Push an HTTP load at the LDE provider started by <code>lde-exec:start</code> and report the throughput and latency percentiles.
+ * <p>
+ * URLs not starting with "http://" or "https://" are relative to the provider base URL. The load runs for the duration or until the number of
+ * requests has been sent, whichever is first. The report is logged and written as JSON to the load report file.
+ * </p>
+ */
+@Mojo(name = "load", defaultPhase = LifecyclePhase.INTEGRATION_TEST)
+public class LoadMojo extends AbstractIdMojo {
+
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+	private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+	private static final double MICROS_PER_MILLI = 1000.0;
+
+	@Parameter
+	private List<String> urls;
+
+	@Parameter(defaultValue = "10")
+	private int concurrency;
+
+	@Parameter(defaultValue = "30")
+	private int durationSeconds;
+
+	@Parameter(defaultValue = "0")
+	private long requests;
+
+	@Parameter(defaultValue = "0")
+	private int rampUpSeconds;
+
+	@Parameter(defaultValue = "true")
+	private boolean virtualThreads;
+
+	@Parameter(defaultValue = "10000")
+	private int timeoutMillis;
+
+	@Parameter(defaultValue = "${project.build.directory}/lde-load-report.json")
+	private File loadReportFile;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		LdeProvider provider = CrossStateUtil.getProvider(getProviderId());
+		if (provider == null || !provider.isRunning()) {
+			throw new MojoExecutionException("LDE provider [" + getProviderId() + "] is not running. Start it with lde-exec:start before the load.");
+		}
+		if (durationSeconds <= 0 && requests <= 0) {
+			throw new MojoExecutionException("The load needs a durationSeconds or requests limit.");
+		}
+		List<URI> uris = resolveUrls(provider.getBaseUrl());
+		LoadGenerator generator = new LoadGenerator(uris, concurrency, TimeUnit.SECONDS.toMillis(durationSeconds), requests,
+				TimeUnit.SECONDS.toMillis(rampUpSeconds), virtualThreads, timeoutMillis);
+		getLog().info("Running load of " + concurrency + " workers against " + uris + ".");
+		try {
+			generator.run();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Load was interrupted. " + e.getMessage(), e);
+		} catch (IllegalStateException e) {
+			throw new MojoExecutionException("Load failed. " + e.getMessage(), e);
+		}
+		reportLoad(generator);
+	}
+
+	/**
+	 * @param baseUrl the provider base URL
+	 * @return the URLs to load
+	 * @throws MojoExecutionException an invalid URL
+	 */
+	protected List<URI> resolveUrls(final String baseUrl) throws MojoExecutionException {
+		List<String> configured = urls == null || urls.isEmpty() ? Collections.singletonList("/") : urls;
+		List<URI> resolved = new ArrayList<>();
+		for (String url : configured) {
+			String trimmed = url.trim();
+			String absolute;
+			if (trimmed.startsWith("http://") || trimmed.startsWith("https://")) {
+				absolute = trimmed;
+			} else {
+				absolute = baseUrl + (trimmed.startsWith("/") ? trimmed : "/" + trimmed);
+			}
+			try {
+				resolved.add(URI.create(absolute));
+			} catch (IllegalArgumentException e) {
+				throw new MojoExecutionException("Invalid load URL [" + url + "]. " + e.getMessage(), e);
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Log the throughput and latency percentiles and write them as JSON to the load report file.
+	 *
+	 * @param generator the finished load
+	 */
+	protected void reportLoad(final LoadGenerator generator) {
+		LatencyHistogram latency = generator.getLatency();
+		double seconds = generator.getElapsedNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+		StringBuilder percentiles = new StringBuilder();
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"providerId\": \"").append(escapeJson(getProviderId())).append("\",\n");
+		json.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+		json.append("  \"concurrency\": ").append(concurrency).append(",\n");
+		json.append("  \"virtualThreads\": ").append(generator.isVirtualThreads()).append(",\n");
+		json.append("  \"elapsedMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(generator.getElapsedNanos())).append(",\n");
+		json.append("  \"requests\": ").append(generator.getRequests()).append(",\n");
+		json.append("  \"errors\": ").append(generator.getErrors()).append(",\n");
+		json.append("  \"stoppedWorkers\": ").append(generator.getStoppedWorkers()).append(",\n");
+		json.append("  \"connections\": ").append(generator.getConnections()).append(",\n");
+		json.append("  \"throughput\": ").append(String.format(Locale.ROOT, "%.1f", generator.getThroughput())).append(",\n");
+		json.append("  \"latencyMicros\": {");
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			long micros = latency.getPercentileMicros(PERCENTILES[i]);
+			percentiles.append(PERCENTILE_NAMES[i]).append('=').append(toMillis(micros)).append(' ');
+			json.append("\n    \"").append(PERCENTILE_NAMES[i]).append("\": ").append(micros).append(',');
+		}
+		percentiles.append("max=").append(toMillis(latency.getMaxMicros()));
+		json.append("\n    \"mean\": ").append(String.format(Locale.ROOT, "%.1f", latency.getMeanMicros())).append(',');
+		json.append("\n    \"max\": ").append(latency.getMaxMicros()).append("\n  },\n");
+		json.append("  \"statuses\": {");
+		String separator = "";
+		for (Map.Entry<Integer, Long> entry : generator.getStatusCounts().entrySet()) {
+			json.append(separator).append("\n    \"").append(entry.getKey()).append("\": ").append(entry.getValue());
+			separator = ",";
+		}
+		json.append("\n  }\n}\n");
+
+		getLog().info(String.format(Locale.ROOT, "Load: %d requests in %.1f s (%.1f req/s) on %s threads over %d connections, %d errors.",
+				generator.getRequests(), seconds, generator.getThroughput(), generator.isVirtualThreads() ? "virtual" : "platform",
+				generator.getConnections(), generator.getErrors()));
+		getLog().info("Load latency (ms): " + percentiles + ".");
+		getLog().info("Load statuses: " + generator.getStatusCounts() + ".");
+		if (generator.getLastError() != null) {
+			getLog().warn("Last load error: " + generator.getLastError());
+		}
+		if (generator.getStoppedWorkers() > 0) {
+			getLog().warn(generator.getStoppedWorkers() + " load workers stopped after " + LoadGenerator.MAX_CONSECUTIVE_ERRORS
+					+ " errors in a row.");
+		}
+		if (loadReportFile != null) {
+			writeReport(loadReportFile, json.toString());
+		}
+	}
+
+	/**
+	 * @param micros the latency in microseconds
+	 * @return the latency in milliseconds
+	 */
+	private static String toMillis(final long micros) {
+		return String.format(Locale.ROOT, "%.2f", micros / MICROS_PER_MILLI);
+	}
+
+}
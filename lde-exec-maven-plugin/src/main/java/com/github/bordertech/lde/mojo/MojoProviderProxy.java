@@ -1,8 +1,27 @@
 package com.github.bordertech.lde.mojo;
 
 import com.github.bordertech.lde.api.LdeProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 /**
  * Pass through proxy so the MOJO can access the {@link LdeProvider} API in the provider ClassLoader.
@@ -10,22 +29,246 @@ import java.lang.reflect.Method;
  * As the API class has been loaded in two different class loaders, the MOJO cannot directly interact with the API class loaded in the provider class
  * loader.
  * </p>
+ * <p>
+ * Each API method is resolved once, against the provider class loader's copy of the API, into a cached {@link MethodHandle}, so a call costs a map
+ * lookup and a direct invoke. Exceptions thrown by the provider are passed through as thrown rather than wrapped.
+ * </p>
+ * <p>
+ * Arguments and return values of classes shared by both class loaders (eg the JDK classes) are passed as is. Values of classes loaded separately in
+ * each class loader are mapped across: interfaces are wrapped in another bridge proxy and serializable classes (eg snapshots) are copied. The value
+ * of a returned {@link CompletableFuture} is mapped when it completes.
+ * </p>
  */
 public class MojoProviderProxy implements InvocationHandler {
 
+	private static final Object[] NO_ARGS = new Object[0];
+	private static final Function<Object, Object> AS_IS = value -> value;
+
 	private final Object target;
+	private final ClassLoader targetLoader;
+	private final ConcurrentMap<Method, MethodBridge> bridges = new ConcurrentHashMap<>();
 
 	/**
 	 * @param target provider implementation
 	 */
 	public MojoProviderProxy(final Object target) {
 		this.target = target;
+		this.targetLoader = target.getClass().getClassLoader();
 	}
 
 	@Override
 	public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-		Method implMethod = target.getClass().getMethod(method.getName(), method.getParameterTypes());
-		return implMethod.invoke(target, args);
+		MethodBridge bridge = bridges.get(method);
+		if (bridge == null) {
+			if (method.getDeclaringClass() == Object.class && "equals".equals(method.getName())) {
+				return proxy == args[0];
+			}
+			bridge = bridges.computeIfAbsent(method, this::resolve);
+		}
+		return bridge.invoke(args == null ? NO_ARGS : args);
+	}
+
+	/**
+	 * @param method the API method called on the proxy
+	 * @return the bridge to the provider implementation of the method
+	 */
+	private MethodBridge resolve(final Method method) {
+		Class<?>[] params = method.getParameterTypes();
+		Type[] genericParams = method.getGenericParameterTypes();
+		Class<?>[] targetParams = new Class<?>[params.length];
+		@SuppressWarnings("unchecked")
+		Function<Object, Object>[] argMappers = (Function<Object, Object>[]) new Function<?, ?>[params.length];
+		try {
+			for (int i = 0; i < params.length; i++) {
+				targetParams[i] = toLoader(params[i], targetLoader);
+				argMappers[i] = createMapper(genericParams[i], true);
+			}
+			Method impl = findMethod(method, targetParams);
+			MethodHandle handle = MethodHandles.publicLookup().unreflect(impl).bindTo(target)
+					.asSpreader(Object[].class, params.length)
+					.asType(MethodType.methodType(Object.class, Object[].class));
+			return new MethodBridge(handle, argMappers, createMapper(method.getGenericReturnType(), false));
+		} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalStateException("Provider [" + target.getClass().getName() + "] does not support [" + method + "]. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Find the method on the provider class loader's copy of the declaring interface, so it can be called on a provider class that is not public.
+	 *
+	 * @param method the API method called on the proxy
+	 * @param targetParams the parameter types in the provider class loader
+	 * @return the provider method
+	 * @throws NoSuchMethodException the provider does not have the method
+	 */
+	private Method findMethod(final Method method, final Class<?>[] targetParams) throws NoSuchMethodException {
+		try {
+			Class<?> targetApi = toLoader(method.getDeclaringClass(), targetLoader);
+			if (targetApi.isInstance(target)) {
+				return targetApi.getMethod(method.getName(), targetParams);
+			}
+		} catch (ClassNotFoundException e) {
+			// Not implemented through the API interface
+		}
+		return target.getClass().getMethod(method.getName(), targetParams);
+	}
+
+	/**
+	 * @param type the declared type of the value in the MOJO class loader
+	 * @param toTarget true if the value is passed to the provider, false if it is returned from the provider
+	 * @return the function that maps a value of the type across the class loaders
+	 * @throws ClassNotFoundException the provider class loader does not have the type
+	 */
+	private Function<Object, Object> createMapper(final Type type, final boolean toTarget) throws ClassNotFoundException {
+		Class<?> raw = toRawClass(type);
+		if (isShared(raw, targetLoader)) {
+			if ((raw == CompletableFuture.class || raw == CompletionStage.class) && type instanceof ParameterizedType) {
+				Function<Object, Object> valueMapper = createMapper(((ParameterizedType) type).getActualTypeArguments()[0], toTarget);
+				if (valueMapper != AS_IS) {
+					return value -> value == null ? null : ((CompletionStage<?>) value).toCompletableFuture().thenApply(valueMapper);
+				}
+			}
+			return AS_IS;
+		}
+		ClassLoader loader = toTarget ? targetLoader : raw.getClassLoader();
+		Class<?> other = toTarget ? toLoader(raw, targetLoader) : raw;
+		if (other.isInterface()) {
+			return value -> value == null ? null : Proxy.newProxyInstance(loader, new Class<?>[]{other}, new MojoProviderProxy(value));
+		}
+		if (Serializable.class.isAssignableFrom(raw)) {
+			return value -> value == null ? null : copy(value, loader);
+		}
+		throw new ClassNotFoundException("[" + raw.getName() + "] is not shared by the class loaders and is not an interface or serializable.");
+	}
+
+	/**
+	 * @param type the declared type
+	 * @return the class of the type
+	 */
+	private static Class<?> toRawClass(final Type type) {
+		if (type instanceof Class) {
+			return (Class<?>) type;
+		}
+		if (type instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		}
+		// Type variables and wildcards are passed as is
+		return Object.class;
+	}
+
+	/**
+	 * @param type the class
+	 * @param loader the other class loader
+	 * @return true if the other class loader uses the same class
+	 */
+	private static boolean isShared(final Class<?> type, final ClassLoader loader) {
+		if (type.isPrimitive() || type.getClassLoader() == null) {
+			return true;
+		}
+		try {
+			return toLoader(type, loader) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param type the class
+	 * @param loader the other class loader
+	 * @return the class of the same name in the other class loader
+	 * @throws ClassNotFoundException the other class loader does not have the class
+	 */
+	private static Class<?> toLoader(final Class<?> type, final ClassLoader loader) throws ClassNotFoundException {
+		if (type.isPrimitive() || type.getClassLoader() == null) {
+			return type;
+		}
+		return Class.forName(type.getName(), false, loader);
+	}
+
+	/**
+	 * @param value the serializable value
+	 * @param loader the class loader to copy the value to
+	 * @return the copy of the value with the classes of the class loader
+	 */
+	private static Object copy(final Object value, final ClassLoader loader) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(value);
+			}
+			try (ObjectInputStream in = new LoaderObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()), loader)) {
+				return in.readObject();
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalStateException("Could not copy [" + value.getClass().getName() + "] across class loaders. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * A provider method resolved to a method handle with the mappers of its arguments and return value.
+	 */
+	private static final class MethodBridge {
+
+		private final MethodHandle handle;
+		private final Function<Object, Object>[] argMappers;
+		private final Function<Object, Object> returnMapper;
+
+		/**
+		 * @param handle the provider method bound to the provider and taking the arguments as an array
+		 * @param argMappers the mappers of the arguments to the provider class loader
+		 * @param returnMapper the mapper of the return value to the MOJO class loader
+		 */
+		private MethodBridge(final MethodHandle handle, final Function<Object, Object>[] argMappers, final Function<Object, Object> returnMapper) {
+			this.handle = handle;
+			this.argMappers = argMappers;
+			this.returnMapper = returnMapper;
+		}
+
+		/**
+		 * @param args the arguments
+		 * @return the return value
+		 * @throws Throwable the exception thrown by the provider
+		 */
+		private Object invoke(final Object[] args) throws Throwable {
+			Object[] mapped = args;
+			for (int i = 0; i < argMappers.length; i++) {
+				if (argMappers[i] != AS_IS) {
+					if (mapped == args) {
+						mapped = args.clone();
+					}
+					mapped[i] = argMappers[i].apply(args[i]);
+				}
+			}
+			Object result = (Object) handle.invokeExact(mapped);
+			return returnMapper.apply(result);
+		}
+	}
+
+	/**
+	 * Object input stream that resolves the classes in a class loader.
+	 */
+	private static final class LoaderObjectInputStream extends ObjectInputStream {
+
+		private final ClassLoader loader;
+
+		/**
+		 * @param in the serialized value
+		 * @param loader the class loader to resolve the classes in
+		 * @throws IOException could not read the stream header
+		 */
+		private LoaderObjectInputStream(final InputStream in, final ClassLoader loader) throws IOException {
+			super(in);
+			this.loader = loader;
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, loader);
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
 	}
 
 }
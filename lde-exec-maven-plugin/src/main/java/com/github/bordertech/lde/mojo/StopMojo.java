@@ -18,6 +18,7 @@ public class StopMojo extends AbstractIdMojo {
 		if (providerId != null) {
 			providerId.stopServer();
 		}
+		CrossStateUtil.releaseProviderClassLoader(getProviderId());
 	}
 
 }
@@ -0,0 +1,202 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the layered class loader of {@link AbstractStartMojo}.
+ */
+public class AbstractStartMojoTest {
+
+	private static final String LOG_BRIDGE_SERVICE = "META-INF/services/org.apache.juli.logging.Log";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final MavenSession session = new MavenSession(null, null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult());
+	private File tomcatJar;
+	private File ldeJar;
+	private File bridgeJar;
+
+	@Before
+	public void setup() throws IOException {
+		tomcatJar = createJar("tomcat.jar", "org/apache/catalina/Test.txt");
+		ldeJar = createJar("lde-tomcat.jar", "com/github/bordertech/lde/Test.txt");
+		bridgeJar = createJar("lde-tomcat-log4j.jar", LOG_BRIDGE_SERVICE);
+	}
+
+	@After
+	public void releaseLoaders() {
+		CrossStateUtil.releaseProviderClassLoader("test-first");
+		CrossStateUtil.releaseProviderClassLoader("test-second");
+		CrossStateUtil.closeIdleLayers();
+	}
+
+	@Test
+	public void testDependencyLayerSharedByProjects() throws IOException {
+		URLClassLoader first = createLoader("first", ldeJar);
+		URLClassLoader second = createLoader("second", ldeJar);
+		Assert.assertSame("Projects with the same third party jars should share the dependency layer", first.getParent(), second.getParent());
+		Assert.assertEquals("Dependency layer should only have the third party jars", Arrays.asList(toUrl(tomcatJar)),
+				Arrays.asList(((URLClassLoader) first.getParent()).getURLs()));
+		Assert.assertEquals("Project layer should have the output directory and LDE jars",
+				Arrays.asList(toUrl(folder.getRoot()).toString() + "first/classes/", toUrl(ldeJar).toString()), toStrings(first.getURLs()));
+	}
+
+	@Test
+	public void testDependencyLayerReusedOnRestart() throws IOException {
+		URLClassLoader first = createLoader("first", ldeJar);
+		URLClassLoader parent = (URLClassLoader) first.getParent();
+		CrossStateUtil.releaseProviderClassLoader("test-first");
+		Assert.assertNull("Project layer should be closed when released", first.findResource("com/github/bordertech/lde/Test.txt"));
+		URLClassLoader restarted = createLoader("first", ldeJar);
+		Assert.assertSame("Restart should reuse the dependency layer", parent, restarted.getParent());
+	}
+
+	@Test
+	public void testLogBridgeKeepsDependencyLayerPerProject() throws IOException {
+		URLClassLoader first = createLoader("first", bridgeJar);
+		URLClassLoader second = createLoader("second", bridgeJar);
+		Assert.assertNotSame("Projects with a logging bridge should not share the dependency layer", first.getParent(), second.getParent());
+		Assert.assertEquals("Logging bridge should be in the dependency layer", Arrays.asList(toUrl(tomcatJar), toUrl(bridgeJar)),
+				Arrays.asList(((URLClassLoader) first.getParent()).getURLs()));
+		Assert.assertEquals("Project layer should only have the output directory", 1, first.getURLs().length);
+	}
+
+	/**
+	 * @param name the project name
+	 * @param lde the LDE jar of the project
+	 * @return the project class loader
+	 * @throws IOException an IO exception
+	 */
+	private URLClassLoader createLoader(final String name, final File lde) throws IOException {
+		File basedir = new File(folder.getRoot(), name);
+		File classes = new File(basedir, "classes");
+		if (!classes.isDirectory()) {
+			Assert.assertTrue("Could not create the output directory", classes.mkdirs());
+		}
+		TestStartMojo mojo = new TestStartMojo(name, basedir, lde);
+		return (URLClassLoader) mojo.createLayeredClassLoader(Arrays.asList(toUrl(classes), toUrl(tomcatJar), toUrl(lde)));
+	}
+
+	/**
+	 * @param file the file
+	 * @return the file URL
+	 * @throws IOException an IO exception
+	 */
+	private static URL toUrl(final File file) throws IOException {
+		return file.toURI().toURL();
+	}
+
+	/**
+	 * @param urls the URLs
+	 * @return the URLs as strings
+	 */
+	private static List<String> toStrings(final URL[] urls) {
+		String[] strings = new String[urls.length];
+		for (int i = 0; i < urls.length; i++) {
+			strings[i] = urls[i].toString();
+		}
+		return Arrays.asList(strings);
+	}
+
+	/**
+	 * @param name the jar name
+	 * @param entry the entry in the jar
+	 * @return the jar
+	 * @throws IOException an IO Exception
+	 */
+	private File createJar(final String name, final String entry) throws IOException {
+		File jar = folder.newFile(name);
+		try (OutputStream out = Files.newOutputStream(jar.toPath()); JarOutputStream zip = new JarOutputStream(out)) {
+			zip.putNextEntry(new ZipEntry(entry));
+			zip.write("test".getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		return jar;
+	}
+
+	/**
+	 * Start MOJO for a project with a third party jar and an LDE jar.
+	 */
+	private final class TestStartMojo extends AbstractStartMojo {
+
+		private final String providerId;
+		private final MavenProject project = new MavenProject();
+
+		/**
+		 * @param name the project name
+		 * @param basedir the project base directory
+		 * @param lde the LDE jar of the project
+		 */
+		private TestStartMojo(final String name, final File basedir, final File lde) {
+			this.providerId = "test-" + name;
+			project.setFile(new File(basedir, "pom.xml"));
+			Set<Artifact> artifacts = new HashSet<>();
+			artifacts.add(createArtifact("org.apache.tomcat.embed", tomcatJar));
+			artifacts.add(createArtifact("com.github.bordertech.lde", lde));
+			project.setArtifacts(artifacts);
+		}
+
+		@Override
+		public void execute() {
+			// Not executed
+		}
+
+		@Override
+		protected String getProviderId() {
+			return providerId;
+		}
+
+		@Override
+		protected String getScope() {
+			return "test";
+		}
+
+		@Override
+		protected MavenProject getProject() {
+			return project;
+		}
+
+		@Override
+		protected MavenSession getSession() {
+			return session;
+		}
+
+		/**
+		 * @param groupId the artifact group id
+		 * @param file the artifact jar
+		 * @return the resolved artifact
+		 */
+		private Artifact createArtifact(final String groupId, final File file) {
+			Artifact artifact = new DefaultArtifact(groupId, file.getName(), "1.0", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+			artifact.setFile(file);
+			return artifact;
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link DependencyLayerCache} and the provider class loaders saved in {@link CrossStateUtil}.
+ */
+public class DependencyLayerCacheTest {
+
+	private static final String RESOURCE = "lde/test/resource.txt";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final DependencyLayerCache cache = new DependencyLayerCache();
+	private final MavenSession session = createSession();
+	private List<URL> jars;
+
+	@Before
+	public void setup() throws IOException {
+		jars = Collections.singletonList(createJar("dep.jar"));
+		CrossStateUtil.closeIdleLayers();
+	}
+
+	@After
+	public void closeLayers() {
+		cache.closeIdleLayers();
+		CrossStateUtil.closeIdleLayers();
+	}
+
+	@Test
+	public void testFingerprintChangesWithJar() throws IOException {
+		String before = DependencyLayerCache.fingerprint(jars);
+		File jar = new File(jars.get(0).getPath());
+		Assert.assertTrue("Could not touch the jar", jar.setLastModified(jar.lastModified() - 10000));
+		Assert.assertNotEquals("Fingerprint should change when a jar changes", before, DependencyLayerCache.fingerprint(jars));
+	}
+
+	@Test
+	public void testLayerShared() {
+		URLClassLoader first = cache.getLayer("shared", jars);
+		URLClassLoader second = cache.getLayer("shared", jars);
+		Assert.assertSame("Same key should share the layer", first, second);
+		Assert.assertTrue("Layer should be cached", cache.contains("shared"));
+		cache.release("shared");
+		cache.release("shared");
+	}
+
+	@Test
+	public void testLayerInUseNotClosed() {
+		URLClassLoader layer = cache.getLayer("used", jars);
+		cache.getLayer("used", jars);
+		cache.release("used");
+		cache.closeIdleLayers();
+		Assert.assertTrue("Layer still referenced should be cached", cache.contains("used"));
+		Assert.assertNotNull("Layer still referenced should be open", layer.getResource(RESOURCE));
+		cache.release("used");
+		cache.closeIdleLayers();
+		Assert.assertFalse("Idle layer should be removed", cache.contains("used"));
+		Assert.assertNull("Idle layer should be closed", layer.getResource(RESOURCE));
+	}
+
+	@Test
+	public void testReleaseUnknownKey() {
+		cache.release("unknown");
+		Assert.assertFalse("Unknown key should not be cached", cache.contains("unknown"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIdleLayerClosed() {
+		List<URLClassLoader> layers = new ArrayList<>();
+		for (int i = 0; i <= DependencyLayerCache.MAX_IDLE_LAYERS; i++) {
+			layers.add(cache.getLayer("layer" + i, jars));
+		}
+		// Release the first layer last so it is the most recently used
+		for (int i = 1; i <= DependencyLayerCache.MAX_IDLE_LAYERS; i++) {
+			cache.release("layer" + i);
+		}
+		Assert.assertTrue("Idle layers up to the limit should be kept", cache.contains("layer1"));
+		cache.release("layer0");
+		Assert.assertFalse("Least recently used idle layer should be closed", cache.contains("layer1"));
+		Assert.assertNull("Evicted layer should be closed", layers.get(1).getResource(RESOURCE));
+		Assert.assertTrue("Most recently used idle layer should be kept", cache.contains("layer0"));
+		for (int i = 2; i <= DependencyLayerCache.MAX_IDLE_LAYERS; i++) {
+			Assert.assertTrue("Idle layer [" + i + "] should be kept", cache.contains("layer" + i));
+		}
+	}
+
+	@Test
+	public void testProviderClassLoaderReleasesLayer() throws IOException {
+		URLClassLoader layer = CrossStateUtil.acquireLayer(session, "provider", jars);
+		URLClassLoader loader = new URLClassLoader(new URL[]{createJar("project.jar")}, layer);
+		CrossStateUtil.addProviderClassLoader("test-provider", loader, "provider");
+		CrossStateUtil.releaseProviderClassLoader("test-provider");
+		Assert.assertNull("Provider class loader should be closed", loader.findResource(RESOURCE));
+		CrossStateUtil.closeIdleLayers();
+		Assert.assertFalse("Released layer should be idle", CrossStateUtil.containsLayer("provider"));
+	}
+
+	@Test
+	public void testProviderClassLoaderReplaced() throws IOException {
+		URLClassLoader layer = CrossStateUtil.acquireLayer(session, "replaced", jars);
+		URLClassLoader first = new URLClassLoader(new URL[]{createJar("first.jar")}, layer);
+		CrossStateUtil.addProviderClassLoader("test-replaced", first, "replaced");
+		CrossStateUtil.acquireLayer(session, "replaced", jars);
+		URLClassLoader second = new URLClassLoader(new URL[]{createJar("second.jar")}, layer);
+		CrossStateUtil.addProviderClassLoader("test-replaced", second, "replaced");
+		Assert.assertNull("Replaced provider class loader should be closed", first.findResource(RESOURCE));
+		CrossStateUtil.closeIdleLayers();
+		Assert.assertTrue("Layer used by the new provider class loader should be kept", CrossStateUtil.containsLayer("replaced"));
+		CrossStateUtil.releaseProviderClassLoader("test-replaced");
+		CrossStateUtil.closeIdleLayers();
+		Assert.assertFalse("Released layer should be idle", CrossStateUtil.containsLayer("replaced"));
+	}
+
+	@Test
+	public void testIdleLayersOfEarlierSessionClosed() {
+		URLClassLoader idle = addProvider(session, "test-earlier-idle", "earlier-idle");
+		addProvider(session, "test-earlier-used", "earlier-used");
+		CrossStateUtil.releaseProviderClassLoader("test-earlier-idle");
+		addProvider(session, "test-current", "current");
+		Assert.assertTrue("Idle layer should be kept for the same session", CrossStateUtil.containsLayer("earlier-idle"));
+		addProvider(createSession(), "test-later", "later");
+		Assert.assertFalse("Idle layer of an earlier session should be closed", CrossStateUtil.containsLayer("earlier-idle"));
+		Assert.assertNull("Idle layer of an earlier session should be closed", idle.getResource(RESOURCE));
+		Assert.assertTrue("Layer still used by a provider should be kept", CrossStateUtil.containsLayer("earlier-used"));
+		for (String id : new String[]{"test-earlier-used", "test-current", "test-later"}) {
+			CrossStateUtil.releaseProviderClassLoader(id);
+		}
+	}
+
+	/**
+	 * @param mavenSession the Maven session starting the provider
+	 * @param id the provider id
+	 * @param key the dependency layer key
+	 * @return the dependency layer used by the provider
+	 */
+	private URLClassLoader addProvider(final MavenSession mavenSession, final String id, final String key) {
+		URLClassLoader layer = CrossStateUtil.acquireLayer(mavenSession, key, jars);
+		CrossStateUtil.addProviderClassLoader(id, new URLClassLoader(new URL[0], layer), key);
+		return layer;
+	}
+
+	/**
+	 * @return a new Maven session
+	 */
+	private static MavenSession createSession() {
+		return new MavenSession(null, null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult());
+	}
+
+	/**
+	 * @param name the jar name
+	 * @return the URL of a jar holding the test resource
+	 * @throws IOException an IO Exception
+	 */
+	private URL createJar(final String name) throws IOException {
+		File jar = folder.newFile(name);
+		try (OutputStream out = Files.newOutputStream(jar.toPath()); JarOutputStream zip = new JarOutputStream(out)) {
+			zip.putNextEntry(new ZipEntry(RESOURCE));
+			zip.write("test".getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		return jar.toURI().toURL();
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link JarIndexBuilder}.
+ */
+public class JarIndexBuilderTest {
+
+	private static final String SCI_SERVICE = "META-INF/services/javax.servlet.ServletContainerInitializer";
+	private static final String RUNTIME = "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File classes;
+
+	@Before
+	public void compileClasses() throws IOException {
+		File src = folder.newFolder("src");
+		classes = folder.newFolder("classes");
+		List<String> files = new ArrayList<>();
+		files.add(writeSource(src, "javax.servlet.annotation.HandlesTypes", RUNTIME + " public @interface HandlesTypes { Class<?>[] value(); }"));
+		files.add(writeSource(src, "javax.servlet.annotation.WebServlet", RUNTIME + " public @interface WebServlet { String[] value(); }"));
+		files.add(writeSource(src, "app.Handled", "public interface Handled { }"));
+		files.add(writeSource(src, "app.Initializer", "@javax.servlet.annotation.HandlesTypes({Handled.class}) public class Initializer {"
+				+ " private static final long BIG = 1L; private static final double RATIO = 0.5; private final String name = \"init\"; }"));
+		files.add(writeSource(src, "lib.Base", "public abstract class Base implements app.Handled { }"));
+		files.add(writeSource(src, "sub.Impl", "public class Impl extends lib.Base { }"));
+		files.add(writeSource(src, "web.MyServlet", "@javax.servlet.annotation.WebServlet(\"/my\") public class MyServlet { }"));
+		files.add(writeSource(src, "plain.Util", "public class Util { public Runnable task() { return () -> { }; } }"));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assert.assertNotNull("Tests need a JDK to compile the test classes", compiler);
+		List<String> args = new ArrayList<>(Arrays.asList("-d", classes.getAbsolutePath()));
+		args.addAll(files);
+		Assert.assertEquals("Test classes should compile", 0, compiler.run(null, null, null, args.toArray(new String[]{})));
+	}
+
+	@Test
+	public void testFlags() throws IOException {
+		Map<String, Set<Character>> index = build(createJars());
+		Assert.assertEquals("Initializer jar should be flagged", flags('A', 'S'), index.get("init.jar"));
+		Assert.assertEquals("Jar with a sub type of a handled type should be flagged", flags('A'), index.get("base.jar"));
+		Assert.assertEquals("Jar with a sub type of a sub type in another jar should be flagged", flags('A'), index.get("sub.jar"));
+		Assert.assertEquals("Jar with an annotated servlet should be flagged", flags('A'), index.get("servlet.jar"));
+		Assert.assertEquals("Jar with a TLD should be flagged", flags('T'), index.get("tld.jar"));
+		Assert.assertEquals("Jar with a web fragment and resources should be flagged", flags('F', 'R'), index.get("fragment.jar"));
+		Assert.assertEquals("Jar with nothing relevant should have no flags", flags(), index.get("plain.jar"));
+	}
+
+	@Test
+	public void testInitializerInClassesDirectory() throws IOException {
+		File dir = folder.newFolder("webapp-classes");
+		copyClass(dir, "app/Initializer");
+		Path service = dir.toPath().resolve(SCI_SERVICE);
+		Files.createDirectories(service.getParent());
+		Files.write(service, "# Initializer\napp.Initializer\n".getBytes(StandardCharsets.UTF_8));
+		List<File> files = new ArrayList<>();
+		files.add(dir);
+		files.add(createJar("api.jar", Collections.singletonMap("app/Handled.class", classBytes("app/Handled"))));
+		files.add(createJar("base.jar", Collections.singletonMap("lib/Base.class", classBytes("lib/Base"))));
+		files.add(createJar("plain.jar", Collections.singletonMap("plain/Util.class", classBytes("plain/Util"))));
+		Map<String, Set<Character>> index = build(files);
+		Assert.assertEquals("Directories should not be indexed", 3, index.size());
+		Assert.assertEquals("Jar with a sub type of the handled type should be flagged", flags('A'), index.get("base.jar"));
+		Assert.assertEquals("Jar with nothing relevant should have no flags", flags(), index.get("plain.jar"));
+	}
+
+	@Test
+	public void testUnreadableInitializerFlagsAll() throws IOException {
+		List<File> files = new ArrayList<>();
+		files.add(createJar("broken.jar", Collections.singletonMap(SCI_SERVICE, "missing.Initializer\n".getBytes(StandardCharsets.UTF_8))));
+		files.add(createJar("plain.jar", Collections.singletonMap("plain/Util.class", classBytes("plain/Util"))));
+		Map<String, Set<Character>> index = build(files);
+		Assert.assertEquals("Every jar should be flagged when an initializer cannot be read", flags('A'), index.get("plain.jar"));
+	}
+
+	@Test
+	public void testInvalidClassIgnored() throws IOException {
+		List<File> files = new ArrayList<>();
+		files.add(createJar("invalid.jar", Collections.singletonMap("bad/Bad.class", new byte[]{(byte) 0xCA, (byte) 0xFE, 0})));
+		Assert.assertEquals("Invalid class should be ignored", flags(), build(files).get("invalid.jar"));
+	}
+
+	@Test
+	public void testWrite() throws IOException {
+		List<File> jars = createJars();
+		JarIndexBuilder builder = new JarIndexBuilder();
+		builder.build(jars);
+		Path file = folder.getRoot().toPath().resolve("target").resolve("lde-jar-index.properties");
+		builder.write(file);
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			props.load(in);
+		}
+		Assert.assertEquals("Index should have the version", JarIndexBuilder.VERSION, props.getProperty(JarIndexBuilder.VERSION_KEY));
+		Assert.assertEquals("Index should have each jar", jars.size() + 1, props.size());
+		File tld = new File(folder.getRoot(), "tld.jar");
+		Assert.assertEquals("Index entry should have the flags and the size, last modified and path of the jar",
+				"T|" + tld.length() + "|" + tld.lastModified() + "|" + tld.getAbsolutePath(), props.getProperty("tld.jar"));
+		Assert.assertEquals("Relevant count should exclude jars without flags", jars.size() - 1, builder.getRelevantCount());
+	}
+
+	/**
+	 * @param files the class path
+	 * @return the index built
+	 * @throws IOException an IO exception building the index
+	 */
+	private static Map<String, Set<Character>> build(final List<File> files) throws IOException {
+		JarIndexBuilder builder = new JarIndexBuilder();
+		builder.build(files);
+		return builder.getIndex();
+	}
+
+	/**
+	 * @return the jars of a web app with an initializer and one relevant item each, plus a jar with nothing relevant
+	 * @throws IOException an IO exception creating the jars
+	 */
+	private List<File> createJars() throws IOException {
+		List<File> jars = new ArrayList<>();
+		Map<String, byte[]> init = new LinkedHashMap<>();
+		init.put("app/Initializer.class", classBytes("app/Initializer"));
+		init.put("app/Handled.class", classBytes("app/Handled"));
+		init.put(SCI_SERVICE, "app.Initializer\n".getBytes(StandardCharsets.UTF_8));
+		jars.add(createJar("init.jar", init));
+		jars.add(createJar("base.jar", Collections.singletonMap("lib/Base.class", classBytes("lib/Base"))));
+		jars.add(createJar("sub.jar", Collections.singletonMap("sub/Impl.class", classBytes("sub/Impl"))));
+		jars.add(createJar("servlet.jar", Collections.singletonMap("web/MyServlet.class", classBytes("web/MyServlet"))));
+		jars.add(createJar("tld.jar", Collections.singletonMap("META-INF/my.tld", "<taglib/>".getBytes(StandardCharsets.UTF_8))));
+		Map<String, byte[]> fragment = new LinkedHashMap<>();
+		fragment.put("META-INF/web-fragment.xml", "<web-fragment/>".getBytes(StandardCharsets.UTF_8));
+		fragment.put("META-INF/resources/index.html", "<html/>".getBytes(StandardCharsets.UTF_8));
+		jars.add(createJar("fragment.jar", fragment));
+		jars.add(createJar("plain.jar", Collections.singletonMap("plain/Util.class", classBytes("plain/Util"))));
+		return jars;
+	}
+
+	/**
+	 * @param values the flags
+	 * @return the set of flags
+	 */
+	private static Set<Character> flags(final Character... values) {
+		return new TreeSet<>(Arrays.asList(values));
+	}
+
+	/**
+	 * @param name the internal class name
+	 * @return the compiled class
+	 * @throws IOException an IO exception reading the class
+	 */
+	private byte[] classBytes(final String name) throws IOException {
+		return Files.readAllBytes(new File(classes, name + ".class").toPath());
+	}
+
+	/**
+	 * @param dir the directory to copy the class to
+	 * @param name the internal class name
+	 * @throws IOException an IO exception copying the class
+	 */
+	private void copyClass(final File dir, final String name) throws IOException {
+		Path target = dir.toPath().resolve(name + ".class");
+		Files.createDirectories(target.getParent());
+		Files.write(target, classBytes(name));
+	}
+
+	/**
+	 * @param dir the source directory
+	 * @param className the class name
+	 * @param body the class declaration
+	 * @return the source file path
+	 * @throws IOException an IO exception writing the source
+	 */
+	private static String writeSource(final File dir, final String className, final String body) throws IOException {
+		int idx = className.lastIndexOf('.');
+		Path file = dir.toPath().resolve(className.replace('.', '/') + ".java");
+		Files.createDirectories(file.getParent());
+		Files.write(file, ("package " + className.substring(0, idx) + ";\n" + body + "\n").getBytes(StandardCharsets.UTF_8));
+		return file.toString();
+	}
+
+	/**
+	 * @param name the jar name
+	 * @param entries the jar entries and their content
+	 * @return the jar
+	 * @throws IOException an IO exception creating the jar
+	 */
+	private File createJar(final String name, final Map<String, byte[]> entries) throws IOException {
+		File jar = folder.newFile(name);
+		try (OutputStream out = Files.newOutputStream(jar.toPath()); JarOutputStream zip = new JarOutputStream(out)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				zip.putNextEntry(new ZipEntry(entry.getKey()));
+				zip.write(entry.getValue());
+				zip.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+}
@@ -0,0 +1,313 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LoadClient}.
+ */
+public class LoadClientTest {
+
+	private static final int TIMEOUT_MILLIS = 5000;
+	private static final String OK = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello";
+
+	private ScriptedServer server;
+	private LoadClient client;
+	private URI uri;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ScriptedServer();
+		client = new LoadClient(TIMEOUT_MILLIS);
+		uri = URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + "/app/index.html?q=1");
+	}
+
+	@After
+	public void stopServer() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testContentLength() throws IOException {
+		server.reply(OK);
+		server.reply("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n");
+		Assert.assertEquals("First response status should be read", 200, client.get(uri));
+		Assert.assertEquals("Second response status should be read", 404, client.get(uri));
+		Assert.assertEquals("Connection should be kept alive", 1, client.getConnections());
+		Assert.assertEquals("Request should have the path and query", "GET /app/index.html?q=1 HTTP/1.1", server.getRequestLines().get(0));
+	}
+
+	@Test
+	public void testChunked() throws IOException {
+		server.reply("HTTP/1.1 201 Created\r\nTransfer-Encoding: chunked\r\n\r\n5;ext=1\r\nhello\r\n6\r\n world\r\n0\r\nTrailer: x\r\n\r\n");
+		server.reply(OK);
+		Assert.assertEquals("Chunked response status should be read", 201, client.get(uri));
+		Assert.assertEquals("Response after the chunked body should be read", 200, client.get(uri));
+		Assert.assertEquals("Connection should be kept alive after a chunked body", 1, client.getConnections());
+	}
+
+	@Test
+	public void testStaleKeepAliveRetried() throws IOException {
+		server.reply(OK);
+		// The server closes the idle connection instead of answering the next request
+		server.close(null);
+		server.reply(OK);
+		Assert.assertEquals("First response status should be read", 200, client.get(uri));
+		Assert.assertEquals("Request on a stale connection should be retried", 200, client.get(uri));
+		Assert.assertEquals("Retry should open a new connection", 2, client.getConnections());
+	}
+
+	@Test
+	public void testStaleNewConnectionNotRetried() {
+		server.close(null);
+		assertFails("Closed new connection should not be retried", EOFException.class);
+		Assert.assertEquals("Request on a new connection should not be retried", 1, client.getConnections());
+	}
+
+	@Test
+	public void testConnectionClose() throws IOException {
+		server.close("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 5\r\n\r\nhello");
+		server.reply(OK);
+		Assert.assertEquals("First response status should be read", 200, client.get(uri));
+		Assert.assertEquals("Second response status should be read", 200, client.get(uri));
+		Assert.assertEquals("Connection closed by the server should be reopened", 2, client.getConnections());
+	}
+
+	@Test
+	public void testBodyUntilClose() throws IOException {
+		server.close("HTTP/1.0 200 OK\r\n\r\nbody until the connection closes");
+		server.reply(OK);
+		Assert.assertEquals("Response without a length should be read", 200, client.get(uri));
+		Assert.assertEquals("Next response status should be read", 200, client.get(uri));
+		Assert.assertEquals("Connection should be reopened after a body that ends at close", 2, client.getConnections());
+	}
+
+	@Test
+	public void testMalformedStatusLine() throws IOException {
+		server.reply("NOT-HTTP\r\n\r\n");
+		server.reply(OK);
+		assertFails("Invalid status line should fail", IOException.class);
+		Assert.assertEquals("Client should reconnect after a malformed response", 200, client.get(uri));
+		Assert.assertEquals("Connection should be reopened after a malformed response", 2, client.getConnections());
+	}
+
+	@Test
+	public void testInvalidStatus() {
+		server.reply("HTTP/1.1 OK\r\n\r\n");
+		assertFails("Invalid status should fail", IOException.class);
+	}
+
+	@Test
+	public void testInvalidContentLength() {
+		server.reply("HTTP/1.1 200 OK\r\nContent-Length: five\r\n\r\nhello");
+		assertFails("Invalid content length should fail", IOException.class);
+	}
+
+	@Test
+	public void testInvalidChunkSize() {
+		server.reply("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n");
+		assertFails("Invalid chunk size should fail", IOException.class);
+	}
+
+	@Test
+	public void testTruncatedBody() {
+		server.close("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nhel");
+		assertFails("Truncated body should fail", EOFException.class);
+	}
+
+	@Test
+	public void testTruncatedHeaders() {
+		server.close("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n");
+		assertFails("Truncated headers should fail", EOFException.class);
+	}
+
+	/**
+	 * @param message the assertion message
+	 * @param expected the exception expected from the request
+	 */
+	private void assertFails(final String message, final Class<? extends IOException> expected) {
+		try {
+			client.get(uri);
+			Assert.fail(message);
+		} catch (IOException e) {
+			Assert.assertTrue(message + " with " + expected.getSimpleName() + " but was " + e, expected.isInstance(e));
+		}
+	}
+
+	/**
+	 * Local HTTP server that answers each request with the next scripted reply, on any connection.
+	 */
+	private static final class ScriptedServer implements Closeable {
+
+		private final ServerSocket serverSocket;
+		private final BlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+		private final List<String> requestLines = Collections.synchronizedList(new ArrayList<>());
+		private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+
+		/**
+		 * @throws IOException could not listen
+		 */
+		private ScriptedServer() throws IOException {
+			serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			Thread acceptor = new Thread(this::accept, "load-client-test-accept");
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		/**
+		 * @return the port the server listens on
+		 */
+		private int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		/**
+		 * @return the request line of each request received
+		 */
+		private List<String> getRequestLines() {
+			return requestLines;
+		}
+
+		/**
+		 * @param response the response to the next request
+		 */
+		private void reply(final String response) {
+			replies.add(new Reply(response, false));
+		}
+
+		/**
+		 * @param response the response to the next request before closing the connection, or null to close it without a response
+		 */
+		private void close(final String response) {
+			replies.add(new Reply(response, true));
+		}
+
+		@Override
+		public void close() {
+			try {
+				serverSocket.close();
+			} catch (IOException e) {
+				// Ignore, the test has finished
+			}
+			synchronized (sockets) {
+				for (Socket socket : sockets) {
+					closeQuietly(socket);
+				}
+			}
+		}
+
+		/**
+		 * Accept connections until closed.
+		 */
+		private void accept() {
+			while (!serverSocket.isClosed()) {
+				try {
+					Socket socket = serverSocket.accept();
+					sockets.add(socket);
+					Thread handler = new Thread(() -> serve(socket), "load-client-test-serve");
+					handler.setDaemon(true);
+					handler.start();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * @param socket the connection to answer the requests on
+		 */
+		private void serve(final Socket socket) {
+			try {
+				InputStream in = socket.getInputStream();
+				OutputStream out = socket.getOutputStream();
+				String head;
+				while ((head = readHead(in)) != null) {
+					requestLines.add(head.substring(0, head.indexOf("\r\n")));
+					Reply reply = replies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+					if (reply == null) {
+						break;
+					}
+					if (reply.response != null) {
+						out.write(reply.response.getBytes(StandardCharsets.ISO_8859_1));
+						out.flush();
+					}
+					if (reply.closeAfter) {
+						break;
+					}
+				}
+			} catch (IOException e) {
+				// Connection closed by the client
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				closeQuietly(socket);
+			}
+		}
+
+		/**
+		 * @param in the connection input
+		 * @return the request head or null if the connection closed
+		 * @throws IOException could not read the request
+		 */
+		private static String readHead(final InputStream in) throws IOException {
+			StringBuilder head = new StringBuilder();
+			while (head.length() < 4 || !"\r\n\r\n".equals(head.substring(head.length() - 4))) {
+				int read = in.read();
+				if (read < 0) {
+					return null;
+				}
+				head.append((char) read);
+			}
+			return head.toString();
+		}
+
+		/**
+		 * @param socket the socket to close
+		 */
+		private static void closeQuietly(final Socket socket) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Ignore, the connection is no longer used
+			}
+		}
+	}
+
+	/**
+	 * A scripted reply to a request.
+	 */
+	private static final class Reply {
+
+		private final String response;
+		private final boolean closeAfter;
+
+		/**
+		 * @param response the response or null for none
+		 * @param closeAfter true if close the connection after the response
+		 */
+		private Reply(final String response, final boolean closeAfter) {
+			this.response = response;
+			this.closeAfter = closeAfter;
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LoadGenerator}.
+ */
+public class LoadGeneratorTest {
+
+	@Test
+	public void testWorkerStopsAfterConsecutiveErrors() throws IOException, InterruptedException {
+		int port;
+		// Nothing listens on the port once the socket is closed, so each request is refused
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			port = socket.getLocalPort();
+		}
+		URI uri = URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port + "/");
+		LoadGenerator generator = new LoadGenerator(Collections.singletonList(uri), 2, 60000, 0, 0, false, 1000);
+		long start = System.nanoTime();
+		generator.run();
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+		Assert.assertEquals("Each worker should stop after the consecutive errors", 2, generator.getStoppedWorkers());
+		Assert.assertEquals("Each worker should stop at the error limit", 2 * LoadGenerator.MAX_CONSECUTIVE_ERRORS, generator.getErrors());
+		Assert.assertTrue("Workers should back off between errors", elapsedMillis >= 1000);
+		Assert.assertTrue("Workers should stop before the duration", elapsedMillis < 60000);
+		Assert.assertNotNull("Last error should be kept", generator.getLastError());
+	}
+
+}
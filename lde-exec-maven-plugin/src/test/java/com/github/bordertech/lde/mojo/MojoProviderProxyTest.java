@@ -0,0 +1,229 @@
+package com.github.bordertech.lde.mojo;
+
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MojoProviderProxy}.
+ * <p>
+ * The implementation is loaded in a separate class loader, so it implements its own copy of the API, as a provider does.
+ * </p>
+ */
+public class MojoProviderProxyTest {
+
+	private URLClassLoader targetLoader;
+	private Object target;
+	private TestApi proxy;
+
+	@Before
+	public void setup() throws Exception {
+		URL classes = TestApi.class.getProtectionDomain().getCodeSource().getLocation();
+		targetLoader = new URLClassLoader(new URL[]{classes}, null);
+		target = targetLoader.loadClass(TestImpl.class.getName()).getDeclaredConstructor().newInstance();
+		proxy = (TestApi) Proxy.newProxyInstance(TestApi.class.getClassLoader(), new Class<?>[]{TestApi.class}, new MojoProviderProxy(target));
+	}
+
+	@After
+	public void closeLoader() throws Exception {
+		targetLoader.close();
+	}
+
+	@Test
+	public void testImplementationInSeparateClassLoader() {
+		Assert.assertFalse("Implementation should not implement the test copy of the API", target instanceof TestApi);
+	}
+
+	@Test
+	public void testPrimitive() {
+		Assert.assertEquals("Primitive arguments and return should be passed", 5, proxy.add(2, 3));
+	}
+
+	@Test
+	public void testInterfaceReturn() {
+		Greeter greeter = proxy.greeter("Hello");
+		Assert.assertEquals("Returned interface should be bridged", "Hello World", greeter.greet("World"));
+	}
+
+	@Test
+	public void testInterfaceArgument() {
+		Greeter greeter = name -> "Hi " + name;
+		Assert.assertEquals("Interface argument should be bridged", "Hi provider", proxy.callBack(greeter));
+	}
+
+	@Test
+	public void testNullInterface() {
+		Assert.assertNull("Null interface should be passed as null", proxy.greeter(null));
+	}
+
+	@Test
+	public void testMap() {
+		Assert.assertEquals("Map should be passed as is", Collections.singletonMap("requests", 10L), proxy.counts());
+	}
+
+	@Test
+	public void testSerializable() {
+		Snapshot snapshot = proxy.snapshot();
+		Assert.assertEquals("Serializable should be copied", 42, snapshot.getValue());
+	}
+
+	@Test
+	public void testCompletableFuture() throws Exception {
+		CompletableFuture<Snapshot> future = proxy.snapshotAsync();
+		Assert.assertEquals("Future value should be copied", 42, future.get().getValue());
+	}
+
+	@Test
+	public void testExceptionNotWrapped() {
+		try {
+			proxy.fail();
+			Assert.fail("Exception should be thrown");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("Exception should be passed through", "failed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testEquals() {
+		TestApi other = (TestApi) Proxy.newProxyInstance(TestApi.class.getClassLoader(), new Class<?>[]{TestApi.class}, new MojoProviderProxy(target));
+		Assert.assertTrue("Proxy should equal itself", proxy.equals(proxy));
+		Assert.assertFalse("Proxy should not equal another proxy", proxy.equals(other));
+		Assert.assertFalse("Proxy should not equal null", proxy.equals(null));
+	}
+
+	@Test
+	public void testHashCode() {
+		Assert.assertEquals("Hash code should be the implementation hash code", target.hashCode(), proxy.hashCode());
+	}
+
+	/**
+	 * API implemented in a separate class loader.
+	 */
+	public interface TestApi {
+
+		/**
+		 * @param a the first number
+		 * @param b the second number
+		 * @return the sum
+		 */
+		int add(int a, int b);
+
+		/**
+		 * @param greeting the greeting or null
+		 * @return the greeter or null
+		 */
+		Greeter greeter(String greeting);
+
+		/**
+		 * @param greeter the greeter to call
+		 * @return the greeting
+		 */
+		String callBack(Greeter greeter);
+
+		/**
+		 * @return the counts
+		 */
+		Map<String, Long> counts();
+
+		/**
+		 * @return the snapshot
+		 */
+		Snapshot snapshot();
+
+		/**
+		 * @return the future snapshot
+		 */
+		CompletableFuture<Snapshot> snapshotAsync();
+
+		/**
+		 * Always fails.
+		 */
+		void fail();
+	}
+
+	/**
+	 * Interface passed across the class loaders.
+	 */
+	public interface Greeter {
+
+		/**
+		 * @param name the name
+		 * @return the greeting
+		 */
+		String greet(String name);
+	}
+
+	/**
+	 * Serializable value copied across the class loaders.
+	 */
+	public static class Snapshot implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int value;
+
+		/**
+		 * @param value the value
+		 */
+		public Snapshot(final int value) {
+			this.value = value;
+		}
+
+		/**
+		 * @return the value
+		 */
+		public int getValue() {
+			return value;
+		}
+	}
+
+	/**
+	 * Implementation loaded in the separate class loader.
+	 */
+	public static class TestImpl implements TestApi {
+
+		@Override
+		public int add(final int a, final int b) {
+			return a + b;
+		}
+
+		@Override
+		public Greeter greeter(final String greeting) {
+			return greeting == null ? null : name -> greeting + " " + name;
+		}
+
+		@Override
+		public String callBack(final Greeter greeter) {
+			return greeter.greet("provider");
+		}
+
+		@Override
+		public Map<String, Long> counts() {
+			return Collections.singletonMap("requests", 10L);
+		}
+
+		@Override
+		public Snapshot snapshot() {
+			return new Snapshot(42);
+		}
+
+		@Override
+		public CompletableFuture<Snapshot> snapshotAsync() {
+			return CompletableFuture.supplyAsync(this::snapshot);
+		}
+
+		@Override
+		public void fail() {
+			throw new IllegalStateException("failed");
+		}
+	}
+
+}
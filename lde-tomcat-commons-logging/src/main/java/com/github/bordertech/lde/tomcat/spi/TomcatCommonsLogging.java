@@ -1,14 +1,22 @@
 package com.github.bordertech.lde.tomcat.spi;
 
+import com.github.bordertech.lde.tomcat.AsyncLogQueue;
+import com.github.bordertech.lde.tomcat.LogLevelCache;
 import org.apache.commons.logging.LogFactory;
 import org.apache.juli.logging.Log;
 
 /**
  * Commons Logging implementation for JULI.
+ * <p>
+ * The enabled levels are cached (see {@link LogLevelCache}). When async logging is enabled the call to the commons logging logger is made on the
+ * {@link AsyncLogQueue} writer thread, so the logged time and thread name are those of the writer.
+ * </p>
  */
 public class TomcatCommonsLogging implements Log {
 
 	private final org.apache.commons.logging.Log logger;
+	private final LogLevelCache levels;
+	private final AsyncLogQueue queue = AsyncLogQueue.getInstance();
 
 	/**
 	 * Default constructor.
@@ -16,6 +24,7 @@ public class TomcatCommonsLogging implements Log {
 	public TomcatCommonsLogging() {
 		// this constructor is important, otherwise the ServiceLoader cannot start
 		logger = LogFactory.getLog(TomcatCommonsLogging.class);
+		levels = new LogLevelCache(this::getEnabledLevels);
 	}
 
 	/**
@@ -24,96 +33,158 @@ public class TomcatCommonsLogging implements Log {
 	public TomcatCommonsLogging(final String name) {
 		// this constructor is needed by the LogFactory implementation
 		logger = LogFactory.getLog(name);
+		levels = new LogLevelCache(this::getEnabledLevels);
 	}
 
 	@Override
 	public boolean isFatalEnabled() {
-		return logger.isFatalEnabled();
+		return levels.isEnabled(LogLevelCache.FATAL);
 	}
 
 	@Override
 	public boolean isTraceEnabled() {
-		return logger.isTraceEnabled();
+		return levels.isEnabled(LogLevelCache.TRACE);
 	}
 
 	@Override
 	public void fatal(final Object msg) {
-		logger.fatal(msg);
+		if (levels.isEnabled(LogLevelCache.FATAL)) {
+			write(() -> logger.fatal(msg));
+		}
 	}
 
 	@Override
 	public void fatal(final Object msg, final Throwable throwable) {
-		logger.fatal(msg, throwable);
+		if (levels.isEnabled(LogLevelCache.FATAL)) {
+			write(() -> logger.fatal(msg, throwable));
+		}
 	}
 
 	@Override
 	public boolean isDebugEnabled() {
-		return logger.isDebugEnabled();
+		return levels.isEnabled(LogLevelCache.DEBUG);
 	}
 
 	@Override
 	public boolean isErrorEnabled() {
-		return logger.isErrorEnabled();
+		return levels.isEnabled(LogLevelCache.ERROR);
 	}
 
 	@Override
 	public boolean isInfoEnabled() {
-		return logger.isInfoEnabled();
+		return levels.isEnabled(LogLevelCache.INFO);
 	}
 
 	@Override
 	public boolean isWarnEnabled() {
-		return logger.isWarnEnabled();
+		return levels.isEnabled(LogLevelCache.WARN);
 	}
 
 	@Override
 	public void trace(final Object message) {
-		logger.trace(message);
+		if (levels.isEnabled(LogLevelCache.TRACE)) {
+			write(() -> logger.trace(message));
+		}
 	}
 
 	@Override
 	public void trace(final Object message, final Throwable t) {
-		logger.trace(message, t);
+		if (levels.isEnabled(LogLevelCache.TRACE)) {
+			write(() -> logger.trace(message, t));
+		}
 	}
 
 	@Override
 	public void debug(final Object message) {
-		logger.debug(message);
+		if (levels.isEnabled(LogLevelCache.DEBUG)) {
+			write(() -> logger.debug(message));
+		}
 	}
 
 	@Override
 	public void debug(final Object message, final Throwable t) {
-		logger.debug(message, t);
+		if (levels.isEnabled(LogLevelCache.DEBUG)) {
+			write(() -> logger.debug(message, t));
+		}
 	}
 
 	@Override
 	public void info(final Object message) {
-		logger.info(message);
+		if (levels.isEnabled(LogLevelCache.INFO)) {
+			write(() -> logger.info(message));
+		}
 	}
 
 	@Override
 	public void info(final Object message, final Throwable t) {
-		logger.info(message, t);
+		if (levels.isEnabled(LogLevelCache.INFO)) {
+			write(() -> logger.info(message, t));
+		}
 	}
 
 	@Override
 	public void warn(final Object message) {
-		logger.warn(message);
+		if (levels.isEnabled(LogLevelCache.WARN)) {
+			write(() -> logger.warn(message));
+		}
 	}
 
 	@Override
 	public void warn(final Object message, final Throwable t) {
-		logger.warn(message, t);
+		if (levels.isEnabled(LogLevelCache.WARN)) {
+			write(() -> logger.warn(message, t));
+		}
 	}
 
 	@Override
 	public void error(final Object message) {
-		logger.error(message);
+		if (levels.isEnabled(LogLevelCache.ERROR)) {
+			write(() -> logger.error(message));
+		}
 	}
 
 	@Override
 	public void error(final Object message, final Throwable t) {
-		logger.error(message, t);
+		if (levels.isEnabled(LogLevelCache.ERROR)) {
+			write(() -> logger.error(message, t));
+		}
+	}
+
+	/**
+	 * @param write the call to the logger
+	 */
+	private void write(final Runnable write) {
+		if (queue == null) {
+			write.run();
+		} else {
+			queue.offer(write);
+		}
+	}
+
+	/**
+	 * @return the level flags enabled in the logger
+	 */
+	private int getEnabledLevels() {
+		int enabled = 0;
+		if (logger.isTraceEnabled()) {
+			enabled |= LogLevelCache.TRACE;
+		}
+		if (logger.isDebugEnabled()) {
+			enabled |= LogLevelCache.DEBUG;
+		}
+		if (logger.isInfoEnabled()) {
+			enabled |= LogLevelCache.INFO;
+		}
+		if (logger.isWarnEnabled()) {
+			enabled |= LogLevelCache.WARN;
+		}
+		if (logger.isErrorEnabled()) {
+			enabled |= LogLevelCache.ERROR;
+		}
+		if (logger.isFatalEnabled()) {
+			enabled |= LogLevelCache.FATAL;
+		}
+		return enabled;
 	}
 
 }
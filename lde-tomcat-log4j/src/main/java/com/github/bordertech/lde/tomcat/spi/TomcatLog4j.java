@@ -1,15 +1,27 @@
 package com.github.bordertech.lde.tomcat.spi;
 
+import com.github.bordertech.lde.tomcat.AsyncLogQueue;
+import com.github.bordertech.lde.tomcat.LogLevelCache;
 import org.apache.juli.logging.Log;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
 
 /**
  * LOG4J implementation for tomcat juli logging.
+ * <p>
+ * The enabled levels are cached (see {@link LogLevelCache}). When async logging is enabled the event is created on the logging thread, so it keeps
+ * its time, thread name, NDC and MDC, and is passed to the appenders on the {@link AsyncLogQueue} writer thread. Location information (eg %L) is not
+ * available for async events.
+ * </p>
  */
 public class TomcatLog4j implements Log {
 
+	private static final String FQCN = TomcatLog4j.class.getName();
+
 	private final Logger logger;
+	private final LogLevelCache levels;
+	private final AsyncLogQueue queue = AsyncLogQueue.getInstance();
 
 	/**
 	 * Default constructor.
@@ -17,6 +29,7 @@ public class TomcatLog4j implements Log {
 	public TomcatLog4j() {
 		// this constructor is important, otherwise the ServiceLoader cannot start
 		logger = Logger.getLogger(TomcatLog4j.class);
+		levels = new LogLevelCache(this::getEnabledLevels);
 	}
 
 	/**
@@ -25,96 +38,145 @@ public class TomcatLog4j implements Log {
 	public TomcatLog4j(final String name) {
 		// this constructor is needed by the LogFactory implementation
 		logger = Logger.getLogger(name);
+		levels = new LogLevelCache(this::getEnabledLevels);
 	}
 
 	@Override
 	public boolean isFatalEnabled() {
-		return logger.isEnabledFor(Level.FATAL);
+		return levels.isEnabled(LogLevelCache.FATAL);
 	}
 
 	@Override
 	public boolean isTraceEnabled() {
-		return logger.isTraceEnabled();
+		return levels.isEnabled(LogLevelCache.TRACE);
 	}
 
 	@Override
 	public void fatal(final Object msg) {
-		logger.fatal(msg);
+		log(LogLevelCache.FATAL, Level.FATAL, msg, null);
 	}
 
 	@Override
 	public void fatal(final Object msg, final Throwable throwable) {
-		logger.fatal(msg, throwable);
+		log(LogLevelCache.FATAL, Level.FATAL, msg, throwable);
 	}
 
 	@Override
 	public boolean isDebugEnabled() {
-		return logger.isDebugEnabled();
+		return levels.isEnabled(LogLevelCache.DEBUG);
 	}
 
 	@Override
 	public boolean isErrorEnabled() {
-		return logger.isEnabledFor(Level.ERROR);
+		return levels.isEnabled(LogLevelCache.ERROR);
 	}
 
 	@Override
 	public boolean isInfoEnabled() {
-		return logger.isInfoEnabled();
+		return levels.isEnabled(LogLevelCache.INFO);
 	}
 
 	@Override
 	public boolean isWarnEnabled() {
-		return logger.isEnabledFor(Level.WARN);
+		return levels.isEnabled(LogLevelCache.WARN);
 	}
 
 	@Override
 	public void trace(final Object message) {
-		logger.trace(message);
+		log(LogLevelCache.TRACE, Level.TRACE, message, null);
 	}
 
 	@Override
 	public void trace(final Object message, final Throwable t) {
-		logger.trace(message, t);
+		log(LogLevelCache.TRACE, Level.TRACE, message, t);
 	}
 
 	@Override
 	public void debug(final Object message) {
-		logger.debug(message);
+		log(LogLevelCache.DEBUG, Level.DEBUG, message, null);
 	}
 
 	@Override
 	public void debug(final Object message, final Throwable t) {
-		logger.debug(message, t);
+		log(LogLevelCache.DEBUG, Level.DEBUG, message, t);
 	}
 
 	@Override
 	public void info(final Object message) {
-		logger.info(message);
+		log(LogLevelCache.INFO, Level.INFO, message, null);
 	}
 
 	@Override
 	public void info(final Object message, final Throwable t) {
-		logger.info(message, t);
+		log(LogLevelCache.INFO, Level.INFO, message, t);
 	}
 
 	@Override
 	public void warn(final Object message) {
-		logger.warn(message);
+		log(LogLevelCache.WARN, Level.WARN, message, null);
 	}
 
 	@Override
 	public void warn(final Object message, final Throwable t) {
-		logger.warn(message, t);
+		log(LogLevelCache.WARN, Level.WARN, message, t);
 	}
 
 	@Override
 	public void error(final Object message) {
-		logger.error(message);
+		log(LogLevelCache.ERROR, Level.ERROR, message, null);
 	}
 
 	@Override
 	public void error(final Object message, final Throwable t) {
-		logger.error(message, t);
+		log(LogLevelCache.ERROR, Level.ERROR, message, t);
+	}
+
+	/**
+	 * @param flag the level flag
+	 * @param level the LOG4J level
+	 * @param message the message
+	 * @param t the throwable or null
+	 */
+	private void log(final int flag, final Level level, final Object message, final Throwable t) {
+		if (!levels.isEnabled(flag)) {
+			return;
+		}
+		if (queue == null) {
+			logger.log(FQCN, level, message, t);
+			return;
+		}
+		LoggingEvent event = new LoggingEvent(FQCN, logger, level, message, t);
+		// Capture the thread name, NDC and MDC of the logging thread before the event is handed to the writer thread
+		event.getThreadName();
+		event.getNDC();
+		event.getMDCCopy();
+		queue.offer(() -> logger.callAppenders(event));
+	}
+
+	/**
+	 * @return the level flags enabled in the logger
+	 */
+	private int getEnabledLevels() {
+		int enabled = 0;
+		if (logger.isTraceEnabled()) {
+			enabled |= LogLevelCache.TRACE;
+		}
+		if (logger.isDebugEnabled()) {
+			enabled |= LogLevelCache.DEBUG;
+		}
+		if (logger.isInfoEnabled()) {
+			enabled |= LogLevelCache.INFO;
+		}
+		if (logger.isEnabledFor(Level.WARN)) {
+			enabled |= LogLevelCache.WARN;
+		}
+		if (logger.isEnabledFor(Level.ERROR)) {
+			enabled |= LogLevelCache.ERROR;
+		}
+		if (logger.isEnabledFor(Level.FATAL)) {
+			enabled |= LogLevelCache.FATAL;
+		}
+		return enabled;
 	}
 
 }
@@ -0,0 +1,503 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Write access log lines to a file in batches on a background thread.
+ * <p>
+ * Lines are formatted straight into one of two reusable direct buffers. A request thread {@link #claim(int)}s space in the active buffer by moving
+ * the buffer's reserved offset on with a compare and set, formats the line into its space without holding a lock and {@link #release(ByteBuffer)}s
+ * it. Each line is preceded by a small header with the space claimed and the length of the line, so a line shorter than its claim leaves no gap in
+ * the file.
+ * </p>
+ * <p>
+ * The writer thread swaps the buffers when the active buffer is half full or the flush period has passed. It then seals the full buffer so no more
+ * space can be claimed in it, waits for the lines being formatted in it to be released, and writes the lines through a {@link FileChannel} while the
+ * request threads fill the other buffer. A request thread only takes a lock, and waits, if the active buffer fills before the writer has finished
+ * writing the last batch. A claimed line must always be released, or the writer waits for it forever.
+ * </p>
+ * <p>
+ * The file is rotated before a batch that would take it over the rotate size, and when the rotate interval has passed. The rotated file is renamed
+ * with the time it was rotated, eg "access.log.20261018-000125". Batches only hold whole lines so a line is never split across files.
+ * </p>
+ * <p>
+ * A batch that could not be written is dropped and counted (see {@link #getErrors()}), and the file is opened again for the next batch. The writer
+ * can be started again once closed.
+ * </p>
+ */
+public class AccessLogWriter implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(AccessLogWriter.class);
+	private static final DateTimeFormatter ROTATE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+	private static final long CLOSE_WAIT_MILLIS = 5000;
+	/**
+	 * The header of each line is the space claimed, the length of the line and the buffer it was claimed in.
+	 */
+	private static final int HEADER = 12;
+
+	private final Path file;
+	private final long flushNanos;
+	private final long rotateBytes;
+	private final long rotateMillis;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition spaceAvailable = lock.newCondition();
+	private final int wakeThreshold;
+	private final LongAdder lines = new LongAdder();
+	private final LongAdder waits = new LongAdder();
+	private final Segment[] segments = new Segment[2];
+	private volatile Segment active;
+	private Segment batch;
+	private volatile boolean running;
+
+	private volatile Thread writer;
+	private FileChannel channel;
+	private long fileSize;
+	private long nextRotation;
+	private boolean failing;
+	private volatile long bytesWritten;
+	private volatile long rotations;
+	private volatile long errors;
+
+	/**
+	 * @param file the access log file
+	 * @param bufferSize the size of each of the two buffers in bytes
+	 * @param flushMillis the longest time in milliseconds a line waits before it is written
+	 * @param rotateBytes the size in bytes to rotate the file at or 0 to not rotate on size
+	 * @param rotateMillis the interval in milliseconds to rotate the file at or 0 to not rotate on time
+	 */
+	public AccessLogWriter(final Path file, final int bufferSize, final long flushMillis, final long rotateBytes, final long rotateMillis) {
+		this.file = file;
+		this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushMillis));
+		this.rotateBytes = rotateBytes;
+		this.rotateMillis = rotateMillis;
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment(i, Math.max(bufferSize, HEADER + 1));
+		}
+		this.active = segments[0];
+		this.batch = segments[1];
+		this.wakeThreshold = bufferSize / 2;
+	}
+
+	/**
+	 * Open the file and start the writer thread.
+	 *
+	 * @throws IOException could not open the file
+	 */
+	public void start() throws IOException {
+		openFile();
+		active.reset();
+		batch.reset();
+		Thread thread = new Thread(this::drain, "lde-access-log");
+		thread.setDaemon(true);
+		writer = thread;
+		running = true;
+		thread.start();
+	}
+
+	/**
+	 * Claim space in the active buffer for a line.
+	 * <p>
+	 * The returned buffer is a view of the claimed space, positioned at the start of the line and limited to <code>maxLength</code> bytes. The line
+	 * is put in it and the buffer passed to {@link #release(ByteBuffer)}, on any thread.
+	 * </p>
+	 *
+	 * @param maxLength the most bytes the line can take
+	 * @return the buffer to put the line in or null if the writer has been closed
+	 */
+	public ByteBuffer claim(final int maxLength) {
+		while (running) {
+			Segment segment = active;
+			int size = Math.min(maxLength + HEADER, segment.capacity);
+			int start = segment.reserve(size);
+			if (start >= 0) {
+				if (start < wakeThreshold && start + size >= wakeThreshold) {
+					LockSupport.unpark(writer);
+				}
+				return segment.view(start, size);
+			}
+			if (start == Segment.FULL) {
+				awaitSpace(segment);
+			} else {
+				// Sealed by the writer, which has already made the other buffer active
+				Thread.yield();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Release a line claimed by {@link #claim(int)}. The line is the bytes put in the buffer.
+	 *
+	 * @param line the buffer returned by the claim
+	 */
+	public void release(final ByteBuffer line) {
+		line.putInt(Integer.BYTES, line.position() - HEADER);
+		lines.increment();
+		segments[line.getInt(2 * Integer.BYTES)].release(line.getInt(0));
+	}
+
+	/**
+	 * @return the number of lines logged
+	 */
+	public long getLines() {
+		return lines.sum();
+	}
+
+	/**
+	 * @return the number of times a request thread waited for space in the buffer
+	 */
+	public long getWaits() {
+		return waits.sum();
+	}
+
+	/**
+	 * @return the number of bytes written to the file
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return the number of times the file has been rotated
+	 */
+	public long getRotations() {
+		return rotations;
+	}
+
+	/**
+	 * @return the number of batches that could not be written
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Write the buffered lines, stop the writer thread and close the file. Lines logged after this are ignored.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			if (!running) {
+				return;
+			}
+			running = false;
+			spaceAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		Thread thread = writer;
+		if (thread == null) {
+			return;
+		}
+		LockSupport.unpark(thread);
+		try {
+			thread.join(CLOSE_WAIT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wait for the writer to swap out a full buffer.
+	 *
+	 * @param segment the full buffer
+	 */
+	private void awaitSpace(final Segment segment) {
+		lock.lock();
+		try {
+			if (running && active == segment) {
+				waits.increment();
+				LockSupport.unpark(writer);
+				spaceAvailable.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Write batches until closed.
+	 */
+	private void drain() {
+		boolean stop = false;
+		while (!stop) {
+			// A request thread waiting for space may have woken the writer while the last batch was being written
+			if (running && active.getReserved() < wakeThreshold && !hasSpaceWaiters()) {
+				LockSupport.parkNanos(this, flushNanos);
+			}
+			stop = !running;
+			// Swap the buffers so the request threads fill the empty one
+			Segment full = active;
+			active = batch;
+			batch = full;
+			int end = full.seal();
+			lock.lock();
+			try {
+				spaceAvailable.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			writeBatch(full, end);
+		}
+		// Lines claimed in the other buffer while closing
+		Segment last = active;
+		writeBatch(last, last.seal());
+		closeFile();
+	}
+
+	/**
+	 * @return true if a request thread is waiting for space
+	 */
+	private boolean hasSpaceWaiters() {
+		lock.lock();
+		try {
+			return lock.hasWaiters(spaceAvailable);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Write the lines of a sealed buffer to the file, rotating it first if needed.
+	 *
+	 * @param segment the sealed buffer
+	 * @param end the end of the space claimed in the buffer
+	 */
+	private void writeBatch(final Segment segment, final int end) {
+		segment.awaitReleased(end);
+		ByteBuffer data = segment.compact(end);
+		try {
+			if (!data.hasRemaining()) {
+				return;
+			}
+			// Open the file again after a failed batch
+			if (channel == null) {
+				openFile();
+			}
+			if (isRotateDue(data.remaining())) {
+				rotate();
+			}
+			int size = data.remaining();
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+			fileSize += size;
+			bytesWritten += size;
+			failing = false;
+		} catch (IOException e) {
+			errors++;
+			// Only log the first of a run of failures
+			if (!failing) {
+				LOG.error("Could not write access log [" + file + "]. " + e.getMessage(), e);
+			}
+			failing = true;
+			closeFile();
+		} finally {
+			segment.reset();
+		}
+	}
+
+	/**
+	 * @param size the size of the next batch
+	 * @return true if the file should be rotated before the batch is written
+	 */
+	private boolean isRotateDue(final int size) {
+		if (rotateMillis > 0 && System.currentTimeMillis() >= nextRotation) {
+			return true;
+		}
+		return rotateBytes > 0 && fileSize > 0 && fileSize + size > rotateBytes;
+	}
+
+	/**
+	 * Rename the file with the time and open a new file.
+	 *
+	 * @throws IOException could not rotate the file
+	 */
+	private void rotate() throws IOException {
+		closeFile();
+		if (fileSize > 0) {
+			String name = file.getFileName() + "." + LocalDateTime.now().format(ROTATE_SUFFIX);
+			Path target = file.resolveSibling(name);
+			for (int i = 1; Files.exists(target); i++) {
+				target = file.resolveSibling(name + "-" + i);
+			}
+			Files.move(file, target);
+			rotations++;
+		}
+		openFile();
+	}
+
+	/**
+	 * Open the file for append.
+	 *
+	 * @throws IOException could not open the file
+	 */
+	private void openFile() throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null) {
+			Files.createDirectories(dir);
+		}
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		fileSize = channel.size();
+		nextRotation = rotateMillis > 0 ? System.currentTimeMillis() + rotateMillis : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Close the file.
+	 */
+	private void closeFile() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LOG.warn("Could not close access log [" + file + "]. " + e.getMessage());
+		}
+		channel = null;
+	}
+
+	/**
+	 * One of the two buffers, with the offset claimed up to and the space released so far.
+	 */
+	private static final class Segment {
+
+		/**
+		 * Returned by {@link #reserve(int)} when the buffer does not have the space.
+		 */
+		private static final int FULL = -1;
+		/**
+		 * Returned by {@link #reserve(int)} when the buffer has been sealed by the writer.
+		 */
+		private static final int SEALED = -2;
+
+		private final int index;
+		private final ByteBuffer data;
+		private final int capacity;
+		private final AtomicInteger reserved = new AtomicInteger();
+		private final AtomicInteger released = new AtomicInteger();
+
+		/**
+		 * @param index the index of the buffer in the writer
+		 * @param capacity the buffer size in bytes
+		 */
+		private Segment(final int index, final int capacity) {
+			this.index = index;
+			this.data = ByteBuffer.allocateDirect(capacity);
+			this.capacity = capacity;
+		}
+
+		/**
+		 * @param size the space to claim
+		 * @return the start of the space claimed, or {@link #FULL} or {@link #SEALED}
+		 */
+		private int reserve(final int size) {
+			while (true) {
+				int start = reserved.get();
+				if (start < 0) {
+					return SEALED;
+				}
+				if (start + size > capacity) {
+					return FULL;
+				}
+				if (reserved.compareAndSet(start, start + size)) {
+					return start;
+				}
+			}
+		}
+
+		/**
+		 * @param start the start of the claimed space
+		 * @param size the size of the claimed space
+		 * @return a view of the claimed space, with its header put and positioned after it
+		 */
+		private ByteBuffer view(final int start, final int size) {
+			ByteBuffer view = data.duplicate();
+			view.limit(start + size).position(start);
+			ByteBuffer line = view.slice();
+			line.putInt(size).putInt(0).putInt(index);
+			return line;
+		}
+
+		/**
+		 * @param size the size of the space claimed by a line that has been put
+		 */
+		private void release(final int size) {
+			released.addAndGet(size);
+		}
+
+		/**
+		 * @return the offset claimed up to, or negative if sealed
+		 */
+		private int getReserved() {
+			return reserved.get();
+		}
+
+		/**
+		 * Stop more space being claimed.
+		 *
+		 * @return the end of the space claimed
+		 */
+		private int seal() {
+			return reserved.getAndSet(Integer.MIN_VALUE);
+		}
+
+		/**
+		 * @param end the end of the space claimed
+		 */
+		private void awaitReleased(final int end) {
+			while (released.get() < end) {
+				Thread.yield();
+			}
+		}
+
+		/**
+		 * Move the lines together over their headers and unused space.
+		 *
+		 * @param end the end of the space claimed
+		 * @return the lines to write
+		 */
+		private ByteBuffer compact(final int end) {
+			int to = 0;
+			for (int from = 0; from < end;) {
+				int size = data.getInt(from);
+				int length = data.getInt(from + Integer.BYTES);
+				for (int i = 0; i < length; i++) {
+					data.put(to + i, data.get(from + HEADER + i));
+				}
+				to += length;
+				from += size;
+			}
+			data.limit(to).position(0);
+			return data;
+		}
+
+		/**
+		 * Empty the buffer so it can be claimed again.
+		 */
+		private void reset() {
+			data.clear();
+			released.set(0);
+			reserved.set(0);
+		}
+	}
+
+}
@@ -0,0 +1,255 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue of log writes drained by a background writer thread.
+ * <p>
+ * Used by the TOMCAT logging bridges so a request thread only hands over the log event and does not wait on the appender lock or disk. Logging
+ * threads claim a slot in the ring buffer with a single compare and set. The writer thread parks when the buffer is empty, and the logging thread
+ * that finds the writer parked wakes it once its event is in the buffer, so an idle queue does not keep waking the writer.
+ * </p>
+ * <p>
+ * When the buffer is full the event is either dropped and counted, or the logging thread waits for space. Events logged by the writer thread itself
+ * (eg an appender logging an error), and while the queue is not started, are written straight away.
+ * </p>
+ * <p>
+ * The writer thread is started with the first provider (see {@link #start()}) and the queue is closed, and the remaining events written, when the
+ * last provider stops or the JVM shuts down. Nothing is left running once the providers have stopped, so the queue does not keep the provider class
+ * loader alive.
+ * </p>
+ */
+public final class AsyncLogQueue {
+
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long CLOSE_WAIT_MILLIS = 5000;
+
+	private static final AsyncLogQueue INSTANCE = TomcatConfigUtil.isAsyncLoggingEnabled()
+			? new AsyncLogQueue(TomcatConfigUtil.getAsyncLoggingBufferSize(), TomcatConfigUtil.isAsyncLoggingBlockOnOverflow()) : null;
+
+	private final Runnable[] slots;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final boolean blockOnOverflow;
+	private final AtomicLong tail = new AtomicLong();
+	private final LongAdder dropped = new LongAdder();
+	private volatile Thread writer;
+	private volatile boolean running;
+	private volatile boolean idle;
+	private long head;
+	// Guarded by this queue
+	private Thread shutdownHook;
+	private int users;
+
+	/**
+	 * @param size the number of events the buffer holds, rounded up to a power of two
+	 * @param blockOnOverflow true if wait for space when the buffer is full, otherwise drop the event
+	 */
+	public AsyncLogQueue(final int size, final boolean blockOnOverflow) {
+		int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+		this.slots = new Runnable[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+		this.mask = capacity - 1;
+		this.blockOnOverflow = blockOnOverflow;
+	}
+
+	/**
+	 * @return the shared queue used by the logging bridges or null if async logging is disabled
+	 */
+	public static AsyncLogQueue getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Queue a log write.
+	 *
+	 * @param write the log write
+	 * @return true if the write was queued or written, false if it was dropped
+	 */
+	public boolean offer(final Runnable write) {
+		if (!running || Thread.currentThread() == writer) {
+			write.run();
+			return true;
+		}
+		while (!tryOffer(write)) {
+			if (!blockOnOverflow) {
+				dropped.increment();
+				return false;
+			}
+			if (!running) {
+				write.run();
+				return true;
+			}
+			LockSupport.parkNanos(FULL_PARK_NANOS);
+		}
+		// The writer checks the buffer again after it is marked idle, so it either sees this event or is woken here
+		if (idle) {
+			idle = false;
+			LockSupport.unpark(writer);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of log events dropped because the buffer was full
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return the approximate number of log events waiting to be written
+	 */
+	public long getPending() {
+		return Math.max(0, tail.get() - head);
+	}
+
+	/**
+	 * @return the number of log events the buffer holds
+	 */
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Start the writer thread for a provider, if not already started.
+	 */
+	public synchronized void start() {
+		if (users++ > 0) {
+			return;
+		}
+		Thread thread = new Thread(this::drain, "lde-async-log");
+		thread.setDaemon(true);
+		writer = thread;
+		idle = false;
+		running = true;
+		thread.start();
+		shutdownHook = new Thread(this::close, "lde-async-log-close");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Stop using the queue for a provider. Once the last provider has stopped the queue is closed.
+	 */
+	public synchronized void stop() {
+		if (users == 0 || --users > 0) {
+			return;
+		}
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// Already shutting down so the hook closes the queue
+			return;
+		} finally {
+			shutdownHook = null;
+		}
+		close();
+	}
+
+	/**
+	 * Stop the writer thread once the queued events have been written. Later events are written by the logging thread.
+	 */
+	public void close() {
+		Thread thread = writer;
+		running = false;
+		if (thread == null) {
+			return;
+		}
+		LockSupport.unpark(thread);
+		try {
+			thread.join(CLOSE_WAIT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (!thread.isAlive()) {
+			// Events queued while the writer was finishing
+			Runnable write;
+			while ((write = poll()) != null) {
+				write.run();
+			}
+		}
+	}
+
+	/**
+	 * @param write the log write
+	 * @return true if claimed a slot, false if the buffer is full
+	 */
+	private boolean tryOffer(final Runnable write) {
+		long pos = tail.get();
+		while (true) {
+			int index = (int) (pos & mask);
+			long diff = sequences.get(index) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					slots[index] = write;
+					// Publish the slot to the writer
+					sequences.set(index, pos + 1);
+					return true;
+				}
+				pos = tail.get();
+			} else if (diff < 0) {
+				return false;
+			} else {
+				// Another thread claimed this slot
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * @return the next log write or null if none are ready
+	 */
+	private Runnable poll() {
+		if (!isReady()) {
+			return null;
+		}
+		int index = (int) (head & mask);
+		Runnable write = slots[index];
+		slots[index] = null;
+		// Release the slot for the next lap of the buffer
+		sequences.set(index, head + slots.length);
+		head++;
+		return write;
+	}
+
+	/**
+	 * @return true if the next log write has been published
+	 */
+	private boolean isReady() {
+		return sequences.get((int) (head & mask)) == head + 1;
+	}
+
+	/**
+	 * Write the queued events until closed.
+	 */
+	private void drain() {
+		while (true) {
+			Runnable write = poll();
+			if (write != null) {
+				try {
+					write.run();
+				} catch (RuntimeException e) {
+					// Report it like an uncaught exception but keep the writer running
+					writer.getUncaughtExceptionHandler().uncaughtException(writer, e);
+				}
+			} else if (running) {
+				idle = true;
+				if (running && !isReady()) {
+					LockSupport.park(this);
+				}
+				idle = false;
+			} else if (head == tail.get()) {
+				return;
+			}
+		}
+	}
+
+}
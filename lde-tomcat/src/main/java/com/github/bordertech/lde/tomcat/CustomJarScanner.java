@@ -7,6 +7,9 @@ import org.apache.tomcat.JarScanner;
  * <p>
  * Useful when trying to run embedded tomcat outside a "war" or "webapp" configuration.
  * </p>
+ * <p>
+ * If no custom jar scanner has been defined and <code>lde.tomcat.jarscanner.parallel.enabled</code> is true, the {@link ParallelJarScanner} is used.
+ * </p>
  */
 public interface CustomJarScanner extends JarScanner {
 
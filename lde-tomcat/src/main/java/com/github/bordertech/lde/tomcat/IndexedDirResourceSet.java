@@ -0,0 +1,239 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.EmptyResource;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Directory resource set that indexes the directory once so lookups of resources that do not exist do not touch the disk.
+ * <p>
+ * TOMCAT checks the disk (including resolving the canonical path) for every resource that is not cached, and resources that do not exist are
+ * looked up often (eg welcome files and the resource sets searched before the web app directory). The directory is listed once when the set is
+ * initialised and the index is then updated incrementally from a file watcher. A resource that is not in the index is returned as an empty
+ * resource, while resources in the index are still served from the disk as normal.
+ * </p>
+ * <p>
+ * A file is only served once the watcher has seen it, so on platforms where the watcher polls (eg macOS) a new file may take a few seconds to be
+ * served. The index is not used if linking is allowed as linked directories are not indexed.
+ * </p>
+ */
+public class IndexedDirResourceSet extends DirResourceSet {
+
+	private static final Log LOG = LogFactory.getLog(IndexedDirResourceSet.class);
+
+	private final Set<String> index = ConcurrentHashMap.newKeySet();
+	private volatile boolean indexed;
+	private ReloadWatcher watcher;
+
+	/**
+	 * @param root the web resource root this set belongs to
+	 * @param webAppMount the path within the web app at which this set will be mounted
+	 * @param base the absolute path to the directory on the file system
+	 * @param internalPath the path within this new set where resources will be served from
+	 */
+	public IndexedDirResourceSet(final WebResourceRoot root, final String webAppMount, final String base, final String internalPath) {
+		super(root, webAppMount, base, internalPath);
+		addLifecycleListener(event -> {
+			if (Lifecycle.AFTER_DESTROY_EVENT.equals(event.getType())) {
+				stopWatcher();
+			}
+		});
+	}
+
+	@Override
+	protected void initInternal() throws LifecycleException {
+		super.initInternal();
+		Path dir = getFileBase().toPath();
+		startWatcher(dir);
+		rebuildIndex();
+	}
+
+	@Override
+	public WebResource getResource(final String path) {
+		String relative = toIndexPath(path);
+		if (relative != null && !index.contains(relative)) {
+			checkPath(path);
+			return new EmptyResource(getRoot(), path);
+		}
+		return super.getResource(path);
+	}
+
+	@Override
+	public boolean mkdir(final String path) {
+		boolean created = super.mkdir(path);
+		if (created) {
+			addPath(path);
+		}
+		return created;
+	}
+
+	@Override
+	public boolean write(final String path, final InputStream is, final boolean overwrite) {
+		boolean written = super.write(path, is, overwrite);
+		if (written) {
+			addPath(path);
+		}
+		return written;
+	}
+
+	/**
+	 * @return the number of files and directories in the index
+	 */
+	public int getIndexSize() {
+		return index.size();
+	}
+
+	/**
+	 * List the directory and replace the index.
+	 */
+	protected void rebuildIndex() {
+		Path dir = getFileBase().toPath();
+		Set<String> paths = listPaths(dir);
+		if (paths == null) {
+			indexed = false;
+			return;
+		}
+		index.addAll(paths);
+		index.retainAll(paths);
+		indexed = true;
+		LOG.info("Indexed " + paths.size() + " resources in [" + dir + "].");
+	}
+
+	/**
+	 * Update the index from a change seen by the watcher.
+	 *
+	 * @param kind the kind of change
+	 * @param file the file that changed
+	 */
+	protected void updateIndex(final WatchEvent.Kind<?> kind, final Path file) {
+		Path dir = getFileBase().toPath();
+		if (kind == StandardWatchEventKinds.OVERFLOW) {
+			// Events have been lost
+			rebuildIndex();
+		} else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+			String path = toIndexPath(dir, file);
+			index.removeIf(p -> p.equals(path) || p.startsWith(path + "/"));
+		} else if (Files.isDirectory(file)) {
+			// Files may have been created in a new directory before it was watched
+			Set<String> paths = listPaths(file);
+			if (paths != null) {
+				for (String path : paths) {
+					index.add(toIndexPath(dir, file) + path);
+				}
+			}
+			index.add(toIndexPath(dir, file));
+		} else {
+			index.add(toIndexPath(dir, file));
+		}
+	}
+
+	/**
+	 * @param dir the directory to watch
+	 */
+	private void startWatcher(final Path dir) {
+		stopWatcher();
+		ReloadWatcher changes = new ReloadWatcher(Collections.singletonList(dir), 0, () -> {
+		}) {
+			@Override
+			protected void onChange(final WatchEvent.Kind<?> kind, final Path path) {
+				updateIndex(kind, path);
+			}
+		};
+		try {
+			changes.start();
+			watcher = changes;
+		} catch (IOException e) {
+			changes.close();
+			LOG.warn("Could not watch [" + dir + "] so resources will not be indexed. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Stop watching the directory and stop using the index.
+	 */
+	private void stopWatcher() {
+		indexed = false;
+		if (watcher != null) {
+			watcher.close();
+			watcher = null;
+		}
+	}
+
+	/**
+	 * @param path the web app path that has been created
+	 */
+	private void addPath(final String path) {
+		String relative = toIndexPath(path);
+		if (relative != null) {
+			index.add(relative);
+		}
+	}
+
+	/**
+	 * @param path the web app path
+	 * @return the index path or null if the index cannot be used for this path
+	 */
+	private String toIndexPath(final String path) {
+		if (!indexed || watcher == null || getRoot().getAllowLinking() || path == null) {
+			return null;
+		}
+		String mount = getWebAppMount();
+		if (!path.startsWith(mount)) {
+			return null;
+		}
+		String relative = path.substring(mount.length());
+		while (relative.endsWith("/")) {
+			relative = relative.substring(0, relative.length() - 1);
+		}
+		if (relative.isEmpty()) {
+			return null;
+		}
+		return relative.startsWith("/") ? relative : "/" + relative;
+	}
+
+	/**
+	 * @param dir the indexed directory
+	 * @param file a file in the directory
+	 * @return the index path of the file
+	 */
+	private static String toIndexPath(final Path dir, final Path file) {
+		String relative = dir.relativize(file).toString().replace('\\', '/');
+		return relative.isEmpty() ? "" : "/" + relative;
+	}
+
+	/**
+	 * @param dir the directory to list
+	 * @return the index paths of the files and directories relative to the directory, or null if the directory could not be listed
+	 */
+	private static Set<String> listPaths(final Path dir) {
+		Set<String> paths = ConcurrentHashMap.newKeySet();
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.forEach(file -> {
+				String path = toIndexPath(dir, file);
+				if (!path.isEmpty()) {
+					paths.add(path);
+				}
+			});
+			return paths;
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Could not index [" + dir + "]. " + e.getMessage());
+			return null;
+		}
+	}
+
+}
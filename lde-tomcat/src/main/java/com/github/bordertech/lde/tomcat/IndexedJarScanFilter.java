@@ -0,0 +1,149 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tomcat.JarScanFilter;
+import org.apache.tomcat.JarScanType;
+
+/**
+ * Jar scan filter that uses the jar index built by the LDE index goal to skip jars that have nothing to contribute to the scan.
+ * <p>
+ * A jar is only scanned for TLDs if the index has flagged it with TLDs, and only scanned for pluggability if it has a web fragment, an initializer,
+ * static resources or classes relevant to the annotation scan. Jars not in the index are always scanned and the wrapped filter is always checked
+ * first.
+ * </p>
+ * <p>
+ * The index records the size and last modified time of each jar with the name. If any of them has changed, or is no longer there, since the index
+ * was built (eg a rebuilt SNAPSHOT) the jar is treated as not indexed and scanned.
+ * </p>
+ */
+public class IndexedJarScanFilter implements JarScanFilter {
+
+	private static final Log LOG = LogFactory.getLog(IndexedJarScanFilter.class);
+
+	private static final String VERSION_KEY = "lde.index.version";
+	private static final String VERSION = "2";
+	private static final String PLUGGABILITY_FLAGS = "FSRA";
+	private static final char FLAG_TLD = 'T';
+
+	private final JarScanFilter delegate;
+	private final Map<String, String> index;
+
+	/**
+	 * @param delegate the filter to check first
+	 * @param index the jar names and their index entry, which is the flags followed by the "|size|last modified|path" of each jar with the name
+	 */
+	public IndexedJarScanFilter(final JarScanFilter delegate, final Map<String, String> index) {
+		this.delegate = delegate;
+		this.index = index;
+	}
+
+	/**
+	 * Load the jar index.
+	 *
+	 * @param file the jar index file
+	 * @param delegate the filter to check first
+	 * @return the filter or null if the index does not exist or is not a supported version
+	 */
+	public static IndexedJarScanFilter load(final Path file, final JarScanFilter delegate) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			props.load(in);
+		} catch (IOException e) {
+			LOG.warn("Could not read jar index [" + file + "]. " + e.getMessage());
+			return null;
+		}
+		if (!VERSION.equals(props.getProperty(VERSION_KEY))) {
+			LOG.warn("Jar index [" + file + "] ignored as it is not version " + VERSION + ".");
+			return null;
+		}
+		Map<String, String> index = new HashMap<>();
+		for (String name : props.stringPropertyNames()) {
+			if (!VERSION_KEY.equals(name)) {
+				index.put(name, props.getProperty(name));
+			}
+		}
+		return new IndexedJarScanFilter(delegate, index);
+	}
+
+	@Override
+	public boolean check(final JarScanType jarScanType, final String jarName) {
+		if (delegate != null && !delegate.check(jarScanType, jarName)) {
+			return false;
+		}
+		String entry = index.get(jarName);
+		// Not indexed, or the jar has changed since it was indexed
+		if (entry == null || !isUnchanged(entry)) {
+			return true;
+		}
+		int end = entry.indexOf('|');
+		String flags = end < 0 ? entry : entry.substring(0, end);
+		boolean scan;
+		switch (jarScanType) {
+			case TLD:
+				scan = flags.indexOf(FLAG_TLD) >= 0;
+				break;
+			case PLUGGABILITY:
+				scan = containsAny(flags, PLUGGABILITY_FLAGS);
+				break;
+			default:
+				scan = true;
+				break;
+		}
+		if (!scan && LOG.isDebugEnabled()) {
+			LOG.debug("Jar index skipped [" + jarName + "] for " + jarScanType + " scan.");
+		}
+		return scan;
+	}
+
+	/**
+	 * @return the number of jars in the index
+	 */
+	public int getIndexSize() {
+		return index.size();
+	}
+
+	/**
+	 * @param entry the index entry
+	 * @return true if each jar recorded in the entry has the size and last modified time it had when indexed
+	 */
+	private static boolean isUnchanged(final String entry) {
+		String[] parts = entry.split("\\|", -1);
+		if (parts.length < 4 || (parts.length - 1) % 3 != 0) {
+			return false;
+		}
+		for (int i = 1; i < parts.length; i += 3) {
+			File jar = new File(parts[i + 2]);
+			if (!parts[i].equals(Long.toString(jar.length())) || !parts[i + 1].equals(Long.toString(jar.lastModified()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param flags the jar flags
+	 * @param match the flags to match
+	 * @return true if the jar has any of the flags
+	 */
+	private static boolean containsAny(final String flags, final String match) {
+		for (char flag : match.toCharArray()) {
+			if (flags.indexOf(flag) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
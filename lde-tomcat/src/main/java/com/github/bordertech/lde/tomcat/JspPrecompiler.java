@@ -0,0 +1,156 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.servlet.ServletConfig;
+import org.apache.catalina.Container;
+import org.apache.catalina.Context;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jasper.EmbeddedServletOptions;
+import org.apache.jasper.Options;
+import org.apache.jasper.compiler.JspRuntimeContext;
+import org.apache.jasper.servlet.JspServletWrapper;
+
+/**
+ * Compile the JSPs of a started web app in parallel so the first request to each page does not have to compile it.
+ * <p>
+ * The JSPs are compiled with the options of the web app's JSP servlet into its scratch directory (the context work directory under the TOMCAT
+ * base directory). JASPER only recompiles a JSP when its source is newer than the compiled class, so the compiled classes are reused across
+ * restarts while the sources are unchanged. JSPs under WEB-INF, which cannot be requested directly, are also compiled. JSP fragments (.jspf) are
+ * not compiled as they are only included in other pages.
+ * </p>
+ */
+public class JspPrecompiler {
+
+	private static final Log LOG = LogFactory.getLog(JspPrecompiler.class);
+
+	private final Context context;
+	private final int threads;
+
+	/**
+	 * @param context the started web app context
+	 * @param threads the number of JSPs to compile at the same time
+	 */
+	public JspPrecompiler(final Context context, final int threads) {
+		this.context = context;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Compile the JSPs in the web app directory.
+	 *
+	 * @param webAppDir the web app directory
+	 * @return the number of JSPs that failed to compile
+	 */
+	public int precompile(final Path webAppDir) {
+		Container child = context.findChild("jsp");
+		if (!(child instanceof ServletConfig)) {
+			LOG.warn("JSP servlet not found so JSPs not precompiled.");
+			return 0;
+		}
+		List<String> jsps = findJsps(webAppDir);
+		if (jsps.isEmpty()) {
+			return 0;
+		}
+		long start = System.currentTimeMillis();
+		ClassLoader loader = context.getLoader().getClassLoader();
+		ServletConfig config = (ServletConfig) child;
+		Options options = new EmbeddedServletOptions(config, context.getServletContext());
+		JspRuntimeContext runtime = createRuntimeContext(options, loader);
+		AtomicInteger failed = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, jsps.size()), r -> {
+			Thread thread = new Thread(r, "lde-jsp-precompile");
+			thread.setDaemon(true);
+			thread.setContextClassLoader(loader);
+			return thread;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (String jsp : jsps) {
+				futures.add(executor.submit(() -> compile(config, options, runtime, jsp, failed)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not precompile JSPs. " + e.getMessage(), e);
+		} finally {
+			executor.shutdownNow();
+			runtime.destroy();
+		}
+		LOG.info("Precompiled " + (jsps.size() - failed.get()) + " of " + jsps.size() + " JSPs in " + (System.currentTimeMillis() - start)
+				+ "ms.");
+		return failed.get();
+	}
+
+	/**
+	 * @param webAppDir the web app directory
+	 * @return the URIs of the JSPs in the web app directory
+	 */
+	protected List<String> findJsps(final Path webAppDir) {
+		if (!Files.isDirectory(webAppDir)) {
+			return new ArrayList<>();
+		}
+		try (Stream<Path> files = Files.walk(webAppDir)) {
+			return files.filter(file -> {
+				String name = file.getFileName().toString();
+				return Files.isRegularFile(file) && (name.endsWith(".jsp") || name.endsWith(".jspx"));
+			}).map(file -> "/" + webAppDir.relativize(file).toString().replace('\\', '/')).collect(Collectors.toList());
+		} catch (IOException e) {
+			LOG.warn("Could not find JSPs in [" + webAppDir + "]. " + e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * @param options the JSP servlet options
+	 * @param loader the web app class loader
+	 * @return the runtime context to compile the JSPs with
+	 */
+	private JspRuntimeContext createRuntimeContext(final Options options, final ClassLoader loader) {
+		// The runtime context uses the current context class loader as the parent of the JSP class loaders
+		Thread current = Thread.currentThread();
+		ClassLoader original = current.getContextClassLoader();
+		current.setContextClassLoader(loader);
+		try {
+			return new JspRuntimeContext(context.getServletContext(), options);
+		} finally {
+			current.setContextClassLoader(original);
+		}
+	}
+
+	/**
+	 * Compile a JSP if its source is newer than its compiled class.
+	 *
+	 * @param config the JSP servlet config
+	 * @param options the JSP servlet options
+	 * @param runtime the runtime context
+	 * @param jsp the JSP URI
+	 * @param failed the count of JSPs that failed to compile
+	 */
+	private void compile(final ServletConfig config, final Options options, final JspRuntimeContext runtime, final String jsp,
+			final AtomicInteger failed) {
+		try {
+			JspServletWrapper wrapper = new JspServletWrapper(config, options, jsp, runtime);
+			runtime.addWrapper(jsp, wrapper);
+			wrapper.getJspEngineContext().compile();
+		} catch (Exception e) {
+			failed.incrementAndGet();
+			LOG.warn("Could not precompile JSP [" + jsp + "]. " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,358 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import org.apache.catalina.AccessLog;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.CharChunk;
+import org.apache.tomcat.util.buf.MessageBytes;
+
+/**
+ * Access log with the time each request waited and was processed, written in batches by an {@link AccessLogWriter}.
+ * <p>
+ * Each request is logged by TOMCAT once the response has been finished, including asynchronous requests. The line is formatted straight into the
+ * space claimed in the writer's buffer from the request's own bytes, without holding a lock. The line is the common log format followed by the
+ * timing fields:
+ * </p>
+ * <pre>
+ * 127.0.0.1 - - [18/Oct/2026:10:01:25.123 +1100] "GET /lde/index.html HTTP/1.1" 200 1234 wait=38us process=154us total=0ms
+ * </pre>
+ * <ul>
+ * <li>wait - the time the request waited in the connector executor queue for a thread, in microseconds, as timed by the
+ * {@link TimedThreadExecutor}. Only the first request processed by a task waited in the queue, so later requests on the same task (eg pipelined
+ * requests) report 0. "-" if the request was not run by a timed executor.</li>
+ * <li>process - the time from the request reaching the engine pipeline to the response being finished, in microseconds. "-" if the request did not
+ * reach the pipeline (eg a bad request).</li>
+ * <li>total - the time from TOMCAT reading the request to the response being finished, in milliseconds.</li>
+ * </ul>
+ * <p>
+ * The bytes sent are the response body bytes, or "-" if none.
+ * </p>
+ */
+public class LdeAccessLogValve extends ValveBase implements AccessLog {
+
+	/**
+	 * The coyote request note that holds the time the request reached the pipeline and its queue wait. TOMCAT only uses note 1.
+	 */
+	private static final int TIMING_NOTE = 16;
+	private static final int MAX_LINE = 4096;
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss", Locale.ENGLISH)
+			.withZone(ZoneId.systemDefault());
+	private static final DateTimeFormatter ZONE_FORMAT = DateTimeFormatter.ofPattern("xx", Locale.ENGLISH).withZone(ZoneId.systemDefault());
+
+	private final AccessLogWriter writer;
+	private boolean requestAttributesEnabled;
+
+	private volatile CachedTime cachedTime = new CachedTime(Long.MIN_VALUE, new byte[0], new byte[0]);
+
+	/**
+	 * @param writer the writer of the access log lines
+	 */
+	public LdeAccessLogValve(final AccessLogWriter writer) {
+		super(true);
+		this.writer = writer;
+	}
+
+	/**
+	 * Create the valve with a writer configured by the {@link TomcatConfigUtil} access log settings.
+	 *
+	 * @param file the access log file
+	 */
+	public LdeAccessLogValve(final Path file) {
+		this(new AccessLogWriter(file, TomcatConfigUtil.getAccessLogBufferSize(), TomcatConfigUtil.getAccessLogFlushMillis(),
+				TomcatConfigUtil.getAccessLogRotateBytes(), TomcatConfigUtil.getAccessLogRotateMillis()));
+	}
+
+	/**
+	 * @return the writer of the access log lines
+	 */
+	public AccessLogWriter getWriter() {
+		return writer;
+	}
+
+	@Override
+	public void invoke(final Request request, final Response response) throws IOException, ServletException {
+		long[] timing = getTiming(request);
+		timing[0] = System.nanoTime();
+		timing[1] = TimedThreadExecutor.takeQueueWaitNanos();
+		getNext().invoke(request, response);
+	}
+
+	@Override
+	public void log(final Request request, final Response response, final long time) {
+		long[] timing = getTiming(request);
+		long entered = timing[0];
+		timing[0] = 0;
+		long processMicros = entered == 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - entered);
+		long waitMicros = entered == 0 || timing[1] < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(timing[1]);
+		long startTime = request.getCoyoteRequest().getStartTime();
+		long timestamp = startTime > 0 ? startTime : System.currentTimeMillis();
+		String remoteAddr = getRemoteAddr(request);
+		String remoteUser = request.getRemoteUser();
+		int status = response.getStatus();
+		long bytes = response.getBytesWritten(false);
+
+		ByteBuffer buf = writer.claim(MAX_LINE);
+		if (buf == null) {
+			return;
+		}
+		try {
+			putString(buf, remoteAddr);
+			putAscii(buf, " - ");
+			putString(buf, remoteUser);
+			putAscii(buf, " [");
+			putTime(buf, timestamp);
+			putAscii(buf, "] \"");
+			putBytes(buf, request.getCoyoteRequest().method());
+			put(buf, ' ');
+			putBytes(buf, request.getCoyoteRequest().requestURI());
+			MessageBytes query = request.getCoyoteRequest().queryString();
+			if (!query.isNull() && query.getLength() > 0) {
+				put(buf, '?');
+				putBytes(buf, query);
+			}
+			put(buf, ' ');
+			putBytes(buf, request.getCoyoteRequest().protocol());
+			putAscii(buf, "\" ");
+			putLong(buf, status);
+			put(buf, ' ');
+			putLong(buf, bytes > 0 ? bytes : -1);
+			putAscii(buf, " wait=");
+			putLong(buf, waitMicros);
+			putAscii(buf, "us process=");
+			putLong(buf, processMicros);
+			putAscii(buf, "us total=");
+			putLong(buf, time);
+			putAscii(buf, "ms");
+			// Room is always left for the line end
+			buf.put((byte) '\n');
+		} finally {
+			writer.release(buf);
+		}
+	}
+
+	@Override
+	public void setRequestAttributesEnabled(final boolean requestAttributesEnabled) {
+		this.requestAttributesEnabled = requestAttributesEnabled;
+	}
+
+	@Override
+	public boolean getRequestAttributesEnabled() {
+		return requestAttributesEnabled;
+	}
+
+	@Override
+	protected void startInternal() throws LifecycleException {
+		try {
+			writer.start();
+		} catch (IOException e) {
+			throw new LifecycleException("Could not open the access log. " + e.getMessage(), e);
+		}
+		super.startInternal();
+	}
+
+	@Override
+	protected void stopInternal() throws LifecycleException {
+		super.stopInternal();
+		writer.close();
+	}
+
+	/**
+	 * @param request the request
+	 * @return the client address, from the remote address request attribute if enabled
+	 */
+	protected String getRemoteAddr(final Request request) {
+		if (requestAttributesEnabled) {
+			Object addr = request.getAttribute(REMOTE_ADDR_ATTRIBUTE);
+			if (addr != null) {
+				return addr.toString();
+			}
+		}
+		return request.getRemoteAddr();
+	}
+
+	/**
+	 * The timing holder is kept on the coyote request, which is reused by the connector, so it is only created once for each request processor.
+	 *
+	 * @param request the request
+	 * @return the timing holder of the request
+	 */
+	private static long[] getTiming(final Request request) {
+		org.apache.coyote.Request coyote = request.getCoyoteRequest();
+		Object note = coyote.getNote(TIMING_NOTE);
+		if (note instanceof long[]) {
+			return (long[]) note;
+		}
+		long[] timing = new long[2];
+		coyote.setNote(TIMING_NOTE, timing);
+		return timing;
+	}
+
+	/**
+	 * Put the time with millisecond precision, formatting the date only once a second.
+	 *
+	 * @param buf the buffer
+	 * @param millis the time
+	 */
+	private void putTime(final ByteBuffer buf, final long millis) {
+		long second = millis / 1000;
+		CachedTime cached = cachedTime;
+		if (second != cached.second) {
+			Instant instant = Instant.ofEpochSecond(second);
+			cached = new CachedTime(second, TIME_FORMAT.format(instant).getBytes(StandardCharsets.US_ASCII),
+					ZONE_FORMAT.format(instant).getBytes(StandardCharsets.US_ASCII));
+			cachedTime = cached;
+		}
+		for (byte b : cached.time) {
+			put(buf, b);
+		}
+		int fraction = (int) (millis % 1000);
+		put(buf, '.');
+		put(buf, '0' + fraction / 100);
+		put(buf, '0' + fraction / 10 % 10);
+		put(buf, '0' + fraction % 10);
+		put(buf, ' ');
+		for (byte b : cached.zone) {
+			put(buf, b);
+		}
+	}
+
+	/**
+	 * Put the bytes of a request field, escaping control characters and quotes.
+	 *
+	 * @param buf the buffer
+	 * @param value the request field
+	 */
+	private static void putBytes(final ByteBuffer buf, final MessageBytes value) {
+		if (value.isNull()) {
+			put(buf, '-');
+			return;
+		}
+		switch (value.getType()) {
+			case MessageBytes.T_BYTES:
+				ByteChunk bytes = value.getByteChunk();
+				byte[] data = bytes.getBuffer();
+				for (int i = bytes.getStart(); i < bytes.getEnd(); i++) {
+					putEscaped(buf, data[i] & 0xff);
+				}
+				break;
+			case MessageBytes.T_CHARS:
+				CharChunk chars = value.getCharChunk();
+				char[] text = chars.getBuffer();
+				for (int i = chars.getStart(); i < chars.getEnd(); i++) {
+					putEscaped(buf, text[i]);
+				}
+				break;
+			default:
+				putString(buf, value.toString());
+				break;
+		}
+	}
+
+	/**
+	 * @param buf the buffer
+	 * @param value the string to put escaped or null for "-"
+	 */
+	private static void putString(final ByteBuffer buf, final String value) {
+		if (value == null || value.isEmpty()) {
+			put(buf, '-');
+			return;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			putEscaped(buf, value.charAt(i));
+		}
+	}
+
+	/**
+	 * @param buf the buffer
+	 * @param value the ASCII text to put as is
+	 */
+	private static void putAscii(final ByteBuffer buf, final String value) {
+		for (int i = 0; i < value.length(); i++) {
+			put(buf, value.charAt(i));
+		}
+	}
+
+	/**
+	 * @param buf the buffer
+	 * @param value the number to put or a negative number for "-"
+	 */
+	private static void putLong(final ByteBuffer buf, final long value) {
+		if (value < 0) {
+			put(buf, '-');
+			return;
+		}
+		long divisor = 1;
+		while (divisor <= value / 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			put(buf, (int) ('0' + value / divisor % 10));
+		}
+	}
+
+	/**
+	 * Put a character, escaping control characters, quotes, backslashes and characters outside ISO-8859-1 as hex.
+	 *
+	 * @param buf the buffer
+	 * @param c the character
+	 */
+	private static void putEscaped(final ByteBuffer buf, final int c) {
+		if (c < 0x20 || c == 0x7f || c == '"' || c == '\\' || c > 0xff) {
+			int value = c > 0xff ? '?' : c;
+			put(buf, '\\');
+			put(buf, 'x');
+			put(buf, HEX[value >> 4 & 0xf]);
+			put(buf, HEX[value & 0xf]);
+		} else {
+			put(buf, c);
+		}
+	}
+
+	/**
+	 * Put a byte, dropping it if the line is full. The last byte of the line is kept for the line end.
+	 *
+	 * @param buf the buffer
+	 * @param b the byte
+	 */
+	private static void put(final ByteBuffer buf, final int b) {
+		if (buf.remaining() > 1) {
+			buf.put((byte) b);
+		}
+	}
+
+	/**
+	 * The formatted date of a second, replaced as a whole so request threads can format lines at the same time.
+	 */
+	private static final class CachedTime {
+
+		private final long second;
+		private final byte[] time;
+		private final byte[] zone;
+
+		/**
+		 * @param second the epoch second
+		 * @param time the formatted date and time to the second
+		 * @param zone the formatted zone offset
+		 */
+		private CachedTime(final long second, final byte[] time, final byte[] zone) {
+			this.second = second;
+			this.time = time;
+			this.zone = zone;
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.servlet.ServletContainerInitializer;
+import org.apache.catalina.startup.ContextConfig;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tomcat.util.descriptor.web.WebXml;
+
+/**
+ * LDE web app context configuration.
+ * <p>
+ * Adds a persistent {@link ScanCache} to the annotation and {@code @HandlesTypes} scan so unchanged jars that did not contribute anything on the
+ * previous start are not scanned again. The classes directory is always scanned.
+ * </p>
+ */
+public class LdeContextConfig extends ContextConfig {
+
+	private static final Log LOG = LogFactory.getLog(LdeContextConfig.class);
+
+	private final ScanCache scanCache;
+
+	/**
+	 * Default constructor.
+	 */
+	public LdeContextConfig() {
+		this(TomcatConfigUtil.isScanCacheEnabled() ? new ScanCache(Paths.get(TomcatConfigUtil.getScanCacheFile())) : null);
+	}
+
+	/**
+	 * @param scanCache the scan cache or null if no cache
+	 */
+	public LdeContextConfig(final ScanCache scanCache) {
+		this.scanCache = scanCache;
+	}
+
+	@Override
+	protected void webConfig() {
+		super.webConfig();
+		if (scanCache != null && ok) {
+			scanCache.save();
+		}
+	}
+
+	@Override
+	protected void processServletContainerInitializers() {
+		super.processServletContainerInitializers();
+		if (scanCache != null) {
+			scanCache.load(buildHandlesTypesKey());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The class cache is declared as a raw map as its entry type is not visible outside the TOMCAT package.
+	 * </p>
+	 */
+	@Override
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	protected void processAnnotationsJar(final URL url, final WebXml fragment, final boolean handlesTypesOnly, final Map javaClassCache) {
+
+		// Only looking for @HandlesTypes and there are none
+		if (handlesTypesOnly && typeInitializerMap.isEmpty()) {
+			return;
+		}
+
+		File jar = scanCache == null ? null : toJarFile(url);
+		if (jar == null) {
+			super.processAnnotationsJar(url, fragment, handlesTypesOnly, javaClassCache);
+			return;
+		}
+
+		if (scanCache.isSkippable(jar, handlesTypesOnly)) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Scan cache skipped unchanged jar [" + jar + "].");
+			}
+			return;
+		}
+
+		int before = countContributions(fragment);
+		super.processAnnotationsJar(url, fragment, handlesTypesOnly, javaClassCache);
+		scanCache.record(jar, handlesTypesOnly, countContributions(fragment) != before);
+	}
+
+	/**
+	 * @return the scan cache or null if not enabled
+	 */
+	protected ScanCache getScanCache() {
+		return scanCache;
+	}
+
+	/**
+	 * @param fragment the fragment being scanned
+	 * @return the number of items contributed to the fragment and the initializers so far
+	 */
+	private int countContributions(final WebXml fragment) {
+		int count = fragment.getServlets().size() + fragment.getFilters().size() + fragment.getListeners().size();
+		for (Set<Class<?>> classes : initializerClassMap.values()) {
+			count += classes.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return a key identifying the {@code @HandlesTypes} of the detected initializers
+	 */
+	private String buildHandlesTypesKey() {
+		Set<String> names = new TreeSet<>();
+		for (ServletContainerInitializer sci : initializerClassMap.keySet()) {
+			names.add(sci.getClass().getName());
+		}
+		for (Class<?> type : typeInitializerMap.keySet()) {
+			names.add(type.getName());
+		}
+		return Integer.toHexString(names.toString().hashCode());
+	}
+
+	/**
+	 * @param url the jar URL
+	 * @return the jar file or null if the URL is not a local jar file
+	 */
+	private File toJarFile(final URL url) {
+		String spec = url.toString();
+		if (spec.startsWith("jar:")) {
+			int idx = spec.indexOf("!/");
+			spec = spec.substring("jar:".length(), idx < 0 ? spec.length() : idx);
+		}
+		if (!spec.startsWith("file:")) {
+			return null;
+		}
+		try {
+			File file = new File(new URI(spec));
+			return file.isFile() ? file : null;
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+}
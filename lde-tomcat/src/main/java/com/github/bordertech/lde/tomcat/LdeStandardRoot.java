@@ -0,0 +1,178 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.WebResourceSet;
+import org.apache.catalina.webresources.Cache;
+import org.apache.catalina.webresources.CachedResource;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Web app resources that report the statistics of the static resource cache and can index the web app directory.
+ * <p>
+ * TOMCAT does not expose its resource cache, so the cache is read by reflection. The statistics use the public lookup, hit and size counters of
+ * the cache. TOMCAT removes entries from the cache one at a time, whether they expired, were trimmed to make space while looking up a resource or
+ * in the background processing, or their resource changed. The entry map of the cache is replaced by reflection with one that counts these
+ * removals as the evictions. If the cache cannot be read the statistics are empty, and if the entry map cannot be replaced the evictions are left
+ * out.
+ * </p>
+ */
+public class LdeStandardRoot extends StandardRoot {
+
+	private static final Log LOG = LogFactory.getLog(LdeStandardRoot.class);
+
+	private final Cache resourceCache;
+	private final EvictionCountingMap evictions;
+
+	/**
+	 * @param context the web app context
+	 */
+	public LdeStandardRoot(final Context context) {
+		super(context);
+		resourceCache = retrieveCache();
+		evictions = resourceCache == null ? null : replaceEntryMap(resourceCache);
+	}
+
+	/**
+	 * @return the cache lookups, hits, misses, evictions, evicted size and size in kilobytes, or an empty map if not available
+	 */
+	public Map<String, Long> getCacheStatistics() {
+		if (resourceCache == null) {
+			return Collections.emptyMap();
+		}
+		long lookups = resourceCache.getLookupCount();
+		long hits = resourceCache.getHitCount();
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("lookups", lookups);
+		stats.put("hits", hits);
+		stats.put("misses", lookups - hits);
+		if (evictions != null) {
+			stats.put("evictions", evictions.getEvictions());
+			stats.put("evictedKb", evictions.getEvictedBytes() / 1024);
+		}
+		stats.put("sizeKb", resourceCache.getSize());
+		return stats;
+	}
+
+	@Override
+	protected WebResourceSet createMainResourceSet() {
+		String docBase = getContext().getDocBase();
+		if (!TomcatConfigUtil.isResourceIndexEnabled() || docBase == null) {
+			return super.createMainResourceSet();
+		}
+		File dir = new File(docBase);
+		if (!dir.isAbsolute()) {
+			dir = new File(((Host) getContext().getParent()).getAppBaseFile(), dir.getPath());
+		}
+		if (!dir.isDirectory()) {
+			return super.createMainResourceSet();
+		}
+		return new IndexedDirResourceSet(this, "/", dir.getAbsolutePath(), "/");
+	}
+
+	/**
+	 * @return the resource cache or null if it could not be read
+	 */
+	private Cache retrieveCache() {
+		try {
+			Field cacheField = StandardRoot.class.getDeclaredField("cache");
+			cacheField.setAccessible(true);
+			return (Cache) cacheField.get(this);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOG.warn("Could not read the resource cache so statistics are not available. " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Replace the entry map of the cache, which is still empty, with one that counts the evictions.
+	 *
+	 * @param cache the resource cache
+	 * @return the eviction counting map or null if the entry map could not be replaced
+	 */
+	private static EvictionCountingMap replaceEntryMap(final Cache cache) {
+		try {
+			Method sizeMethod = CachedResource.class.getDeclaredMethod("getSize");
+			sizeMethod.setAccessible(true);
+			Field mapField = Cache.class.getDeclaredField("resourceCache");
+			mapField.setAccessible(true);
+			@SuppressWarnings("unchecked")
+			ConcurrentMap<String, CachedResource> entries = (ConcurrentMap<String, CachedResource>) mapField.get(cache);
+			EvictionCountingMap map = new EvictionCountingMap(sizeMethod);
+			map.putAll(entries);
+			mapField.set(cache, map);
+			return map;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOG.warn("Could not replace the resource cache entries so evictions are not available. " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * The cache entry map that counts each entry removed by its key as an eviction. TOMCAT only removes an entry by its key, and then takes its
+	 * size off the cache size.
+	 */
+	private static final class EvictionCountingMap extends ConcurrentHashMap<String, CachedResource> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Method sizeMethod;
+		private final transient LongAdder evictions = new LongAdder();
+		private final transient LongAdder evictedBytes = new LongAdder();
+
+		/**
+		 * @param sizeMethod the method that gives the size of a cache entry in bytes
+		 */
+		private EvictionCountingMap(final Method sizeMethod) {
+			this.sizeMethod = sizeMethod;
+		}
+
+		@Override
+		public CachedResource remove(final Object key) {
+			CachedResource removed = super.remove(key);
+			if (removed != null) {
+				evictions.increment();
+				evictedBytes.add(getSize(removed));
+			}
+			return removed;
+		}
+
+		/**
+		 * @return the number of entries removed from the cache
+		 */
+		private long getEvictions() {
+			return evictions.sum();
+		}
+
+		/**
+		 * @return the size in bytes of the entries removed from the cache
+		 */
+		private long getEvictedBytes() {
+			return evictedBytes.sum();
+		}
+
+		/**
+		 * @param entry the cache entry
+		 * @return the size of the entry in bytes or 0 if it could not be read
+		 */
+		private long getSize(final CachedResource entry) {
+			try {
+				return (Long) sizeMethod.invoke(entry);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				return 0;
+			}
+		}
+	}
+
+}
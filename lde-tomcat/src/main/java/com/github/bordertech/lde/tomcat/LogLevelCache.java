@@ -0,0 +1,126 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Cache the enabled levels of a logger so checking a level is a field read.
+ * <p>
+ * While a provider is running (see {@link #start()}) a daemon thread moves the cache generation on every cache period (see
+ * {@link TomcatConfigUtil#getLoggingLevelCacheMillis()}) and the levels are read again from the logger on the first check of a new generation. A
+ * change to the logging configuration is picked up within the period. The thread is stopped when the last provider stops, so it does not keep the
+ * provider class loader alive. When no provider is running, or the cache period is 0, the levels are read on every check.
+ * </p>
+ */
+public class LogLevelCache {
+
+	/**
+	 * Trace level flag.
+	 */
+	public static final int TRACE = 1;
+	/**
+	 * Debug level flag.
+	 */
+	public static final int DEBUG = 1 << 1;
+	/**
+	 * Info level flag.
+	 */
+	public static final int INFO = 1 << 2;
+	/**
+	 * Warn level flag.
+	 */
+	public static final int WARN = 1 << 3;
+	/**
+	 * Error level flag.
+	 */
+	public static final int ERROR = 1 << 4;
+	/**
+	 * Fatal level flag.
+	 */
+	public static final int FATAL = 1 << 5;
+
+	private static final long CACHE_MILLIS = TomcatConfigUtil.getLoggingLevelCacheMillis();
+	private static final AtomicInteger GENERATION = new AtomicInteger();
+	private static final Object TICKER_LOCK = new Object();
+	private static volatile boolean ticking;
+	// Guarded by the ticker lock
+	private static Thread ticker;
+	private static int users;
+
+	private final IntSupplier levels;
+	private int enabled;
+	private int generation = -1;
+
+	/**
+	 * @param levels the supplier of the level flags enabled in the logger
+	 */
+	public LogLevelCache(final IntSupplier levels) {
+		this.levels = levels;
+	}
+
+	/**
+	 * @param level the level flag
+	 * @return true if the level is enabled
+	 */
+	public boolean isEnabled(final int level) {
+		if (!ticking) {
+			return (levels.getAsInt() & level) != 0;
+		}
+		// Not synchronized as reading the levels again is harmless
+		int current = GENERATION.get();
+		if (current != generation) {
+			enabled = levels.getAsInt();
+			generation = current;
+		}
+		return (enabled & level) != 0;
+	}
+
+	/**
+	 * Start caching the levels for a provider. The first provider to start begins moving the cache generation on.
+	 */
+	public static void start() {
+		if (CACHE_MILLIS <= 0) {
+			return;
+		}
+		synchronized (TICKER_LOCK) {
+			if (users++ > 0) {
+				return;
+			}
+			// Levels cached before the last stop are read again
+			GENERATION.incrementAndGet();
+			ticker = new Thread(LogLevelCache::tick, "lde-log-levels");
+			ticker.setDaemon(true);
+			ticking = true;
+			ticker.start();
+		}
+	}
+
+	/**
+	 * Stop caching the levels for a provider. Once the last provider has stopped the thread moving the cache generation on is stopped.
+	 */
+	public static void stop() {
+		synchronized (TICKER_LOCK) {
+			if (users == 0 || --users > 0) {
+				return;
+			}
+			ticking = false;
+			ticker.interrupt();
+			ticker = null;
+		}
+	}
+
+	/**
+	 * Move the cache generation on every cache period until interrupted.
+	 */
+	private static void tick() {
+		while (true) {
+			try {
+				Thread.sleep(CACHE_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			GENERATION.incrementAndGet();
+		}
+	}
+
+}
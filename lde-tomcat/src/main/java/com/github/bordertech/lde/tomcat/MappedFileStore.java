@@ -0,0 +1,437 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.catalina.Context;
+import org.apache.catalina.Globals;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Session;
+import org.apache.catalina.session.StandardSession;
+import org.apache.catalina.session.StoreBase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Session store that keeps the serialized sessions in a memory-mapped file so the sessions survive a restart of the server.
+ * <p>
+ * The file is an append-only log of session records, so saving a session only writes that session. When the store starts, only the record headers
+ * are read to index the sessions; a session is deserialized when it is first requested after the restart. The file is compacted when the store
+ * starts if more than half of it is replaced or removed records.
+ * </p>
+ * <p>
+ * A record is written with its type byte last, so a record left half written by a crash is ignored. The file is limited to 2GB.
+ * </p>
+ */
+public class MappedFileStore extends StoreBase {
+
+	private static final Log LOG = LogFactory.getLog(MappedFileStore.class);
+
+	private static final String STORE_NAME = "mappedFileStore";
+	private static final int MAGIC = 0x4C444553;
+	private static final int VERSION = 1;
+	private static final int FILE_HEADER_SIZE = 8;
+	private static final byte END = 0;
+	private static final byte RECORD_SESSION = 1;
+	private static final byte RECORD_REMOVE = 2;
+	private static final int INITIAL_SIZE = 1024 * 1024;
+
+	private final Map<String, Entry> index = new HashMap<>();
+	private String fileName = "lde-sessions.dat";
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int position;
+	private long garbage;
+
+	/**
+	 * @return the file name, relative to the base directory if not absolute
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @param fileName the file name, relative to the base directory if not absolute
+	 */
+	public void setFileName(final String fileName) {
+		this.fileName = fileName;
+	}
+
+	@Override
+	public String getStoreName() {
+		return STORE_NAME;
+	}
+
+	@Override
+	public synchronized int getSize() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized String[] keys() {
+		return index.keySet().toArray(new String[]{});
+	}
+
+	/**
+	 * Only the sessions that have expired according to their record are returned, so the valid sessions are not deserialized to check them.
+	 *
+	 * @return the ids of the expired sessions
+	 */
+	@Override
+	public synchronized String[] expiredKeys() {
+		long now = System.currentTimeMillis();
+		List<String> expired = new ArrayList<>();
+		for (Map.Entry<String, Entry> entry : index.entrySet()) {
+			if (entry.getValue().isExpired(now)) {
+				expired.add(entry.getKey());
+			}
+		}
+		return expired.toArray(new String[]{});
+	}
+
+	@Override
+	public Session load(final String id) throws ClassNotFoundException, IOException {
+		byte[] data = readData(id);
+		if (data == null) {
+			return null;
+		}
+		Context context = getManager().getContext();
+		ClassLoader original = context.bind(Globals.IS_SECURITY_ENABLED, null);
+		try (ObjectInputStream ois = getObjectInputStream(new ByteArrayInputStream(data))) {
+			StandardSession session = (StandardSession) getManager().createEmptySession();
+			session.readObjectData(ois);
+			session.setManager(getManager());
+			return session;
+		} finally {
+			context.unbind(Globals.IS_SECURITY_ENABLED, original);
+		}
+	}
+
+	@Override
+	public void save(final Session session) throws IOException {
+		StandardSession standard = (StandardSession) session;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			standard.writeObjectData(oos);
+		}
+		writeSession(standard.getIdInternal(), standard.getThisAccessedTimeInternal(), standard.getMaxInactiveInterval(), bytes.toByteArray());
+	}
+
+	@Override
+	public synchronized void remove(final String id) throws IOException {
+		Entry entry = index.remove(id);
+		if (entry == null) {
+			return;
+		}
+		byte[] key = id.getBytes(StandardCharsets.UTF_8);
+		int offset = append(RECORD_REMOVE, key, 1 + 4 + key.length);
+		garbage += entry.length + position - offset;
+	}
+
+	@Override
+	public synchronized void clear() throws IOException {
+		index.clear();
+		if (buffer == null) {
+			return;
+		}
+		position = FILE_HEADER_SIZE;
+		garbage = 0;
+		buffer.put(position, END);
+	}
+
+	@Override
+	protected synchronized void startInternal() throws LifecycleException {
+		Path path = getFile();
+		try {
+			TomcatConfigUtil.checkPath(path.getParent());
+			open(path);
+			if (garbage > 0 && garbage > position / 2) {
+				compact(path);
+			}
+		} catch (IOException e) {
+			throw new LifecycleException("Could not open session store [" + path + "]. " + e.getMessage(), e);
+		}
+		LOG.info("Session store [" + path + "] has " + index.size() + " sessions.");
+		super.startInternal();
+	}
+
+	@Override
+	protected synchronized void stopInternal() throws LifecycleException {
+		super.stopInternal();
+		close();
+	}
+
+	/**
+	 * @return the session store file
+	 */
+	protected Path getFile() {
+		Path path = Paths.get(fileName);
+		if (path.isAbsolute()) {
+			return path;
+		}
+		return getManager().getContext().getCatalinaBase().toPath().resolve(path);
+	}
+
+	/**
+	 * @param id the session id
+	 * @return a copy of the serialized session or null if not stored
+	 */
+	private synchronized byte[] readData(final String id) {
+		Entry entry = index.get(id);
+		if (entry == null || buffer == null) {
+			return null;
+		}
+		byte[] data = new byte[entry.dataLength];
+		ByteBuffer view = buffer.duplicate();
+		view.position(entry.dataOffset);
+		view.get(data);
+		return data;
+	}
+
+	/**
+	 * @param id the session id
+	 * @param accessed the time the session was last accessed
+	 * @param maxInactive the maximum inactive interval of the session in seconds
+	 * @param data the serialized session
+	 * @throws IOException an IO exception writing the session
+	 */
+	private synchronized void writeSession(final String id, final long accessed, final int maxInactive, final byte[] data) throws IOException {
+		byte[] key = id.getBytes(StandardCharsets.UTF_8);
+		int length = 1 + 4 + key.length + 8 + 4 + 4 + data.length;
+		ensureCapacity(length + 1);
+		// Write the record body then the type, so a torn record is not read
+		int offset = position;
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset + 1);
+		view.putInt(key.length);
+		view.put(key);
+		view.putLong(accessed);
+		view.putInt(maxInactive);
+		view.putInt(data.length);
+		int dataOffset = view.position();
+		view.put(data);
+		view.put(END);
+		buffer.put(offset, RECORD_SESSION);
+		position = offset + length;
+		Entry previous = index.put(id, new Entry(offset, length, dataOffset, data.length, accessed, maxInactive));
+		if (previous != null) {
+			garbage += previous.length;
+		}
+	}
+
+	/**
+	 * @param type the record type
+	 * @param key the session id
+	 * @param length the record length
+	 * @return the offset of the record
+	 * @throws IOException an IO exception writing the record
+	 */
+	private int append(final byte type, final byte[] key, final int length) throws IOException {
+		ensureCapacity(length + 1);
+		int offset = position;
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset + 1);
+		view.putInt(key.length);
+		view.put(key);
+		view.put(END);
+		buffer.put(offset, type);
+		position = offset + length;
+		return offset;
+	}
+
+	/**
+	 * @param needed the number of bytes to be written
+	 * @throws IOException an IO exception growing the file
+	 */
+	private void ensureCapacity(final int needed) throws IOException {
+		long required = (long) position + needed;
+		if (required <= buffer.capacity()) {
+			return;
+		}
+		long size = Math.max((long) buffer.capacity() * 2, required);
+		if (size > Integer.MAX_VALUE) {
+			if (required > Integer.MAX_VALUE) {
+				throw new IOException("Session store is full.");
+			}
+			size = Integer.MAX_VALUE;
+		}
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+	}
+
+	/**
+	 * Open the file and index the records.
+	 *
+	 * @param path the session store file
+	 * @throws IOException an IO exception reading the file
+	 */
+	private void open(final Path path) throws IOException {
+		index.clear();
+		garbage = 0;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		// Map past the last record so the end marker can always be written, as a compacted file has no end marker
+		long size = Math.min(Integer.MAX_VALUE, Math.max(channel.size() + 1, INITIAL_SIZE));
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		if (channel.size() < FILE_HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			if (buffer.getInt(0) != 0) {
+				LOG.warn("Session store [" + path + "] is not a valid store so sessions have been discarded.");
+			}
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			position = FILE_HEADER_SIZE;
+			buffer.put(position, END);
+			return;
+		}
+		position = FILE_HEADER_SIZE;
+		readRecords();
+	}
+
+	/**
+	 * Read the record headers from the current position, stopping at the end or a damaged record.
+	 */
+	private void readRecords() {
+		ByteBuffer view = buffer.duplicate();
+		int limit = view.capacity();
+		while (position < limit) {
+			view.position(position);
+			byte type = view.get();
+			if ((type != RECORD_SESSION && type != RECORD_REMOVE) || view.remaining() < 4) {
+				break;
+			}
+			int keyLength = view.getInt();
+			if (keyLength <= 0 || keyLength > view.remaining()) {
+				break;
+			}
+			byte[] key = new byte[keyLength];
+			view.get(key);
+			String id = new String(key, StandardCharsets.UTF_8);
+			if (type == RECORD_REMOVE) {
+				Entry removed = index.remove(id);
+				garbage += view.position() - position + (removed == null ? 0 : removed.length);
+				position = view.position();
+				continue;
+			}
+			if (view.remaining() < 16) {
+				break;
+			}
+			long accessed = view.getLong();
+			int maxInactive = view.getInt();
+			int dataLength = view.getInt();
+			if (dataLength < 0 || dataLength > view.remaining()) {
+				break;
+			}
+			int dataOffset = view.position();
+			int length = dataOffset + dataLength - position;
+			Entry previous = index.put(id, new Entry(position, length, dataOffset, dataLength, accessed, maxInactive));
+			if (previous != null) {
+				garbage += previous.length;
+			}
+			position += length;
+		}
+		if (position < limit) {
+			buffer.put(position, END);
+		}
+	}
+
+	/**
+	 * Rewrite the file with only the current sessions.
+	 *
+	 * @param path the session store file
+	 * @throws IOException an IO exception rewriting the file
+	 */
+	private void compact(final Path path) throws IOException {
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).flip();
+			out.write(header);
+			for (Entry entry : index.values()) {
+				ByteBuffer record = buffer.duplicate();
+				record.position(entry.offset);
+				record.limit(entry.offset + entry.length);
+				out.write(record);
+			}
+		}
+		long before = position;
+		close();
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			// The file may still be mapped on some platforms so compact on a later start
+			LOG.warn("Could not compact session store [" + path + "]. " + e.getMessage());
+			Files.deleteIfExists(temp);
+		}
+		open(path);
+		LOG.info("Compacted session store [" + path + "] from " + before + " to " + position + " bytes.");
+	}
+
+	/**
+	 * Flush and close the file.
+	 */
+	private void close() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			buffer.force();
+			channel.close();
+		} catch (IOException e) {
+			LOG.warn("Could not close session store. " + e.getMessage());
+		}
+		channel = null;
+		buffer = null;
+	}
+
+	/**
+	 * The location and expiry details of a stored session.
+	 */
+	private static final class Entry {
+
+		private final int offset;
+		private final int length;
+		private final int dataOffset;
+		private final int dataLength;
+		private final long accessed;
+		private final int maxInactive;
+
+		/**
+		 * @param offset the offset of the record
+		 * @param length the length of the record
+		 * @param dataOffset the offset of the serialized session
+		 * @param dataLength the length of the serialized session
+		 * @param accessed the time the session was last accessed
+		 * @param maxInactive the maximum inactive interval of the session in seconds
+		 */
+		private Entry(final int offset, final int length, final int dataOffset, final int dataLength, final long accessed, final int maxInactive) {
+			this.offset = offset;
+			this.length = length;
+			this.dataOffset = dataOffset;
+			this.dataLength = dataLength;
+			this.accessed = accessed;
+			this.maxInactive = maxInactive;
+		}
+
+		/**
+		 * @param now the current time in milliseconds
+		 * @return true if the session has expired
+		 */
+		private boolean isExpired(final long now) {
+			return maxInactive > 0 && now - accessed >= maxInactive * 1000L;
+		}
+	}
+
+}
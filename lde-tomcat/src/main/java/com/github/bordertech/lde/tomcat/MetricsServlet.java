@@ -0,0 +1,73 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serve the LDE metrics in the Prometheus text format.
+ * <p>
+ * Each metric name is prefixed with "lde_" and its dots replaced with underscores. A label in square brackets becomes a Prometheus label named after
+ * the first part of the metric name, so "route[/api/*].requests" is served as "lde_route_requests{route="/api/*"}".
+ * </p>
+ */
+public class MetricsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final transient Supplier<Map<String, Number>> metrics;
+
+	/**
+	 * @param metrics the supplier of the metrics snapshot
+	 */
+	public MetricsServlet(final Supplier<Map<String, Number>> metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+		resp.setContentType(CONTENT_TYPE);
+		resp.setHeader("Cache-Control", "no-cache");
+		PrintWriter writer = resp.getWriter();
+		for (Map.Entry<String, Number> entry : metrics.get().entrySet()) {
+			writer.print(toPrometheusName(entry.getKey()));
+			writer.print(' ');
+			writer.print(entry.getValue());
+			writer.print('\n');
+		}
+	}
+
+	/**
+	 * @param key the LDE metric name
+	 * @return the Prometheus metric name and labels
+	 */
+	protected static String toPrometheusName(final String key) {
+		int open = key.indexOf('[');
+		int close = key.lastIndexOf(']');
+		if (open < 0 || close < open) {
+			return sanitize("lde." + key);
+		}
+		String group = key.substring(0, open);
+		String label = key.substring(open + 1, close);
+		String name = sanitize("lde." + group + key.substring(close + 1));
+		return name + "{" + sanitize(group) + "=\"" + label.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+	}
+
+	/**
+	 * @param name the name
+	 * @return the name with the characters Prometheus does not allow replaced with underscores
+	 */
+	private static String sanitize(final String name) {
+		StringBuilder result = new StringBuilder(name.length());
+		for (char c : name.toCharArray()) {
+			result.append(Character.isLetterOrDigit(c) && c < 128 ? c : '_');
+		}
+		return result.toString();
+	}
+
+}
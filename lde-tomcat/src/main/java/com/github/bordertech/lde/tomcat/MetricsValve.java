@@ -0,0 +1,280 @@
+package com.github.bordertech.lde.tomcat;
+
+import com.github.bordertech.lde.api.LatencyHistogram;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.coyote.AbstractProcessor;
+import org.apache.coyote.http11.Http11Processor;
+import org.apache.tomcat.util.net.SocketWrapperBase;
+
+/**
+ * Record the request latency, counts and bytes for each servlet mapping pattern (eg "/api/*" or "*.jsp").
+ * <p>
+ * Recording a request updates the latency histogram and a few counters, and reads the keep-alive count of the connection. Requests are grouped by the
+ * servlet mapping pattern rather than the URL so the number of routes stays small. Asynchronous requests are recorded when they complete.
+ * </p>
+ * <p>
+ * A request is counted as reusing a keep-alive connection if its HTTP/1.1 connection has already served a request. TOMCAT counts down the
+ * keep-alive requests left on each connection but does not expose the count, so it is read by reflection from the processor of the request. The
+ * count is only kept when the connector limits the keep-alive requests (<code>maxKeepAliveRequests</code> greater than 1, the default is 100).
+ * HTTP/2 streams are not counted.
+ * </p>
+ */
+public class MetricsValve extends ValveBase {
+
+	private static final Log LOG = LogFactory.getLog(MetricsValve.class);
+
+	private static final String UNMAPPED = "unmapped";
+
+	private static final Field REQUEST_HOOK = retrieveField(org.apache.coyote.Request.class, "hook");
+	private static final Field PROCESSOR_SOCKET = retrieveField(AbstractProcessor.class, "socketWrapper");
+	private static final Field KEEP_ALIVE_LEFT = retrieveField(SocketWrapperBase.class, "keepAliveLeft");
+
+	private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+	private final RouteMetrics total = new RouteMetrics();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder keepAliveReused = new LongAdder();
+
+	/**
+	 * Default constructor.
+	 */
+	public MetricsValve() {
+		super(true);
+	}
+
+	@Override
+	public void invoke(final Request request, final Response response) throws IOException, ServletException {
+		long start = System.nanoTime();
+		String route = getRoute(request);
+		if (isKeepAliveReused(request.getCoyoteRequest())) {
+			keepAliveReused.increment();
+		}
+		boolean async = false;
+		try {
+			getNext().invoke(request, response);
+			if (request.isAsyncStarted()) {
+				async = true;
+				request.getAsyncContext().addListener(new CompletionListener(route, start, request, response));
+			}
+		} finally {
+			if (!async) {
+				record(route, start, request, response);
+			}
+		}
+	}
+
+	/**
+	 * @return the metrics of all requests
+	 */
+	public RouteMetrics getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return the metrics of each servlet mapping pattern
+	 */
+	public Map<String, RouteMetrics> getRoutes() {
+		return new TreeMap<>(routes);
+	}
+
+	/**
+	 * @return the number of response bytes sent
+	 */
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	/**
+	 * @return the number of request body bytes received
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	/**
+	 * @return the number of requests received on a connection that had already been used
+	 */
+	public long getKeepAliveReused() {
+		return keepAliveReused.sum();
+	}
+
+	/**
+	 * @param request the request
+	 * @return the servlet mapping pattern of the request
+	 */
+	protected String getRoute(final Request request) {
+		try {
+			String pattern = request.getServletMapping().getPattern();
+			return pattern == null || pattern.isEmpty() ? UNMAPPED : pattern;
+		} catch (RuntimeException e) {
+			// Not mapped to a servlet
+			return UNMAPPED;
+		}
+	}
+
+	/**
+	 * @param route the servlet mapping pattern
+	 * @param start the start time in nanoseconds
+	 * @param request the request
+	 * @param response the response
+	 */
+	protected void record(final String route, final long start, final Request request, final Response response) {
+		long nanos = System.nanoTime() - start;
+		int status = response.getStatus();
+		total.record(nanos, status);
+		routes.computeIfAbsent(route, k -> new RouteMetrics()).record(nanos, status);
+		bytesSent.add(response.getBytesWritten(false));
+		bytesReceived.add(Math.max(0, request.getCoyoteRequest().getBytesRead()));
+	}
+
+	/**
+	 * @param request the coyote request
+	 * @return true if the request is not the first on its HTTP/1.1 connection
+	 */
+	protected boolean isKeepAliveReused(final org.apache.coyote.Request request) {
+		if (KEEP_ALIVE_LEFT == null || PROCESSOR_SOCKET == null || REQUEST_HOOK == null) {
+			return false;
+		}
+		try {
+			Object hook = REQUEST_HOOK.get(request);
+			if (!(hook instanceof Http11Processor)) {
+				return false;
+			}
+			int max = ((Http11Processor) hook).getMaxKeepAliveRequests();
+			Object socket = PROCESSOR_SOCKET.get(hook);
+			if (max <= 1 || socket == null) {
+				return false;
+			}
+			// Starts at the maximum and is counted down for each request on the connection before the request is processed
+			return KEEP_ALIVE_LEFT.getInt(socket) < max - 1;
+		} catch (IllegalAccessException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param type the class declaring the field
+	 * @param name the field name
+	 * @return the field or null if it could not be read
+	 */
+	private static Field retrieveField(final Class<?> type, final String name) {
+		try {
+			Field field = type.getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOG.warn("Could not read [" + type.getName() + "." + name + "] so keep-alive reuse is not counted. " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * The metrics of a group of requests.
+	 */
+	public static class RouteMetrics {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder clientErrors = new LongAdder();
+		private final LongAdder serverErrors = new LongAdder();
+
+		/**
+		 * @param nanos the request latency in nanoseconds
+		 * @param status the response status
+		 */
+		void record(final long nanos, final int status) {
+			latency.recordNanos(nanos);
+			if (status >= 500) {
+				serverErrors.increment();
+			} else if (status >= 400) {
+				clientErrors.increment();
+			}
+		}
+
+		/**
+		 * @return the request latency histogram
+		 */
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * @return the number of requests
+		 */
+		public long getRequests() {
+			return latency.getCount();
+		}
+
+		/**
+		 * @return the number of 4xx responses
+		 */
+		public long getClientErrors() {
+			return clientErrors.sum();
+		}
+
+		/**
+		 * @return the number of 5xx responses
+		 */
+		public long getServerErrors() {
+			return serverErrors.sum();
+		}
+	}
+
+	/**
+	 * Record an asynchronous request when it completes.
+	 */
+	private final class CompletionListener implements AsyncListener {
+
+		private final String route;
+		private final long start;
+		private final Request request;
+		private final Response response;
+
+		/**
+		 * @param route the servlet mapping pattern
+		 * @param start the start time in nanoseconds
+		 * @param request the request
+		 * @param response the response
+		 */
+		private CompletionListener(final String route, final long start, final Request request, final Response response) {
+			this.route = route;
+			this.start = start;
+			this.request = request;
+			this.response = response;
+		}
+
+		@Override
+		public void onComplete(final AsyncEvent event) {
+			record(route, start, request, response);
+		}
+
+		@Override
+		public void onTimeout(final AsyncEvent event) {
+			// Recorded on complete
+		}
+
+		@Override
+		public void onError(final AsyncEvent event) {
+			// Recorded on complete
+		}
+
+		@Override
+		public void onStartAsync(final AsyncEvent event) {
+			event.getAsyncContext().addListener(this);
+		}
+	}
+
+}
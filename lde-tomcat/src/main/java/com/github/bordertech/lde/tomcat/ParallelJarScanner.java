@@ -0,0 +1,488 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Manifest;
+import javax.servlet.ServletContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tomcat.Jar;
+import org.apache.tomcat.JarScanType;
+import org.apache.tomcat.JarScannerCallback;
+import org.apache.tomcat.util.buf.UriUtil;
+import org.apache.tomcat.util.scan.JarFactory;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+
+/**
+ * Jar scanner that opens the jars to scan concurrently on a fork-join pool.
+ * <p>
+ * The jars to scan are found the same way as the {@link StandardJarScanner}. Only opening each jar and reading its manifest is done in parallel. The
+ * callback, which parses the TLDs, web fragments and annotations, is still called for each jar one at a time, in the same order as the
+ * {@link StandardJarScanner}. This keeps the result of the scan deterministic and means the TOMCAT callbacks do not need to be thread safe, but the
+ * time saved is limited to the time spent opening jars. As the class path is found before the scan starts, the manifests of jars not opened ahead
+ * are read separately, so with the jars in the file system cache this scanner is slower than the {@link StandardJarScanner}. The time taken for
+ * each location is kept in {@link #getScanTimes()} and logged at debug level to see if it helps.
+ * </p>
+ * <p>
+ * Jars are opened at most twice the parallelism ahead of the jar being scanned, so the number of jars open at once is bounded however many jars
+ * are on the class path. The manifests of the jars further ahead are read, to find their <code>Class-Path</code> entries, and the jars closed again.
+ * </p>
+ */
+public class ParallelJarScanner extends StandardJarScanner implements CustomJarScanner {
+
+	private static final Log LOG = LogFactory.getLog(ParallelJarScanner.class);
+
+	private final int parallelism;
+
+	private final int openAhead;
+
+	private volatile Map<String, Long> scanTimes = Collections.emptyMap();
+
+	/**
+	 * Default constructor.
+	 */
+	public ParallelJarScanner() {
+		this(TomcatConfigUtil.getJarScannerParallelism());
+	}
+
+	/**
+	 * @param parallelism the number of threads used to open jars
+	 */
+	public ParallelJarScanner(final int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+		this.openAhead = this.parallelism * 2;
+	}
+
+	/**
+	 * @return the number of threads used to open jars
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return the time in milliseconds taken to open and scan each jar in the last scan, in scan order
+	 */
+	public Map<String, Long> getScanTimes() {
+		return scanTimes;
+	}
+
+	@Override
+	public void scan(final JarScanType scanType, final ServletContext context, final JarScannerCallback callback) {
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		RecordingCallback recorder = new RecordingCallback(pool);
+		try {
+			// Find the jars to scan and start opening them
+			super.scan(scanType, context, recorder);
+			// Callback in the order the jars were found, opening the jars ahead of the callback
+			Map<String, Long> times = new LinkedHashMap<>();
+			List<ScanTarget> targets = recorder.getTargets();
+			for (int i = 0; i < targets.size(); i++) {
+				if (i + openAhead < targets.size()) {
+					targets.get(i + openAhead).open(pool);
+				}
+				ScanTarget target = targets.get(i);
+				target.open(pool);
+				deliver(target, callback, times);
+			}
+			scanTimes = Collections.unmodifiableMap(times);
+			if (LOG.isInfoEnabled()) {
+				LOG.info("Jar scan [" + scanType + "] of " + times.size() + " locations took "
+						+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms with parallelism " + parallelism + ".");
+			}
+		} finally {
+			recorder.closeAll();
+			pool.shutdown();
+		}
+	}
+
+	@Override
+	protected void process(final JarScanType scanType, final JarScannerCallback callback, final URL url, final String webappPath,
+			final boolean isWebapp, final Deque<URL> classPathUrlsToProcess) throws IOException {
+		if (callback instanceof RecordingCallback) {
+			((RecordingCallback) callback).add(scanType, url, webappPath, isWebapp, classPathUrlsToProcess != null);
+		} else {
+			super.process(scanType, callback, url, webappPath, isWebapp, classPathUrlsToProcess);
+		}
+	}
+
+	/**
+	 * Record the class path locations, then the locations referenced by their manifests, in the same order as the {@link StandardJarScanner}.
+	 * <p>
+	 * The {@link StandardJarScanner} adds the manifest <code>Class-Path</code> entries of each jar to the end of the locations to process, so the
+	 * locations are recorded a level at a time, while the manifests of the next level are read on the pool.
+	 * </p>
+	 */
+	@Override
+	protected void processURLs(final JarScanType scanType, final JarScannerCallback callback, final Set<URL> processedURLs, final boolean isWebapp,
+			final Deque<URL> classPathUrlsToProcess) {
+		if (!(callback instanceof RecordingCallback)) {
+			super.processURLs(scanType, callback, processedURLs, isWebapp, classPathUrlsToProcess);
+			return;
+		}
+		List<ScanTarget> targets = ((RecordingCallback) callback).getTargets();
+		Deque<URL> urls = classPathUrlsToProcess;
+		while (!urls.isEmpty()) {
+			int first = targets.size();
+			super.processURLs(scanType, callback, processedURLs, isWebapp, urls);
+			urls = new ArrayDeque<>();
+			for (int i = first; i < targets.size(); i++) {
+				urls.addAll(targets.get(i).getManifestUrls());
+			}
+		}
+	}
+
+	/**
+	 * Pass the prepared scan target to the callback.
+	 *
+	 * @param target the scan target
+	 * @param callback the TOMCAT callback
+	 * @param times the scan times so far
+	 */
+	protected void deliver(final ScanTarget target, final JarScannerCallback callback, final Map<String, Long> times) {
+		long start = System.nanoTime();
+		try {
+			if (target.isWebInfClasses()) {
+				callback.scanWebInfClasses();
+				return;
+			}
+			if (target.getDirectory() != null) {
+				callback.scan(target.getDirectory(), target.getWebappPath(), target.isWebapp());
+			} else {
+				try (Jar jar = target.getJar()) {
+					if (jar != null) {
+						callback.scan(jar, target.getWebappPath(), target.isWebapp());
+					}
+				}
+			}
+		} catch (IOException e) {
+			LOG.warn("Failed to scan [" + target.getUrl() + "]. " + e.getMessage(), e);
+		} finally {
+			long took = target.getOpenNanos() + System.nanoTime() - start;
+			if (target.getUrl() != null) {
+				times.put(target.getUrl().toString(), TimeUnit.NANOSECONDS.toMillis(took));
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Scanned [" + target.getUrl() + "] in " + TimeUnit.NANOSECONDS.toMicros(took) + "us.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the class path entries from the jar manifest.
+	 *
+	 * @param jar the jar to read the manifest
+	 * @return the URLs on the manifest class path
+	 * @throws IOException an IO exception reading the manifest
+	 */
+	protected List<URL> readManifestClassPath(final Jar jar) throws IOException {
+		Manifest manifest = jar.getManifest();
+		if (manifest == null) {
+			return Collections.emptyList();
+		}
+		String classPath = manifest.getMainAttributes().getValue("Class-Path");
+		if (classPath == null) {
+			return Collections.emptyList();
+		}
+		List<URL> urls = new ArrayList<>();
+		for (String entry : classPath.split(" ")) {
+			String trimmed = entry.trim();
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+			try {
+				urls.add(jar.getJarFileURL().toURI().resolve(trimmed).toURL());
+			} catch (URISyntaxException | IOException | IllegalArgumentException e) {
+				LOG.debug("Invalid manifest class path entry [" + trimmed + "] in [" + jar.getJarFileURL() + "].", e);
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * Callback that records the locations to scan, in order. Starts opening the first jars on the pool and reading the manifests of the others.
+	 */
+	protected class RecordingCallback implements JarScannerCallback {
+
+		private final ForkJoinPool pool;
+		private final List<ScanTarget> targets = new ArrayList<>();
+
+		/**
+		 * @param pool the pool to open the jars on
+		 */
+		public RecordingCallback(final ForkJoinPool pool) {
+			this.pool = pool;
+		}
+
+		/**
+		 * Record a location to scan.
+		 *
+		 * @param scanType the scan type
+		 * @param url the location URL
+		 * @param webappPath the path in the web app or null
+		 * @param isWebapp true if a web app location
+		 * @param readManifest true if the manifest class path should be followed
+		 * @throws IOException an IO exception checking the location
+		 */
+		public void add(final JarScanType scanType, final URL url, final String webappPath, final boolean isWebapp, final boolean readManifest)
+				throws IOException {
+			URL jarUrl = null;
+			File directory = null;
+			if ("jar".equals(url.getProtocol()) || url.getPath().endsWith(".jar")) {
+				jarUrl = url;
+			} else if ("file".equals(url.getProtocol())) {
+				File file = toFile(url);
+				if (file.isFile() && isScanAllFiles()) {
+					jarUrl = UriUtil.buildJarUrl(file);
+				} else if (file.isDirectory()
+						&& (scanType == JarScanType.PLUGGABILITY || new File(file.getAbsoluteFile(), "META-INF").isDirectory())) {
+					directory = file;
+				}
+			}
+			if (jarUrl == null && directory == null) {
+				return;
+			}
+			ScanTarget target = new ScanTarget(url, webappPath, isWebapp, directory, jarUrl, readManifest && isScanManifest() && !isWebapp);
+			if (targets.size() < openAhead) {
+				target.open(pool);
+			} else {
+				target.readManifest(pool);
+			}
+			targets.add(target);
+		}
+
+		/**
+		 * @return the locations to scan in order
+		 */
+		public List<ScanTarget> getTargets() {
+			return targets;
+		}
+
+		/**
+		 * Close any jars that were opened but not scanned.
+		 */
+		public void closeAll() {
+			for (ScanTarget target : targets) {
+				target.close();
+			}
+		}
+
+		@Override
+		public void scan(final Jar jar, final String webappPath, final boolean isWebapp) {
+			throw new IllegalStateException("Jars are recorded via process.");
+		}
+
+		@Override
+		public void scan(final File file, final String webappPath, final boolean isWebapp) {
+			throw new IllegalStateException("Directories are recorded via process.");
+		}
+
+		@Override
+		public void scanWebInfClasses() {
+			targets.add(new ScanTarget(null, null, true, null, null, false));
+		}
+
+		/**
+		 * @param url the file URL
+		 * @return the file
+		 * @throws IOException the URL is not a valid file URL
+		 */
+		private File toFile(final URL url) throws IOException {
+			try {
+				return new File(url.toURI());
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				throw new IOException("Invalid file URL [" + url + "]", e);
+			}
+		}
+	}
+
+	/**
+	 * A location to scan and the jar being opened for it.
+	 */
+	protected class ScanTarget {
+
+		private final URL url;
+		private final String webappPath;
+		private final boolean webapp;
+		private final File directory;
+		private final URL jarUrl;
+		private final boolean readManifest;
+		private ForkJoinTask<Jar> jarTask;
+		private ForkJoinTask<Void> manifestTask;
+		private volatile List<URL> manifestUrls = Collections.emptyList();
+		private volatile long openNanos;
+		private volatile long manifestNanos;
+
+		/**
+		 * @param url the location URL or null for WEB-INF/classes
+		 * @param webappPath the path in the web app or null
+		 * @param webapp true if a web app location
+		 * @param directory the directory to scan or null if a jar
+		 * @param jarUrl the jar URL or null if not a jar
+		 * @param readManifest true if read the manifest class path
+		 */
+		public ScanTarget(final URL url, final String webappPath, final boolean webapp, final File directory, final URL jarUrl,
+				final boolean readManifest) {
+			this.url = url;
+			this.webappPath = webappPath;
+			this.webapp = webapp;
+			this.directory = directory;
+			this.jarUrl = jarUrl;
+			this.readManifest = readManifest;
+		}
+
+		/**
+		 * Start opening the jar on the pool, reading the manifest class path if not already read. Does nothing if not a jar or already opened.
+		 *
+		 * @param pool the pool to open the jar on
+		 */
+		public void open(final ForkJoinPool pool) {
+			if (jarUrl == null || jarTask != null) {
+				return;
+			}
+			boolean readNow = readManifest && manifestTask == null;
+			jarTask = pool.submit(() -> {
+				long start = System.nanoTime();
+				Jar jar = JarFactory.newInstance(jarUrl);
+				try {
+					if (readNow) {
+						manifestUrls = readManifestClassPath(jar);
+					}
+				} catch (IOException e) {
+					jar.close();
+					throw e;
+				} finally {
+					openNanos = System.nanoTime() - start;
+				}
+				return jar;
+			});
+		}
+
+		/**
+		 * Start reading the manifest class path on the pool, closing the jar once read. Does nothing if the manifest is not needed.
+		 *
+		 * @param pool the pool to read the manifest on
+		 */
+		public void readManifest(final ForkJoinPool pool) {
+			if (jarUrl == null || !readManifest || manifestTask != null) {
+				return;
+			}
+			manifestTask = pool.submit(() -> {
+				long start = System.nanoTime();
+				try (Jar jar = JarFactory.newInstance(jarUrl)) {
+					manifestUrls = readManifestClassPath(jar);
+				} finally {
+					manifestNanos = System.nanoTime() - start;
+				}
+				return null;
+			});
+		}
+
+		/**
+		 * @return the opened jar or null if it could not be opened
+		 */
+		public Jar getJar() {
+			if (jarTask == null) {
+				return null;
+			}
+			try {
+				return jarTask.join();
+			} catch (RuntimeException e) {
+				LOG.warn("Failed to open [" + url + "]. " + e.getMessage(), e);
+				return null;
+			} finally {
+				jarTask = null;
+			}
+		}
+
+		/**
+		 * Close the jar if it was opened and not scanned.
+		 */
+		public void close() {
+			if (manifestTask != null) {
+				manifestTask.quietlyJoin();
+			}
+			if (jarTask == null) {
+				return;
+			}
+			try {
+				jarTask.join().close();
+			} catch (RuntimeException e) {
+				// Already reported or never scanned
+				LOG.debug("Closing unscanned jar [" + url + "] failed.", e);
+			} finally {
+				jarTask = null;
+			}
+		}
+
+		/**
+		 * @return the manifest class path URLs once the jar has been opened
+		 */
+		public List<URL> getManifestUrls() {
+			if (manifestTask != null) {
+				manifestTask.quietlyJoin();
+			}
+			if (jarTask != null) {
+				jarTask.quietlyJoin();
+			}
+			return manifestUrls;
+		}
+
+		/**
+		 * @return the location URL or null for WEB-INF/classes
+		 */
+		public URL getUrl() {
+			return url;
+		}
+
+		/**
+		 * @return the path in the web app or null
+		 */
+		public String getWebappPath() {
+			return webappPath;
+		}
+
+		/**
+		 * @return true if a web app location
+		 */
+		public boolean isWebapp() {
+			return webapp;
+		}
+
+		/**
+		 * @return the directory to scan or null
+		 */
+		public File getDirectory() {
+			return directory;
+		}
+
+		/**
+		 * @return true if this is the WEB-INF/classes callback
+		 */
+		public boolean isWebInfClasses() {
+			return url == null;
+		}
+
+		/**
+		 * @return the time taken to open the jar and read its manifest in nanoseconds
+		 */
+		public long getOpenNanos() {
+			return openNanos + manifestNanos;
+		}
+	}
+
+}
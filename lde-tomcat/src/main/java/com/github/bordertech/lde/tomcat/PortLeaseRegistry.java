@@ -0,0 +1,148 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Registry of the ports leased to the LDE servers on this machine.
+ * <p>
+ * The leases are kept in a file that is locked while a port is leased, so processes sharing the file (eg parallel test forks, the modules of a
+ * parallel Maven build or other builds on the same machine) never find the same free port before either has bound it. A lease expires after its
+ * time to live, by which time the server has bound the port and any other process checking it will see it is in use. Leases are released when the server stops.
+ * </p>
+ */
+public class PortLeaseRegistry {
+
+	private static final Log LOG = LogFactory.getLog(PortLeaseRegistry.class);
+
+	/**
+	 * File locks are held by the JVM, so threads in the same JVM also need to be serialized.
+	 */
+	private static final Object JVM_LOCK = new Object();
+
+	private static final String OWNER = ManagementFactory.getRuntimeMXBean().getName();
+
+	private final Path file;
+	private final long ttlMillis;
+
+	/**
+	 * @param file the lease file shared by the processes
+	 * @param ttlMillis the time to live of a lease in milliseconds
+	 */
+	public PortLeaseRegistry(final Path file, final long ttlMillis) {
+		this.file = file;
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Lease the next free port that is not leased to another server.
+	 *
+	 * @param start the port to start looking from
+	 * @param maxTries the maximum number of ports to try after the start port
+	 * @return the leased port
+	 */
+	public int lease(final int start, final int maxTries) {
+		synchronized (JVM_LOCK) {
+			TomcatConfigUtil.checkPath(file.getParent());
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				// Released when the channel is closed
+				channel.lock();
+				Properties leases = read(channel);
+				long now = System.currentTimeMillis();
+				int port = start;
+				int tries = 0;
+				while (isLeased(leases, port, now) || !TomcatConfigUtil.isTcpPortAvailable(port)) {
+					if (++tries > maxTries) {
+						throw new IllegalStateException("Unable to lease a free port to start TOMCAT.");
+					}
+					port++;
+				}
+				leases.setProperty(String.valueOf(port), OWNER + "," + (now + ttlMillis));
+				write(channel, leases);
+				LOG.info("Leased port " + port + " to start TOMCAT.");
+				return port;
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not lease a port using [" + file + "]. " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Release the lease of a port.
+	 *
+	 * @param port the leased port
+	 */
+	public void release(final int port) {
+		synchronized (JVM_LOCK) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				// Released when the channel is closed
+				channel.lock();
+				Properties leases = read(channel);
+				if (leases.remove(String.valueOf(port)) != null) {
+					write(channel, leases);
+				}
+			} catch (IOException e) {
+				LOG.warn("Could not release port " + port + " using [" + file + "]. " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @param leases the current leases
+	 * @param port the port to check
+	 * @param now the current time in milliseconds
+	 * @return true if the port has a lease that has not expired
+	 */
+	private boolean isLeased(final Properties leases, final int port, final long now) {
+		String lease = leases.getProperty(String.valueOf(port));
+		if (lease == null) {
+			return false;
+		}
+		int idx = lease.lastIndexOf(',');
+		try {
+			if (Long.parseLong(lease.substring(idx + 1)) > now) {
+				return true;
+			}
+		} catch (NumberFormatException e) {
+			// Treat a corrupt lease as expired
+		}
+		leases.remove(String.valueOf(port));
+		return false;
+	}
+
+	/**
+	 * @param channel the locked lease file
+	 * @return the leases
+	 * @throws IOException an IO exception reading the leases
+	 */
+	private Properties read(final FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+		channel.read(buffer, 0);
+		Properties leases = new Properties();
+		leases.load(new ByteArrayInputStream(buffer.array()));
+		return leases;
+	}
+
+	/**
+	 * @param channel the locked lease file
+	 * @param leases the leases to write
+	 * @throws IOException an IO exception writing the leases
+	 */
+	private void write(final FileChannel channel, final Properties leases) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		leases.store(out, "LDE port leases");
+		channel.truncate(0);
+		channel.write(ByteBuffer.wrap(out.toByteArray()), 0);
+		channel.force(false);
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.ServletException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+/**
+ * Count the requests received by each protocol (eg HTTP/1.1 and HTTP/2.0).
+ */
+public class ProtocolUsageValve extends ValveBase {
+
+	private final ConcurrentMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+	/**
+	 * Default constructor.
+	 */
+	public ProtocolUsageValve() {
+		super(true);
+	}
+
+	@Override
+	public void invoke(final Request request, final Response response) throws IOException, ServletException {
+		String protocol = request.getProtocol();
+		counts.computeIfAbsent(protocol == null ? "UNKNOWN" : protocol, k -> new LongAdder()).increment();
+		getNext().invoke(request, response);
+	}
+
+	/**
+	 * @return the number of requests received by each protocol
+	 */
+	public Map<String, Long> getCounts() {
+		Map<String, Long> snapshot = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().sum());
+		}
+		return snapshot;
+	}
+
+}
@@ -0,0 +1,211 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Watch directories for changes and run an action once the changes have settled.
+ * <p>
+ * The directories are watched recursively with a {@link WatchService}. A burst of changes, such as an IDE or build recompiling many classes, is
+ * debounced so the action only runs once no further change has been seen for the debounce interval.
+ * </p>
+ * <p>
+ * Closing the watcher waits for an action in progress to finish, and no action runs once the watcher is closed.
+ * </p>
+ */
+public class ReloadWatcher implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(ReloadWatcher.class);
+
+	private final List<Path> dirs;
+	private final long debounceMillis;
+	private final Runnable action;
+	private final Map<WatchKey, Path> keys = new HashMap<>();
+	private final Object actionLock = new Object();
+	private WatchService service;
+	private Thread thread;
+	private volatile boolean closed;
+
+	/**
+	 * @param dirs the directories to watch
+	 * @param debounceMillis the time in milliseconds with no changes before the action runs
+	 * @param action the action to run when the directories have changed
+	 */
+	public ReloadWatcher(final List<Path> dirs, final long debounceMillis, final Runnable action) {
+		this.dirs = dirs;
+		this.debounceMillis = debounceMillis;
+		this.action = action;
+	}
+
+	/**
+	 * Start watching the directories.
+	 *
+	 * @throws IOException an IO exception registering the directories
+	 */
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			return;
+		}
+		closed = false;
+		service = FileSystems.getDefault().newWatchService();
+		for (Path dir : dirs) {
+			if (Files.isDirectory(dir)) {
+				registerAll(service, dir);
+				LOG.info("Watching [" + dir + "] for changes.");
+			}
+		}
+		thread = new Thread(this::watch, "lde-reload-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching the directories, waiting for an action in progress to finish.
+	 * <p>
+	 * The action must not wait on a lock held by the caller of close, as close waits for the action.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (thread == null) {
+				return;
+			}
+			closed = true;
+			try {
+				service.close();
+			} catch (IOException e) {
+				LOG.warn("Could not close reload watcher. " + e.getMessage());
+			}
+			// Closing the service releases the watching thread without interrupting an action in progress
+			thread = null;
+			service = null;
+		}
+		// Wait for an action in progress, which is reentrant if the action itself closes the watcher
+		synchronized (actionLock) {
+			LOG.debug("Reload watcher closed.");
+		}
+	}
+
+	/**
+	 * Wait for changes and run the action once they have settled.
+	 */
+	protected void watch() {
+		WatchService watch = service;
+		try {
+			while (true) {
+				// Wait for the first change
+				if (!processEvents(watch, watch.take())) {
+					continue;
+				}
+				// Wait until it goes quiet
+				WatchKey key;
+				while ((key = watch.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+					processEvents(watch, key);
+				}
+				runAction();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// Watcher closed
+			return;
+		}
+	}
+
+	/**
+	 * Run the action, logging any failure so the watcher keeps running.
+	 */
+	protected void runAction() {
+		synchronized (actionLock) {
+			if (closed) {
+				return;
+			}
+			try {
+				action.run();
+			} catch (RuntimeException e) {
+				LOG.error("Reload after change failed. " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Called for each change as soon as it is seen, before the changes have settled.
+	 *
+	 * @param kind the kind of change
+	 * @param path the path that changed, or the watched directory if events were lost
+	 */
+	protected void onChange(final WatchEvent.Kind<?> kind, final Path path) {
+		// Do nothing by default
+	}
+
+	/**
+	 * Process the events of a key and register any new directories.
+	 *
+	 * @param watch the watch service
+	 * @param key the watch key
+	 * @return true if a change was seen
+	 */
+	private boolean processEvents(final WatchService watch, final WatchKey key) {
+		Path dir = keys.get(key);
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			changed = true;
+			if (dir == null) {
+				continue;
+			}
+			Path child = event.context() instanceof Path ? dir.resolve((Path) event.context()) : dir;
+			onChange(event.kind(), child);
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+				if (Files.isDirectory(child)) {
+					try {
+						registerAll(watch, child);
+					} catch (IOException e) {
+						LOG.warn("Could not watch [" + child + "]. " + e.getMessage());
+					}
+				}
+			}
+		}
+		if (!key.reset()) {
+			keys.remove(key);
+		}
+		return changed;
+	}
+
+	/**
+	 * Register a directory and its sub directories.
+	 *
+	 * @param watch the watch service
+	 * @param root the directory to register
+	 * @throws IOException an IO exception registering the directories
+	 */
+	private void registerAll(final WatchService watch, final Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+				WatchKey key = dir.register(watch, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+				keys.put(key, dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
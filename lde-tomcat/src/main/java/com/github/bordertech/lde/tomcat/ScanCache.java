@@ -0,0 +1,168 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Persistent cache of the jars that contributed nothing to the annotation and {@code @HandlesTypes} scan.
+ * <p>
+ * Each jar is fingerprinted by its path, size and last modified time. A jar that is unchanged since it was last scanned and did not contribute any
+ * servlet annotations or {@code @HandlesTypes} matches can skip the scan. Changed and new jars are always scanned and their result recorded. The cache
+ * is only valid for the same set of {@code @HandlesTypes} and is discarded if that changes or if a jar previously scanned has been removed.
+ * </p>
+ * <p>
+ * The scan mode is recorded with the result. A jar that contributed nothing to a full scan can skip either scan, but a jar only scanned for
+ * {@code @HandlesTypes} (eg its fragment is metadata complete) can only skip another {@code @HandlesTypes} only scan.
+ * </p>
+ */
+public class ScanCache {
+
+	private static final Log LOG = LogFactory.getLog(ScanCache.class);
+
+	private static final String HANDLES_TYPES_KEY = "lde.handles.types";
+
+	private final Path file;
+	private final Map<String, String> entries = new HashMap<>();
+	private String handlesTypesKey;
+	private boolean dirty;
+	private int hits;
+	private int misses;
+
+	/**
+	 * @param file the file the cache is persisted in
+	 */
+	public ScanCache(final Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Load the cache and check it is still valid for the current {@code @HandlesTypes}.
+	 *
+	 * @param typesKey the key identifying the current {@code @HandlesTypes}
+	 */
+	public void load(final String typesKey) {
+		entries.clear();
+		handlesTypesKey = typesKey;
+		hits = 0;
+		misses = 0;
+		dirty = false;
+		if (!Files.isRegularFile(file)) {
+			return;
+		}
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			props.load(in);
+		} catch (IOException | IllegalArgumentException e) {
+			LOG.warn("Could not read scan cache [" + file + "]. " + e.getMessage());
+			dirty = true;
+			return;
+		}
+		if (!typesKey.equals(props.getProperty(HANDLES_TYPES_KEY))) {
+			LOG.info("Scan cache discarded as the @HandlesTypes have changed.");
+			dirty = true;
+			return;
+		}
+		for (String name : props.stringPropertyNames()) {
+			if (HANDLES_TYPES_KEY.equals(name)) {
+				continue;
+			}
+			// A removed jar may have hidden a duplicate class in another jar, so start again
+			if (!new File(name).exists()) {
+				LOG.info("Scan cache discarded as [" + name + "] has been removed.");
+				entries.clear();
+				dirty = true;
+				return;
+			}
+			entries.put(name, props.getProperty(name));
+		}
+	}
+
+	/**
+	 * @param jar the jar file
+	 * @param handlesTypesOnly true if the jar is only scanned for {@code @HandlesTypes}
+	 * @return true if the jar is unchanged and previously contributed nothing to a scan covering this scan
+	 */
+	public boolean isSkippable(final File jar, final boolean handlesTypesOnly) {
+		String cached = entries.get(jar.getAbsolutePath());
+		if (cached != null && (cached.equals(fingerprint(jar, false, false)) || handlesTypesOnly && cached.equals(fingerprint(jar, true, false)))) {
+			hits++;
+			return true;
+		}
+		misses++;
+		return false;
+	}
+
+	/**
+	 * Record the result of scanning a jar.
+	 *
+	 * @param jar the jar file
+	 * @param handlesTypesOnly true if the jar was only scanned for {@code @HandlesTypes}
+	 * @param contributed true if the jar contributed annotations or {@code @HandlesTypes} matches
+	 */
+	public void record(final File jar, final boolean handlesTypesOnly, final boolean contributed) {
+		String value = fingerprint(jar, handlesTypesOnly, contributed);
+		String previous = entries.put(jar.getAbsolutePath(), value);
+		if (!value.equals(previous)) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Save the cache if it has changed.
+	 */
+	public void save() {
+		LOG.info("Scan cache skipped " + hits + " unchanged jars and scanned " + misses + " jars.");
+		if (!dirty) {
+			return;
+		}
+		Properties props = new Properties();
+		props.putAll(entries);
+		props.setProperty(HANDLES_TYPES_KEY, handlesTypesKey);
+		try {
+			TomcatConfigUtil.checkPath(file.getParent());
+			Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+			try (OutputStream out = Files.newOutputStream(tmp)) {
+				props.store(out, "LDE annotation scan cache");
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			dirty = false;
+		} catch (IOException | IllegalStateException e) {
+			LOG.warn("Could not save scan cache [" + file + "]. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the number of jars skipped
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of jars scanned
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @param jar the jar file
+	 * @param handlesTypesOnly true if the jar was only scanned for {@code @HandlesTypes}
+	 * @param contributed true if the jar contributed to the scan
+	 * @return the fingerprint of the jar and its scan mode and result
+	 */
+	private String fingerprint(final File jar, final boolean handlesTypesOnly, final boolean contributed) {
+		return jar.length() + ":" + jar.lastModified() + ":" + (handlesTypesOnly ? "H" : "A") + ":" + (contributed ? "1" : "0");
+	}
+
+}
@@ -0,0 +1,178 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.ServletContext;
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.connector.Connector;
+
+/**
+ * Record the time taken by each phase of starting the server.
+ * <p>
+ * The web app phases are marked by lifecycle listeners registered before and after the other context listeners, and by a servlet container
+ * initializer that runs after the web app's initializers. The phases are:
+ * </p>
+ * <ul>
+ * <li>{@link #CREATE} - create the TOMCAT instance</li>
+ * <li>{@link #CONFIGURE} - configure TOMCAT, the connector and the web app context</li>
+ * <li>{@link #CONNECTOR} - initialise (bind the port) and start the connector</li>
+ * <li>{@link #RESOURCES} - start the web app resources and class loader</li>
+ * <li>{@link #SCAN} - process web.xml and scan the jars and classes for annotations</li>
+ * <li>{@link #INITIALIZERS} - run the servlet container initializers</li>
+ * <li>{@link #SERVLET_INIT} - start the context listeners, filters and load on startup servlets</li>
+ * <li>{@link #JSP_PRECOMPILE} - precompile the JSPs, if enabled</li>
+ * <li>{@link #TOTAL} - launch the server</li>
+ * </ul>
+ */
+public class StartupTimer {
+
+	/**
+	 * Create the TOMCAT instance.
+	 */
+	public static final String CREATE = "create";
+	/**
+	 * Configure TOMCAT.
+	 */
+	public static final String CONFIGURE = "configure";
+	/**
+	 * Initialise and start the connector.
+	 */
+	public static final String CONNECTOR = "connector";
+	/**
+	 * Start the web app resources.
+	 */
+	public static final String RESOURCES = "resources";
+	/**
+	 * Process web.xml and scan for annotations.
+	 */
+	public static final String SCAN = "scan";
+	/**
+	 * Run the servlet container initializers.
+	 */
+	public static final String INITIALIZERS = "initializers";
+	/**
+	 * Start the listeners, filters and servlets.
+	 */
+	public static final String SERVLET_INIT = "servletInit";
+	/**
+	 * Precompile the JSPs.
+	 */
+	public static final String JSP_PRECOMPILE = "jspPrecompile";
+	/**
+	 * Launch the server.
+	 */
+	public static final String TOTAL = "total";
+
+	private final Map<String, Long> timings = new LinkedHashMap<>();
+	private final Map<String, Long> started = new HashMap<>();
+	private boolean finished;
+
+	/**
+	 * @param phase the phase that has started
+	 */
+	public synchronized void start(final String phase) {
+		if (!finished) {
+			started.put(phase, System.nanoTime());
+		}
+	}
+
+	/**
+	 * @param phase the phase that has ended
+	 */
+	public synchronized void end(final String phase) {
+		Long start = started.remove(phase);
+		if (start != null && !finished) {
+			timings.merge(phase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), Long::sum);
+		}
+	}
+
+	/**
+	 * Stop recording, so a later reload of the web app is not added to the startup timings.
+	 */
+	public synchronized void finish() {
+		finished = true;
+		started.clear();
+	}
+
+	/**
+	 * @return the time taken by each phase in milliseconds, in the order they finished
+	 */
+	public synchronized Map<String, Long> getTimings() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(timings));
+	}
+
+	/**
+	 * Mark the phases of starting the web app context.
+	 * <p>
+	 * This must be registered after the context has been configured so the timing listeners wrap the other listeners.
+	 * </p>
+	 *
+	 * @param context the web app context
+	 */
+	public void register(final Context context) {
+		ServletContainerInitializer marker = new InitializersDone();
+		LifecycleListener first = event -> {
+			if (Lifecycle.BEFORE_START_EVENT.equals(event.getType())) {
+				start(RESOURCES);
+			} else if (Lifecycle.CONFIGURE_START_EVENT.equals(event.getType())) {
+				end(RESOURCES);
+				start(SCAN);
+			}
+		};
+		LifecycleListener last = event -> {
+			if (Lifecycle.CONFIGURE_START_EVENT.equals(event.getType())) {
+				end(SCAN);
+				start(INITIALIZERS);
+				// Added after the web app's initializers so it runs last
+				context.addServletContainerInitializer(marker, null);
+			} else if (Lifecycle.AFTER_START_EVENT.equals(event.getType())) {
+				end(SERVLET_INIT);
+			}
+		};
+		LifecycleListener[] existing = context.findLifecycleListeners();
+		for (LifecycleListener listener : existing) {
+			context.removeLifecycleListener(listener);
+		}
+		context.addLifecycleListener(first);
+		for (LifecycleListener listener : existing) {
+			context.addLifecycleListener(listener);
+		}
+		context.addLifecycleListener(last);
+	}
+
+	/**
+	 * Mark the connector initialising (binding the port) and starting.
+	 *
+	 * @param connector the connector
+	 */
+	public void register(final Connector connector) {
+		connector.addLifecycleListener(event -> {
+			String type = event.getType();
+			if (Lifecycle.BEFORE_INIT_EVENT.equals(type) || Lifecycle.BEFORE_START_EVENT.equals(type)) {
+				start(CONNECTOR);
+			} else if (Lifecycle.AFTER_INIT_EVENT.equals(type) || Lifecycle.AFTER_START_EVENT.equals(type)) {
+				end(CONNECTOR);
+			}
+		});
+	}
+
+	/**
+	 * Initializer that marks the end of the web app's initializers.
+	 */
+	private final class InitializersDone implements ServletContainerInitializer {
+
+		@Override
+		public void onStartup(final Set<Class<?>> classes, final ServletContext ctx) {
+			end(INITIALIZERS);
+			start(SERVLET_INIT);
+		}
+	}
+
+}
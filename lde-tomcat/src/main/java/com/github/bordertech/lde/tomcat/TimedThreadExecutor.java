@@ -0,0 +1,61 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.catalina.core.StandardThreadExecutor;
+
+/**
+ * Connector executor that times how long each task waited in the queue before a thread ran it.
+ * <p>
+ * Each task is stamped when the connector hands it to the executor. While the task runs, the time it waited is available to the request thread
+ * from {@link #takeQueueWaitNanos()}, which is how the {@link LdeAccessLogValve} logs the queue wait of a request.
+ * </p>
+ */
+public class TimedThreadExecutor extends StandardThreadExecutor {
+
+	private static final ThreadLocal<long[]> QUEUE_WAIT = ThreadLocal.withInitial(() -> new long[]{-1});
+
+	@Override
+	public void execute(final Runnable command) {
+		super.execute(wrap(command));
+	}
+
+	@Override
+	public void execute(final Runnable command, final long timeout, final TimeUnit unit) {
+		super.execute(wrap(command), timeout, unit);
+	}
+
+	/**
+	 * Take the time the running task waited in the queue.
+	 * <p>
+	 * The wait is only returned once, so further requests processed by the same task (eg a pipelined request) report no wait.
+	 * </p>
+	 *
+	 * @return the queue wait in nanoseconds, or -1 if the current thread is not running a task of a timed executor
+	 */
+	public static long takeQueueWaitNanos() {
+		long[] wait = QUEUE_WAIT.get();
+		long nanos = wait[0];
+		if (nanos > 0) {
+			wait[0] = 0;
+		}
+		return nanos;
+	}
+
+	/**
+	 * @param command the task to run
+	 * @return the task wrapped to record the time it waited in the queue
+	 */
+	protected Runnable wrap(final Runnable command) {
+		long submitted = System.nanoTime();
+		return () -> {
+			long[] wait = QUEUE_WAIT.get();
+			wait[0] = Math.max(0, System.nanoTime() - submitted);
+			try {
+				command.run();
+			} finally {
+				wait[0] = -1;
+			}
+		};
+	}
+
+}
@@ -7,9 +7,18 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.UnknownHostException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.coyote.http11.Http11Nio2Protocol;
+import org.apache.coyote.http11.Http11NioProtocol;
 
 /**
  * Tomcat provider configuration helper.
@@ -17,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 public final class TomcatConfigUtil {
 
 	private static final Log LOG = LogFactory.getLog(TomcatConfigUtil.class);
+	private static volatile InetAddress localhost;
 	private static final String BASE_DIR = Config.getInstance().getString("lde.tomcat.base.dir", "target/tomcat");
 	private static final String WEBAPP_DIR = Config.getInstance().getString("lde.tomcat.webapp.dir", "target/webapp");
 	private static final String WEBAPP_CLASSES_DIR = Config.getInstance().getString("lde.tomcat.webapp.classes.dir");
@@ -24,6 +34,59 @@ public final class TomcatConfigUtil {
 	private static final String CONTEXT_PATH = Config.getInstance().getString("lde.tomcat.context.path", "/lde");
 	private static final boolean CUSTOM_CLASSLOADER_ENABLED = Config.getInstance().getBoolean("lde.tomcat.custom.classloader.enabled", true);
 	private static final boolean CUSTOM_JARSCANNER_ENABLED = Config.getInstance().getBoolean("lde.tomcat.custom.jarscanner.enabled", true);
+	private static final boolean PARALLEL_JARSCANNER_ENABLED = Config.getInstance().getBoolean("lde.tomcat.jarscanner.parallel.enabled", false);
+	private static final int JARSCANNER_PARALLELISM = Config.getInstance().getInt("lde.tomcat.jarscanner.parallelism",
+			Runtime.getRuntime().availableProcessors());
+	private static final int START_TIMEOUT = Config.getInstance().getInt("lde.tomcat.start.timeout.seconds", 30);
+	private static final int STOP_TIMEOUT = Config.getInstance().getInt("lde.tomcat.stop.timeout.seconds", 30);
+	private static final boolean SCAN_CACHE_ENABLED = Config.getInstance().getBoolean("lde.tomcat.scan.cache.enabled", true);
+	private static final String SCAN_CACHE_FILE = Config.getInstance().getString("lde.tomcat.scan.cache.file", "lde-scan-cache.properties");
+	private static final boolean RELOAD_WATCH_ENABLED = Config.getInstance().getBoolean("lde.tomcat.reload.watch.enabled", false);
+	private static final long RELOAD_WATCH_DEBOUNCE = Config.getInstance().getLong("lde.tomcat.reload.watch.debounce.millis", 500L);
+	private static final String PORT_LEASE_FILE = Config.getInstance().getString("lde.tomcat.port.lease.file",
+			Paths.get(System.getProperty("java.io.tmpdir"), "lde-port-leases.properties").toString());
+	private static final int PORT_LEASE_TTL = Config.getInstance().getInt("lde.tomcat.port.lease.ttl.seconds", 60);
+	private static final String CONNECTOR_PROTOCOL = Config.getInstance().getString("lde.tomcat.connector.protocol", "nio");
+	private static final boolean CONNECTOR_EXECUTOR_ENABLED = Config.getInstance().getBoolean("lde.tomcat.connector.executor.enabled", false);
+	private static final int CONNECTOR_EXECUTOR_MIN_THREADS = Config.getInstance().getInt("lde.tomcat.connector.executor.min.threads", 10);
+	private static final int CONNECTOR_EXECUTOR_MAX_THREADS = Config.getInstance().getInt("lde.tomcat.connector.executor.max.threads", 200);
+	private static final int CONNECTOR_EXECUTOR_MAX_QUEUE = Config.getInstance().getInt("lde.tomcat.connector.executor.max.queue.size",
+			Integer.MAX_VALUE);
+	private static final boolean CONNECTOR_VIRTUAL_THREADS_ENABLED = Config.getInstance().getBoolean("lde.tomcat.connector.executor.virtual.enabled",
+			false);
+	private static final Map<String, String> CONNECTOR_PROPERTIES = loadConnectorProperties();
+	private static final boolean HTTP2_ENABLED = Config.getInstance().getBoolean("lde.tomcat.connector.http2.enabled", false);
+	private static final Map<String, String> HTTP2_PROPERTIES = loadHttp2Properties();
+	private static final Map<String, String> COMPRESSION_PROPERTIES = loadCompressionProperties();
+	private static final Map<String, String> DEFAULT_SERVLET_PARAMETERS = loadDefaultServletParameters();
+	private static final boolean JSP_PRECOMPILE_ENABLED = Config.getInstance().getBoolean("lde.tomcat.jsp.precompile.enabled", false);
+	private static final int JSP_PRECOMPILE_THREADS = Config.getInstance().getInt("lde.tomcat.jsp.precompile.threads",
+			Runtime.getRuntime().availableProcessors());
+	private static final String JSP_PROFILE = Config.getInstance().getString("lde.tomcat.jsp.profile", "development");
+	private static final Map<String, String> JSP_SERVLET_PARAMETERS = loadJspServletParameters();
+	private static final boolean METRICS_ENABLED = Config.getInstance().getBoolean("lde.tomcat.metrics.enabled", true);
+	private static final boolean METRICS_SERVLET_ENABLED = Config.getInstance().getBoolean("lde.tomcat.metrics.servlet.enabled", false);
+	private static final String METRICS_PATH = Config.getInstance().getString("lde.tomcat.metrics.path", "/lde-metrics");
+	private static final boolean ASYNC_LOGGING_ENABLED = Config.getInstance().getBoolean("lde.tomcat.logging.async.enabled", false);
+	private static final int ASYNC_LOGGING_BUFFER_SIZE = Config.getInstance().getInt("lde.tomcat.logging.async.buffer.size", 8192);
+	private static final String ASYNC_LOGGING_OVERFLOW = Config.getInstance().getString("lde.tomcat.logging.async.overflow", "drop");
+	private static final long LOGGING_LEVEL_CACHE = Config.getInstance().getLong("lde.tomcat.logging.level.cache.millis", 1000L);
+	private static final boolean ACCESS_LOG_ENABLED = Config.getInstance().getBoolean("lde.tomcat.accesslog.enabled", false);
+	private static final String ACCESS_LOG_FILE = Config.getInstance().getString("lde.tomcat.accesslog.file", "logs/lde-access.log");
+	private static final int ACCESS_LOG_BUFFER_SIZE = Config.getInstance().getInt("lde.tomcat.accesslog.buffer.size.kb", 256);
+	private static final long ACCESS_LOG_FLUSH = Config.getInstance().getLong("lde.tomcat.accesslog.flush.millis", 1000L);
+	private static final long ACCESS_LOG_ROTATE_SIZE = Config.getInstance().getLong("lde.tomcat.accesslog.rotate.size.mb", 100L);
+	private static final long ACCESS_LOG_ROTATE_INTERVAL = Config.getInstance().getLong("lde.tomcat.accesslog.rotate.interval.minutes", 1440L);
+	private static final boolean SESSION_STORE_ENABLED = Config.getInstance().getBoolean("lde.tomcat.session.store.enabled", false);
+	private static final String SESSION_STORE_FILE = Config.getInstance().getString("lde.tomcat.session.store.file", "lde-sessions.dat");
+	private static final int SESSION_STORE_BACKUP_IDLE = Config.getInstance().getInt("lde.tomcat.session.store.backup.idle.seconds", 0);
+	private static final boolean JAR_INDEX_ENABLED = Config.getInstance().getBoolean("lde.tomcat.jar.index.enabled", true);
+	private static final String JAR_INDEX_FILE = Config.getInstance().getString("lde.tomcat.jar.index.file", "target/lde-jar-index.properties");
+	private static final boolean RESOURCE_CACHE_ENABLED = Config.getInstance().getBoolean("lde.tomcat.resources.cache.enabled", true);
+	private static final long RESOURCE_CACHE_MAX_SIZE = Config.getInstance().getLong("lde.tomcat.resources.cache.max.size.kb", 10240L);
+	private static final int RESOURCE_CACHE_OBJECT_MAX_SIZE = Config.getInstance().getInt("lde.tomcat.resources.cache.object.max.size.kb", 512);
+	private static final long RESOURCE_CACHE_TTL = Config.getInstance().getLong("lde.tomcat.resources.cache.ttl.millis", 5000L);
+	private static final boolean RESOURCE_INDEX_ENABLED = Config.getInstance().getBoolean("lde.tomcat.resources.indexed.enabled", false);
 
 	/**
 	 * Private constructor.
@@ -45,6 +108,442 @@ public final class TomcatConfigUtil {
 		return CUSTOM_JARSCANNER_ENABLED;
 	}
 
+	/**
+	 * Off by default as the parallel jar scanner only opens the jars in parallel and the scan itself is still one jar at a time. With the jars
+	 * in the file system cache, opening them is quick and the extra work to find the jars up front makes the scan slower. It is worth enabling
+	 * when the jars are on a slow or network file system.
+	 *
+	 * @return true if use the parallel jar scanner when no custom jar scanner has been defined
+	 */
+	public static boolean isParallelJarScannerEnabled() {
+		return PARALLEL_JARSCANNER_ENABLED;
+	}
+
+	/**
+	 * @return the number of threads the parallel jar scanner uses to open jars
+	 */
+	public static int getJarScannerParallelism() {
+		return JARSCANNER_PARALLELISM;
+	}
+
+	/**
+	 * @return the maximum time in seconds to wait for TOMCAT to start
+	 */
+	public static int getStartTimeoutSeconds() {
+		return START_TIMEOUT;
+	}
+
+	/**
+	 * @return the maximum time in seconds to wait for TOMCAT to stop
+	 */
+	public static int getStopTimeoutSeconds() {
+		return STOP_TIMEOUT;
+	}
+
+	/**
+	 * @return true if cache the jars that contribute nothing to the annotation scan
+	 */
+	public static boolean isScanCacheEnabled() {
+		return SCAN_CACHE_ENABLED;
+	}
+
+	/**
+	 * The annotation scan cache file.
+	 * <p>
+	 * The cache file relative to the TOMCAT base directory.
+	 * </p>
+	 *
+	 * @return the scan cache file
+	 */
+	public static String getScanCacheFile() {
+		return getScanCacheFile(getBaseDir());
+	}
+
+	/**
+	 * @param baseDir the TOMCAT base directory of the instance
+	 * @return the scan cache file for the instance
+	 */
+	public static String getScanCacheFile(final String baseDir) {
+		return Paths.get(baseDir).resolve(SCAN_CACHE_FILE).toString();
+	}
+
+	/**
+	 * @return true if watch the classes and web app directories and reload the web app when they change
+	 */
+	public static boolean isReloadWatchEnabled() {
+		return RELOAD_WATCH_ENABLED;
+	}
+
+	/**
+	 * @return the time in milliseconds with no further changes before the web app is reloaded
+	 */
+	public static long getReloadWatchDebounceMillis() {
+		return RELOAD_WATCH_DEBOUNCE;
+	}
+
+	/**
+	 * The connector protocol.
+	 * <p>
+	 * Either "nio", "nio2" or the class name of a protocol handler.
+	 * </p>
+	 *
+	 * @return the connector protocol handler class name
+	 */
+	public static String getConnectorProtocol() {
+		switch (CONNECTOR_PROTOCOL.toLowerCase()) {
+			case "nio":
+				return Http11NioProtocol.class.getName();
+			case "nio2":
+				return Http11Nio2Protocol.class.getName();
+			default:
+				return CONNECTOR_PROTOCOL;
+		}
+	}
+
+	/**
+	 * @return true if the connector uses a shared executor
+	 */
+	public static boolean isConnectorExecutorEnabled() {
+		return CONNECTOR_EXECUTOR_ENABLED;
+	}
+
+	/**
+	 * Run the requests on virtual threads when the runtime supports them.
+	 * <p>
+	 * Enables the connector executor, which falls back to a platform thread pool on runtimes before JDK 21.
+	 * </p>
+	 *
+	 * @return true if the connector executor uses virtual threads
+	 */
+	public static boolean isConnectorVirtualThreadsEnabled() {
+		return CONNECTOR_VIRTUAL_THREADS_ENABLED;
+	}
+
+	/**
+	 * @return the minimum number of threads kept alive in the connector executor
+	 */
+	public static int getConnectorExecutorMinThreads() {
+		return CONNECTOR_EXECUTOR_MIN_THREADS;
+	}
+
+	/**
+	 * @return the maximum number of threads in the connector executor
+	 */
+	public static int getConnectorExecutorMaxThreads() {
+		return CONNECTOR_EXECUTOR_MAX_THREADS;
+	}
+
+	/**
+	 * @return the maximum number of requests queued by the connector executor
+	 */
+	public static int getConnectorExecutorMaxQueueSize() {
+		return CONNECTOR_EXECUTOR_MAX_QUEUE;
+	}
+
+	/**
+	 * The connector properties that have been configured.
+	 * <p>
+	 * Only the properties set in the configuration are returned, so the connector keeps the TOMCAT defaults of its protocol for the others.
+	 * </p>
+	 *
+	 * @return the TOMCAT connector property names and values
+	 */
+	public static Map<String, String> getConnectorProperties() {
+		return CONNECTOR_PROPERTIES;
+	}
+
+	/**
+	 * Register the HTTP/2 upgrade protocol on the connector.
+	 * <p>
+	 * Allows clear text HTTP/2 via the h2c upgrade and connections with prior knowledge.
+	 * </p>
+	 *
+	 * @return true if the connector supports HTTP/2
+	 */
+	public static boolean isHttp2Enabled() {
+		return HTTP2_ENABLED;
+	}
+
+	/**
+	 * The HTTP/2 protocol properties that have been configured.
+	 *
+	 * @return the TOMCAT HTTP/2 protocol property names and values
+	 */
+	public static Map<String, String> getHttp2Properties() {
+		return HTTP2_PROPERTIES;
+	}
+
+	/**
+	 * The response compression properties that have been configured.
+	 * <p>
+	 * Compression is applied by the connector, and by HTTP/2 if enabled, to responses of a compressible MIME type and at least the minimum size.
+	 * Set "lde.tomcat.compression" to "on" to compress responses for clients that accept gzip. Responses sent with sendfile are not compressed, so
+	 * large resources should have a precompressed sibling.
+	 * </p>
+	 *
+	 * @return the TOMCAT compression property names and values
+	 */
+	public static Map<String, String> getCompressionProperties() {
+		return COMPRESSION_PROPERTIES;
+	}
+
+	/**
+	 * The init parameters of the default servlet, which serves the static resources, that have been configured.
+	 * <p>
+	 * Set "lde.tomcat.resources.precompressed" to "true" to serve the precompressed ".gz" and ".br" sibling of a resource when the client accepts
+	 * it. Resources at least "lde.tomcat.resources.sendfile.size.kb" in size are sent with sendfile (zero-copy) when the connector supports it (eg
+	 * NIO). Parameters set by the web app's own web.xml are not overridden.
+	 * </p>
+	 *
+	 * @return the default servlet init parameter names and values
+	 */
+	public static Map<String, String> getDefaultServletParameters() {
+		return DEFAULT_SERVLET_PARAMETERS;
+	}
+
+	/**
+	 * @return true if compile the JSPs in the web app directory when the server starts
+	 */
+	public static boolean isJspPrecompileEnabled() {
+		return JSP_PRECOMPILE_ENABLED;
+	}
+
+	/**
+	 * @return the number of JSPs to compile at the same time
+	 */
+	public static int getJspPrecompileThreads() {
+		return JSP_PRECOMPILE_THREADS;
+	}
+
+	/**
+	 * The JASPER profile is either "development" (the JASPER defaults) or "production".
+	 * <p>
+	 * The production profile turns off the development checks, so JSPs are not checked for changes on each request and are only recompiled when the
+	 * server starts, and generates the template text as char arrays.
+	 * </p>
+	 *
+	 * @return the JASPER profile
+	 */
+	public static String getJspProfile() {
+		return JSP_PROFILE;
+	}
+
+	/**
+	 * The init parameters of the JSP servlet from the JASPER profile and the JSP properties that have been configured.
+	 *
+	 * @return the JSP servlet init parameter names and values
+	 */
+	public static Map<String, String> getJspServletParameters() {
+		return JSP_SERVLET_PARAMETERS;
+	}
+
+	/**
+	 * @return true if record the request metrics
+	 */
+	public static boolean isMetricsEnabled() {
+		return METRICS_ENABLED;
+	}
+
+	/**
+	 * The path in the web app context that serves the metrics in the Prometheus text format.
+	 * <p>
+	 * The metrics are only served when <code>lde.tomcat.metrics.servlet.enabled</code> is true, as the servlet is added to the web app's own URL
+	 * space.
+	 * </p>
+	 *
+	 * @return the metrics path or null if the metrics are not served
+	 */
+	public static String getMetricsPath() {
+		if (!METRICS_SERVLET_ENABLED) {
+			return null;
+		}
+		return METRICS_PATH == null || METRICS_PATH.isEmpty() ? null : METRICS_PATH;
+	}
+
+	/**
+	 * @return true if the TOMCAT logging bridges write the log events on a background thread
+	 */
+	public static boolean isAsyncLoggingEnabled() {
+		return ASYNC_LOGGING_ENABLED;
+	}
+
+	/**
+	 * @return the number of log events the async logging buffer holds, rounded up to a power of two
+	 */
+	public static int getAsyncLoggingBufferSize() {
+		return ASYNC_LOGGING_BUFFER_SIZE;
+	}
+
+	/**
+	 * What to do with a log event when the async logging buffer is full.
+	 * <p>
+	 * Either "drop" the event and count it, or "block" the logging thread until the buffer has space.
+	 * </p>
+	 *
+	 * @return true if block when the async logging buffer is full
+	 */
+	public static boolean isAsyncLoggingBlockOnOverflow() {
+		return "block".equalsIgnoreCase(ASYNC_LOGGING_OVERFLOW);
+	}
+
+	/**
+	 * @return the milliseconds the TOMCAT logging bridges cache the enabled log levels for, or 0 to not cache
+	 */
+	public static long getLoggingLevelCacheMillis() {
+		return LOGGING_LEVEL_CACHE;
+	}
+
+	/**
+	 * Write an access log with the request timings.
+	 * <p>
+	 * Enables the connector executor, which times how long each request waited in its queue.
+	 * </p>
+	 *
+	 * @return true if write an access log with the request timings
+	 */
+	public static boolean isAccessLogEnabled() {
+		return ACCESS_LOG_ENABLED;
+	}
+
+	/**
+	 * The access log file.
+	 * <p>
+	 * The file relative to the base directory of the server instance.
+	 * </p>
+	 *
+	 * @param baseDir the base directory of the server instance
+	 * @return the access log file
+	 */
+	public static String getAccessLogFile(final String baseDir) {
+		return Paths.get(baseDir).resolve(ACCESS_LOG_FILE).toString();
+	}
+
+	/**
+	 * @return the size in bytes of each of the two access log buffers
+	 */
+	public static int getAccessLogBufferSize() {
+		return Math.max(16, ACCESS_LOG_BUFFER_SIZE) * 1024;
+	}
+
+	/**
+	 * @return the longest time in milliseconds an access log line waits before it is written
+	 */
+	public static long getAccessLogFlushMillis() {
+		return ACCESS_LOG_FLUSH;
+	}
+
+	/**
+	 * @return the size in bytes to rotate the access log at or 0 to not rotate on size
+	 */
+	public static long getAccessLogRotateBytes() {
+		return Math.max(0, ACCESS_LOG_ROTATE_SIZE) * 1024 * 1024;
+	}
+
+	/**
+	 * @return the interval in milliseconds to rotate the access log at or 0 to not rotate on time
+	 */
+	public static long getAccessLogRotateMillis() {
+		return TimeUnit.MINUTES.toMillis(Math.max(0, ACCESS_LOG_ROTATE_INTERVAL));
+	}
+
+	/**
+	 * @return true if keep the sessions in a memory-mapped file so they survive a restart
+	 */
+	public static boolean isSessionStoreEnabled() {
+		return SESSION_STORE_ENABLED;
+	}
+
+	/**
+	 * The session store file.
+	 * <p>
+	 * The file relative to the base directory of the server instance.
+	 * </p>
+	 *
+	 * @param baseDir the base directory of the server instance
+	 * @return the session store file
+	 */
+	public static String getSessionStoreFile(final String baseDir) {
+		return Paths.get(baseDir).resolve(SESSION_STORE_FILE).toString();
+	}
+
+	/**
+	 * Sessions changed since they were last stored are written to the store once they have been idle for this time, when the background checks
+	 * run. The default of 0 writes every changed session on each check.
+	 *
+	 * @return the time in seconds a changed session is idle before it is written to the store
+	 */
+	public static int getSessionStoreBackupIdleSeconds() {
+		return SESSION_STORE_BACKUP_IDLE;
+	}
+
+	/**
+	 * @return true if use the jar index to skip jars when scanning
+	 */
+	public static boolean isJarIndexEnabled() {
+		return JAR_INDEX_ENABLED;
+	}
+
+	/**
+	 * The jar index file built by the LDE index goal.
+	 * <p>
+	 * The index file set by the MOJO, otherwise the configured index file relative to the working directory.
+	 * </p>
+	 *
+	 * @return the jar index file
+	 */
+	public static String getJarIndexFile() {
+		String file = System.getProperty(ConfigUtil.PARAM_JAR_INDEX_FILE_KEY);
+		if (StringUtils.isBlank(file)) {
+			file = JAR_INDEX_FILE;
+		}
+		return ConfigUtil.getWorkingDirectory().resolve(file).toString();
+	}
+
+	/**
+	 * @return true if static resources are cached in memory
+	 */
+	public static boolean isResourceCacheEnabled() {
+		return RESOURCE_CACHE_ENABLED;
+	}
+
+	/**
+	 * @return the maximum size of the static resource cache in kilobytes
+	 */
+	public static long getResourceCacheMaxSize() {
+		return RESOURCE_CACHE_MAX_SIZE;
+	}
+
+	/**
+	 * Resources larger than this size are served from disk and not cached.
+	 *
+	 * @return the maximum size of a cached static resource in kilobytes
+	 */
+	public static int getResourceCacheObjectMaxSize() {
+		return RESOURCE_CACHE_OBJECT_MAX_SIZE;
+	}
+
+	/**
+	 * A cached resource is checked against the disk once its time to live has expired, so a longer time means edits take longer to be served.
+	 *
+	 * @return the time to live of a cached static resource in milliseconds
+	 */
+	public static long getResourceCacheTtl() {
+		return RESOURCE_CACHE_TTL;
+	}
+
+	/**
+	 * Index the web app directory so lookups of resources that do not exist do not touch the disk.
+	 * <p>
+	 * The index is kept up to date with a file watcher, so on platforms where the watcher polls (eg macOS) a new file may take a few seconds to be
+	 * served.
+	 * </p>
+	 *
+	 * @return true if index the web app directory
+	 */
+	public static boolean isResourceIndexEnabled() {
+		return RESOURCE_INDEX_ENABLED;
+	}
+
 	/**
 	 * The WebApp context where "" is root.
 	 *
@@ -66,6 +565,22 @@ public final class TomcatConfigUtil {
 		return prefixWorkingDir(BASE_DIR);
 	}
 
+	/**
+	 * Base directory for a named TOMCAT instance.
+	 * <p>
+	 * Each named instance has its own directory under the base directory so its work files are isolated from the other instances.
+	 * </p>
+	 *
+	 * @param instanceName the instance name or null for the default instance
+	 * @return the tomcat base directory of the instance
+	 */
+	public static String getBaseDir(final String instanceName) {
+		if (instanceName == null) {
+			return getBaseDir();
+		}
+		return prefixWorkingDir(Paths.get(BASE_DIR, instanceName).toString());
+	}
+
 	/**
 	 * WebApp directory for the context that can be used for static files.
 	 * <p>
@@ -151,6 +666,145 @@ public final class TomcatConfigUtil {
 		return start;
 	}
 
+	/**
+	 * Find and lease a free port.
+	 * <p>
+	 * The port is leased in the registry shared by the local processes, so servers starting in parallel in this or another process do not find the
+	 * same free port before either has bound it.
+	 * </p>
+	 *
+	 * @return the leased port
+	 */
+	public static int claimFreePort() {
+		return getPortLeaseRegistry().lease(ConfigUtil.getDefaultPort(), 100);
+	}
+
+	/**
+	 * @param port the leased port to release
+	 */
+	public static void releasePort(final int port) {
+		getPortLeaseRegistry().release(port);
+	}
+
+	/**
+	 * The lease file defaults to the system temporary directory, so it is shared by all the builds on the machine.
+	 *
+	 * @return the port lease registry shared by the local processes
+	 */
+	public static PortLeaseRegistry getPortLeaseRegistry() {
+		Path file = ConfigUtil.getWorkingDirectory().resolve(PORT_LEASE_FILE);
+		return new PortLeaseRegistry(file, TimeUnit.SECONDS.toMillis(PORT_LEASE_TTL));
+	}
+
+	/**
+	 * @return the configured connector properties keyed by the TOMCAT connector property name
+	 */
+	private static Map<String, String> loadConnectorProperties() {
+		Map<String, String> keys = new LinkedHashMap<>();
+		keys.put("maxConnections", "lde.tomcat.connector.max.connections");
+		keys.put("acceptCount", "lde.tomcat.connector.accept.count");
+		keys.put("connectionTimeout", "lde.tomcat.connector.connection.timeout.millis");
+		keys.put("maxKeepAliveRequests", "lde.tomcat.connector.keepalive.max.requests");
+		keys.put("keepAliveTimeout", "lde.tomcat.connector.keepalive.timeout.millis");
+		keys.put("useSendfile", "lde.tomcat.connector.sendfile.enabled");
+		keys.put("socket.directBuffer", "lde.tomcat.connector.socket.direct.buffer");
+		keys.put("socket.rxBufSize", "lde.tomcat.connector.socket.rx.buffer.size");
+		keys.put("socket.txBufSize", "lde.tomcat.connector.socket.tx.buffer.size");
+		keys.put("socket.appReadBufSize", "lde.tomcat.connector.socket.app.read.buffer.size");
+		keys.put("socket.appWriteBufSize", "lde.tomcat.connector.socket.app.write.buffer.size");
+		return loadProperties(keys);
+	}
+
+	/**
+	 * @return the configured HTTP/2 properties keyed by the TOMCAT HTTP/2 protocol property name
+	 */
+	private static Map<String, String> loadHttp2Properties() {
+		Map<String, String> keys = new LinkedHashMap<>();
+		keys.put("maxConcurrentStreams", "lde.tomcat.connector.http2.max.concurrent.streams");
+		keys.put("maxConcurrentStreamExecution", "lde.tomcat.connector.http2.max.concurrent.stream.execution");
+		keys.put("initialWindowSize", "lde.tomcat.connector.http2.initial.window.size");
+		keys.put("readTimeout", "lde.tomcat.connector.http2.read.timeout.millis");
+		keys.put("keepAliveTimeout", "lde.tomcat.connector.http2.keepalive.timeout.millis");
+		return loadProperties(keys);
+	}
+
+	/**
+	 * @return the configured compression properties keyed by the TOMCAT protocol property name
+	 */
+	private static Map<String, String> loadCompressionProperties() {
+		Map<String, String> keys = new LinkedHashMap<>();
+		keys.put("compression", "lde.tomcat.compression");
+		keys.put("compressionMinSize", "lde.tomcat.compression.min.size");
+		keys.put("compressibleMimeType", "lde.tomcat.compression.mime.types");
+		keys.put("noCompressionUserAgents", "lde.tomcat.compression.excluded.user.agents");
+		return loadProperties(keys);
+	}
+
+	/**
+	 * @return the configured default servlet init parameters keyed by the parameter name
+	 */
+	private static Map<String, String> loadDefaultServletParameters() {
+		Map<String, String> keys = new LinkedHashMap<>();
+		keys.put("precompressed", "lde.tomcat.resources.precompressed");
+		keys.put("sendfileSize", "lde.tomcat.resources.sendfile.size.kb");
+		keys.put("useAcceptRanges", "lde.tomcat.resources.accept.ranges.enabled");
+		return loadProperties(keys);
+	}
+
+	/**
+	 * @return the JSP servlet init parameters from the JASPER profile overridden by the configured parameters
+	 */
+	private static Map<String, String> loadJspServletParameters() {
+		Map<String, String> params = new LinkedHashMap<>();
+		if ("production".equalsIgnoreCase(JSP_PROFILE)) {
+			params.put("development", "false");
+			params.put("checkInterval", "0");
+			params.put("genStringAsCharArray", "true");
+		} else if (!"development".equalsIgnoreCase(JSP_PROFILE)) {
+			LOG.warn("JSP profile [" + JSP_PROFILE + "] is not supported so using the development profile.");
+		}
+		Map<String, String> keys = new LinkedHashMap<>();
+		keys.put("development", "lde.tomcat.jsp.development.enabled");
+		keys.put("checkInterval", "lde.tomcat.jsp.check.interval.seconds");
+		keys.put("modificationTestInterval", "lde.tomcat.jsp.modification.test.interval.seconds");
+		keys.put("genStringAsCharArray", "lde.tomcat.jsp.string.as.char.array.enabled");
+		keys.put("trimSpaces", "lde.tomcat.jsp.trim.spaces.enabled");
+		keys.put("maxLoadedJsps", "lde.tomcat.jsp.max.loaded");
+		params.putAll(loadProperties(keys));
+		return Collections.unmodifiableMap(params);
+	}
+
+	/**
+	 * @param keys the TOMCAT property names and their configuration keys
+	 * @return the configured properties keyed by the TOMCAT property name
+	 */
+	private static Map<String, String> loadProperties(final Map<String, String> keys) {
+		Map<String, String> props = new LinkedHashMap<>();
+		for (Map.Entry<String, String> entry : keys.entrySet()) {
+			String value = Config.getInstance().getString(entry.getValue());
+			if (value != null && !value.isEmpty()) {
+				props.put(entry.getKey(), value);
+			}
+		}
+		return Collections.unmodifiableMap(props);
+	}
+
+	/**
+	 * @return the localhost address, resolved once
+	 */
+	private static InetAddress getLocalhost() {
+		InetAddress address = localhost;
+		if (address == null) {
+			try {
+				address = InetAddress.getByName("localhost");
+			} catch (UnknownHostException e) {
+				address = InetAddress.getLoopbackAddress();
+			}
+			localhost = address;
+		}
+		return address;
+	}
+
 	/**
 	 * Check if this port is available.
 	 *
@@ -160,7 +814,7 @@ public final class TomcatConfigUtil {
 	public static boolean isTcpPortAvailable(final int port) {
 		try (ServerSocket serverSocket = new ServerSocket()) {
 			serverSocket.setReuseAddress(false);
-			serverSocket.bind(new InetSocketAddress(InetAddress.getByName("localhost"), port), 1);
+			serverSocket.bind(new InetSocketAddress(getLocalhost(), port), 1);
 			return true;
 		} catch (IOException e) {
 			return false;
@@ -2,24 +2,48 @@ package com.github.bordertech.lde.tomcat;
 
 import com.github.bordertech.didums.Didums;
 import com.github.bordertech.lde.api.ConfigUtil;
+import com.github.bordertech.lde.api.LatencyHistogram;
 import com.github.bordertech.lde.api.LdeProvider;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.servlet.ServletException;
+import org.apache.catalina.Container;
 import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.LifecycleState;
-import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.Manager;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.session.PersistentManager;
 import org.apache.catalina.session.StandardManager;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.webresources.DirResourceSet;
 import org.apache.catalina.webresources.StandardRoot;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.apache.tomcat.JarScanner;
+import org.apache.tomcat.util.IntrospectionUtils;
 import org.apache.tomcat.util.scan.Constants;
 
 /**
@@ -36,7 +60,29 @@ public class TomcatLauncherProvider implements LdeProvider {
 
 	private static final Log LOG = LogFactory.getLog(TomcatLauncherProvider.class);
 
-	private Tomcat tomcat = null;
+	/**
+	 * Guards launching and stopping TOMCAT, so only one TOMCAT is created at a time. The state set by a launch is read on the caller threads, so it is
+	 * volatile.
+	 */
+	private final Object lifecycleLock = new Object();
+
+	private volatile Tomcat tomcat = null;
+
+	private volatile TomcatLifecycleMonitor monitor = null;
+
+	private volatile ReloadWatcher reloadWatcher = null;
+
+	private volatile String instanceName = null;
+
+	private volatile int claimedPort = -1;
+
+	private volatile ProtocolUsageValve protocolUsage = null;
+	private volatile MetricsValve metrics = null;
+	private volatile LdeAccessLogValve accessLog = null;
+
+	private volatile StartupTimer startupTimer = null;
+
+	private volatile CompletableFuture<Void> pendingLaunch = CompletableFuture.completedFuture(null);
 
 	@Override
 	public void launchServer() {
@@ -45,59 +91,226 @@ public class TomcatLauncherProvider implements LdeProvider {
 
 	@Override
 	public void launchServer(final boolean block) {
-		try {
-			// Check if already exists
-			if (isTomcatCreated()) {
-				throw new IllegalStateException("TOMCAT is already created.");
+		Tomcat tom;
+		synchronized (lifecycleLock) {
+			// Check if already exists or is being launched, leaving the running instance alone
+			if (isTomcatCreated() || !pendingLaunch.isDone()) {
+				LOG.error("Could not start LDE TOMCAT server. TOMCAT is already created.");
+				return;
 			}
-			// Create tomcat
-			Tomcat tom = createTomcatInstance();
-			setTomcat(tom);
-			// Config tomcat
-			configTomcat(tom);
-			// Start tomcat
-			LOG.info("Starting TOMCAT.");
-			tom.start();
-			LOG.info("Started TOMCAT.");
-
-			// Wait till started
-			waitForTomcatToStart();
-			if (block) {
-				tom.getServer().await();
+			try {
+				tom = startServer();
+			} catch (IOException | IllegalStateException | ServletException | LifecycleException e) {
+				handleStartFailed(e);
+				return;
+			}
+		}
+		if (block) {
+			tom.getServer().await();
+		}
+	}
+
+	/**
+	 * Launch TOMCAT on a daemon thread.
+	 * <p>
+	 * The launch waits on the server lifecycle events, so the future completes as soon as TOMCAT has started and any JSPs have been precompiled. The
+	 * launch is claimed before this returns, so another launch fails until it has finished.
+	 * </p>
+	 *
+	 * @return the future completed when TOMCAT is running, or completed exceptionally with the reason it failed to start
+	 */
+	@Override
+	public CompletableFuture<Void> launchServerAsync() {
+		synchronized (lifecycleLock) {
+			if (isTomcatCreated() || !pendingLaunch.isDone()) {
+				CompletableFuture<Void> failed = new CompletableFuture<>();
+				failed.completeExceptionally(new IllegalStateException("TOMCAT is already created."));
+				return failed;
 			}
-		} catch (IOException | IllegalStateException | ServletException | LifecycleException e) {
-			LOG.error("Could not start LDE TOMCAT server. " + e.getMessage(), e);
-			setTomcat(null);
+			CompletableFuture<Void> launch = CompletableFuture.runAsync(() -> {
+				synchronized (lifecycleLock) {
+					try {
+						startServer();
+					} catch (IOException | IllegalStateException | ServletException | LifecycleException e) {
+						handleStartFailed(e);
+						throw new IllegalStateException("Could not start LDE TOMCAT server. " + e.getMessage(), e);
+					}
+				}
+			}, TomcatLauncherProvider::startDaemon);
+			pendingLaunch = launch;
+			return launch;
+		}
+	}
+
+	/**
+	 * Stop TOMCAT on a daemon thread, after any launch in progress has finished.
+	 *
+	 * @return the future completed when TOMCAT has stopped
+	 */
+	@Override
+	public CompletableFuture<Void> stopServerAsync() {
+		return CompletableFuture.runAsync(this::stopServer, TomcatLauncherProvider::startDaemon);
+	}
+
+	/**
+	 * Create, configure and start TOMCAT, and wait for it to start.
+	 *
+	 * @return the started tomcat instance
+	 * @throws IOException an IO Exception
+	 * @throws ServletException a Servlet Exception
+	 * @throws LifecycleException a life cycle exception
+	 */
+	protected Tomcat startServer() throws IOException, ServletException, LifecycleException {
+		startLogging();
+		StartupTimer timer = new StartupTimer();
+		startupTimer = timer;
+		timer.start(StartupTimer.TOTAL);
+		// Create tomcat
+		timer.start(StartupTimer.CREATE);
+		Tomcat tom = createTomcatInstance();
+		setTomcat(tom);
+		timer.end(StartupTimer.CREATE);
+		// Config tomcat
+		timer.start(StartupTimer.CONFIGURE);
+		configTomcat(tom);
+		timer.end(StartupTimer.CONFIGURE);
+		// Time the connector and web app start phases
+		timer.register(tom.getConnector());
+		timer.register(getWebAppContext());
+		// Listen for the server lifecycle events
+		TomcatLifecycleMonitor mon = new TomcatLifecycleMonitor(tom);
+		mon.register();
+		setMonitor(mon);
+		// Start tomcat
+		LOG.info("Starting TOMCAT.");
+		tom.start();
+
+		// Wait till started
+		waitForTomcatToStart();
+		// Port is bound so no longer needs the lease
+		releaseServerPort();
+		LOG.info("Started TOMCAT on port " + getPort() + ".");
+		if (TomcatConfigUtil.isJspPrecompileEnabled()) {
+			timer.start(StartupTimer.JSP_PRECOMPILE);
+			precompileJsps();
+			timer.end(StartupTimer.JSP_PRECOMPILE);
+		}
+		timer.end(StartupTimer.TOTAL);
+		timer.finish();
+		LOG.info("TOMCAT startup timings (ms) " + timer.getTimings() + ".");
+		if (TomcatConfigUtil.isReloadWatchEnabled()) {
+			startReloadWatcher();
 		}
+		return tom;
 	}
 
+	/**
+	 * Log the failed start, release any waiters and clean up the tomcat instance.
+	 *
+	 * @param cause the reason the start failed
+	 */
+	protected void handleStartFailed(final Exception cause) {
+		LOG.error("Could not start LDE TOMCAT server. " + cause.getMessage(), cause);
+		if (getMonitor() != null) {
+			getMonitor().startFailed(cause);
+		}
+		setTomcat(null);
+		setMonitor(null);
+		releaseServerPort();
+		stopLogging();
+	}
+
+	/**
+	 * Stop TOMCAT, after any launch in progress has finished.
+	 */
 	@Override
 	public void stopServer() {
-		// Check created before try and stop
-		if (!isTomcatCreated()) {
-			return;
+		// The launch outcome does not matter, only that it has finished
+		pendingLaunch.handle((result, error) -> null).join();
+		// Stop watching before taking the lock, as closing the watcher waits for a reload in progress that needs the lock
+		stopReloadWatcher();
+		synchronized (lifecycleLock) {
+			// Check created before try and stop
+			if (!isTomcatCreated()) {
+				return;
+			}
+
+			Tomcat tom = getTomcat();
+			try {
+				// Stop server
+				tom.stop();
+
+				// Wait till server stopped
+				waitForTomcatToStop();
+				LOG.info("Stopped TOMCAT.");
+
+				tom.destroy();
+			} catch (LifecycleException | IllegalStateException e) {
+				LOG.error("Could not STOP LDE TOMCAT server. " + e.getMessage(), e);
+			} finally {
+				setTomcat(null);
+				setMonitor(null);
+				releaseServerPort();
+				stopLogging();
+			}
 		}
+	}
 
-		Tomcat tom = getTomcat();
-		try {
-			// Stop server
-			tom.stop();
-			LOG.info("Stopped TOMCAT.");
+	/**
+	 * Start the logging threads used while TOMCAT is running.
+	 */
+	private static void startLogging() {
+		LogLevelCache.start();
+		AsyncLogQueue logQueue = AsyncLogQueue.getInstance();
+		if (logQueue != null) {
+			logQueue.start();
+		}
+	}
 
-			// Wait till server stopped
-			waitForTomcatToStop();
+	/**
+	 * Stop the logging threads once TOMCAT has stopped, writing any queued log events, so nothing keeps the provider class loader alive.
+	 */
+	private static void stopLogging() {
+		AsyncLogQueue logQueue = AsyncLogQueue.getInstance();
+		if (logQueue != null) {
+			logQueue.stop();
+		}
+		LogLevelCache.stop();
+	}
 
-			tom.destroy();
-		} catch (LifecycleException e) {
-			LOG.error("Could not STOP LDE TOMCAT server. " + e.getMessage(), e);
-		} finally {
-			setTomcat(null);
+	/**
+	 * Reload the web app context without restarting the server.
+	 * <p>
+	 * The TOMCAT instance and connector are kept alive and only the web app context is stopped and started, picking up any changed classes. The
+	 * reload holds the lifecycle lock so TOMCAT cannot be stopped while the web app is reloading.
+	 * </p>
+	 *
+	 * @return the time taken to reload in milliseconds
+	 */
+	@Override
+	public long reloadServer() {
+		synchronized (lifecycleLock) {
+			Context context = getWebAppContext();
+			if (!isRunning() || context == null) {
+				throw new IllegalStateException("TOMCAT is not running so cannot reload.");
+			}
+			long start = System.nanoTime();
+			context.reload();
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			if (context.getState() != LifecycleState.STARTED) {
+				throw new IllegalStateException("Web app [" + context.getName() + "] failed to reload [" + context.getState() + "].");
+			}
+			LOG.info("Reloaded web app [" + context.getName() + "] in " + millis + "ms.");
+			return millis;
 		}
 	}
 
+	/**
+	 * @return the port the connector is bound to, which is the port assigned by the OS when started with port 0
+	 */
 	@Override
 	public int getPort() {
-		return isRunning() ? getTomcat().getConnector().getPort() : -1;
+		return isRunning() ? getTomcat().getConnector().getLocalPort() : -1;
 	}
 
 	/**
@@ -113,7 +326,7 @@ public class TomcatLauncherProvider implements LdeProvider {
 		Tomcat tom = getTomcat();
 		String host = "localhost";
 		String scheme = tom.getConnector().getScheme();
-		int port = tom.getConnector().getPort();
+		int port = getPort();
 		String contextPath = TomcatConfigUtil.getContextPath();
 		// Build URL
 		return scheme + "://" + host + ":" + port + contextPath;
@@ -124,6 +337,134 @@ public class TomcatLauncherProvider implements LdeProvider {
 		return isTomcatCreated() && getTomcat().getServer().getState() == LifecycleState.STARTED;
 	}
 
+	@Override
+	public void setInstanceName(final String name) {
+		synchronized (lifecycleLock) {
+			if (isTomcatCreated() || !pendingLaunch.isDone()) {
+				throw new IllegalStateException("Cannot set the instance name once TOMCAT is created.");
+			}
+			this.instanceName = name;
+		}
+	}
+
+	@Override
+	public String getInstanceName() {
+		return instanceName;
+	}
+
+	@Override
+	public Map<String, Long> getStartupTimings() {
+		return startupTimer == null ? Collections.emptyMap() : startupTimer.getTimings();
+	}
+
+	/**
+	 * @return the number of requests received by each protocol (eg HTTP/1.1 and HTTP/2.0) since the server was launched
+	 */
+	public Map<String, Long> getProtocolUsage() {
+		return protocolUsage == null ? Collections.emptyMap() : protocolUsage.getCounts();
+	}
+
+	/**
+	 * @return the static resource cache lookups, hits, misses, evictions, evicted size and size in kilobytes, or an empty map if not available
+	 */
+	public Map<String, Long> getResourceCacheStatistics() {
+		Context context = getWebAppContext();
+		if (context != null && context.getResources() instanceof LdeStandardRoot) {
+			return ((LdeStandardRoot) context.getResources()).getCacheStatistics();
+		}
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public Map<String, Number> getMetrics() {
+		if (!isRunning()) {
+			return Collections.emptyMap();
+		}
+		Map<String, Number> snapshot = new LinkedHashMap<>();
+		if (metrics != null) {
+			addRequestMetrics(snapshot, metrics);
+		}
+		for (Map.Entry<String, Long> entry : getProtocolUsage().entrySet()) {
+			snapshot.put("protocol[" + entry.getKey() + "].requests", entry.getValue());
+		}
+		addConnectorMetrics(snapshot, getTomcat().getConnector());
+		for (Map.Entry<String, Long> entry : getResourceCacheStatistics().entrySet()) {
+			snapshot.put("resources.cache." + entry.getKey(), entry.getValue());
+		}
+		AsyncLogQueue logQueue = AsyncLogQueue.getInstance();
+		if (logQueue != null) {
+			snapshot.put("logging.async.pending", logQueue.getPending());
+			snapshot.put("logging.async.dropped", logQueue.getDropped());
+		}
+		if (accessLog != null) {
+			AccessLogWriter writer = accessLog.getWriter();
+			snapshot.put("accesslog.lines", writer.getLines());
+			snapshot.put("accesslog.bytes", writer.getBytesWritten());
+			snapshot.put("accesslog.waits", writer.getWaits());
+			snapshot.put("accesslog.rotations", writer.getRotations());
+			snapshot.put("accesslog.errors", writer.getErrors());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @param snapshot the metrics snapshot to add to
+	 * @param valve the request metrics
+	 */
+	protected void addRequestMetrics(final Map<String, Number> snapshot, final MetricsValve valve) {
+		addRouteMetrics(snapshot, "http.", valve.getTotal());
+		snapshot.put("http.bytes.sent", valve.getBytesSent());
+		snapshot.put("http.bytes.received", valve.getBytesReceived());
+		snapshot.put("http.keepalive.reused", valve.getKeepAliveReused());
+		for (Map.Entry<String, MetricsValve.RouteMetrics> entry : valve.getRoutes().entrySet()) {
+			addRouteMetrics(snapshot, "route[" + entry.getKey() + "].", entry.getValue());
+		}
+	}
+
+	/**
+	 * @param snapshot the metrics snapshot to add to
+	 * @param prefix the metric name prefix
+	 * @param route the route metrics
+	 */
+	protected void addRouteMetrics(final Map<String, Number> snapshot, final String prefix, final MetricsValve.RouteMetrics route) {
+		LatencyHistogram latency = route.getLatency();
+		snapshot.put(prefix + "requests", route.getRequests());
+		snapshot.put(prefix + "errors.client", route.getClientErrors());
+		snapshot.put(prefix + "errors.server", route.getServerErrors());
+		snapshot.put(prefix + "latency.mean", latency.getMeanMicros() / 1000);
+		snapshot.put(prefix + "latency.p50", latency.getPercentileMicros(50) / 1000.0);
+		snapshot.put(prefix + "latency.p90", latency.getPercentileMicros(90) / 1000.0);
+		snapshot.put(prefix + "latency.p99", latency.getPercentileMicros(99) / 1000.0);
+		snapshot.put(prefix + "latency.max", latency.getMaxMicros() / 1000.0);
+	}
+
+	/**
+	 * @param snapshot the metrics snapshot to add to
+	 * @param connector the connector
+	 */
+	protected void addConnectorMetrics(final Map<String, Number> snapshot, final Connector connector) {
+		ProtocolHandler handler = connector.getProtocolHandler();
+		if (handler instanceof AbstractProtocol) {
+			AbstractProtocol<?> protocol = (AbstractProtocol<?>) handler;
+			snapshot.put("connector.connections", protocol.getConnectionCount());
+			snapshot.put("connector.connections.max", protocol.getMaxConnections());
+		}
+		Executor executor = handler.getExecutor();
+		if (executor instanceof StandardThreadExecutor) {
+			StandardThreadExecutor pool = (StandardThreadExecutor) executor;
+			snapshot.put("connector.threads.busy", pool.getActiveCount());
+			snapshot.put("connector.threads.current", pool.getPoolSize());
+			snapshot.put("connector.threads.max", pool.getMaxThreads());
+			snapshot.put("connector.queue.size", pool.getQueueSize());
+		} else if (executor instanceof ThreadPoolExecutor) {
+			ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+			snapshot.put("connector.threads.busy", pool.getActiveCount());
+			snapshot.put("connector.threads.current", pool.getPoolSize());
+			snapshot.put("connector.threads.max", pool.getMaximumPoolSize());
+			snapshot.put("connector.queue.size", pool.getQueue().size());
+		}
+	}
+
 	/**
 	 * @return the tomcat instance or null if not running
 	 */
@@ -131,6 +472,61 @@ public class TomcatLauncherProvider implements LdeProvider {
 		return tomcat;
 	}
 
+	/**
+	 * @return the web app context or null if not created
+	 */
+	protected Context getWebAppContext() {
+		if (!isTomcatCreated()) {
+			return null;
+		}
+		return (Context) getTomcat().getHost().findChild(TomcatConfigUtil.getContextPath());
+	}
+
+	/**
+	 * Compile the JSPs in the web app directory in parallel so the first request to each page is not slowed by compiling it.
+	 */
+	protected void precompileJsps() {
+		Context context = getWebAppContext();
+		if (context == null) {
+			return;
+		}
+		JspPrecompiler precompiler = new JspPrecompiler(context, TomcatConfigUtil.getJspPrecompileThreads());
+		precompiler.precompile(Paths.get(TomcatConfigUtil.getWebAppDir()));
+	}
+
+	/**
+	 * Start watching the classes and web app directories and reload the web app when they change.
+	 * <p>
+	 * Only changes under WEB-INF of the web app directory are watched as static resources are served from disk without a reload.
+	 * </p>
+	 */
+	protected void startReloadWatcher() {
+		List<Path> dirs = new ArrayList<>();
+		String classesDir = TomcatConfigUtil.getClassesDir();
+		if (classesDir != null) {
+			dirs.add(Paths.get(classesDir));
+		}
+		dirs.add(Paths.get(TomcatConfigUtil.getWebAppDir(), "WEB-INF"));
+		ReloadWatcher watcher = new ReloadWatcher(dirs, TomcatConfigUtil.getReloadWatchDebounceMillis(), this::reloadServer);
+		try {
+			watcher.start();
+			reloadWatcher = watcher;
+		} catch (IOException e) {
+			watcher.close();
+			LOG.warn("Could not watch for changes to reload web app. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Stop watching for changes.
+	 */
+	protected void stopReloadWatcher() {
+		if (reloadWatcher != null) {
+			reloadWatcher.close();
+			reloadWatcher = null;
+		}
+	}
+
 	/**
 	 * @return true if tomcat instance created
 	 */
@@ -138,24 +534,42 @@ public class TomcatLauncherProvider implements LdeProvider {
 		return getTomcat() != null;
 	}
 
+	/**
+	 * @return the lifecycle monitor of the current tomcat instance or null if not created
+	 */
+	protected TomcatLifecycleMonitor getMonitor() {
+		return monitor;
+	}
+
+	/**
+	 * @param monitor the lifecycle monitor of the current tomcat instance
+	 */
+	protected void setMonitor(final TomcatLifecycleMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	/**
 	 * Wait for TOMCAT to start.
+	 * <p>
+	 * Waits on the server lifecycle events rather than polling the server state.
+	 * </p>
 	 *
 	 * @throws LifecycleException life cycle exception occurred
 	 */
 	protected void waitForTomcatToStart() throws LifecycleException {
 		// Check tomcat is created
-		if (!isTomcatCreated()) {
+		if (!isTomcatCreated() || getMonitor() == null) {
 			throw new IllegalStateException("Tomcat instance not created before checking if started.");
 		}
 
-		int i = 0;
-		while (!isRunning()) {
-			waitInterval();
-			if (i++ > 10) {
-				getTomcat().stop();
-				throw new IllegalStateException("Timeout waiting for TOMCAT to start");
-			}
+		try {
+			getMonitor().awaitStarted(TomcatConfigUtil.getStartTimeoutSeconds());
+		} catch (TimeoutException e) {
+			getTomcat().stop();
+			throw new IllegalStateException("Timeout waiting for TOMCAT to start", e);
+		} catch (IllegalStateException e) {
+			getTomcat().stop();
+			throw e;
 		}
 	}
 
@@ -166,28 +580,14 @@ public class TomcatLauncherProvider implements LdeProvider {
 	 */
 	protected void waitForTomcatToStop() throws LifecycleException {
 		// Check is created before try to stop
-		if (!isTomcatCreated()) {
+		if (!isTomcatCreated() || getMonitor() == null) {
 			return;
 		}
 
-		int i = 0;
-		while (getTomcat().getServer().getState() != LifecycleState.STOPPED) {
-			waitInterval();
-			if (i++ > 10) {
-				throw new IllegalStateException("Timeout waiting for TOMCAT to stop");
-			}
-		}
-	}
-
-	/**
-	 * Put thread to sleep.
-	 */
-	protected void waitInterval() {
 		try {
-			Thread.sleep(1000);
-		} catch (InterruptedException ex) {
-			Thread.currentThread().interrupt();
-			throw new IllegalStateException("Waiting for TOMCAT status interrupted. " + ex.getMessage(), ex);
+			getMonitor().awaitStopped(TomcatConfigUtil.getStopTimeoutSeconds());
+		} catch (TimeoutException e) {
+			throw new IllegalStateException("Timeout waiting for TOMCAT to stop", e);
 		}
 	}
 
@@ -202,14 +602,108 @@ public class TomcatLauncherProvider implements LdeProvider {
 	protected void configTomcat(final Tomcat tom) throws IOException, ServletException {
 		LOG.info("Configure TOMCAT.");
 		final int port = findServerPort();
-		final String baseDir = TomcatConfigUtil.getBaseDir();
+		final String baseDir = getBaseDir();
 		tom.setPort(port);
 		tom.setBaseDir(baseDir);
+		if (getInstanceName() != null) {
+			// Unique names so the JMX registrations do not clash with the other instances
+			String name = "Tomcat-" + getInstanceName();
+			tom.getService().setName(name);
+			tom.getEngine().setName(name);
+		}
+		tom.setConnector(createConnector(tom, port));
+		protocolUsage = new ProtocolUsageValve();
+		tom.getEngine().getPipeline().addValve(protocolUsage);
+		metrics = TomcatConfigUtil.isMetricsEnabled() ? new MetricsValve() : null;
+		if (metrics != null) {
+			tom.getEngine().getPipeline().addValve(metrics);
+		}
+		accessLog = TomcatConfigUtil.isAccessLogEnabled() ? new LdeAccessLogValve(Paths.get(TomcatConfigUtil.getAccessLogFile(baseDir))) : null;
+		if (accessLog != null) {
+			tom.getEngine().getPipeline().addValve(accessLog);
+		}
 		// Create context
 		Context context = addWebAppContext(tom);
 		configWebApp(context);
 	}
 
+	/**
+	 * Create the HTTP connector from the connector profile.
+	 *
+	 * @param tom the tomcat instance
+	 * @param port the port to listen on
+	 * @return the connector
+	 */
+	protected Connector createConnector(final Tomcat tom, final int port) {
+		Connector connector = new Connector(TomcatConfigUtil.getConnectorProtocol());
+		connector.setPort(port);
+		for (Map.Entry<String, String> entry : TomcatConfigUtil.getConnectorProperties().entrySet()) {
+			if (!connector.setProperty(entry.getKey(), entry.getValue())) {
+				LOG.warn("Connector property [" + entry.getKey() + "] is not supported by [" + connector.getProtocolHandlerClassName() + "].");
+			}
+		}
+		for (Map.Entry<String, String> entry : TomcatConfigUtil.getCompressionProperties().entrySet()) {
+			if (!connector.setProperty(entry.getKey(), entry.getValue())) {
+				LOG.warn("Compression property [" + entry.getKey() + "] is not supported by [" + connector.getProtocolHandlerClassName() + "].");
+			}
+		}
+		if (TomcatConfigUtil.isHttp2Enabled()) {
+			connector.addUpgradeProtocol(createHttp2Protocol());
+		}
+		// The access log needs the executor to time how long each request waited in the queue
+		if (TomcatConfigUtil.isConnectorExecutorEnabled() || TomcatConfigUtil.isConnectorVirtualThreadsEnabled()
+				|| TomcatConfigUtil.isAccessLogEnabled()) {
+			ProtocolHandler handler = connector.getProtocolHandler();
+			if (handler instanceof AbstractProtocol) {
+				StandardThreadExecutor executor = createExecutor();
+				tom.getService().addExecutor(executor);
+				((AbstractProtocol<?>) handler).setExecutor(executor);
+			} else {
+				LOG.warn("Connector executor is not supported by [" + connector.getProtocolHandlerClassName() + "].");
+			}
+		}
+		LOG.info("Connector [" + connector.getProtocolHandlerClassName() + "] configured with " + TomcatConfigUtil.getConnectorProperties() + ".");
+		return connector;
+	}
+
+	/**
+	 * Create the HTTP/2 upgrade protocol.
+	 *
+	 * @return the HTTP/2 protocol
+	 */
+	protected UpgradeProtocol createHttp2Protocol() {
+		Http2Protocol http2 = new Http2Protocol();
+		for (Map.Entry<String, String> entry : TomcatConfigUtil.getHttp2Properties().entrySet()) {
+			if (!IntrospectionUtils.setProperty(http2, entry.getKey(), entry.getValue())) {
+				LOG.warn("HTTP/2 property [" + entry.getKey() + "] is not supported.");
+			}
+		}
+		for (Map.Entry<String, String> entry : TomcatConfigUtil.getCompressionProperties().entrySet()) {
+			if (!IntrospectionUtils.setProperty(http2, entry.getKey(), entry.getValue())) {
+				LOG.warn("HTTP/2 compression property [" + entry.getKey() + "] is not supported.");
+			}
+		}
+		LOG.info("HTTP/2 enabled with " + TomcatConfigUtil.getHttp2Properties() + ".");
+		return http2;
+	}
+
+	/**
+	 * Create the executor shared by the connector.
+	 *
+	 * @return the connector executor
+	 */
+	protected StandardThreadExecutor createExecutor() {
+		StandardThreadExecutor executor = TomcatConfigUtil.isConnectorVirtualThreadsEnabled() ? new VirtualThreadExecutor()
+				: new TimedThreadExecutor();
+		String suffix = getInstanceName() == null ? "" : "-" + getInstanceName();
+		executor.setName("lde-exec" + suffix);
+		executor.setNamePrefix("lde-exec" + suffix + "-");
+		executor.setMinSpareThreads(TomcatConfigUtil.getConnectorExecutorMinThreads());
+		executor.setMaxThreads(TomcatConfigUtil.getConnectorExecutorMaxThreads());
+		executor.setMaxQueueSize(TomcatConfigUtil.getConnectorExecutorMaxQueueSize());
+		return executor;
+	}
+
 	/**
 	 * @param tomcat the tomcat instance
 	 */
@@ -235,7 +729,26 @@ public class TomcatLauncherProvider implements LdeProvider {
 	protected Context addWebAppContext(final Tomcat tom) {
 		final String path = TomcatConfigUtil.getContextPath();
 		final String webAppDir = TomcatConfigUtil.getWebAppDir();
-		return tom.addWebapp(path, webAppDir);
+		return tom.addWebapp(tom.getHost(), path, webAppDir, createContextConfig());
+	}
+
+	/**
+	 * Create the listener that configures the web app context.
+	 *
+	 * @return the web app context configuration listener
+	 */
+	protected LifecycleListener createContextConfig() {
+		if (!TomcatConfigUtil.isScanCacheEnabled()) {
+			return new LdeContextConfig(null);
+		}
+		return new LdeContextConfig(new ScanCache(Paths.get(TomcatConfigUtil.getScanCacheFile(getBaseDir()))));
+	}
+
+	/**
+	 * @return the TOMCAT base directory of this instance
+	 */
+	protected String getBaseDir() {
+		return TomcatConfigUtil.getBaseDir(getInstanceName());
 	}
 
 	/**
@@ -249,7 +762,11 @@ public class TomcatLauncherProvider implements LdeProvider {
 		final String libDir = TomcatConfigUtil.getLibDir();
 		final String classesDir = TomcatConfigUtil.getClassesDir();
 
-		WebResourceRoot resources = new StandardRoot(context);
+		StandardRoot resources = new LdeStandardRoot(context);
+		resources.setCachingAllowed(TomcatConfigUtil.isResourceCacheEnabled());
+		resources.setCacheMaxSize(TomcatConfigUtil.getResourceCacheMaxSize());
+		resources.setCacheObjectMaxSize(TomcatConfigUtil.getResourceCacheObjectMaxSize());
+		resources.setCacheTtl(TomcatConfigUtil.getResourceCacheTtl());
 		context.setResources(resources);
 		// Declare an alternative location for the "WEB-INF/lib" dir
 		if (libDir != null && !libDir.isEmpty()) {
@@ -260,10 +777,14 @@ public class TomcatLauncherProvider implements LdeProvider {
 			resources.addPreResources(new DirResourceSet(resources, Constants.WEB_INF_CLASSES, classesDir, "/"));
 		}
 
-		// Stop persistent sessions
-		StandardManager mgr = new StandardManager();
-		mgr.setPathname(null);
-		context.setManager(mgr);
+		if (TomcatConfigUtil.isSessionStoreEnabled()) {
+			context.setManager(createPersistentManager());
+		} else {
+			// Stop persistent sessions
+			StandardManager mgr = new StandardManager();
+			mgr.setPathname(null);
+			context.setManager(mgr);
+		}
 
 		// Delay for requests to stop processing in milliseconds
 		if (context instanceof StandardContext) {
@@ -276,7 +797,101 @@ public class TomcatLauncherProvider implements LdeProvider {
 		if (TomcatConfigUtil.isCustomJarScannerEnabled()) {
 			configCustomJarScanner(context);
 		}
+		if (TomcatConfigUtil.isJarIndexEnabled()) {
+			configJarIndex(context);
+		}
+		if (!TomcatConfigUtil.getDefaultServletParameters().isEmpty()) {
+			configDefaultServlet(context);
+		}
+		if (!TomcatConfigUtil.getJspServletParameters().isEmpty()) {
+			configJspServlet(context);
+		}
+		if (TomcatConfigUtil.isMetricsEnabled() && TomcatConfigUtil.getMetricsPath() != null) {
+			configMetricsServlet(context);
+		}
+
+	}
+
+	/**
+	 * Create the session manager that keeps the sessions in a memory-mapped file so they survive a restart.
+	 * <p>
+	 * The sessions stay in memory while the server is running and changed sessions are written to the store by the background checks, which run
+	 * every background processor delay (10 seconds by default). All the sessions are written when the server stops. After a restart a session is only
+	 * loaded from the store when it is first requested.
+	 * </p>
+	 *
+	 * @return the persistent session manager
+	 */
+	protected Manager createPersistentManager() {
+		MappedFileStore store = new MappedFileStore();
+		store.setFileName(TomcatConfigUtil.getSessionStoreFile(getBaseDir()));
+		PersistentManager mgr = new PersistentManager();
+		mgr.setStore(store);
+		mgr.setSaveOnRestart(true);
+		mgr.setMaxIdleBackup(TomcatConfigUtil.getSessionStoreBackupIdleSeconds());
+		mgr.setMaxIdleSwap(-1);
+		mgr.setMinIdleSwap(-1);
+		mgr.setProcessExpiresFrequency(1);
+		return mgr;
+	}
+
+	/**
+	 * Serve the metrics in the Prometheus text format on the web app context.
+	 *
+	 * @param context the context to configure
+	 */
+	protected void configMetricsServlet(final Context context) {
+		Tomcat.addServlet(context, "lde-metrics", new MetricsServlet(this::getMetrics));
+		context.addServletMappingDecoded(TomcatConfigUtil.getMetricsPath(), "lde-metrics");
+	}
+
+	/**
+	 * Configure the init parameters of the default servlet that serves the static resources.
+	 * <p>
+	 * The default servlet is only added, and the web app's web.xml merged, when the context starts, so the parameters are set once the context has
+	 * been configured. Parameters already set by the web app are left unchanged.
+	 * </p>
+	 *
+	 * @param context the context to configure
+	 */
+	protected void configDefaultServlet(final Context context) {
+		addServletInitParameters(context, "default", TomcatConfigUtil.getDefaultServletParameters());
+	}
+
+	/**
+	 * Configure the init parameters of the JSP servlet from the JASPER profile.
+	 *
+	 * @param context the context to configure
+	 */
+	protected void configJspServlet(final Context context) {
+		addServletInitParameters(context, "jsp", TomcatConfigUtil.getJspServletParameters());
+	}
 
+	/**
+	 * Add init parameters to a servlet once the context has been configured, leaving any parameters already set by the web app unchanged.
+	 *
+	 * @param context the context to configure
+	 * @param servletName the servlet name
+	 * @param params the init parameters to add
+	 */
+	protected void addServletInitParameters(final Context context, final String servletName, final Map<String, String> params) {
+		context.addLifecycleListener(event -> {
+			if (!Lifecycle.CONFIGURE_START_EVENT.equals(event.getType())) {
+				return;
+			}
+			Container child = context.findChild(servletName);
+			if (!(child instanceof Wrapper)) {
+				LOG.warn("Servlet [" + servletName + "] not found so init parameters not set.");
+				return;
+			}
+			Wrapper wrapper = (Wrapper) child;
+			for (Map.Entry<String, String> entry : params.entrySet()) {
+				if (wrapper.findInitParameter(entry.getKey()) == null) {
+					wrapper.addInitParameter(entry.getKey(), entry.getValue());
+				}
+			}
+			LOG.info("Servlet [" + servletName + "] configured with " + params + ".");
+		});
 	}
 
 	/**
@@ -292,11 +907,28 @@ public class TomcatLauncherProvider implements LdeProvider {
 		// Put all the classpath URLS into a new ClassLoader so the StandardJarScanner will scan them as a potential webapp library.
 		// This is needed for Tomcat to find the Servlet 3 annotations when setting up the webapp.
 		// The "isWebApp" logic in the tomcat jar scanner is not so good.
-		ClassLoader loader = TomcatLauncherProvider.class.getClassLoader();
+		ClassLoader loader = getProjectClassLoader();
 		ClassLoader wrapper = new URLClassLoader(retrieveClassLoaderUrls(loader), loader);
 		context.setParentClassLoader(wrapper);
 	}
 
+	/**
+	 * The provider may be loaded in a shared dependency layer with the project output directories in a child class loader, which is then set as the
+	 * thread context class loader.
+	 *
+	 * @return the thread context class loader if it is, or descends from, the provider class loader, otherwise the provider class loader
+	 */
+	protected ClassLoader getProjectClassLoader() {
+		ClassLoader provider = TomcatLauncherProvider.class.getClassLoader();
+		ClassLoader context = Thread.currentThread().getContextClassLoader();
+		for (ClassLoader loader = context; loader != null; loader = loader.getParent()) {
+			if (loader == provider) {
+				return context;
+			}
+		}
+		return provider;
+	}
+
 	/**
 	 * Configure a custom jar scanner.
 	 *
@@ -306,6 +938,23 @@ public class TomcatLauncherProvider implements LdeProvider {
 		// Check if a custom jar scanner has bee defined
 		if (Didums.hasService(CustomJarScanner.class)) {
 			context.setJarScanner(Didums.getService(CustomJarScanner.class));
+		} else if (TomcatConfigUtil.isParallelJarScannerEnabled()) {
+			context.setJarScanner(new ParallelJarScanner());
+		}
+	}
+
+	/**
+	 * Configure the jar scan filter from the jar index, if one has been built.
+	 *
+	 * @param context the context to configure
+	 */
+	protected void configJarIndex(final Context context) {
+		JarScanner scanner = context.getJarScanner();
+		Path file = Paths.get(TomcatConfigUtil.getJarIndexFile());
+		IndexedJarScanFilter filter = IndexedJarScanFilter.load(file, scanner.getJarScanFilter());
+		if (filter != null) {
+			scanner.setJarScanFilter(filter);
+			LOG.info("Using jar index [" + file + "] of " + filter.getIndexSize() + " jars.");
 		}
 	}
 
@@ -337,7 +986,38 @@ public class TomcatLauncherProvider implements LdeProvider {
 	 * @return the port to start tomcat with
 	 */
 	protected int findServerPort() {
-		return ConfigUtil.isFindPort() ? TomcatConfigUtil.findFreePort() : ConfigUtil.getDefaultPort();
+		int port = ConfigUtil.getDefaultPort();
+		// Port 0 is assigned by the OS when bound so cannot collide
+		if (port == 0) {
+			return 0;
+		}
+		// Named instances always need their own port
+		if (getInstanceName() != null || ConfigUtil.isFindPort()) {
+			claimedPort = TomcatConfigUtil.claimFreePort();
+			return claimedPort;
+		}
+		return port;
+	}
+
+	/**
+	 * Release the port leased by this instance.
+	 */
+	protected void releaseServerPort() {
+		if (claimedPort > 0) {
+			TomcatConfigUtil.releasePort(claimedPort);
+			claimedPort = -1;
+		}
+	}
+
+	/**
+	 * Start a daemon thread so a launch or stop in progress does not hold up the JVM from exiting.
+	 *
+	 * @param task the task to run
+	 */
+	private static void startDaemon(final Runnable task) {
+		Thread thread = new Thread(task, "lde-tomcat-lifecycle");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 }
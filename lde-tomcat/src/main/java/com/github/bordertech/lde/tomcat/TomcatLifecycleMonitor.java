@@ -0,0 +1,135 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+
+/**
+ * Listen to the TOMCAT server lifecycle and signal waiters when the server has started or stopped.
+ * <p>
+ * Replaces polling the server state. The monitor is registered on the server before it is started and the waiting threads are released as soon as
+ * the matching Catalina lifecycle event has been fired.
+ * </p>
+ */
+public class TomcatLifecycleMonitor implements LifecycleListener {
+
+	private final Tomcat tomcat;
+	private final CompletableFuture<Void> started = new CompletableFuture<>();
+	private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+	/**
+	 * @param tomcat the tomcat instance to monitor
+	 */
+	public TomcatLifecycleMonitor(final Tomcat tomcat) {
+		this.tomcat = tomcat;
+	}
+
+	/**
+	 * Register this monitor with the TOMCAT server.
+	 */
+	public void register() {
+		tomcat.getServer().addLifecycleListener(this);
+	}
+
+	@Override
+	public void lifecycleEvent(final LifecycleEvent event) {
+		switch (event.getType()) {
+			case Lifecycle.AFTER_START_EVENT:
+				handleStarted();
+				break;
+			case Lifecycle.AFTER_STOP_EVENT:
+				stopped.complete(null);
+				break;
+			case Lifecycle.AFTER_DESTROY_EVENT:
+				// Make sure nothing is left waiting
+				started.completeExceptionally(new IllegalStateException("TOMCAT was destroyed before it started."));
+				stopped.complete(null);
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * @return the future completed when the server has started and the connector is accepting connections
+	 */
+	public CompletableFuture<Void> getStarted() {
+		return started;
+	}
+
+	/**
+	 * @return the future completed when the server has stopped
+	 */
+	public CompletableFuture<Void> getStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Mark the start as failed so any waiters are released.
+	 *
+	 * @param cause the reason the start failed
+	 */
+	public void startFailed(final Throwable cause) {
+		started.completeExceptionally(cause);
+	}
+
+	/**
+	 * Wait for the server to start.
+	 *
+	 * @param timeoutSeconds the maximum time to wait in seconds
+	 * @throws TimeoutException the server did not start in time
+	 */
+	public void awaitStarted(final int timeoutSeconds) throws TimeoutException {
+		await(started, timeoutSeconds, "start");
+	}
+
+	/**
+	 * Wait for the server to stop.
+	 *
+	 * @param timeoutSeconds the maximum time to wait in seconds
+	 * @throws TimeoutException the server did not stop in time
+	 */
+	public void awaitStopped(final int timeoutSeconds) throws TimeoutException {
+		await(stopped, timeoutSeconds, "stop");
+	}
+
+	/**
+	 * The server has started so check the connector actually bound its port.
+	 * <p>
+	 * A connector that fails to start is only logged by the service, so the server still reports as started.
+	 * </p>
+	 */
+	protected void handleStarted() {
+		Connector connector = tomcat.getConnector();
+		if (connector == null || connector.getState() == LifecycleState.STARTED) {
+			started.complete(null);
+		} else {
+			started.completeExceptionally(new IllegalStateException("TOMCAT connector failed to start [" + connector.getState() + "]."));
+		}
+	}
+
+	/**
+	 * @param future the future to wait on
+	 * @param timeoutSeconds the maximum time to wait in seconds
+	 * @param action the action being waited on
+	 * @throws TimeoutException the action did not complete in time
+	 */
+	private void await(final CompletableFuture<Void> future, final int timeoutSeconds, final String action) throws TimeoutException {
+		try {
+			future.get(timeoutSeconds, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Waiting for TOMCAT to " + action + " interrupted. " + e.getMessage(), e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("TOMCAT failed to " + action + ". " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+}
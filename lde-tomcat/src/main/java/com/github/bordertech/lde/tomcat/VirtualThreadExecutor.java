@@ -0,0 +1,115 @@
+package com.github.bordertech.lde.tomcat;
+
+import com.github.bordertech.lde.api.VirtualThreadUtil;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Connector executor that runs each request on its own virtual thread when the runtime supports virtual threads (JDK 21+).
+ * <p>
+ * On older runtimes the executor falls back to the platform thread pool of {@link TimedThreadExecutor}. The active and total task counters, and
+ * the queue wait, are maintained in both modes.
+ * </p>
+ */
+public class VirtualThreadExecutor extends TimedThreadExecutor {
+
+	private static final Log LOG = LogFactory.getLog(VirtualThreadExecutor.class);
+
+	private final AtomicInteger activeTasks = new AtomicInteger();
+	private final AtomicLong totalTasks = new AtomicLong();
+	private ExecutorService virtualExecutor;
+
+	@Override
+	protected void startInternal() throws LifecycleException {
+		virtualExecutor = VirtualThreadUtil.newThreadPerTaskExecutor(getNamePrefix());
+		if (virtualExecutor == null) {
+			LOG.info("Virtual threads are not supported by this runtime so using a platform thread pool.");
+			super.startInternal();
+			return;
+		}
+		LOG.info("Running requests on virtual threads.");
+		setState(LifecycleState.STARTING);
+	}
+
+	@Override
+	protected void stopInternal() throws LifecycleException {
+		if (virtualExecutor == null) {
+			super.stopInternal();
+			return;
+		}
+		setState(LifecycleState.STOPPING);
+		virtualExecutor.shutdownNow();
+		virtualExecutor = null;
+	}
+
+	@Override
+	public void execute(final Runnable command) {
+		ExecutorService virtual = virtualExecutor;
+		if (virtual == null) {
+			super.execute(command);
+		} else {
+			virtual.execute(wrap(command));
+		}
+	}
+
+	@Override
+	public void execute(final Runnable command, final long timeout, final TimeUnit unit) {
+		// A virtual thread is started straight away so there is no queue to time out on
+		if (virtualExecutor == null) {
+			super.execute(command, timeout, unit);
+		} else {
+			execute(command);
+		}
+	}
+
+	/**
+	 * @return true if requests are running on virtual threads
+	 */
+	public boolean isVirtual() {
+		return virtualExecutor != null;
+	}
+
+	/**
+	 * @return the number of tasks currently running
+	 */
+	public int getActiveTaskCount() {
+		return activeTasks.get();
+	}
+
+	/**
+	 * @return the total number of tasks run
+	 */
+	public long getTotalTaskCount() {
+		return totalTasks.get();
+	}
+
+	@Override
+	public int getActiveCount() {
+		return virtualExecutor == null ? super.getActiveCount() : activeTasks.get();
+	}
+
+	/**
+	 * @param command the task to run
+	 * @return the task wrapped to maintain the counters and the queue wait
+	 */
+	@Override
+	protected Runnable wrap(final Runnable command) {
+		Runnable timed = super.wrap(command);
+		return () -> {
+			activeTasks.incrementAndGet();
+			totalTasks.incrementAndGet();
+			try {
+				timed.run();
+			} finally {
+				activeTasks.decrementAndGet();
+			}
+		};
+	}
+
+}
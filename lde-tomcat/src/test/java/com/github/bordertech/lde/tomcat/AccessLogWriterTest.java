@@ -0,0 +1,235 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link AccessLogWriter}.
+ */
+public class AccessLogWriterTest {
+
+	private static final long WAIT_MILLIS = 5000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+	private AccessLogWriter writer;
+
+	@Before
+	public void setup() {
+		file = folder.getRoot().toPath().resolve("logs/access.log");
+	}
+
+	@After
+	public void closeWriter() {
+		if (writer != null) {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void testLinesWritten() throws IOException {
+		writer = new AccessLogWriter(file, 1024, 10, 0, 0);
+		writer.start();
+		writeLine("line1");
+		writeLine("line2");
+		writer.close();
+		Assert.assertEquals("Lines should be written in order", lines("line1", "line2"), Files.readAllLines(file));
+		Assert.assertEquals("Lines should be counted", 2, writer.getLines());
+		Assert.assertEquals("Bytes should be counted", 12, writer.getBytesWritten());
+	}
+
+	@Test
+	public void testBufferSwap() throws Exception {
+		// Small buffers so the lines need many swaps and the request threads wait for space
+		writer = new AccessLogWriter(file, 64, 1000, 0, 0);
+		writer.start();
+		int threads = 4;
+		int count = 200;
+		List<Thread> loggers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			String prefix = "t" + t + "-";
+			Thread logger = new Thread(() -> {
+				for (int i = 0; i < count; i++) {
+					writeLine(prefix + i);
+				}
+			});
+			loggers.add(logger);
+			logger.start();
+		}
+		for (Thread logger : loggers) {
+			logger.join();
+		}
+		writer.close();
+		List<String> written = Files.readAllLines(file);
+		Assert.assertEquals("All lines should be written", threads * count, written.size());
+		for (int t = 0; t < threads; t++) {
+			String prefix = "t" + t + "-";
+			List<String> expected = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				expected.add(prefix + i);
+			}
+			Assert.assertEquals("Lines of a thread should be whole and in order", expected,
+					written.stream().filter(line -> line.startsWith(prefix)).collect(Collectors.toList()));
+		}
+		Assert.assertTrue("Request threads should have waited for space", writer.getWaits() > 0);
+	}
+
+	@Test
+	public void testClaimsFormattedConcurrently() throws Exception {
+		writer = new AccessLogWriter(file, 1024, 10, 0, 0);
+		writer.start();
+		ByteBuffer first = writer.claim(128);
+		// Another thread claims and releases its line while the first line is still being formatted
+		Thread other = new Thread(() -> writeLine("line2"));
+		other.start();
+		other.join(WAIT_MILLIS);
+		Assert.assertFalse("Claim should not wait for a line being formatted", other.isAlive());
+		first.put("line1\n".getBytes(StandardCharsets.US_ASCII));
+		writer.release(first);
+		writer.close();
+		Assert.assertEquals("Lines should be written in claim order without gaps", lines("line1", "line2"), Files.readAllLines(file));
+	}
+
+	@Test
+	public void testLineLimitedToClaim() throws IOException {
+		writer = new AccessLogWriter(file, 1024, 10, 0, 0);
+		writer.start();
+		ByteBuffer buf = writer.claim(4);
+		try {
+			Assert.assertEquals("Claimed space should be limited", 4, buf.remaining());
+		} finally {
+			writer.release(buf);
+		}
+	}
+
+	@Test
+	public void testClaimAfterClose() throws IOException {
+		writer = new AccessLogWriter(file, 1024, 10, 0, 0);
+		writer.start();
+		writer.close();
+		Assert.assertNull("Claim should fail once closed", writer.claim(10));
+	}
+
+	@Test
+	public void testRotateOnSize() throws Exception {
+		writer = new AccessLogWriter(file, 1024, 10, 20, 0);
+		writer.start();
+		writeLine("line1-aaaa");
+		waitFor(writer::getBytesWritten, 11);
+		writeLine("line2-bbbb");
+		waitFor(writer::getBytesWritten, 22);
+		writer.close();
+		Assert.assertEquals("File should be rotated before it exceeds the size", 1, writer.getRotations());
+		Assert.assertEquals("Current file should hold the new line", lines("line2-bbbb"), Files.readAllLines(file));
+		List<Path> rotated = rotatedFiles();
+		Assert.assertEquals("Rotated file should be kept", 1, rotated.size());
+		Assert.assertEquals("Rotated file should hold the old line", lines("line1-aaaa"), Files.readAllLines(rotated.get(0)));
+	}
+
+	@Test
+	public void testRotateOnTime() throws Exception {
+		writer = new AccessLogWriter(file, 1024, 10, 0, 50);
+		writer.start();
+		writeLine("line1");
+		waitFor(writer::getBytesWritten, 6);
+		Thread.sleep(100);
+		writeLine("line2");
+		waitFor(writer::getBytesWritten, 12);
+		writer.close();
+		Assert.assertEquals("File should be rotated once the interval has passed", 1, writer.getRotations());
+		Assert.assertEquals("Current file should hold the new line", lines("line2"), Files.readAllLines(file));
+	}
+
+	@Test
+	public void testRestart() throws IOException {
+		writer = new AccessLogWriter(file, 1024, 10, 0, 0);
+		writer.start();
+		writeLine("line1");
+		writer.close();
+		writer.start();
+		writeLine("line2");
+		writer.close();
+		Assert.assertEquals("Lines should be appended after a restart", lines("line1", "line2"), Files.readAllLines(file));
+	}
+
+	@Test
+	public void testReopenAfterError() throws Exception {
+		writer = new AccessLogWriter(file, 1024, 10, 20, 0);
+		writer.start();
+		writeLine("line1-aaaa");
+		waitFor(writer::getBytesWritten, 11);
+		// The rotation of the next batch fails as the file has gone
+		Files.delete(file);
+		writeLine("line2-bbbb");
+		waitFor(writer::getErrors, 1);
+		writeLine("line3-cccc");
+		waitFor(writer::getBytesWritten, 22);
+		writer.close();
+		Assert.assertEquals("Failed batch should be counted", 1, writer.getErrors());
+		Assert.assertEquals("File should be opened again for the next batch", lines("line3-cccc"), Files.readAllLines(file));
+	}
+
+	/**
+	 * @param line the line to log
+	 */
+	private void writeLine(final String line) {
+		ByteBuffer buf = writer.claim(128);
+		try {
+			buf.put((line + "\n").getBytes(StandardCharsets.US_ASCII));
+		} finally {
+			writer.release(buf);
+		}
+	}
+
+	/**
+	 * @param values the expected lines
+	 * @return the list of lines
+	 */
+	private static List<String> lines(final String... values) {
+		List<String> lines = new ArrayList<>();
+		for (String value : values) {
+			lines.add(value);
+		}
+		return lines;
+	}
+
+	/**
+	 * @return the rotated files
+	 * @throws IOException an IO exception
+	 */
+	private List<Path> rotatedFiles() throws IOException {
+		try (Stream<Path> files = Files.list(file.getParent())) {
+			return files.filter(path -> !path.equals(file)).collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * @param counter the counter to check
+	 * @param expected the count to wait for
+	 * @throws InterruptedException interrupted waiting
+	 */
+	private static void waitFor(final LongSupplier counter, final long expected) throws InterruptedException {
+		long end = System.currentTimeMillis() + WAIT_MILLIS;
+		while (counter.getAsLong() < expected) {
+			Assert.assertTrue("Timed out waiting for the count to reach " + expected, System.currentTimeMillis() < end);
+			Thread.sleep(5);
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AsyncLogQueue}.
+ */
+public class AsyncLogQueueTest {
+
+	@Test
+	public void testWriteInlineWhenNotStarted() {
+		AsyncLogQueue queue = new AsyncLogQueue(8, false);
+		List<Thread> threads = new ArrayList<>();
+		queue.offer(() -> threads.add(Thread.currentThread()));
+		Assert.assertEquals("Write should run on the logging thread", Collections.singletonList(Thread.currentThread()), threads);
+	}
+
+	@Test
+	public void testStopWritesQueuedEvents() {
+		AsyncLogQueue queue = new AsyncLogQueue(1024, true);
+		List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+		queue.start();
+		for (int i = 0; i < 100; i++) {
+			int event = i;
+			queue.offer(() -> written.add(event));
+		}
+		queue.stop();
+		Assert.assertEquals("All queued events should be written on stop", 100, written.size());
+		Assert.assertEquals("No events should be pending", 0, queue.getPending());
+	}
+
+	@Test
+	public void testIdleWriterWoken() throws InterruptedException {
+		AsyncLogQueue queue = new AsyncLogQueue(8, false);
+		queue.start();
+		try {
+			for (int i = 0; i < 20; i++) {
+				// Let the writer go idle before each event
+				Thread.sleep(2);
+				CountDownLatch written = new CountDownLatch(1);
+				queue.offer(written::countDown);
+				Assert.assertTrue("Event should wake the idle writer", written.await(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			queue.stop();
+		}
+	}
+
+	@Test
+	public void testStopEndsWriterThread() {
+		AsyncLogQueue queue = new AsyncLogQueue(8, false);
+		List<Thread> threads = new ArrayList<>();
+		queue.start();
+		queue.offer(() -> threads.add(Thread.currentThread()));
+		queue.stop();
+		Assert.assertEquals("Event should be written", 1, threads.size());
+		Assert.assertFalse("Writer thread should have stopped", threads.get(0).isAlive());
+	}
+
+	@Test
+	public void testStopCountsProviders() {
+		AsyncLogQueue queue = new AsyncLogQueue(8, false);
+		List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+		queue.start();
+		queue.start();
+		queue.stop();
+		queue.offer(() -> threads.add(Thread.currentThread()));
+		queue.stop();
+		Assert.assertEquals("Event should be written", 1, threads.size());
+		Assert.assertNotSame("Queue should still be running until the last provider stops", Thread.currentThread(), threads.get(0));
+	}
+
+	@Test
+	public void testRestart() {
+		AsyncLogQueue queue = new AsyncLogQueue(8, false);
+		List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+		queue.start();
+		queue.stop();
+		queue.start();
+		queue.offer(() -> threads.add(Thread.currentThread()));
+		queue.stop();
+		Assert.assertEquals("Event should be written after a restart", 1, threads.size());
+		Assert.assertNotSame("Event should be written by the writer thread", Thread.currentThread(), threads.get(0));
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.tomcat.JarScanType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link IndexedJarScanFilter}.
+ */
+public class IndexedJarScanFilterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Map<String, String> index = new HashMap<>();
+	private File tld;
+	private File fragment;
+	private File plain;
+
+	@Before
+	public void setup() throws IOException {
+		tld = createJar("tld.jar");
+		fragment = createJar("fragment.jar");
+		plain = createJar("plain.jar");
+		index.put("tld.jar", entry("T", tld));
+		index.put("fragment.jar", entry("F", fragment));
+		index.put("plain.jar", entry("", plain));
+	}
+
+	@Test
+	public void testFlagsChecked() {
+		IndexedJarScanFilter filter = new IndexedJarScanFilter(null, index);
+		Assert.assertTrue("Jar with a TLD should be scanned for TLDs", filter.check(JarScanType.TLD, "tld.jar"));
+		Assert.assertFalse("Jar with a TLD only should not be scanned for pluggability", filter.check(JarScanType.PLUGGABILITY, "tld.jar"));
+		Assert.assertFalse("Jar with a fragment should not be scanned for TLDs", filter.check(JarScanType.TLD, "fragment.jar"));
+		Assert.assertTrue("Jar with a fragment should be scanned for pluggability", filter.check(JarScanType.PLUGGABILITY, "fragment.jar"));
+		Assert.assertFalse("Jar with no flags should not be scanned for TLDs", filter.check(JarScanType.TLD, "plain.jar"));
+		Assert.assertFalse("Jar with no flags should not be scanned for pluggability", filter.check(JarScanType.PLUGGABILITY, "plain.jar"));
+		Assert.assertTrue("Other scans should not be filtered", filter.check(JarScanType.OTHER, "plain.jar"));
+		Assert.assertTrue("Jar not in the index should be scanned", filter.check(JarScanType.TLD, "other.jar"));
+	}
+
+	@Test
+	public void testDelegateCheckedFirst() {
+		IndexedJarScanFilter filter = new IndexedJarScanFilter((type, name) -> !"tld.jar".equals(name), index);
+		Assert.assertFalse("Jar skipped by the wrapped filter should not be scanned", filter.check(JarScanType.TLD, "tld.jar"));
+		Assert.assertTrue("Jar not in the index should be scanned", filter.check(JarScanType.TLD, "other.jar"));
+	}
+
+	@Test
+	public void testRebuiltJarScanned() throws IOException {
+		Files.write(plain.toPath(), "rebuilt jar".getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue("Jar that has changed size since indexed should be scanned",
+				new IndexedJarScanFilter(null, index).check(JarScanType.PLUGGABILITY, "plain.jar"));
+	}
+
+	@Test
+	public void testTouchedJarScanned() {
+		Assert.assertTrue("Could not change the jar time", plain.setLastModified(plain.lastModified() - 60000));
+		Assert.assertTrue("Jar that has changed time since indexed should be scanned",
+				new IndexedJarScanFilter(null, index).check(JarScanType.PLUGGABILITY, "plain.jar"));
+	}
+
+	@Test
+	public void testRemovedJarScanned() throws IOException {
+		// Two jars with the same name, one of which is removed
+		File other = new File(folder.newFolder("other"), "plain.jar");
+		Files.copy(plain.toPath(), other.toPath());
+		index.put("plain.jar", entry("", plain) + entry("", other));
+		IndexedJarScanFilter filter = new IndexedJarScanFilter(null, index);
+		Assert.assertFalse("Unchanged jars with the same name should not be scanned", filter.check(JarScanType.PLUGGABILITY, "plain.jar"));
+		Assert.assertTrue("Could not remove the jar", other.delete());
+		Assert.assertTrue("Jar that has been removed since indexed should be scanned", filter.check(JarScanType.PLUGGABILITY, "plain.jar"));
+	}
+
+	@Test
+	public void testInvalidEntryScanned() {
+		index.put("plain.jar", "|1|2");
+		Assert.assertTrue("Jar with an invalid entry should be scanned",
+				new IndexedJarScanFilter(null, index).check(JarScanType.PLUGGABILITY, "plain.jar"));
+	}
+
+	@Test
+	public void testLoad() throws IOException {
+		Path file = writeIndex("2");
+		IndexedJarScanFilter filter = IndexedJarScanFilter.load(file, null);
+		Assert.assertNotNull("Index should be loaded", filter);
+		Assert.assertEquals("Index should have each jar", 3, filter.getIndexSize());
+		Assert.assertFalse("Loaded flags should be checked", filter.check(JarScanType.TLD, "plain.jar"));
+	}
+
+	@Test
+	public void testLoadOtherVersion() throws IOException {
+		Assert.assertNull("Index of another version should be ignored", IndexedJarScanFilter.load(writeIndex("1"), null));
+	}
+
+	@Test
+	public void testLoadMissing() {
+		Path file = folder.getRoot().toPath().resolve("missing.properties");
+		Assert.assertNull("Missing index should be ignored", IndexedJarScanFilter.load(file, null));
+	}
+
+	/**
+	 * @param version the index version
+	 * @return the index file
+	 * @throws IOException an IO exception writing the file
+	 */
+	private Path writeIndex(final String version) throws IOException {
+		StringBuilder props = new StringBuilder("lde.index.version=" + version + "\n");
+		for (Map.Entry<String, String> entry : index.entrySet()) {
+			props.append(entry.getKey()).append('=').append(entry.getValue().replace("\\", "\\\\")).append('\n');
+		}
+		Path file = folder.getRoot().toPath().resolve("lde-jar-index.properties");
+		Files.write(file, props.toString().getBytes(StandardCharsets.ISO_8859_1));
+		return file;
+	}
+
+	/**
+	 * @param flags the jar flags
+	 * @param jar the jar
+	 * @return the index entry of the jar
+	 */
+	private static String entry(final String flags, final File jar) {
+		return flags + "|" + jar.length() + "|" + jar.lastModified() + "|" + jar.getAbsolutePath();
+	}
+
+	/**
+	 * @param name the jar name
+	 * @return the jar
+	 * @throws IOException an IO exception creating the jar
+	 */
+	private File createJar(final String name) throws IOException {
+		File jar = folder.newFile(name);
+		Files.write(jar.toPath(), name.getBytes(StandardCharsets.UTF_8));
+		return jar;
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.util.ServerInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link LdeStandardRoot}.
+ * <p>
+ * The resource cache is read by reflection, so these tests are pinned to the TOMCAT version and must be checked again when TOMCAT is upgraded.
+ * </p>
+ */
+public class LdeStandardRootTest {
+
+	private static final String TOMCAT_VERSION = "8.5.43";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LdeStandardRoot root;
+
+	private File docBase;
+
+	@Before
+	public void setup() throws IOException, LifecycleException {
+		docBase = folder.newFolder("webapp");
+		// Large enough to show in the cache size in kilobytes
+		byte[] content = new byte[64 * 1024];
+		Arrays.fill(content, (byte) 'x');
+		Files.write(new File(docBase, "static.txt").toPath(), content);
+		StandardContext context = new StandardContext();
+		context.setName("test");
+		context.setPath("");
+		context.setDocBase(docBase.getAbsolutePath());
+		root = new LdeStandardRoot(context);
+		root.setCacheMaxSize(10240);
+		root.setCacheObjectMaxSize(512);
+		root.start();
+	}
+
+	@After
+	public void stopRoot() throws LifecycleException {
+		root.stop();
+		root.destroy();
+	}
+
+	@Test
+	public void testTomcatVersion() {
+		Assert.assertEquals("Check LdeStandardRoot still reads the resource cache before changing the TOMCAT version", TOMCAT_VERSION,
+				ServerInfo.getServerNumber().replaceAll("\\.0$", ""));
+	}
+
+	@Test
+	public void testStatisticsAvailable() {
+		Map<String, Long> stats = root.getCacheStatistics();
+		Assert.assertEquals("Resource cache should be read", Arrays.asList("lookups", "hits", "misses", "evictions", "evictedKb", "sizeKb"),
+				Arrays.asList(stats.keySet().toArray()));
+	}
+
+	@Test
+	public void testLookupsAndHits() {
+		Map<String, Long> before = root.getCacheStatistics();
+		root.getResource("/static.txt").getContent();
+		root.getResource("/static.txt").getContent();
+		Map<String, Long> after = root.getCacheStatistics();
+		Assert.assertEquals("Lookups should be counted", 2, after.get("lookups") - before.get("lookups"));
+		Assert.assertEquals("Hits should be counted", 1, after.get("hits") - before.get("hits"));
+		Assert.assertEquals("Misses should be counted", 1, after.get("misses") - before.get("misses"));
+		Assert.assertTrue("Cached content should be in the size", after.get("sizeKb") >= 64);
+	}
+
+	@Test
+	public void testEvictedSize() throws InterruptedException {
+		root.setCacheTtl(1);
+		root.getResource("/static.txt").getContent();
+		long before = root.getCacheStatistics().get("sizeKb");
+		// Let the entry expire and shrink the cache so the background processing trims it
+		Thread.sleep(10);
+		root.setCacheMaxSize(20);
+		root.backgroundProcess();
+		Map<String, Long> stats = root.getCacheStatistics();
+		Assert.assertTrue("Cache should be trimmed", stats.get("sizeKb") < before);
+		Assert.assertEquals("Trimmed entry should be counted", 1, stats.get("evictions").longValue());
+		Assert.assertEquals("Evicted size should be the drop in the cache size", before - stats.get("sizeKb"), stats.get("evictedKb").longValue());
+	}
+
+	@Test
+	public void testEvictedOnLookup() throws IOException, InterruptedException {
+		byte[] content = new byte[2 * 1024];
+		for (int i = 0; i < 60; i++) {
+			Files.write(new File(docBase, "small" + i + ".txt").toPath(), content);
+		}
+		root.setCacheTtl(1);
+		root.setCacheMaxSize(100);
+		for (int i = 0; i < 40; i++) {
+			root.getResource("/small" + i + ".txt").getContent();
+		}
+		// Let the entries expire so looking up more resources trims them to make space
+		Thread.sleep(10);
+		long before = root.getCacheStatistics().get("sizeKb");
+		for (int i = 40; i < 60; i++) {
+			root.getResource("/small" + i + ".txt").getContent();
+		}
+		Map<String, Long> stats = root.getCacheStatistics();
+		Assert.assertTrue("Cache should be trimmed while looking up resources", stats.get("sizeKb") < before + 20 * 2);
+		Assert.assertTrue("Entries trimmed while looking up resources should be counted", stats.get("evictions") > 0);
+		Assert.assertTrue("Size of entries trimmed while looking up resources should be counted", stats.get("evictedKb") > 0);
+	}
+
+}
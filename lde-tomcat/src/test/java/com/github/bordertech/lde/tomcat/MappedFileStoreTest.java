@@ -0,0 +1,295 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Session;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.session.PersistentManager;
+import org.apache.catalina.session.StandardSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedFileStore}.
+ */
+public class MappedFileStoreTest {
+
+	private static final int MAGIC = 0x4C444553;
+	private static final int HEADER_SIZE = 8;
+	private static final byte RECORD_SESSION = 1;
+	private static final byte RECORD_REMOVE = 2;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+	private PersistentManager manager;
+	private MappedFileStore store;
+
+	@Before
+	public void setup() throws LifecycleException {
+		file = folder.getRoot().toPath().resolve("sessions/lde-sessions.dat");
+		StandardContext context = new StandardContext();
+		context.setName("test");
+		manager = new PersistentManager();
+		manager.setContext(context);
+		store = startStore();
+	}
+
+	@After
+	public void stopStore() throws LifecycleException {
+		if (store != null) {
+			store.stop();
+		}
+	}
+
+	@Test
+	public void testFileFormat() throws Exception {
+		store.save(createSession("A", "value"));
+		restartStore();
+		ByteBuffer buf = readFile();
+		Assert.assertEquals("File should start with the magic number", MAGIC, buf.getInt(0));
+		Assert.assertEquals("File should have the version", 1, buf.getInt(4));
+		Assert.assertEquals("File should have one session record", Arrays.asList("S:A"), readRecords());
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		store.save(createSession("A", "first"));
+		store.save(createSession("B", "second"));
+		restartStore();
+		Assert.assertEquals("Sessions should survive a restart", 2, store.getSize());
+		Session session = store.load("A");
+		Assert.assertNotNull("Session should be loaded", session);
+		Assert.assertEquals("Session attribute should be loaded", "first", ((StandardSession) session).getAttribute("attr"));
+		Assert.assertNull("Unknown session should not be loaded", store.load("unknown"));
+	}
+
+	@Test
+	public void testSaveReplacesSession() throws Exception {
+		store.save(createSession("A", "first"));
+		store.save(createSession("A", "second"));
+		Assert.assertEquals("Replaced session should be stored once", 1, store.getSize());
+		Assert.assertEquals("Latest session should be loaded", "second", ((StandardSession) store.load("A")).getAttribute("attr"));
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		store.save(createSession("A", "first"));
+		store.save(createSession("B", "second"));
+		store.remove("A");
+		store.remove("unknown");
+		Assert.assertNull("Removed session should not be loaded", store.load("A"));
+		Assert.assertEquals("Remove should be appended to the log", Arrays.asList("S:A", "S:B", "R:A"), readRecords());
+		restartStore();
+		Assert.assertArrayEquals("Removed session should not survive a restart", new String[]{"B"}, store.keys());
+	}
+
+	@Test
+	public void testCompactWhenMostlyGarbage() throws Exception {
+		store.save(createSession("A", String.join("", Collections.nCopies(1000, "x"))));
+		store.save(createSession("B", "second"));
+		store.remove("A");
+		// A and its remove record are more than half the file
+		restartStore();
+		Assert.assertEquals("Store should be compacted on start", Arrays.asList("S:B"), readRecords());
+		Assert.assertEquals("Compacted session should load", "second", ((StandardSession) store.load("B")).getAttribute("attr"));
+	}
+
+	@Test
+	public void testCompactLargeStore() throws Exception {
+		// The compacted file is larger than the initial mapping and ends with the last record
+		byte[] large = new byte[1536 * 1024];
+		Arrays.fill(large, (byte) 'x');
+		store.save(createSession("A", new byte[3 * 1024 * 1024]));
+		store.save(createSession("B", large));
+		store.remove("A");
+		restartStore();
+		Assert.assertEquals("Store should be compacted on start", Arrays.asList("S:B"), readRecords());
+		Assert.assertTrue("Compacted store should be larger than the initial mapping", Files.size(file) > 1024 * 1024);
+		restartStore();
+		StandardSession session = (StandardSession) store.load("B");
+		Assert.assertArrayEquals("Compacted session should survive a restart", large, (byte[]) session.getAttribute("attr"));
+		store.save(createSession("C", "third"));
+		restartStore();
+		Assert.assertEquals("Session should be appended to the compacted store", Arrays.asList("S:B", "S:C"), readRecords());
+	}
+
+	@Test
+	public void testNotCompactedWhenLittleGarbage() throws Exception {
+		store.save(createSession("A", "first"));
+		store.save(createSession("B", "second"));
+		store.save(createSession("C", "third"));
+		store.save(createSession("A", "fourth"));
+		restartStore();
+		Assert.assertEquals("Store should not be compacted", Arrays.asList("S:A", "S:B", "S:C", "S:A"), readRecords());
+		Assert.assertEquals("Latest session should be loaded", "fourth", ((StandardSession) store.load("A")).getAttribute("attr"));
+	}
+
+	@Test
+	public void testCompactedGarbageRecounted() throws Exception {
+		store.save(createSession("A", "first"));
+		store.save(createSession("A", "second"));
+		store.save(createSession("A", "third"));
+		restartStore();
+		Assert.assertEquals("Store should be compacted on start", Arrays.asList("S:A"), readRecords());
+		// One replaced record is not more than half the compacted file
+		store.save(createSession("A", "fourth"));
+		restartStore();
+		Assert.assertEquals("Store should not be compacted again", Arrays.asList("S:A", "S:A"), readRecords());
+	}
+
+	@Test
+	public void testTornRecordIgnored() throws Exception {
+		store.save(createSession("A", "first"));
+		store.stop();
+		store = null;
+		// A record with its type written and its body cut short by a crash
+		int end = endOfRecords();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ByteBuffer torn = ByteBuffer.allocate(5);
+			torn.put(RECORD_SESSION).putInt(Integer.MAX_VALUE).flip();
+			channel.write(torn, end);
+		}
+		store = startStore();
+		Assert.assertArrayEquals("Sessions before the torn record should be kept", new String[]{"A"}, store.keys());
+		store.save(createSession("B", "second"));
+		restartStore();
+		Assert.assertEquals("Torn record should be overwritten", Arrays.asList("S:A", "S:B"), readRecords());
+	}
+
+	@Test
+	public void testInvalidFileDiscarded() throws Exception {
+		store.stop();
+		store = null;
+		Files.write(file, "not a session store".getBytes(StandardCharsets.UTF_8));
+		store = startStore();
+		Assert.assertEquals("Invalid store should have no sessions", 0, store.getSize());
+		store.save(createSession("A", "first"));
+		restartStore();
+		Assert.assertArrayEquals("Store should be usable after being reset", new String[]{"A"}, store.keys());
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		store.save(createSession("A", "first"));
+		store.clear();
+		Assert.assertEquals("Cleared store should have no sessions", 0, store.getSize());
+		restartStore();
+		Assert.assertEquals("Cleared store should have no sessions after a restart", 0, store.getSize());
+	}
+
+	@Test
+	public void testExpiredKeys() throws Exception {
+		StandardSession expired = createSession("A", "first");
+		expired.setMaxInactiveInterval(1);
+		expired.setCreationTime(System.currentTimeMillis() - 60000);
+		store.save(expired);
+		store.save(createSession("B", "second"));
+		Assert.assertArrayEquals("Only the expired session should be returned", new String[]{"A"}, store.expiredKeys());
+	}
+
+	/**
+	 * @return the started store
+	 * @throws LifecycleException a lifecycle exception
+	 */
+	private MappedFileStore startStore() throws LifecycleException {
+		MappedFileStore started = new MappedFileStore();
+		started.setFileName(file.toString());
+		started.setManager(manager);
+		started.start();
+		return started;
+	}
+
+	/**
+	 * @throws LifecycleException a lifecycle exception
+	 */
+	private void restartStore() throws LifecycleException {
+		store.stop();
+		store = startStore();
+	}
+
+	/**
+	 * @param id the session id
+	 * @param value the session attribute value
+	 * @return the session
+	 */
+	private StandardSession createSession(final String id, final Object value) {
+		StandardSession session = new StandardSession(manager);
+		session.setValid(true);
+		session.setId(id, false);
+		session.setCreationTime(System.currentTimeMillis());
+		session.setMaxInactiveInterval(1800);
+		session.setAttribute("attr", value, false);
+		return session;
+	}
+
+	/**
+	 * @return the store file
+	 * @throws IOException an IO exception
+	 */
+	private ByteBuffer readFile() throws IOException {
+		return ByteBuffer.wrap(Files.readAllBytes(file));
+	}
+
+	/**
+	 * @return the records in the file, as the type ("S" session or "R" remove) and session id
+	 * @throws IOException an IO exception
+	 */
+	private List<String> readRecords() throws IOException {
+		List<String> records = new ArrayList<>();
+		ByteBuffer buf = readFile();
+		buf.position(HEADER_SIZE);
+		while (buf.hasRemaining()) {
+			byte type = buf.get();
+			if (type != RECORD_SESSION && type != RECORD_REMOVE) {
+				return records;
+			}
+			byte[] key = new byte[buf.getInt()];
+			buf.get(key);
+			String id = new String(key, StandardCharsets.UTF_8);
+			if (type == RECORD_REMOVE) {
+				records.add("R:" + id);
+				continue;
+			}
+			// Skip the accessed time and max inactive interval to the data length
+			buf.position(buf.position() + 12);
+			int dataLength = buf.getInt();
+			buf.position(buf.position() + dataLength);
+			records.add("S:" + id);
+		}
+		return records;
+	}
+
+	/**
+	 * @return the offset of the end of the records in the file
+	 * @throws IOException an IO exception
+	 */
+	private int endOfRecords() throws IOException {
+		ByteBuffer buf = readFile();
+		buf.position(HEADER_SIZE);
+		while (buf.get(buf.position()) == RECORD_SESSION) {
+			buf.get();
+			int keyLength = buf.getInt();
+			buf.position(buf.position() + keyLength + 12);
+			int dataLength = buf.getInt();
+			buf.position(buf.position() + dataLength);
+		}
+		return buf.position();
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MetricsValve}.
+ * <p>
+ * The keep-alive count is read by reflection, so these tests must be checked again when TOMCAT is upgraded.
+ * </p>
+ */
+public class MetricsValveTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Tomcat tomcat;
+	private MetricsValve valve;
+
+	@After
+	public void stopTomcat() throws LifecycleException {
+		if (tomcat != null) {
+			tomcat.stop();
+			tomcat.destroy();
+		}
+	}
+
+	@Test
+	public void testKeepAliveReused() throws Exception {
+		int port = startTomcat(100);
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			Assert.assertEquals("First request should be served", "ok", get(socket, false));
+			Assert.assertEquals("Second request should be served", "ok", get(socket, false));
+			Assert.assertEquals("Third request should be served", "ok", get(socket, true));
+		}
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			Assert.assertEquals("Request on a new connection should be served", "ok", get(socket, true));
+		}
+		Assert.assertEquals("Requests after the first on each connection should be counted", 2, valve.getKeepAliveReused());
+	}
+
+	@Test
+	public void testKeepAliveNotCountedWhenUnlimited() throws Exception {
+		int port = startTomcat(-1);
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			get(socket, false);
+			get(socket, true);
+		}
+		Assert.assertEquals("Reuse should not be counted when keep-alive requests are unlimited", 0, valve.getKeepAliveReused());
+	}
+
+	/**
+	 * @param maxKeepAliveRequests the maximum requests on a connection
+	 * @return the port TOMCAT is listening on
+	 * @throws LifecycleException an exception starting TOMCAT
+	 */
+	private int startTomcat(final int maxKeepAliveRequests) throws LifecycleException {
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(folder.getRoot().getAbsolutePath());
+		tomcat.setPort(0);
+		tomcat.getConnector().setProperty("maxKeepAliveRequests", String.valueOf(maxKeepAliveRequests));
+		valve = new MetricsValve();
+		tomcat.getEngine().getPipeline().addValve(valve);
+		StandardContext context = (StandardContext) tomcat.addContext("", folder.getRoot().getAbsolutePath());
+		// Not supported by this TOMCAT version on newer JREs
+		context.setClearReferencesObjectStreamClassCaches(false);
+		Tomcat.addServlet(context, "ok", new HttpServlet() {
+			@Override
+			protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+				resp.setContentLength(2);
+				resp.getOutputStream().write("ok".getBytes(StandardCharsets.US_ASCII));
+			}
+		});
+		context.addServletMappingDecoded("/ok", "ok");
+		tomcat.start();
+		return tomcat.getConnector().getLocalPort();
+	}
+
+	/**
+	 * @param socket the connection
+	 * @param close true if close the connection after the response
+	 * @return the response body
+	 * @throws IOException an IO exception sending the request
+	 */
+	private static String get(final Socket socket, final boolean close) throws IOException {
+		OutputStream out = socket.getOutputStream();
+		String request = "GET /ok HTTP/1.1\r\nHost: localhost\r\n" + (close ? "Connection: close\r\n" : "") + "\r\n";
+		out.write(request.getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+		InputStream in = socket.getInputStream();
+		ByteArrayOutputStream head = new ByteArrayOutputStream();
+		while (!head.toString("US-ASCII").endsWith("\r\n\r\n")) {
+			int b = in.read();
+			if (b < 0) {
+				throw new IOException("Connection closed in the response headers");
+			}
+			head.write(b);
+		}
+		Assert.assertTrue("Response should be OK", head.toString("US-ASCII").startsWith("HTTP/1.1 200"));
+		byte[] body = new byte[2];
+		for (int read = 0; read < body.length;) {
+			int count = in.read(body, read, body.length - read);
+			if (count < 0) {
+				throw new IOException("Connection closed in the response body");
+			}
+			read += count;
+		}
+		return new String(body, StandardCharsets.US_ASCII);
+	}
+
+}
@@ -0,0 +1,244 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import javax.servlet.ServletContext;
+import org.apache.tomcat.Jar;
+import org.apache.tomcat.JarScanType;
+import org.apache.tomcat.JarScanner;
+import org.apache.tomcat.JarScannerCallback;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ParallelJarScanner}.
+ */
+public class ParallelJarScannerTest {
+
+	private static final String WEB_INF_LIB = "/WEB-INF/lib/";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Set<String> webappJars = new LinkedHashSet<>();
+	private File libDir;
+	private File classPathDir;
+	private URLClassLoader loader;
+	private ServletContext context;
+	private String javaClassPath;
+
+	@Before
+	public void setup() throws IOException {
+		libDir = folder.newFolder("lib");
+		classPathDir = folder.newFolder("classpath");
+		for (int i = 0; i < 5; i++) {
+			createJar(libDir, "web" + i + ".jar", null);
+			webappJars.add(WEB_INF_LIB + "web" + i + ".jar");
+		}
+		// The web app class loader has the classes directory and the first jars, which are then not scanned again from the JVM class path
+		List<URL> urls = new ArrayList<>();
+		File classes = folder.newFolder("classes", "META-INF");
+		urls.add(classes.getParentFile().toURI().toURL());
+		// The JVM class path has all the jars, and only its jars have their manifests followed
+		StringBuilder classPath = new StringBuilder();
+		for (int i = 0; i < 30; i++) {
+			String manifestClassPath = null;
+			if (i == 3) {
+				manifestClassPath = "manifest1.jar manifest2.jar";
+			} else if (i == 7) {
+				manifestClassPath = "manifest1.jar missing.jar";
+			} else if (i == 11) {
+				// Already on the class path
+				manifestClassPath = "dep20.jar";
+			}
+			File jar = createJar(classPathDir, "dep" + i + ".jar", manifestClassPath);
+			if (i < 3) {
+				urls.add(jar.toURI().toURL());
+			}
+			classPath.append(i == 0 ? "" : File.pathSeparator).append(jar.getAbsolutePath());
+		}
+		createJar(classPathDir, "manifest1.jar", "manifest3.jar");
+		createJar(classPathDir, "manifest2.jar", null);
+		createJar(classPathDir, "manifest3.jar", null);
+		loader = new URLClassLoader(urls.toArray(new URL[]{}), null);
+		context = createContext();
+		javaClassPath = System.getProperty("java.class.path");
+		System.setProperty("java.class.path", classPath.toString());
+	}
+
+	@After
+	public void restoreClassPath() throws IOException {
+		System.setProperty("java.class.path", javaClassPath);
+		loader.close();
+	}
+
+	@Test
+	public void testSameOrderAsStandardScanner() {
+		for (JarScanType scanType : JarScanType.values()) {
+			List<String> expected = scan(new StandardJarScanner(), scanType);
+			List<String> actual = scan(new ParallelJarScanner(4), scanType);
+			Assert.assertEquals("Scan [" + scanType + "] should call back in the same order as the standard scanner", expected, actual);
+		}
+	}
+
+	@Test
+	public void testManifestClassPathScanned() {
+		List<String> scanned = scan(new ParallelJarScanner(4), JarScanType.TLD);
+		List<String> local = new ArrayList<>();
+		for (String entry : scanned) {
+			if (entry.contains("/classpath/manifest")) {
+				local.add(entry.substring(entry.lastIndexOf('/') + 1));
+			}
+		}
+		Assert.assertEquals("Manifest class path jars should be scanned once each, breadth first",
+				Arrays.asList("manifest1.jar", "manifest2.jar", "manifest3.jar"), local);
+	}
+
+	@Test
+	public void testSameOrderWithSingleThread() {
+		List<String> expected = scan(new StandardJarScanner(), JarScanType.PLUGGABILITY);
+		List<String> actual = scan(new ParallelJarScanner(1), JarScanType.PLUGGABILITY);
+		Assert.assertEquals("Scan with one thread should call back in the same order", expected, actual);
+	}
+
+	@Test
+	public void testCallbackOnScanningThread() {
+		Set<Thread> threads = Collections.synchronizedSet(new LinkedHashSet<>());
+		new ParallelJarScanner(4).scan(JarScanType.TLD, context, new RecordingCallback(new ArrayList<>(), threads));
+		Assert.assertEquals("Callbacks should run one at a time on the scanning thread", Collections.singleton(Thread.currentThread()), threads);
+	}
+
+	@Test
+	public void testScanTimesReported() throws IOException {
+		ParallelJarScanner scanner = new ParallelJarScanner(4);
+		List<String> scanned = scan(scanner, JarScanType.TLD);
+		List<String> located = new ArrayList<>();
+		for (String entry : scanned) {
+			if (!entry.startsWith("classes")) {
+				located.add(entry.substring(entry.indexOf(' ') + 1));
+			}
+		}
+		List<String> reported = new ArrayList<>(scanner.getScanTimes().keySet());
+		Assert.assertTrue("Scan time should be reported for a jar that could not be opened",
+				reported.remove(new File(classPathDir, "missing.jar").toURI().toURL().toString()));
+		Assert.assertEquals("Scan times should be reported for each location in scan order", located, reported);
+		for (Long time : scanner.getScanTimes().values()) {
+			Assert.assertTrue("Scan time should not be negative", time >= 0);
+		}
+	}
+
+	/**
+	 * @param scanner the jar scanner
+	 * @param scanType the scan type
+	 * @return the callbacks in order
+	 */
+	private List<String> scan(final JarScanner scanner, final JarScanType scanType) {
+		List<String> calls = new ArrayList<>();
+		scanner.scan(scanType, context, new RecordingCallback(calls, new LinkedHashSet<>()));
+		return calls;
+	}
+
+	/**
+	 * @return the servlet context of a web app with the library jars and class loader
+	 */
+	private ServletContext createContext() {
+		return (ServletContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ServletContext.class}, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "getResourcePaths":
+					return WEB_INF_LIB.equals(args[0]) ? webappJars : null;
+				case "getResource":
+					String path = (String) args[0];
+					if (path.startsWith(WEB_INF_LIB)) {
+						return new File(libDir, path.substring(WEB_INF_LIB.length())).toURI().toURL();
+					}
+					return null;
+				case "getClassLoader":
+					return loader;
+				default:
+					return null;
+			}
+		});
+	}
+
+	/**
+	 * @param dir the directory to create the jar in
+	 * @param name the jar name
+	 * @param classPath the manifest class path or null
+	 * @return the jar
+	 * @throws IOException an IO exception
+	 */
+	private static File createJar(final File dir, final String name, final String classPath) throws IOException {
+		File jar = new File(dir, name);
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		if (classPath != null) {
+			manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+		}
+		try (OutputStream out = Files.newOutputStream(jar.toPath()); JarOutputStream zip = new JarOutputStream(out, manifest)) {
+			zip.putNextEntry(new ZipEntry("META-INF/" + name + ".txt"));
+			zip.write(name.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		return jar;
+	}
+
+	/**
+	 * Record the callbacks and the threads they ran on.
+	 */
+	private static final class RecordingCallback implements JarScannerCallback {
+
+		private final List<String> calls;
+		private final Set<Thread> threads;
+
+		/**
+		 * @param calls the callbacks in order
+		 * @param threads the threads the callbacks ran on
+		 */
+		private RecordingCallback(final List<String> calls, final Set<Thread> threads) {
+			this.calls = calls;
+			this.threads = threads;
+		}
+
+		@Override
+		public void scan(final Jar jar, final String webappPath, final boolean isWebapp) throws IOException {
+			threads.add(Thread.currentThread());
+			// Read the jar as a TOMCAT callback would
+			jar.nextEntry();
+			calls.add("jar[" + webappPath + "," + isWebapp + "] " + jar.getJarFileURL());
+		}
+
+		@Override
+		public void scan(final File file, final String webappPath, final boolean isWebapp) throws IOException {
+			threads.add(Thread.currentThread());
+			calls.add("dir[" + webappPath + "," + isWebapp + "] " + file.toURI().toURL());
+		}
+
+		@Override
+		public void scanWebInfClasses() {
+			threads.add(Thread.currentThread());
+			calls.add("classes");
+		}
+	}
+
+}
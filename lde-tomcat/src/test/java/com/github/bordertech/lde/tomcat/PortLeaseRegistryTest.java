@@ -0,0 +1,135 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link PortLeaseRegistry}.
+ */
+public class PortLeaseRegistryTest {
+
+	private static final long TTL = 60000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+	private int start;
+	private final List<Integer> leased = new ArrayList<>();
+
+	@Before
+	public void setup() throws IOException {
+		file = folder.getRoot().toPath().resolve("leases.properties");
+		// Start from a port the OS has just found free
+		try (ServerSocket socket = new ServerSocket(0)) {
+			start = socket.getLocalPort();
+		}
+	}
+
+	@After
+	public void releaseLeases() {
+		PortLeaseRegistry registry = new PortLeaseRegistry(file, TTL);
+		for (int port : leased) {
+			registry.release(port);
+		}
+	}
+
+	@Test
+	public void testLeaseDifferentPorts() {
+		PortLeaseRegistry registry = new PortLeaseRegistry(file, TTL);
+		int first = lease(registry);
+		int second = lease(registry);
+		Assert.assertTrue("Leased port should not be before the start port", first >= start);
+		Assert.assertNotEquals("A leased port should not be leased again", first, second);
+	}
+
+	@Test
+	public void testMaxTries() {
+		PortLeaseRegistry registry = new PortLeaseRegistry(file, TTL);
+		int first = lease(registry);
+		try {
+			registry.lease(first, 0);
+			Assert.fail("Only the leased port should be tried");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("Lease should fail once the ports have been tried", "Unable to lease a free port to start TOMCAT.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testLeaseSharedByRegistries() {
+		int first = lease(new PortLeaseRegistry(file, TTL));
+		int second = lease(new PortLeaseRegistry(file, TTL));
+		Assert.assertNotEquals("Registries sharing the file should not lease the same port", first, second);
+	}
+
+	@Test
+	public void testRelease() {
+		PortLeaseRegistry registry = new PortLeaseRegistry(file, TTL);
+		int first = lease(registry);
+		registry.release(first);
+		Assert.assertEquals("A released port should be leased again", first, lease(registry));
+	}
+
+	@Test
+	public void testLeaseExpires() {
+		PortLeaseRegistry registry = new PortLeaseRegistry(file, 0);
+		int first = lease(registry);
+		Assert.assertEquals("An expired lease should be leased again", first, lease(registry));
+	}
+
+	@Test
+	public void testCorruptLeaseExpired() throws IOException {
+		Files.write(file, (start + "=corrupt\n").getBytes(StandardCharsets.ISO_8859_1));
+		PortLeaseRegistry registry = new PortLeaseRegistry(file, TTL);
+		Assert.assertEquals("A corrupt lease should be treated as expired", start, lease(registry));
+	}
+
+	@Test
+	public void testConcurrentLeases() throws Exception {
+		int threads = 8;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				Callable<Integer> task = () -> new PortLeaseRegistry(file, TTL).lease(start, 100);
+				results.add(pool.submit(task));
+			}
+			Set<Integer> ports = new HashSet<>();
+			for (Future<Integer> result : results) {
+				int port = result.get();
+				leased.add(port);
+				Assert.assertTrue("Port [" + port + "] leased more than once", ports.add(port));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @param registry the registry to lease from
+	 * @return the leased port
+	 */
+	private int lease(final PortLeaseRegistry registry) {
+		int port = registry.lease(start, 100);
+		leased.add(port);
+		return port;
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ReloadWatcher}.
+ */
+public class ReloadWatcherTest {
+
+	private static final long DEBOUNCE = 300;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path dir;
+	private ReloadWatcher watcher;
+
+	@Before
+	public void setup() {
+		dir = folder.getRoot().toPath();
+	}
+
+	@After
+	public void closeWatcher() {
+		if (watcher != null) {
+			watcher.close();
+		}
+	}
+
+	@Test
+	public void testBurstOfChangesDebounced() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch ran = new CountDownLatch(1);
+		watcher = startWatcher(() -> {
+			runs.incrementAndGet();
+			ran.countDown();
+		});
+		for (int i = 0; i < 5; i++) {
+			write("file" + i);
+			Thread.sleep(DEBOUNCE / 10);
+		}
+		Assert.assertTrue("Action should run after the changes settle", ran.await(10, TimeUnit.SECONDS));
+		Thread.sleep(DEBOUNCE * 3);
+		Assert.assertEquals("Burst of changes should run the action once", 1, runs.get());
+	}
+
+	@Test
+	public void testChangeInNewDirectoryWatched() throws Exception {
+		CountDownLatch ran = new CountDownLatch(2);
+		watcher = startWatcher(ran::countDown);
+		Files.createDirectory(dir.resolve("sub"));
+		Thread.sleep(DEBOUNCE * 3);
+		write("sub/file");
+		Assert.assertTrue("Change in a new directory should run the action", ran.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCloseWaitsForAction() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger finished = new AtomicInteger();
+		watcher = startWatcher(() -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finished.incrementAndGet();
+		});
+		write("file");
+		Assert.assertTrue("Action should start", started.await(10, TimeUnit.SECONDS));
+		Thread closer = new Thread(watcher::close);
+		closer.start();
+		closer.join(DEBOUNCE);
+		Assert.assertTrue("Close should wait for the action in progress", closer.isAlive());
+		release.countDown();
+		closer.join(10000);
+		Assert.assertFalse("Close should return once the action has finished", closer.isAlive());
+		Assert.assertEquals("Action should have finished", 1, finished.get());
+	}
+
+	@Test
+	public void testNoActionOnceClosed() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		watcher = startWatcher(runs::incrementAndGet);
+		watcher.close();
+		watcher.runAction();
+		write("file");
+		Thread.sleep(DEBOUNCE * 2);
+		Assert.assertEquals("Action should not run once closed", 0, runs.get());
+	}
+
+	@Test
+	public void testActionFailureKeepsWatching() throws Exception {
+		CountDownLatch ran = new CountDownLatch(2);
+		watcher = startWatcher(() -> {
+			ran.countDown();
+			throw new IllegalStateException("Failed");
+		});
+		write("first");
+		Thread.sleep(DEBOUNCE * 3);
+		write("second");
+		Assert.assertTrue("Watcher should keep running after a failed action", ran.await(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * @param action the action to run on a change
+	 * @return the started watcher
+	 * @throws IOException an IO exception watching the directory
+	 */
+	private ReloadWatcher startWatcher(final Runnable action) throws IOException {
+		ReloadWatcher started = new ReloadWatcher(Collections.singletonList(dir), DEBOUNCE, action);
+		started.start();
+		return started;
+	}
+
+	/**
+	 * @param name the file to write
+	 * @throws IOException an IO exception writing the file
+	 */
+	private void write(final String name) throws IOException {
+		Files.write(dir.resolve(name), name.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
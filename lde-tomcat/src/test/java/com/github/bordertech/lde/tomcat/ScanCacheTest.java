@@ -0,0 +1,134 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ScanCache}.
+ */
+public class ScanCacheTest {
+
+	private static final String TYPES = "types";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+	private File jar;
+
+	@Before
+	public void setup() throws IOException {
+		file = folder.getRoot().toPath().resolve("cache/scan-cache.properties");
+		jar = createJar("lib.jar", "content");
+	}
+
+	@Test
+	public void testNewJarScanned() {
+		ScanCache cache = loadCache();
+		Assert.assertFalse("New jar should be scanned", cache.isSkippable(jar, false));
+		Assert.assertEquals("Scanned jar should be counted", 1, cache.getMisses());
+	}
+
+	@Test
+	public void testUnchangedJarSkipped() {
+		saveCache(jar, false, false);
+		ScanCache cache = loadCache();
+		Assert.assertTrue("Unchanged jar that contributed nothing should be skipped", cache.isSkippable(jar, false));
+		Assert.assertEquals("Skipped jar should be counted", 1, cache.getHits());
+	}
+
+	@Test
+	public void testContributedJarScanned() {
+		saveCache(jar, false, true);
+		Assert.assertFalse("Jar that contributed should be scanned", loadCache().isSkippable(jar, false));
+	}
+
+	@Test
+	public void testChangedJarScanned() throws IOException {
+		saveCache(jar, false, false);
+		Files.write(jar.toPath(), "changed content".getBytes(StandardCharsets.UTF_8));
+		Assert.assertFalse("Changed jar should be scanned", loadCache().isSkippable(jar, false));
+	}
+
+	@Test
+	public void testFullScanSkipsHandlesTypesScan() {
+		saveCache(jar, false, false);
+		Assert.assertTrue("Jar with nothing in a full scan should skip a @HandlesTypes scan", loadCache().isSkippable(jar, true));
+	}
+
+	@Test
+	public void testHandlesTypesScanDoesNotSkipFullScan() {
+		saveCache(jar, true, false);
+		ScanCache cache = loadCache();
+		Assert.assertTrue("Jar with nothing in a @HandlesTypes scan should skip a @HandlesTypes scan", cache.isSkippable(jar, true));
+		Assert.assertFalse("Jar only scanned for @HandlesTypes should not skip a full scan", cache.isSkippable(jar, false));
+	}
+
+	@Test
+	public void testHandlesTypesChangedDiscardsCache() {
+		saveCache(jar, false, false);
+		ScanCache cache = new ScanCache(file);
+		cache.load("other");
+		Assert.assertFalse("Cache for other @HandlesTypes should be discarded", cache.isSkippable(jar, false));
+	}
+
+	@Test
+	public void testRemovedJarDiscardsCache() throws IOException {
+		File other = createJar("other.jar", "other");
+		ScanCache cache = loadCache();
+		cache.record(jar, false, false);
+		cache.record(other, false, false);
+		cache.save();
+		Assert.assertTrue("Could not delete the jar", other.delete());
+		Assert.assertFalse("Cache should be discarded when a jar is removed", loadCache().isSkippable(jar, false));
+	}
+
+	@Test
+	public void testCorruptFileIgnored() throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, new byte[]{'\\', 'u', 'z'});
+		Assert.assertFalse("Corrupt cache should be ignored", loadCache().isSkippable(jar, false));
+	}
+
+	/**
+	 * @return the cache loaded for the test @HandlesTypes
+	 */
+	private ScanCache loadCache() {
+		ScanCache cache = new ScanCache(file);
+		cache.load(TYPES);
+		return cache;
+	}
+
+	/**
+	 * @param scanned the scanned jar
+	 * @param handlesTypesOnly true if only scanned for @HandlesTypes
+	 * @param contributed true if the jar contributed to the scan
+	 */
+	private void saveCache(final File scanned, final boolean handlesTypesOnly, final boolean contributed) {
+		ScanCache cache = loadCache();
+		cache.record(scanned, handlesTypesOnly, contributed);
+		cache.save();
+		Assert.assertTrue("Cache should be saved", Files.isRegularFile(file));
+	}
+
+	/**
+	 * @param name the jar name
+	 * @param content the jar content
+	 * @return the jar file
+	 * @throws IOException an IO Exception
+	 */
+	private File createJar(final String name, final String content) throws IOException {
+		File created = folder.newFile(name);
+		Files.write(created.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return created;
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.github.bordertech.lde.tomcat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TimedThreadExecutor}.
+ */
+public class TimedThreadExecutorTest {
+
+	private TimedThreadExecutor executor;
+
+	@Before
+	public void startExecutor() throws Exception {
+		executor = new TimedThreadExecutor();
+		executor.setMinSpareThreads(1);
+		executor.setMaxThreads(1);
+		executor.start();
+	}
+
+	@After
+	public void stopExecutor() throws Exception {
+		executor.stop();
+	}
+
+	@Test
+	public void testQueueWaitTaken() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		AtomicLong first = new AtomicLong();
+		AtomicLong second = new AtomicLong();
+		// Hold the only thread so the next task waits in the queue
+		executor.execute(() -> await(release));
+		executor.execute(() -> {
+			first.set(TimedThreadExecutor.takeQueueWaitNanos());
+			second.set(TimedThreadExecutor.takeQueueWaitNanos());
+			done.countDown();
+		});
+		Thread.sleep(50);
+		release.countDown();
+		Assert.assertTrue("Task should run", done.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue("Queue wait should include the time the thread was busy", first.get() >= TimeUnit.MILLISECONDS.toNanos(50));
+		Assert.assertEquals("Queue wait should only be taken once", 0, second.get());
+	}
+
+	@Test
+	public void testNoQueueWaitOutsideTask() {
+		Assert.assertEquals("Queue wait should be unknown outside a timed task", -1, TimedThreadExecutor.takeQueueWaitNanos());
+	}
+
+	/**
+	 * @param latch the latch to wait for
+	 */
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}